@@ -31,6 +31,7 @@ import io.github.mzmine.modules.visualization.projectmetadata.table.MetadataTabl
 import io.github.mzmine.parameters.UserParameter;
 import io.github.mzmine.project.impl.ProjectChangeEvent.Type;
 import io.github.mzmine.project.impl.ProjectChangeListener;
+import io.github.mzmine.util.StorageUsage;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
 import java.io.File;
 import java.util.Hashtable;
@@ -143,6 +144,14 @@ public interface MZmineProject {
 
   void removeFeatureLists(@NotNull List<FeatureList> featureLists);
 
+  /**
+   * Usage of temporary files by the raw data files and feature lists of this project. Data of
+   * removed feature lists is only reclaimed once it is no longer referenced.
+   *
+   * @return the summed usage of all distinct storages in this project
+   */
+  @NotNull StorageUsage getStorageUsage();
+
   /**
    * Returns all feature lists which contain given data file
    */
@@ -89,7 +89,7 @@ public class SimpleIonTimeSeries implements IonTimeSeries<Scan> {
   public static SimpleIonTimeSeries loadFromXML(XMLStreamReader reader, MemoryMapStorage storage,
       RawDataFile file) throws XMLStreamException {
 
-    List<Scan> scans = null;
+    int[] indices = null;
     double[] mzs = null;
     double[] intensities = null;
 
@@ -103,17 +103,8 @@ public class SimpleIonTimeSeries implements IonTimeSeries<Scan> {
         continue;
       }
       switch (reader.getLocalName()) {
-        case CONST.XML_SCAN_LIST_ELEMENT -> {
-          int[] indices = ParsingUtils.stringToIntArray(reader.getElementText());
-          scans = ParsingUtils.getSublistFromIndices(file.getScans(), indices); // use all scans
-
-          // if the scans were CachedFrames, we have to replace them when storing them to the series,
-          // otherwise, we would keep the refences to cached mobility scans alive.
-          if (scans.get(0) instanceof CachedIMSFrame) {
-            scans = scans.stream().map(scan -> ((CachedIMSFrame) scan).getOriginalFrame())
-                .map(f -> (Scan) f).toList();
-          }
-        }
+        case CONST.XML_SCAN_LIST_ELEMENT ->
+            indices = ParsingUtils.stringToIntArray(reader.getElementText());
         case CONST.XML_MZ_VALUES_ELEMENT ->
             mzs = ParsingUtils.stringToDoubleArray(reader.getElementText());
         case CONST.XML_INTENSITY_VALUES_ELEMENT ->
@@ -121,6 +112,26 @@ public class SimpleIonTimeSeries implements IonTimeSeries<Scan> {
       }
     }
 
+    return create(storage, file, indices, mzs, intensities);
+  }
+
+  /**
+   * Creates a series from saved data, e.g., during project import.
+   *
+   * @param scanIndices indices of the scans in all scans of the raw data file
+   */
+  public static SimpleIonTimeSeries create(@Nullable MemoryMapStorage storage,
+      @NotNull RawDataFile file, @NotNull int[] scanIndices, @NotNull double[] mzs,
+      @NotNull double[] intensities) {
+    List<Scan> scans = ParsingUtils.getSublistFromIndices(file.getScans(),
+        scanIndices); // use all scans
+
+    // if the scans were CachedFrames, we have to replace them when storing them to the series,
+    // otherwise, we would keep the refences to cached mobility scans alive.
+    if (!scans.isEmpty() && scans.get(0) instanceof CachedIMSFrame) {
+      scans = scans.stream().map(scan -> ((CachedIMSFrame) scan).getOriginalFrame())
+          .map(f -> (Scan) f).toList();
+    }
     return new SimpleIonTimeSeries(storage, mzs, intensities, scans);
   }
 
@@ -28,6 +28,7 @@ package io.github.mzmine.datamodel.featuredata.impl;
 import io.github.mzmine.datamodel.featuredata.IonSeries;
 import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.StoredDoubleValues;
 import java.io.IOException;
 import java.nio.DoubleBuffer;
 import java.nio.IntBuffer;
@@ -184,6 +185,73 @@ public class StorageUtils {
     return buffer;
   }
 
+  /**
+   * Stores the first values of the given array into a double buffer.
+   *
+   * @param storage The storage to be used. If null, the values will be copied and wrapped using
+   *                {@link DoubleBuffer#wrap(double[])}.
+   * @param values  The values to be stored. The array is not referenced by the buffer and may be
+   *                reused.
+   * @param length  The number of values to store.
+   * @return The double buffer the values were stored in.
+   */
+  @NotNull
+  public static DoubleBuffer storeValuesToDoubleBuffer(@Nullable final MemoryMapStorage storage,
+      @NotNull final double[] values, final int length) {
+    if (storage != null) {
+      try {
+        return storage.storeData(values, 0, length);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    return DoubleBuffer.wrap(Arrays.copyOf(values, length));
+  }
+
+  /**
+   * Stores the given m/z values with the {@link io.github.mzmine.util.StorageEncoding} of the
+   * storage.
+   *
+   * @param storage The storage to be used. If null, the values will be wrapped using {@link
+   *                StoredDoubleValues#wrap(double[])}.
+   * @param values  The values to be stored.
+   * @return The stored values.
+   */
+  @NotNull
+  public static StoredDoubleValues storeMzValues(@Nullable final MemoryMapStorage storage,
+      @NotNull final double[] values) {
+    if (storage != null) {
+      try {
+        return storage.storeMzValues(values);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    return StoredDoubleValues.wrap(values);
+  }
+
+  /**
+   * Stores the given intensity values with the {@link io.github.mzmine.util.StorageEncoding} of
+   * the storage.
+   *
+   * @param storage The storage to be used. If null, the values will be wrapped using {@link
+   *                StoredDoubleValues#wrap(double[])}.
+   * @param values  The values to be stored.
+   * @return The stored values.
+   */
+  @NotNull
+  public static StoredDoubleValues storeIntensityValues(@Nullable final MemoryMapStorage storage,
+      @NotNull final double[] values) {
+    if (storage != null) {
+      try {
+        return storage.storeIntensityValues(values);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    return StoredDoubleValues.wrap(values);
+  }
+
   /**
    * Stores the given array into an int buffer.
    *
@@ -211,4 +279,27 @@ public class StorageUtils {
     }
     return buffer;
   }
+
+  /**
+   * Stores the first values of the given array into an int buffer.
+   *
+   * @param storage The storage to be used. If null, the values will be copied and wrapped using
+   *                {@link IntBuffer#wrap(int[])}.
+   * @param values  The values to be stored. The array is not referenced by the buffer and may be
+   *                reused.
+   * @param length  The number of values to store.
+   * @return The int buffer the values were stored in.
+   */
+  @NotNull
+  public static IntBuffer storeValuesToIntBuffer(@Nullable final MemoryMapStorage storage,
+      @NotNull final int[] values, final int length) {
+    if (storage != null) {
+      try {
+        return storage.storeData(values, 0, length);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    return IntBuffer.wrap(Arrays.copyOf(values, length));
+  }
 }
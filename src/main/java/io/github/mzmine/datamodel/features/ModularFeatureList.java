@@ -117,7 +117,8 @@ public class ModularFeatureList implements FeatureList {
   public ModularFeatureList(String name, @Nullable MemoryMapStorage storage,
       @NotNull List<RawDataFile> dataFiles) {
     setName(name);
-    this.dataFiles = FXCollections.observableList(dataFiles);
+    // copy, files may be appended by incremental alignment
+    this.dataFiles = FXCollections.observableArrayList(dataFiles);
     featureListRows = FXCollections.observableArrayList();
     descriptionOfAppliedTasks = FXCollections.observableArrayList();
     dateCreated = DATA_FORMAT.format(new Date());
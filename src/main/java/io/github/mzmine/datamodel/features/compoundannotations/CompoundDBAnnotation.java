@@ -89,11 +89,7 @@ public interface CompoundDBAnnotation extends Cloneable, FeatureAnnotation {
   static List<CompoundDBAnnotation> buildCompoundsWithAdducts(
       CompoundDBAnnotation neutralAnnotation, IonNetworkLibrary library) {
     final List<CompoundDBAnnotation> annotations = new ArrayList<>();
-    for (IonType adduct : library.getAllAdducts()) {
-      if (adduct.isUndefinedAdduct() || adduct.isUndefinedAdductParent() || adduct.getName()
-          .contains("?")) {
-        continue;
-      }
+    for (IonType adduct : getIonizingAdducts(library)) {
       try {
         annotations.add(neutralAnnotation.ionize(adduct));
       } catch (IllegalStateException e) {
@@ -104,6 +100,16 @@ public interface CompoundDBAnnotation extends Cloneable, FeatureAnnotation {
     return annotations;
   }
 
+  /**
+   * @return the adducts of the library that are used to ionize compounds, without undefined
+   * adducts
+   */
+  static List<IonType> getIonizingAdducts(IonNetworkLibrary library) {
+    return library.getAllAdducts().stream().filter(
+        adduct -> !(adduct.isUndefinedAdduct() || adduct.isUndefinedAdductParent()
+            || adduct.getName().contains("?"))).toList();
+  }
+
   /**
    * @param baseAnnotation The annotation to check.
    * @param useIonLibrary  true if an ion library shall be used later on to ionise the
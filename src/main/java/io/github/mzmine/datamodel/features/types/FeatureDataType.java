@@ -40,6 +40,10 @@ import io.github.mzmine.datamodel.features.RowBinding;
 import io.github.mzmine.datamodel.features.types.modifiers.NoTextColumn;
 import io.github.mzmine.datamodel.features.types.modifiers.NullColumnType;
 import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
+import io.github.mzmine.modules.io.projectload.version_3_0.FeatureSeriesBinaryReader;
+import io.github.mzmine.modules.io.projectsave.FeatureSeriesBinaryWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
@@ -88,6 +92,20 @@ public class FeatureDataType extends
       @NotNull final ModularFeatureList flist, @NotNull final ModularFeatureListRow row,
       @Nullable final ModularFeature feature, @Nullable final RawDataFile file)
       throws XMLStreamException {
+    saveToXML(writer, value, flist, row, feature, file, null);
+  }
+
+  /**
+   * Saves the feature data to xml or, if a series writer is given, only a reference to the series
+   * in the binary series file.
+   *
+   * @param seriesWriter the binary series file of the feature list or null to save all data to
+   *                     xml
+   */
+  public void saveToXML(@NotNull final XMLStreamWriter writer, @Nullable final Object value,
+      @NotNull final ModularFeatureList flist, @NotNull final ModularFeatureListRow row,
+      @Nullable final ModularFeature feature, @Nullable final RawDataFile file,
+      @Nullable final FeatureSeriesBinaryWriter seriesWriter) throws XMLStreamException {
     if(value == null) {
       return;
     }
@@ -105,7 +123,19 @@ public class FeatureDataType extends
     }
 
     writer.writeStartElement(getUniqueID());
-    series.saveValueToXML(writer, file.getScans()); // use ALL scans of the given raw data file.
+    // ion mobility series are always saved to xml
+    if (seriesWriter != null && value.getClass().equals(SimpleIonTimeSeries.class)) {
+      try {
+        final int index = seriesWriter.writeSeries(series, file);
+        writer.writeStartElement(SimpleIonTimeSeries.XML_ELEMENT);
+        writer.writeAttribute(CONST.XML_BINARY_SERIES_INDEX_ATTR, String.valueOf(index));
+        writer.writeEndElement();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    } else {
+      series.saveValueToXML(writer, file.getScans()); // use ALL scans of the given raw data file.
+    }
     writer.writeEndElement();
   }
 
@@ -114,6 +144,20 @@ public class FeatureDataType extends
       @NotNull final ModularFeatureList flist, @NotNull final ModularFeatureListRow row,
       @Nullable final ModularFeature feature, @Nullable final RawDataFile file)
       throws XMLStreamException {
+    return loadFromXML(reader, project, flist, row, feature, file, null);
+  }
+
+  /**
+   * Loads the feature data from xml or from the binary series file, if the xml references a series
+   * in that file.
+   *
+   * @param seriesReader the binary series file of the feature list. null for projects without
+   *                     binary series file
+   */
+  public Object loadFromXML(@NotNull final XMLStreamReader reader, @NotNull MZmineProject project,
+      @NotNull final ModularFeatureList flist, @NotNull final ModularFeatureListRow row,
+      @Nullable final ModularFeature feature, @Nullable final RawDataFile file,
+      @Nullable final FeatureSeriesBinaryReader seriesReader) throws XMLStreamException {
 
     assert file != null;
 
@@ -132,7 +176,21 @@ public class FeatureDataType extends
 
     switch (reader.getLocalName()) {
       case SimpleIonTimeSeries.XML_ELEMENT -> {
-        return SimpleIonTimeSeries.loadFromXML(reader, flist.getMemoryMapStorage(), file);
+        final String seriesIndex = reader.getAttributeValue(null,
+            CONST.XML_BINARY_SERIES_INDEX_ATTR);
+        if (seriesIndex == null) {
+          return SimpleIonTimeSeries.loadFromXML(reader, flist.getMemoryMapStorage(), file);
+        }
+        if (seriesReader == null) {
+          throw new IllegalStateException(
+              "Feature data references a binary series file, but the file was not found.");
+        }
+        try {
+          return seriesReader.readIonTimeSeries(Integer.parseInt(seriesIndex),
+              flist.getMemoryMapStorage(), file);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
       }
       case SimpleIonMobilogramTimeSeries.XML_ELEMENT -> {
         return IonMobilogramTimeSeriesFactory
@@ -29,7 +29,7 @@ import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.MassSpectrum;
 import io.github.mzmine.datamodel.MassSpectrumType;
-import java.nio.DoubleBuffer;
+import io.github.mzmine.util.StoredDoubleValues;
 import java.util.Iterator;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -50,16 +50,16 @@ public abstract class AbstractMassSpectrum implements MassSpectrum {
 
   protected synchronized void updateMzRangeAndTICValues() {
 
-    final DoubleBuffer mzValues = getMzValues();
-    final DoubleBuffer intensityValues = getIntensityValues();
+    final StoredDoubleValues mzValues = getMzValues();
+    final StoredDoubleValues intensityValues = getIntensityValues();
 
     assert mzValues != null;
     assert intensityValues != null;
-    assert mzValues.capacity() == intensityValues.capacity();
+    assert mzValues.size() == intensityValues.size();
 
     totalIonCurrent = 0.0;
 
-    if (mzValues.capacity() == 0) {
+    if (mzValues.size() == 0) {
       mzRange = null;
       basePeakIndex = null;
       return;
@@ -67,12 +67,12 @@ public abstract class AbstractMassSpectrum implements MassSpectrum {
 
     totalIonCurrent = 0.0;
     basePeakIndex = 0;
-    mzRange = Range.closed(mzValues.get(0), mzValues.get(mzValues.capacity() - 1));
+    mzRange = Range.closed(mzValues.get(0), mzValues.get(mzValues.size() - 1));
 
-    for (int i = 0; i < mzValues.capacity() - 1; i++) {
+    for (int i = 0; i < mzValues.size() - 1; i++) {
 
       // Check the order of the m/z values
-      if ((i < mzValues.capacity() - 1) && (mzValues.get(i) > mzValues.get(i + 1))) {
+      if ((i < mzValues.size() - 1) && (mzValues.get(i) > mzValues.get(i + 1))) {
         throw new IllegalArgumentException("The m/z values must be sorted in ascending order");
       }
 
@@ -85,7 +85,7 @@ public abstract class AbstractMassSpectrum implements MassSpectrum {
       totalIonCurrent += intensityValues.get(i);
     }
 
-    totalIonCurrent += intensityValues.get(intensityValues.capacity() - 1);
+    totalIonCurrent += intensityValues.get(intensityValues.size() - 1);
   }
 
 
@@ -94,7 +94,7 @@ public abstract class AbstractMassSpectrum implements MassSpectrum {
    */
   @Override
   public int getNumberOfDataPoints() {
-    return getMzValues().capacity();
+    return getMzValues().size();
   }
 
   /**
@@ -161,9 +161,9 @@ public abstract class AbstractMassSpectrum implements MassSpectrum {
     }
   }
 
-  abstract DoubleBuffer getMzValues();
+  abstract StoredDoubleValues getMzValues();
 
-  abstract DoubleBuffer getIntensityValues();
+  abstract StoredDoubleValues getIntensityValues();
 
   @Override
   public Iterator<DataPoint> iterator() {
@@ -28,7 +28,7 @@ package io.github.mzmine.datamodel.impl;
 import io.github.mzmine.datamodel.Frame;
 import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
 import io.github.mzmine.util.MemoryMapStorage;
-import java.nio.DoubleBuffer;
+import io.github.mzmine.util.StoredDoubleValues;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -39,10 +39,8 @@ import org.jetbrains.annotations.Nullable;
 public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
 
   private static final Logger logger = Logger.getLogger(AbstractStorableSpectrum.class.getName());
-  private static final DoubleBuffer EMPTY_BUFFER = DoubleBuffer.wrap(new double[0]);
-
-  protected DoubleBuffer mzValues;
-  protected DoubleBuffer intensityValues;
+  protected StoredDoubleValues mzValues;
+  protected StoredDoubleValues intensityValues;
 
   /**
    * Note: mz and intensity values for a scan shall only be set once and are enforced to be
@@ -84,22 +82,22 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
       }
     }
 
-    this.mzValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzValues);
-    this.intensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, intensityValues);
+    this.mzValues = StorageUtils.storeMzValues(storage, mzValues);
+    this.intensityValues = StorageUtils.storeIntensityValues(storage, intensityValues);
     updateMzRangeAndTICValues();
   }
 
-  DoubleBuffer getMzValues() {
+  StoredDoubleValues getMzValues() {
     if (mzValues == null) {
-      return EMPTY_BUFFER;
+      return StoredDoubleValues.EMPTY;
     } else {
       return mzValues;
     }
   }
 
-  DoubleBuffer getIntensityValues() {
+  StoredDoubleValues getIntensityValues() {
     if (intensityValues == null) {
-      return EMPTY_BUFFER;
+      return StoredDoubleValues.EMPTY;
     } else {
       return intensityValues;
     }
@@ -36,9 +36,9 @@ import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.Ce
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetectorParameters;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.StoredDoubleValues;
 import io.github.mzmine.util.exceptions.MissingMassListException;
 import io.github.mzmine.util.scans.ScanUtils;
-import java.nio.DoubleBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.List;
@@ -57,15 +57,15 @@ public class MobilityScanStorage {
 
   // raw data
   private final Frame frame;
-  private final DoubleBuffer rawMzValues;
-  private final DoubleBuffer rawIntensityValues;
+  private final StoredDoubleValues rawMzValues;
+  private final StoredDoubleValues rawIntensityValues;
   private final IntBuffer rawStorageOffsets;
   private final IntBuffer rawBasePeakIndices;
   private final int rawMaxNumPoints;
 
   // mass list
-  private DoubleBuffer massListMzValues = null;
-  private DoubleBuffer massListIntensityValues = null;
+  private StoredDoubleValues massListMzValues = null;
+  private StoredDoubleValues massListIntensityValues = null;
   private IntBuffer massListStorageOffsets = null;
   private IntBuffer massListBasePeakIndices = null;
   private int massListMaxNumPoints = -1;
@@ -100,8 +100,8 @@ public class MobilityScanStorage {
     final int[] rawBasePeakIndices = StorageUtils.putAllValuesIntoOneArray(data, 1, intensities);
     this.rawBasePeakIndices = StorageUtils.storeValuesToIntBuffer(storage, rawBasePeakIndices);
 
-    rawMzValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzs);
-    rawIntensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, intensities);
+    rawMzValues = StorageUtils.storeMzValues(storage, mzs);
+    rawIntensityValues = StorageUtils.storeIntensityValues(storage, intensities);
   }
 
   public MobilityScanStorage(@Nullable MemoryMapStorage storage, @NotNull final Frame frame,
@@ -177,8 +177,8 @@ public class MobilityScanStorage {
         intensities);
     this.massListBasePeakIndices = StorageUtils.storeValuesToIntBuffer(storage,
         massListBasePeakIndices);
-    massListMzValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzs);
-    massListIntensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, intensities);
+    massListMzValues = StorageUtils.storeMzValues(storage, mzs);
+    massListIntensityValues = StorageUtils.storeIntensityValues(storage, intensities);
   }
 
   public MassList getMassList(int mobilityScanIndex) {
@@ -232,7 +232,7 @@ public class MobilityScanStorage {
     if (index < rawStorageOffsets.capacity() - 1) {
       return rawStorageOffsets.get(index + 1) - rawStorageOffsets.get(index);
     } else {
-      return rawMzValues.capacity() - rawStorageOffsets.get(index);
+      return rawMzValues.size() - rawStorageOffsets.get(index);
     }
   }
 
@@ -256,7 +256,7 @@ public class MobilityScanStorage {
    * @return The total number of points in this {@link  MobilityScanStorage}.
    */
   public int getRawTotalNumPoints() {
-    return rawMzValues.capacity();
+    return rawMzValues.size();
   }
 
   public Frame getFrame() {
@@ -309,7 +309,7 @@ public class MobilityScanStorage {
     if (index < massListStorageOffsets.capacity() - 1) {
       return massListStorageOffsets.get(index + 1) - massListStorageOffsets.get(index);
     } else {
-      return massListMzValues.capacity() - massListStorageOffsets.get(index);
+      return massListMzValues.size() - massListStorageOffsets.get(index);
     }
   }
 
@@ -360,7 +360,7 @@ public class MobilityScanStorage {
           "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
           null);
     }
-    return massListIntensityValues.capacity();
+    return massListIntensityValues.size();
   }
 
   public void getMassListMzValues(int mobilityScanIndex, double[] dst, int offset) {
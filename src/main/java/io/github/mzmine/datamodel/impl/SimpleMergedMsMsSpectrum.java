@@ -156,11 +156,11 @@ public class SimpleMergedMsMsSpectrum extends SimpleMergedMassSpectrum implement
     }
 
     writer.writeStartElement(CONST.XML_MZ_VALUES_ELEMENT);
-    writer.writeCharacters(ParsingUtils.doubleBufferToString(getMzValues()));
+    writer.writeCharacters(ParsingUtils.doubleArrayToString(getMzValues(new double[0])));
     writer.writeEndElement();
 
     writer.writeStartElement(CONST.XML_INTENSITY_VALUES_ELEMENT);
-    writer.writeCharacters(ParsingUtils.doubleBufferToString(getIntensityValues()));
+    writer.writeCharacters(ParsingUtils.doubleArrayToString(getIntensityValues(new double[0])));
     writer.writeEndElement();
 
     List<MobilityScan> mobilityScans = getSourceSpectra().stream()
@@ -80,11 +80,11 @@ public class SimplePseudoSpectrum extends SimpleScan implements PseudoSpectrum {
     }
 
     writer.writeStartElement(CONST.XML_MZ_VALUES_ELEMENT);
-    writer.writeCharacters(ParsingUtils.doubleBufferToString(getMzValues()));
+    writer.writeCharacters(ParsingUtils.doubleArrayToString(getMzValues(new double[0])));
     writer.writeEndElement();
 
     writer.writeStartElement(CONST.XML_INTENSITY_VALUES_ELEMENT);
-    writer.writeCharacters(ParsingUtils.doubleBufferToString(getIntensityValues()));
+    writer.writeCharacters(ParsingUtils.doubleArrayToString(getIntensityValues(new double[0])));
     writer.writeEndElement();
 
     writer.writeEndElement();
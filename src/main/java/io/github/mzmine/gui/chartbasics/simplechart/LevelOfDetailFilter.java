@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.gui.chartbasics.simplechart;
+
+import io.github.mzmine.gui.chartbasics.simplechart.datasets.ColoredXYDataset;
+import io.github.mzmine.gui.chartbasics.simplechart.datasets.LevelOfDetail;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jfree.data.xy.XYDataset;
+
+/**
+ * Level of detail of the datasets of one chart. Renderers skip the items that are not visible at
+ * the current chart resolution, while the datasets keep all items, e.g., for data export. The
+ * reduction is kept per chart, so the same dataset can be shown in multiple charts with different
+ * domain ranges and sizes.
+ *
+ * @author https://github.com/mzmine
+ */
+public class LevelOfDetailFilter {
+
+  private final Map<XYDataset, Reduction> reductions = new ConcurrentHashMap<>();
+
+  /**
+   * @return true if the renderer should not draw this item
+   */
+  public boolean isItemSkipped(@NotNull XYDataset dataset, int series, int item) {
+    final Reduction reduction = reductions.get(dataset);
+    // the values of the dataset changed since the reduction was computed
+    if (reduction == null || reduction.drawnItems() == null
+        || reduction.numValues() != dataset.getItemCount(series)) {
+      return false;
+    }
+    return !reduction.drawnItems().get(item);
+  }
+
+  /**
+   * Computes the drawn items of a dataset on the calling thread, which should not be the FX thread.
+   * Zero pixel columns draw all items.
+   *
+   * @return true if the drawn items changed and the chart needs to be redrawn
+   */
+  public boolean update(@NotNull ColoredXYDataset dataset, double lowerDomain, double upperDomain,
+      int pixelColumns) {
+    final int numValues = dataset.getItemCount(0);
+    final Reduction old = reductions.get(dataset);
+    if (old != null && old.numValues() == numValues && old.lowerDomain() == lowerDomain
+        && old.upperDomain() == upperDomain && old.pixelColumns() == pixelColumns) {
+      // prevents endless updates, as redrawing the chart requests a new update
+      return false;
+    }
+
+    final int[] drawn = LevelOfDetail.reduceM4(numValues, i -> dataset.getXValue(0, i),
+        i -> dataset.getYValue(0, i), lowerDomain, upperDomain, pixelColumns);
+    BitSet drawnItems = null;
+    if (drawn != null) {
+      drawnItems = new BitSet(numValues);
+      for (int i : drawn) {
+        drawnItems.set(i);
+      }
+    }
+    reductions.put(dataset,
+        new Reduction(numValues, lowerDomain, upperDomain, pixelColumns, drawnItems));
+    return drawnItems != null || (old != null && old.drawnItems() != null);
+  }
+
+  public void remove(@Nullable XYDataset dataset) {
+    if (dataset != null) {
+      reductions.remove(dataset);
+    }
+  }
+
+  public void clear() {
+    reductions.clear();
+  }
+
+  /**
+   * @param drawnItems null to draw all items
+   */
+  private record Reduction(int numValues, double lowerDomain, double upperDomain,
+                           int pixelColumns, @Nullable BitSet drawnItems) {
+
+  }
+}
@@ -41,6 +41,7 @@ import io.github.mzmine.gui.chartbasics.simplechart.providers.ExampleXYProvider;
 import io.github.mzmine.gui.chartbasics.simplechart.providers.PlotXYDataProvider;
 import io.github.mzmine.gui.chartbasics.simplechart.renderers.ColoredXYLineRenderer;
 import io.github.mzmine.gui.chartbasics.simplechart.renderers.ColoredXYShapeRenderer;
+import io.github.mzmine.gui.chartbasics.simplechart.renderers.LevelOfDetailRenderer;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.taskcontrol.Task;
 import java.text.NumberFormat;
@@ -48,6 +49,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 import javafx.beans.NamedArg;
 import javafx.beans.property.BooleanProperty;
@@ -62,6 +66,7 @@ import org.jetbrains.annotations.Nullable;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.axis.ValueAxis;
 import org.jfree.chart.event.RendererChangeEvent;
 import org.jfree.chart.plot.DatasetRenderingOrder;
 import org.jfree.chart.plot.PlotOrientation;
@@ -92,11 +97,21 @@ public class SimpleXYChart<T extends PlotXYDataProvider> extends EChartViewer im
 
   private static final double AXIS_MARGINS = 0.01;
   private static final Logger logger = Logger.getLogger(SimpleXYChart.class.getName());
+  // computes the level of detail of all charts off the FX thread
+  private static final ExecutorService levelOfDetailExecutor = Executors.newSingleThreadExecutor(
+      r -> {
+        Thread t = new Thread(r, "chart-level-of-detail");
+        t.setDaemon(true);
+        return t;
+      });
 
   protected final JFreeChart chart;
   protected final ObjectProperty<XYItemRenderer> defaultRenderer;
   protected final BooleanProperty itemLabelsVisible = new SimpleBooleanProperty(true);
   protected final BooleanProperty legendItemsVisible = new SimpleBooleanProperty(true);
+  protected final BooleanProperty levelOfDetail = new SimpleBooleanProperty(true);
+  private final AtomicLong levelOfDetailRequest = new AtomicLong(0);
+  private final LevelOfDetailFilter levelOfDetailFilter = new LevelOfDetailFilter();
 
   private final XYPlot plot;
   private final TextTitle chartTitle;
@@ -180,6 +195,54 @@ public class SimpleXYChart<T extends PlotXYDataProvider> extends EChartViewer im
     defaultShapeRenderer.setDefaultItemLabelPaint(theme.getItemLabelPaint());
 
     datasetListeners = new ArrayList<>();
+
+    initLevelOfDetailListeners();
+  }
+
+  /**
+   * Reduces the drawn items of large datasets to the chart resolution whenever the chart, e.g., the
+   * visible domain range or the datasets, or the chart width changes. Only the drawing is reduced,
+   * the datasets keep all items.
+   */
+  private void initLevelOfDetailListeners() {
+    chart.addChangeListener(e -> scheduleLevelOfDetailUpdate());
+    widthProperty().addListener((obs, old, newVal) -> scheduleLevelOfDetailUpdate());
+    levelOfDetail.addListener((obs, old, newVal) -> scheduleLevelOfDetailUpdate());
+  }
+
+  private void scheduleLevelOfDetailUpdate() {
+    final ValueAxis domainAxis = plot.getDomainAxis();
+    if (domainAxis == null) {
+      return;
+    }
+    final List<ColoredXYDataset> datasets = new ArrayList<>();
+    for (int i = 0; i < plot.getDatasetCount(); i++) {
+      if (plot.getDataset(i) instanceof ColoredXYDataset ds && ds.isLevelOfDetailSupported()) {
+        datasets.add(ds);
+      }
+    }
+    if (datasets.isEmpty()) {
+      return;
+    }
+
+    final org.jfree.data.Range visible = domainAxis.getRange();
+    // zero columns restores all values
+    final int pixelColumns = levelOfDetail.get() ? (int) Math.ceil(getWidth()) : 0;
+    final long request = levelOfDetailRequest.incrementAndGet();
+    levelOfDetailExecutor.execute(() -> {
+      boolean changed = false;
+      for (ColoredXYDataset dataset : datasets) {
+        if (request != levelOfDetailRequest.get()) {
+          // a newer request supersedes this one
+          return;
+        }
+        changed |= levelOfDetailFilter.update(dataset, visible.getLowerBound(),
+            visible.getUpperBound(), pixelColumns);
+      }
+      if (changed) {
+        MZmineCore.runLater(chart::fireChartChanged);
+      }
+    });
   }
 
   private void initLabelListeners() {
@@ -219,6 +282,9 @@ public class SimpleXYChart<T extends PlotXYDataProvider> extends EChartViewer im
     if (renderer.getDefaultSeriesVisibleInLegend() != isLegendItemsVisible()) {
       renderer.setDefaultSeriesVisibleInLegend(isLegendItemsVisible(), false);
     }
+    if (renderer instanceof LevelOfDetailRenderer lodRenderer) {
+      lodRenderer.setLevelOfDetailFilter(levelOfDetailFilter);
+    }
     plot.setDataset(nextDataSetNum, dataset);
     plot.setRenderer(nextDataSetNum, renderer);
     nextDataSetNum++;
@@ -269,6 +335,7 @@ public class SimpleXYChart<T extends PlotXYDataProvider> extends EChartViewer im
     }
     plot.setDataset(index, null);
     plot.setRenderer(index, null);
+    levelOfDetailFilter.remove(ds);
     if (ds != null) {
       ds.removeChangeListener(getXYPlot());
     }
@@ -322,6 +389,7 @@ public class SimpleXYChart<T extends PlotXYDataProvider> extends EChartViewer im
           ds.removeChangeListener(getXYPlot());
         }
       }
+      levelOfDetailFilter.clear();
       notifyDatasetChangeListeners(new DatasetChangeEvent(this, null));
       nextDataSetNum = 0;
     });
@@ -474,6 +542,22 @@ public class SimpleXYChart<T extends PlotXYDataProvider> extends EChartViewer im
     }
   }
 
+  public boolean isLevelOfDetail() {
+    return levelOfDetail.get();
+  }
+
+  /**
+   * @param levelOfDetail true to only draw the values of large datasets that are visible at the
+   *                      chart resolution, false to draw all values
+   */
+  public void setLevelOfDetail(boolean levelOfDetail) {
+    this.levelOfDetail.set(levelOfDetail);
+  }
+
+  public BooleanProperty levelOfDetailProperty() {
+    return levelOfDetail;
+  }
+
   public boolean isItemLabelsVisible() {
     return itemLabelsVisible.get();
   }
@@ -83,6 +83,8 @@ public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalX
 
   protected Range<Double> domainRange;
   protected Range<Double> rangeRange;
+  // level of detail reduction by the chart is only supported for sorted domain values
+  protected boolean domainValuesSorted;
 
   private ColoredXYDataset(XYValueProvider xyValueProvider,
       SeriesKeyProvider<Comparable<?>> seriesKeyProvider, LabelTextProvider labelTextProvider,
@@ -256,6 +258,18 @@ public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalX
     return -1;
   }
 
+  /**
+   * Charts may only draw the first, last, minimum and maximum item per pixel column of datasets
+   * with sorted domain values. The items of the dataset itself are never reduced. Extending classes
+   * that are drawn by item dependent renderers must return false.
+   *
+   * @return true if the chart may reduce the drawn items
+   * @see LevelOfDetail
+   */
+  public boolean isLevelOfDetailSupported() {
+    return computed && domainValuesSorted;
+  }
+
   public XYValueProvider getValueProvider() {
     return xyValueProvider;
   }
@@ -309,6 +323,7 @@ public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalX
     computedItemCount = xyValueProvider.getValueCount();
     isLocalMaximum = new boolean[computedItemCount];
     valuesComputed = true;
+    domainValuesSorted = true;
 
     double minDomain = Double.POSITIVE_INFINITY;
     double maxDomain = Double.NEGATIVE_INFINITY;
@@ -319,6 +334,9 @@ public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalX
       final double rangeValue = xyValueProvider.getRangeValue(i);
       final double domainValue = xyValueProvider.getDomainValue(i);
 
+      if (domainValue < maxDomain) {
+        domainValuesSorted = false;
+      }
       minDomain = Math.min(domainValue, minDomain);
       maxDomain = Math.max(domainValue, maxDomain);
       minRange = Math.min(rangeValue, minRange);
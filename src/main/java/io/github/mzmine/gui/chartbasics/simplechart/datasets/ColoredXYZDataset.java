@@ -154,6 +154,14 @@ public class ColoredXYZDataset extends ColoredXYDataset implements XYZDataset, P
     this.boxHeight = boxHeight;
   }
 
+  /**
+   * Z values are accessed by item index, so the drawn items are never reduced.
+   */
+  @Override
+  public boolean isLevelOfDetailSupported() {
+    return false;
+  }
+
   @Override
   public int getValueIndex(final double domainValue, final double rangeValue) {
     for (int i = 0; i < computedItemCount; i++) {
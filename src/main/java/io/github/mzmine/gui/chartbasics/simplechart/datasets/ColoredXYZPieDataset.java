@@ -106,6 +106,14 @@ public class ColoredXYZPieDataset<T> extends ColoredXYDataset implements XYZData
     return pieDataProvider.getPieDiameter(index);
   }
 
+  /**
+   * Z values are accessed by item index, so the drawn items are never reduced.
+   */
+  @Override
+  public boolean isLevelOfDetailSupported() {
+    return false;
+  }
+
   @Override
   public int getValueIndex(final double domainValue, final double rangeValue) {
     for (int i = 0; i < computedItemCount; i++) {
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.gui.chartbasics.simplechart.datasets;
+
+import io.github.mzmine.util.collections.BinarySearch;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Level of detail reduction for line and bar charts with sorted domain values. For each pixel
+ * column of the visible domain range, the first, last, minimum and maximum value are kept (M4
+ * aggregation). Drawing these points results in the same image as drawing all values, while the
+ * number of points is bounded by four times the chart width.
+ *
+ * @author https://github.com/mzmine
+ */
+public final class LevelOfDetail {
+
+  /**
+   * Values per pixel column that are kept. Data with fewer values per column is not reduced.
+   */
+  public static final int VALUES_PER_COLUMN = 4;
+
+  private LevelOfDetail() {
+  }
+
+  /**
+   * @param numValues     number of values
+   * @param domainValues  domain values, sorted ascending
+   * @param rangeValues   range values
+   * @param lowerDomain   lower end of the visible domain range
+   * @param upperDomain   upper end of the visible domain range
+   * @param pixelColumns  number of pixel columns of the visible domain range
+   * @return the sorted indices of the values to draw or null if the data does not need to be
+   * reduced. The first and last value and the range minimum and maximum of all values are always
+   * included, so the data bounds stay the same. The closest values outside the visible range are
+   * included to draw the lines leaving the visible range.
+   */
+  public static int[] reduceM4(int numValues, IntToDoubleFunction domainValues,
+      IntToDoubleFunction rangeValues, double lowerDomain, double upperDomain, int pixelColumns) {
+    if (pixelColumns <= 0 || numValues <= VALUES_PER_COLUMN * pixelColumns
+        || !(upperDomain > lowerDomain)) {
+      return null;
+    }
+
+    // first visible value
+    int first = BinarySearch.binarySearch(lowerDomain, true, numValues, domainValues);
+    while (first > 0 && domainValues.applyAsDouble(first - 1) >= lowerDomain) {
+      first--;
+    }
+    while (first < numValues && domainValues.applyAsDouble(first) < lowerDomain) {
+      first++;
+    }
+    // last visible value
+    int last = BinarySearch.binarySearch(upperDomain, true, numValues, domainValues);
+    while (last < numValues - 1 && domainValues.applyAsDouble(last + 1) <= upperDomain) {
+      last++;
+    }
+    while (last >= 0 && domainValues.applyAsDouble(last) > upperDomain) {
+      last--;
+    }
+
+    final IntArrayList indices = new IntArrayList(VALUES_PER_COLUMN * pixelColumns + 8);
+    // keep the data bounds for auto ranging of the axes
+    indices.add(0);
+    indices.add(numValues - 1);
+    int minIndex = 0;
+    int maxIndex = 0;
+    for (int i = 1; i < numValues; i++) {
+      final double y = rangeValues.applyAsDouble(i);
+      if (y < rangeValues.applyAsDouble(minIndex)) {
+        minIndex = i;
+      }
+      if (y > rangeValues.applyAsDouble(maxIndex)) {
+        maxIndex = i;
+      }
+    }
+    indices.add(minIndex);
+    indices.add(maxIndex);
+    // neighbours outside the visible range
+    if (first > 0) {
+      indices.add(first - 1);
+    }
+    if (last < numValues - 1) {
+      indices.add(last + 1);
+    }
+
+    final double columnWidth = (upperDomain - lowerDomain) / pixelColumns;
+    int columnStart = first;
+    while (columnStart <= last) {
+      final int column = Math.min(pixelColumns - 1,
+          (int) ((domainValues.applyAsDouble(columnStart) - lowerDomain) / columnWidth));
+      int columnMin = columnStart;
+      int columnMax = columnStart;
+      int i = columnStart + 1;
+      for (; i <= last; i++) {
+        final double x = domainValues.applyAsDouble(i);
+        if (Math.min(pixelColumns - 1, (int) ((x - lowerDomain) / columnWidth)) != column) {
+          break;
+        }
+        final double y = rangeValues.applyAsDouble(i);
+        if (y < rangeValues.applyAsDouble(columnMin)) {
+          columnMin = i;
+        }
+        if (y > rangeValues.applyAsDouble(columnMax)) {
+          columnMax = i;
+        }
+      }
+      indices.add(columnStart);
+      indices.add(columnMin);
+      indices.add(columnMax);
+      indices.add(i - 1);
+      columnStart = i;
+    }
+
+    // sort and remove duplicates
+    final int[] sorted = indices.toIntArray();
+    Arrays.sort(sorted);
+    int unique = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) {
+        sorted[unique++] = sorted[i];
+      }
+    }
+    return Arrays.copyOf(sorted, unique);
+  }
+}
@@ -25,6 +25,7 @@
 
 package io.github.mzmine.gui.chartbasics.simplechart.renderers;
 
+import io.github.mzmine.gui.chartbasics.simplechart.LevelOfDetailFilter;
 import io.github.mzmine.gui.chartbasics.simplechart.SimpleChartUtility;
 import io.github.mzmine.gui.chartbasics.simplechart.datasets.ColoredXYDataset;
 import io.github.mzmine.gui.chartbasics.simplechart.providers.ColorProvider;
@@ -34,6 +35,7 @@ import java.awt.Paint;
 import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.geom.Rectangle2D;
+import org.jetbrains.annotations.Nullable;
 import org.jfree.chart.LegendItem;
 import org.jfree.chart.axis.ValueAxis;
 import org.jfree.chart.entity.EntityCollection;
@@ -51,7 +53,7 @@ import org.jfree.chart.ui.RectangleEdge;
 import org.jfree.data.xy.IntervalXYDataset;
 import org.jfree.data.xy.XYDataset;
 
-public class ColoredXYBarRenderer extends XYBarRenderer {
+public class ColoredXYBarRenderer extends XYBarRenderer implements LevelOfDetailRenderer {
 
   public static final float TRANSPARENCY = 0.8f;
   public static final AlphaComposite alphaComp =
@@ -60,6 +62,7 @@ public class ColoredXYBarRenderer extends XYBarRenderer {
 
   private boolean isTransparent;
   private XYDataset currentDataset;
+  private LevelOfDetailFilter levelOfDetailFilter;
 
   public ColoredXYBarRenderer(boolean isTransparent) {
     this.isTransparent = isTransparent;
@@ -71,6 +74,11 @@ public class ColoredXYBarRenderer extends XYBarRenderer {
     SimpleChartUtility.tryApplyDefaultChartThemeToRenderer(this);
   }
 
+  @Override
+  public void setLevelOfDetailFilter(@Nullable LevelOfDetailFilter filter) {
+    levelOfDetailFilter = filter;
+  }
+
   /**
    * This method returns null, because we don't want to change the colors dynamically.
    */
@@ -87,6 +95,10 @@ public class ColoredXYBarRenderer extends XYBarRenderer {
     if (!getItemVisible(series, item)) {
       return;
     }
+    // the highest bar of a pixel column covers all others
+    if (levelOfDetailFilter != null && levelOfDetailFilter.isItemSkipped(dataset, series, item)) {
+      return;
+    }
 
     currentDataset = dataset;
 
@@ -25,6 +25,7 @@
 
 package io.github.mzmine.gui.chartbasics.simplechart.renderers;
 
+import io.github.mzmine.gui.chartbasics.simplechart.LevelOfDetailFilter;
 import io.github.mzmine.gui.chartbasics.simplechart.SimpleChartUtility;
 import io.github.mzmine.gui.chartbasics.simplechart.SimpleXYChart;
 import io.github.mzmine.gui.chartbasics.simplechart.providers.ColorProvider;
@@ -34,6 +35,7 @@ import java.awt.Paint;
 import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.geom.Rectangle2D;
+import org.jetbrains.annotations.Nullable;
 import org.jfree.chart.LegendItem;
 import org.jfree.chart.axis.ValueAxis;
 import org.jfree.chart.entity.EntityCollection;
@@ -56,12 +58,14 @@ import org.jfree.data.xy.XYDataset;
  *
  * @author https://github.com/SteffenHeu
  */
-public class ColoredXYLineRenderer extends XYLineAndShapeRenderer {
+public class ColoredXYLineRenderer extends XYLineAndShapeRenderer implements
+    LevelOfDetailRenderer {
 
   private static final long serialVersionUID = 1L;
   private double transparency = 1.0f;
 
   private XYDataset currentDataset;
+  private LevelOfDetailFilter levelOfDetailFilter;
 
   public ColoredXYLineRenderer() {
     super(true, false);
@@ -69,6 +73,11 @@ public class ColoredXYLineRenderer extends XYLineAndShapeRenderer {
     SimpleChartUtility.tryApplyDefaultChartThemeToRenderer(this);
   }
 
+  @Override
+  public void setLevelOfDetailFilter(@Nullable LevelOfDetailFilter filter) {
+    levelOfDetailFilter = filter;
+  }
+
   private AlphaComposite makeComposite(double alpha) {
     int type = AlphaComposite.SRC_OVER;
     return (AlphaComposite.getInstance(type, (float) alpha));
@@ -85,6 +94,14 @@ public class ColoredXYLineRenderer extends XYLineAndShapeRenderer {
       PlotRenderingInfo info, XYPlot plot, ValueAxis domainAxis, ValueAxis rangeAxis,
       XYDataset dataset, int series, int item, CrosshairState crosshairState, int pass) {
 
+    // the series is drawn as a path, so skipped items are bridged by the path. The path is only
+    // drawn with the last item of the pass
+    if (levelOfDetailFilter != null && item != state.getFirstItemIndex()
+        && item != state.getLastItemIndex() && levelOfDetailFilter.isItemSkipped(dataset, series,
+        item)) {
+      return;
+    }
+
     g2.setComposite(makeComposite(transparency));
     currentDataset = dataset;
 
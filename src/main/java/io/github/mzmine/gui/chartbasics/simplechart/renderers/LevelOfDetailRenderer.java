@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.gui.chartbasics.simplechart.renderers;
+
+import io.github.mzmine.gui.chartbasics.simplechart.LevelOfDetailFilter;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Renderer that skips the items of a reduced level of detail. Only suitable for renderers that
+ * draw the same image from the first, last, minimum and maximum item per pixel column, e.g., line
+ * and bar renderers.
+ *
+ * @author https://github.com/mzmine
+ */
+public interface LevelOfDetailRenderer {
+
+  /**
+   * @param filter the filter of the chart this renderer is added to or null to draw all items
+   */
+  void setLevelOfDetailFilter(@Nullable LevelOfDetailFilter filter);
+}
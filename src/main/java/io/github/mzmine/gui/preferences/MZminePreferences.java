@@ -35,6 +35,7 @@ import io.github.mzmine.parameters.impl.SimpleParameterSet;
 import io.github.mzmine.parameters.parametertypes.BooleanParameter;
 import io.github.mzmine.parameters.parametertypes.ComboParameter;
 import io.github.mzmine.parameters.parametertypes.HiddenParameter;
+import io.github.mzmine.parameters.parametertypes.OptionalParameter;
 import io.github.mzmine.parameters.parametertypes.OptOutParameter;
 import io.github.mzmine.parameters.parametertypes.ParameterSetParameter;
 import io.github.mzmine.parameters.parametertypes.WindowSettingsParameter;
@@ -45,6 +46,8 @@ import io.github.mzmine.parameters.parametertypes.filenames.FileSelectionType;
 import io.github.mzmine.parameters.parametertypes.paintscale.PaintScalePaletteParameter;
 import io.github.mzmine.parameters.parametertypes.submodules.OptionalModuleParameter;
 import io.github.mzmine.util.ExitCode;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.StorageEncoding;
 import java.text.DecimalFormat;
 import java.util.Map;
 import javafx.application.Platform;
@@ -141,6 +144,12 @@ public class MZminePreferences extends SimpleParameterSet {
       + "overrides this parameter, if set: --temp D:\\your_tmp_dir\\)",
       System.getProperty("java.io.tmpdir"));
 
+  public static final OptionalParameter<FileNameParameter> isotopePatternCacheFile = new OptionalParameter<>(
+      new FileNameParameter("Isotope pattern cache file",
+          "Loads predicted isotope patterns from this file at the start of a batch and saves them "
+              + "at the end. Speeds up repeated formula predictions and annotations of the same "
+              + "formulas across batch runs.", FileSelectionType.SAVE), false);
+
   public static final ComboParameter<KeepInMemory> memoryOption = new ComboParameter<>(
       "Keep in memory", String.format(
       "Specifies the objects that are kept in memory rather than memory mapping "
@@ -153,6 +162,15 @@ public class MZminePreferences extends SimpleParameterSet {
       KeepInMemory.ALL, KeepInMemory.MASSES_AND_FEATURES), KeepInMemory.values(),
       KeepInMemory.NONE);
 
+  public static final ComboParameter<StorageEncoding> storageEncoding = new ComboParameter<>(
+      "Spectral data encoding", String.format(
+      "Encoding of m/z and intensity values of scans and mass lists in the temp files. %s is "
+          + "lossless. %s halves the size of intensities. %s also stores m/z values with 4 bytes "
+          + "(error < 6E-8 Da) and reduces the temp file size by about 50%%. Only applies to "
+          + "newly created data.", StorageEncoding.DOUBLE, StorageEncoding.FLOAT_INTENSITY,
+      StorageEncoding.FLOAT_INTENSITY_DELTA_MZ), StorageEncoding.values(),
+      StorageEncoding.DOUBLE);
+
   public static final BooleanParameter showPrecursorWindow = new BooleanParameter(
       "Show precursor windows", "Show the isolation window instead of just the precursor m/z.",
       false);
@@ -177,7 +195,8 @@ public class MZminePreferences extends SimpleParameterSet {
   public MZminePreferences() {
     super(new Parameter[]{
         // start with performance
-        numOfThreads, memoryOption, tempDirectory, proxySettings, rExecPath, sendStatistics,
+        numOfThreads, memoryOption, storageEncoding, tempDirectory, isotopePatternCacheFile,
+        proxySettings, rExecPath, sendStatistics,
         // visuals
         // number formats
         mzFormat, rtFormat, mobilityFormat, ccsFormat, intensityFormat, ppmFormat, scoreFormat,
@@ -202,8 +221,8 @@ public class MZminePreferences extends SimpleParameterSet {
 
     // add groups
     dialog.addParameterGroup("General",
-        new Parameter[]{numOfThreads, memoryOption, tempDirectory, proxySettings, rExecPath,
-            sendStatistics});
+        new Parameter[]{numOfThreads, memoryOption, storageEncoding, tempDirectory,
+            isotopePatternCacheFile, proxySettings, rExecPath, sendStatistics});
     dialog.addParameterGroup("Formats",
         new Parameter[]{mzFormat, rtFormat, mobilityFormat, ccsFormat, intensityFormat, ppmFormat,
             scoreFormat, unitFormat});
@@ -229,6 +248,7 @@ public class MZminePreferences extends SimpleParameterSet {
     final KeepInMemory keepInMemory = MZmineCore.getConfiguration().getPreferences()
         .getParameter(MZminePreferences.memoryOption).getValue();
     keepInMemory.enforceToMemoryMapping();
+    MemoryMapStorage.setDefaultEncoding(getValue(MZminePreferences.storageEncoding));
 
     final Themes theme = getValue(MZminePreferences.theme);
     theme.apply(MZmineCore.getDesktop().getMainWindow().getScene().getStylesheets());
@@ -69,6 +69,8 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.application.Application;
@@ -88,8 +90,9 @@ public final class MZmineCore {
   // the default headless desktop is returned if no other desktop is set (e.g., during start up)
   // it is also used in headless mode
   private final Desktop defaultHeadlessDesktop = new HeadLessDesktop();
-  private final List<MemoryMapStorage> storageList = Collections.synchronizedList(
-      new ArrayList<>());
+  // weak references, so that storages and their temporary files can be reclaimed
+  private final Set<MemoryMapStorage> storageList = Collections.synchronizedSet(
+      Collections.newSetFromMap(new WeakHashMap<>()));
   private final Map<Class<?>, MZmineModule> initializedModules = new Hashtable<>();
   private TaskControllerImpl taskController;
   private MZmineConfiguration configuration;
@@ -188,6 +191,8 @@ public final class MZmineCore {
 
       // apply memory management option
       keepInMemory.enforceToMemoryMapping();
+      MemoryMapStorage.setDefaultEncoding(getInstance().configuration.getPreferences()
+          .getValue(MZminePreferences.storageEncoding));
 
       // batch mode defined by command line argument
       File batchFile = argsParser.getBatchFile();
@@ -539,8 +544,14 @@ public final class MZmineCore {
     getInstance().storageList.add(storage);
   }
 
+  /**
+   * @return a snapshot of all storages that are still in use
+   */
   public static List<MemoryMapStorage> getStorageList() {
-    return getInstance().storageList;
+    final Set<MemoryMapStorage> storages = getInstance().storageList;
+    synchronized (storages) {
+      return new ArrayList<>(storages);
+    }
   }
 
   public static @NotNull MetadataTable getProjectMetadata() {
@@ -25,10 +25,23 @@
 
 package io.github.mzmine.modules;
 
+import io.github.mzmine.modules.batchmode.BatchStepScope;
+import org.jetbrains.annotations.NotNull;
+
 /**
  * Interface representing a data processing method that produces new data. Modules implementing this
  * interface can be executed in a batch.
  */
 public interface MZmineProcessingModule extends MZmineRunnableModule {
 
+  /**
+   * Batch step metadata: per-file steps can be pipelined for each raw data file, global steps are
+   * a barrier that waits for all files.
+   *
+   * @return {@link BatchStepScope#GLOBAL} by default
+   */
+  @NotNull
+  default BatchStepScope getBatchStepScope() {
+    return BatchStepScope.GLOBAL;
+  }
 }
@@ -28,6 +28,7 @@ package io.github.mzmine.modules.batchmode;
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
 import io.github.mzmine.parameters.parametertypes.AdvancedParametersParameter;
+import io.github.mzmine.parameters.parametertypes.BooleanParameter;
 import io.github.mzmine.parameters.parametertypes.filenames.FileNameListSilentParameter;
 import io.github.mzmine.util.ExitCode;
 
@@ -37,11 +38,20 @@ public class BatchModeParameters extends SimpleParameterSet {
       "Last used files");
   public static final BatchQueueParameter batchQueue = new BatchQueueParameter();
 
+  public static final BooleanParameter perFilePipelining = new BooleanParameter(
+      "Per-file pipelining",
+      "Runs consecutive per-file steps (e.g., import, mass detection, chromatogram building, "
+          + "smoothing, resolving, isotope grouping) for each raw data file without waiting for "
+          + "the other files. Steps that need all files (e.g., alignment) wait for all files. "
+          + "Within these per-file steps, raw data file and feature list selections of the "
+          + "previous batch step use the results of the previous step for the same file. Steps "
+          + "with other selections (e.g., specific files) run after all files.", false);
+
   public static final AdvancedParametersParameter<AdvancedBatchModeParameters> advanced = new AdvancedParametersParameter<>(
       new AdvancedBatchModeParameters());
 
   public BatchModeParameters() {
-    super(new Parameter[]{batchQueue, advanced, lastFiles});
+    super(new Parameter[]{batchQueue, perFilePipelining, advanced, lastFiles});
   }
 
   @Override
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode;
+
+import io.github.mzmine.modules.MZmineProcessingModule;
+
+/**
+ * Describes how a batch step depends on the results of the previous steps. Declared by each
+ * {@link MZmineProcessingModule#getBatchStepScope()}.
+ */
+public enum BatchStepScope {
+
+  /**
+   * The step processes each raw data file (or its feature lists) independently of all other files.
+   * With per-file pipelining, consecutive per-file steps are run for each file without waiting for
+   * the other files.
+   */
+  PER_FILE,
+
+  /**
+   * The step needs the results of all files, e.g., alignment. The batch waits until all files
+   * finished the previous steps.
+   */
+  GLOBAL
+}
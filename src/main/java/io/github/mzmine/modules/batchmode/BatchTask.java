@@ -28,13 +28,17 @@ package io.github.mzmine.modules.batchmode;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.gui.preferences.MZminePreferences;
 import io.github.mzmine.main.GoogleAnalyticsTracker;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.MZmineModuleCategory;
 import io.github.mzmine.modules.MZmineProcessingModule;
 import io.github.mzmine.modules.MZmineProcessingStep;
 import io.github.mzmine.modules.MZmineRunnableModule;
+import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportModule;
 import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportParameters;
+import io.github.mzmine.modules.io.import_spectral_library.SpectralLibraryImportParameters;
+import io.github.mzmine.modules.tools.isotopeprediction.IsotopePatternCache;
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.EmbeddedParameterSet;
@@ -42,8 +46,10 @@ import io.github.mzmine.parameters.parametertypes.filenames.FileNameParameter;
 import io.github.mzmine.parameters.parametertypes.filenames.FileNamesParameter;
 import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsParameter;
 import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelection;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelectionType;
 import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesParameter;
 import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelection;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelectionType;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.taskcontrol.TaskPriority;
@@ -52,13 +58,24 @@ import io.github.mzmine.taskcontrol.impl.WrappedTask;
 import io.github.mzmine.util.ExitCode;
 import io.github.mzmine.util.files.FileAndPathUtil;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Batch mode task
@@ -73,6 +90,8 @@ public class BatchTask extends AbstractTask {
   private final MZmineProject project;
   private int processedSteps;
   private final boolean useAdvanced;
+  // run consecutive per-file steps for each file independently
+  private final boolean perFilePipelining;
   private final int datasets;
   private List<File> subDirectories;
   private List<RawDataFile> createdDataFiles;
@@ -111,6 +130,7 @@ public class BatchTask extends AbstractTask {
     } else {
       datasets = 1;
     }
+    perFilePipelining = parameters.getValue(BatchModeParameters.perFilePipelining);
     stepsPerDataset = queue.size();
     totalSteps = stepsPerDataset * datasets;
     createdDataFiles = new ArrayList<>();
@@ -124,6 +144,7 @@ public class BatchTask extends AbstractTask {
 
     setStatus(TaskStatus.PROCESSING);
     logger.info("Starting a batch of " + totalSteps + " steps");
+    loadIsotopePatternCache();
 
     int errorDataset = 0;
     currentDataset = -1;
@@ -167,9 +188,17 @@ public class BatchTask extends AbstractTask {
         }
       }
 
-      // run step
-      processQueueStep(i % stepsPerDataset);
-      processedSteps++;
+      // run step or all consecutive per-file steps as pipelines for each file
+      final int step = i % stepsPerDataset;
+      final int perFileEnd = perFilePipelining ? findPerFileStepsEnd(step) : step;
+      if (perFileEnd - step > 1) {
+        processPerFileSteps(step, perFileEnd);
+        processedSteps += perFileEnd - step;
+        i += perFileEnd - step - 1;
+      } else {
+        processQueueStep(step);
+        processedSteps++;
+      }
 
       // If we are canceled or ran into error, stop here
       if (isCanceled()) {
@@ -188,9 +217,52 @@ public class BatchTask extends AbstractTask {
     }
 
     logger.info("Finished a batch of " + totalSteps + " steps");
+    saveIsotopePatternCache();
     setStatus(TaskStatus.FINISHED);
   }
 
+  /**
+   * @return the isotope pattern cache file if persistence is enabled in the preferences
+   */
+  @Nullable
+  private File getIsotopePatternCacheFile() {
+    final MZminePreferences preferences = MZmineCore.getConfiguration().getPreferences();
+    if (!preferences.getValue(MZminePreferences.isotopePatternCacheFile)) {
+      return null;
+    }
+    return preferences.getParameter(MZminePreferences.isotopePatternCacheFile)
+        .getEmbeddedParameter().getValue();
+  }
+
+  private void loadIsotopePatternCache() {
+    final File file = getIsotopePatternCacheFile();
+    if (file == null || !file.exists()) {
+      return;
+    }
+    try {
+      final int loaded = IsotopePatternCache.getInstance().loadFromFile(file);
+      logger.info(() -> "Loaded %d isotope patterns from %s".formatted(loaded, file));
+    } catch (IOException | RuntimeException e) {
+      // the cache only speeds up processing, so the batch continues without it
+      logger.log(Level.WARNING, "Cannot load isotope pattern cache from " + file, e);
+    }
+  }
+
+  private void saveIsotopePatternCache() {
+    final File file = getIsotopePatternCacheFile();
+    if (file == null) {
+      return;
+    }
+    final IsotopePatternCache cache = IsotopePatternCache.getInstance();
+    logger.info(() -> "Isotope pattern cache: %d hits, %d misses (%.1f %% hit rate)".formatted(
+        cache.getHitCount(), cache.getMissCount(), cache.getHitRate() * 100));
+    try {
+      cache.saveToFile(file);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Cannot save isotope pattern cache to " + file, e);
+    }
+  }
+
   private void setOutputFiles(final File parentDir, final boolean createResultsDir,
       final String datasetName) {
     int changedOutputSteps = 0;
@@ -315,74 +387,195 @@ public class BatchTask extends AbstractTask {
       return;
     }
 
-    boolean allTasksFinished = false;
-
     // Submit the tasks to the task controller for processing
     WrappedTask[] currentStepWrappedTasks = MZmineCore.getTaskController()
         .addTasks(currentStepTasks.toArray(new Task[0]));
     currentStepTasks = null;
 
-    while (!allTasksFinished) {
+    if (!waitForTasks(currentStepWrappedTasks)) {
+      return;
+    }
 
-      // If we canceled the batch, cancel all running tasks
-      if (isCanceled()) {
-        for (WrappedTask stepTask : currentStepWrappedTasks) {
-          stepTask.getActualTask().cancel();
+    createdDataFiles = new ArrayList<>(project.getCurrentRawDataFiles());
+    createdFeatureLists = new ArrayList<>(project.getCurrentFeatureLists());
+    createdDataFiles.removeAll(beforeDataFiles);
+    createdFeatureLists.removeAll(beforeFeatureLists);
+    // Clear the saved data files and feature lists. Save them to the
+    // "previous" lists, in case the next step does not produce any new data
+    if (!createdDataFiles.isEmpty()) {
+      previousCreatedDataFiles = createdDataFiles;
+    }
+    if (!createdFeatureLists.isEmpty()) {
+      previousCreatedFeatureLists = createdFeatureLists;
+    }
+  }
+
+  /**
+   * Waits until all tasks are finished. Cancels all tasks if the batch was canceled and sets the
+   * batch status on errors or if any task was canceled.
+   *
+   * @return true if all tasks finished, false on error or cancel
+   */
+  private boolean waitForTasks(WrappedTask[] currentStepWrappedTasks) {
+    // the batch does not need its permit while its step tasks run
+    try (var blockingWait = MZmineCore.getTaskController().startBlockingWait()) {
+      boolean allTasksFinished = false;
+      while (!allTasksFinished) {
+
+        // If we canceled the batch, cancel all running tasks
+        if (isCanceled() || getStatus() == TaskStatus.ERROR) {
+          for (WrappedTask stepTask : currentStepWrappedTasks) {
+            stepTask.getActualTask().cancel();
+          }
+          return false;
         }
-        return;
-      }
 
-      // First set to true, then check all tasks
-      allTasksFinished = true;
+        // First set to true, then check all tasks
+        allTasksFinished = true;
 
-      for (WrappedTask stepTask : currentStepWrappedTasks) {
+        for (WrappedTask stepTask : currentStepWrappedTasks) {
 
-        TaskStatus stepStatus = stepTask.getActualTask().getStatus();
+          TaskStatus stepStatus = stepTask.getActualTask().getStatus();
 
-        // If any of them is not finished, keep checking
-        if (stepStatus != TaskStatus.FINISHED) {
-          allTasksFinished = false;
-        }
+          // If any of them is not finished, keep checking
+          if (stepStatus != TaskStatus.FINISHED) {
+            allTasksFinished = false;
+          }
+
+          // If there was an error, we have to stop the whole batch
+          if (stepStatus == TaskStatus.ERROR) {
+            setStatus(TaskStatus.ERROR);
+            setErrorMessage(
+                stepTask.getActualTask().getTaskDescription() + ": " + stepTask.getActualTask()
+                    .getErrorMessage());
+            return false;
+          }
+
+          // If user canceled any of the tasks, we have to cancel the
+          // whole batch
+          if (stepStatus == TaskStatus.CANCELED) {
+            setStatus(TaskStatus.CANCELED);
+            for (WrappedTask t : currentStepWrappedTasks) {
+              t.getActualTask().cancel();
+            }
+            return false;
+          }
 
-        // If there was an error, we have to stop the whole batch
-        if (stepStatus == TaskStatus.ERROR) {
-          setStatus(TaskStatus.ERROR);
-          setErrorMessage(
-              stepTask.getActualTask().getTaskDescription() + ": " + stepTask.getActualTask()
-                  .getErrorMessage());
-          return;
         }
 
-        // If user canceled any of the tasks, we have to cancel the
-        // whole batch
-        if (stepStatus == TaskStatus.CANCELED) {
-          setStatus(TaskStatus.CANCELED);
-          for (WrappedTask t : currentStepWrappedTasks) {
-            t.getActualTask().cancel();
+        // Wait 1s before checking the tasks again
+        if (!allTasksFinished) {
+          synchronized (this) {
+            try {
+              this.wait(1000);
+            } catch (InterruptedException e) {
+              // ignore
+            }
           }
-          return;
         }
+      }
+      return true;
+    }
+  }
 
+  /**
+   * @param firstStep the first step of a dataset
+   * @return the exclusive end of consecutive per-file steps starting at firstStep (firstStep if
+   * the step is a global step)
+   */
+  private int findPerFileStepsEnd(int firstStep) {
+    int end = firstStep;
+    while (end < stepsPerDataset
+        && queue.get(end).getModule() instanceof MZmineProcessingModule module
+        && module.getBatchStepScope() == BatchStepScope.PER_FILE) {
+      // pipelines replace the selections by the results of the same file. Do not silently
+      // override selections of specific files or feature lists
+      if (!hasOnlyBatchLastSelections(queue.get(end).getParameterSet())) {
+        final int step = end;
+        logger.info(() -> ("Batch step %d (%s) selects specific raw data files or feature lists "
+            + "and runs after all files instead of per-file pipelining").formatted(step + 1,
+            module.getName()));
+        break;
       }
+      end++;
+    }
+    return end;
+  }
 
-      // Wait 1s before checking the tasks again
-      if (!allTasksFinished) {
-        synchronized (this) {
-          try {
-            this.wait(1000);
-          } catch (InterruptedException e) {
-            // ignore
-          }
+  /**
+   * @return true if all raw data file and feature list selections use the results of the previous
+   * batch step (also checks embedded parameters)
+   */
+  private static boolean hasOnlyBatchLastSelections(ParameterSet parameters) {
+    for (Parameter<?> p : parameters.getParameters()) {
+      if (p instanceof RawDataFilesParameter rdp && rdp.getValue() != null
+          && rdp.getValue().getSelectionType() != RawDataFilesSelectionType.BATCH_LAST_FILES) {
+        return false;
+      } else if (p instanceof FeatureListsParameter flp && flp.getValue() != null
+          && flp.getValue().getSelectionType()
+          != FeatureListsSelectionType.BATCH_LAST_FEATURELISTS) {
+        return false;
+      } else if (p instanceof EmbeddedParameterSet embedded && !hasOnlyBatchLastSelections(
+          embedded.getEmbeddedParameters())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Runs the per-file steps [firstStep, endStep) as independent pipelines for each raw data file.
+   * The number of concurrent pipelines is limited to the number of threads. Only waits for all
+   * files at the end, so that the next (global) step receives the results of all files.
+   */
+  private void processPerFileSteps(int firstStep, int endStep) {
+    final List<FilePipeline> pipelines = createFilePipelines(firstStep);
+    if (pipelines == null) {
+      logger.info(() -> "Cannot split steps %d-%d by raw data file. Running them one by one."
+          .formatted(firstStep + 1, endStep));
+      for (int step = firstStep; step < endStep && getStatus() == TaskStatus.PROCESSING; step++) {
+        processQueueStep(step);
+      }
+      return;
+    }
+
+    logger.info(() -> "Starting steps %d-%d as per-file pipelines for %d files".formatted(
+        firstStep + 1, endStep, pipelines.size()));
+
+    final int numThreads = Math.max(1,
+        Math.min(MZmineCore.getConfiguration().getNumOfThreads(), pipelines.size()));
+    final ExecutorService executor = Executors.newFixedThreadPool(numThreads, r -> {
+      final Thread thread = new Thread(r, "Batch per-file pipeline");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (FilePipeline pipeline : pipelines) {
+        futures.add(executor.submit(() -> pipeline.run(firstStep, endStep)));
+      }
+      try (var blockingWait = MZmineCore.getTaskController().startBlockingWait()) {
+        for (Future<?> future : futures) {
+          future.get();
         }
       }
+    } catch (InterruptedException | ExecutionException e) {
+      logger.log(Level.SEVERE, "Error in per-file batch pipeline", e);
+      setStatus(TaskStatus.ERROR);
+      setErrorMessage("Error in per-file batch pipeline: " + e.getMessage());
+    } finally {
+      executor.shutdownNow();
     }
 
-    createdDataFiles = new ArrayList<>(project.getCurrentRawDataFiles());
-    createdFeatureLists = new ArrayList<>(project.getCurrentFeatureLists());
-    createdDataFiles.removeAll(beforeDataFiles);
-    createdFeatureLists.removeAll(beforeFeatureLists);
-    // Clear the saved data files and feature lists. Save them to the
-    // "previous" lists, in case the next step does not produce any new data
+    if (getStatus() != TaskStatus.PROCESSING) {
+      return;
+    }
+
+    // combine the results of all files in the original file order for the next steps
+    createdDataFiles = pipelines.stream().flatMap(p -> p.lastFiles.stream())
+        .collect(Collectors.toCollection(ArrayList::new));
+    createdFeatureLists = pipelines.stream().flatMap(p -> p.lastFeatureLists.stream())
+        .collect(Collectors.toCollection(ArrayList::new));
     if (!createdDataFiles.isEmpty()) {
       previousCreatedDataFiles = createdDataFiles;
     }
@@ -391,6 +584,53 @@ public class BatchTask extends AbstractTask {
     }
   }
 
+  /**
+   * Splits the input of the first per-file step by raw data file. The raw data import is split by
+   * imported files, other steps use the raw data files and feature lists of the previous step.
+   *
+   * @return one pipeline per file or null if the input cannot be split, e.g., if a previous
+   * feature list contains multiple raw data files
+   */
+  @Nullable
+  private List<FilePipeline> createFilePipelines(int firstStep) {
+    final MZmineProcessingStep<?> first = queue.get(firstStep);
+    if (first.getModule() instanceof AllSpectralDataImportModule) {
+      final File[] importFiles = first.getParameterSet()
+          .getValue(AllSpectralDataImportParameters.fileNames);
+      if (importFiles == null || importFiles.length == 0) {
+        return null;
+      }
+      final List<FilePipeline> pipelines = new ArrayList<>();
+      for (int i = 0; i < importFiles.length; i++) {
+        // spectral libraries are only imported once
+        pipelines.add(new FilePipeline(importFiles[i], i == 0));
+      }
+      return pipelines;
+    }
+
+    final List<RawDataFile> files =
+        createdDataFiles.isEmpty() ? previousCreatedDataFiles : createdDataFiles;
+    final List<FeatureList> flists =
+        createdFeatureLists.isEmpty() ? previousCreatedFeatureLists : createdFeatureLists;
+    if (files.isEmpty()) {
+      return null;
+    }
+    final Map<RawDataFile, FilePipeline> pipelines = new LinkedHashMap<>();
+    for (RawDataFile file : files) {
+      pipelines.put(file, new FilePipeline(file));
+    }
+    for (FeatureList flist : flists) {
+      final List<RawDataFile> flistFiles = flist.getRawDataFiles();
+      final FilePipeline pipeline =
+          flistFiles.size() == 1 ? pipelines.get(flistFiles.get(0)) : null;
+      if (pipeline == null) {
+        return null;
+      }
+      pipeline.lastFeatureLists.add(flist);
+    }
+    return new ArrayList<>(pipelines.values());
+  }
+
   /**
    * Recursively sets the last feature lists to the parameters since there might be embedded
    * parameters.
@@ -421,6 +661,153 @@ public class BatchTask extends AbstractTask {
     return true;
   }
 
+  /**
+   * Runs per-file steps for a single raw data file. Results of each step are tracked by the raw
+   * data file, as pipelines of other files run at the same time.
+   */
+  private class FilePipeline {
+
+    // only set for import steps
+    @Nullable
+    private final File importFile;
+    private final boolean importLibraries;
+    private final List<RawDataFile> lastFiles = new ArrayList<>();
+    private final List<FeatureList> lastFeatureLists = new ArrayList<>();
+
+    private FilePipeline(@NotNull File importFile, boolean importLibraries) {
+      this.importFile = importFile;
+      this.importLibraries = importLibraries;
+    }
+
+    private FilePipeline(@NotNull RawDataFile file) {
+      importFile = null;
+      importLibraries = false;
+      lastFiles.add(file);
+    }
+
+    private void run(int firstStep, int endStep) {
+      for (int step = firstStep; step < endStep; step++) {
+        if (getStatus() != TaskStatus.PROCESSING || !runStep(step)) {
+          return;
+        }
+      }
+    }
+
+    /**
+     * @return false on error
+     */
+    private boolean runStep(int stepNumber) {
+      final MZmineProcessingStep<?> currentStep = queue.get(stepNumber);
+      final MZmineProcessingModule method = (MZmineProcessingModule) currentStep.getModule();
+      final ParameterSet parameters = currentStep.getParameterSet().cloneParameterSet();
+
+      if (method instanceof AllSpectralDataImportModule) {
+        if (importFile == null) {
+          return setPipelineError("Data import is only supported as the first per-file step.");
+        }
+        parameters.setParameter(AllSpectralDataImportParameters.fileNames,
+            new File[]{importFile});
+        if (!importLibraries) {
+          parameters.setParameter(SpectralLibraryImportParameters.dataBaseFiles, new File[0]);
+        }
+      }
+      setPipelineSelections(parameters);
+
+      final ArrayList<String> messages = new ArrayList<>();
+      if (!parameters.checkParameterValues(messages)) {
+        return setPipelineError(
+            "Invalid parameter settings for module " + method.getName() + ": " + Arrays.toString(
+                messages.toArray()));
+      }
+
+      final List<FeatureList> beforeFeatureLists = project.getCurrentFeatureLists();
+      final List<RawDataFile> beforeDataFiles = project.getCurrentRawDataFiles();
+
+      final List<Task> tasks = new ArrayList<>();
+      final ExitCode exitCode = method.runModule(project, parameters, tasks, Instant.now());
+      if (exitCode != ExitCode.OK) {
+        return setPipelineError("Could not start batch step " + method.getName());
+      }
+      // track step by module
+      GoogleAnalyticsTracker.trackModule(method);
+
+      if (!tasks.isEmpty() && !waitForTasks(
+          MZmineCore.getTaskController().addTasks(tasks.toArray(new Task[0])))) {
+        return false;
+      }
+
+      // other pipelines create data at the same time - only keep data of this file
+      if (importFile != null && lastFiles.isEmpty()) {
+        for (RawDataFile file : project.getCurrentRawDataFiles()) {
+          if (!beforeDataFiles.contains(file) && isImportedFrom(file)) {
+            lastFiles.add(file);
+          }
+        }
+        if (lastFiles.isEmpty()) {
+          return setPipelineError("Cannot find imported raw data file for " + importFile);
+        }
+      }
+
+      final List<FeatureList> newFeatureLists = project.getCurrentFeatureLists().stream()
+          .filter(flist -> !beforeFeatureLists.contains(flist) && !flist.getRawDataFiles().isEmpty()
+              && lastFiles.containsAll(flist.getRawDataFiles())).toList();
+      if (!newFeatureLists.isEmpty()) {
+        lastFeatureLists.clear();
+        lastFeatureLists.addAll(newFeatureLists);
+      }
+      return true;
+    }
+
+    /**
+     * Raw data files carry the absolute path of the imported file. Folder based formats (e.g.,
+     * Bruker .d) might use the parent folder of a file selected within the folder.
+     *
+     * @return true if the raw data file was imported from the import file of this pipeline
+     */
+    private boolean isImportedFrom(@NotNull RawDataFile file) {
+      final String filePath = file.getAbsolutePath();
+      if (filePath == null || importFile == null) {
+        return false;
+      }
+      final Path rawPath = Path.of(filePath).toAbsolutePath().normalize();
+      final Path importPath = importFile.toPath().toAbsolutePath().normalize();
+      return rawPath.equals(importPath) || rawPath.equals(importPath.getParent());
+    }
+
+    /**
+     * Sets all raw data file and feature list selections to the results of this pipeline. Only
+     * used for steps that select the results of the previous batch step, see
+     * {@link #hasOnlyBatchLastSelections(ParameterSet)}.
+     */
+    private void setPipelineSelections(ParameterSet parameters) {
+      for (Parameter<?> p : parameters.getParameters()) {
+        if (p instanceof RawDataFilesParameter rdp) {
+          final RawDataFilesSelection selection = new RawDataFilesSelection(
+              RawDataFilesSelectionType.BATCH_LAST_FILES);
+          selection.setBatchLastFiles(lastFiles.toArray(new RawDataFile[0]));
+          rdp.setValue(selection);
+        } else if (p instanceof FeatureListsParameter flp) {
+          final FeatureListsSelection selection = new FeatureListsSelection(
+              FeatureListsSelectionType.BATCH_LAST_FEATURELISTS);
+          selection.setBatchLastFeatureLists(lastFeatureLists.toArray(new FeatureList[0]));
+          flp.setValue(selection);
+        } else if (p instanceof EmbeddedParameterSet embedded) {
+          setPipelineSelections(embedded.getEmbeddedParameters());
+        }
+      }
+    }
+
+    private boolean setPipelineError(String message) {
+      synchronized (BatchTask.this) {
+        if (getStatus() == TaskStatus.PROCESSING) {
+          setStatus(TaskStatus.ERROR);
+          setErrorMessage(message);
+        }
+      }
+      return false;
+    }
+  }
+
   @Override
   public TaskPriority getTaskPriority() {
     // to not block mzmine when run with single thread
@@ -38,6 +38,7 @@ import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsParamete
 import io.github.mzmine.parameters.parametertypes.tolerances.MZToleranceParameter;
 import io.github.mzmine.parameters.parametertypes.tolerances.RTToleranceParameter;
 import java.text.NumberFormat;
+import java.util.Collection;
 import java.util.List;
 import javafx.stage.FileChooser.ExtensionFilter;
 
@@ -59,6 +60,14 @@ public class HierarAlignerGCParameters extends SimpleParameterSet {
       "What strategy shall be used for the clustering algorithm decision making (See: \"Hierarchical clustering\" algorithms in general).",
       ClusteringLinkageStrategyType.values(), ClusteringLinkageStrategyType.AVERAGE);
 
+  public static final BooleanParameter legacyAverageLinkage = new BooleanParameter(
+      "Legacy average linkage",
+      "Only used for the \"Average\" clustering strategy. By default, the exact average distance "
+          + "of all row pairs is computed on a sparse matrix that only stores candidate pairs. "
+          + "Check to reproduce the clusters of previous MZmine versions, which compute the "
+          + "average on a full distance matrix and do not update cluster sizes after each merge. "
+          + "The full matrix grows with the square of the number of rows.", false);
+
   public static final MZToleranceParameter MZTolerance = new MZToleranceParameter();
   public static final DoubleParameter MZWeight = new DoubleParameter("Weight for m/z",
       "Weight for chemical similarity. Score for perfectly matching m/z values.");
@@ -108,9 +117,25 @@ public class HierarAlignerGCParameters extends SimpleParameterSet {
 
   // Since clustering is now order independent, option removed!
   public HierarAlignerGCParameters() {
-    super(new Parameter[]{peakLists, linkageStartegyType_0, peakListName, MZTolerance, MZWeight,
-            RTTolerance, RTWeight, minScore, exportDendrogramTxt, dendrogramTxtFilename},
+    super(new Parameter[]{peakLists, linkageStartegyType_0, legacyAverageLinkage, peakListName,
+            MZTolerance, MZWeight, RTTolerance, RTWeight, minScore, exportDendrogramTxt,
+            dendrogramTxtFilename},
         "https://mzmine.github.io/mzmine_documentation/module_docs/align_hierarch/align_hierarch.html");
   }
 
+  @Override
+  public boolean checkParameterValues(Collection<String> errorMessages) {
+    final boolean superCheck = super.checkParameterValues(errorMessages);
+    // pairs outside of the tolerances have a fixed distance, matches need to be closer
+    final Double mzWeight = getParameter(MZWeight).getValue();
+    final Double rtWeight = getParameter(RTWeight).getValue();
+    if (mzWeight != null && rtWeight != null
+        && mzWeight + rtWeight >= RowVsRowDistanceProvider.NOT_CANDIDATE_DISTANCE) {
+      errorMessages.add("The sum of the weights for m/z and RT needs to be below "
+          + RowVsRowDistanceProvider.NOT_CANDIDATE_DISTANCE);
+      return false;
+    }
+    return superCheck;
+  }
+
 }
@@ -81,6 +81,7 @@ public class HierarAlignerGCTask extends AbstractTask {
 
   private String peakListName;
   private LinkageMode linkageStartegyType;
+  private boolean legacyAverageLinkage;
 
   // private boolean use_hybrid_K;
   // private int hybrid_K_value;
@@ -213,6 +214,8 @@ public class HierarAlignerGCTask extends AbstractTask {
       default:
         break;
     }
+    legacyAverageLinkage = linkageStartegyType == LinkageMode.AVG && parameters.getParameter(
+        HierarAlignerGCParameters.legacyAverageLinkage).getValue();
 
     // this.hybrid_K_value = parameters.getParameter(
     // JoinAlignerGCParameters.hybrid_K_value).getValue();
@@ -336,8 +339,11 @@ public class HierarAlignerGCTask extends AbstractTask {
       nbPeaks += peakList.getNumberOfRows();
     }
 
-    // If 'Hybrid' or no distance matrix: no need for a matrix
-    if (CLUSTERER_TYPE == ClustererType.HYBRID || !saveRAMratherThanCPU_1) {
+    // The sparse matrix only stores candidate pairs. Its MIN and MAX linkages are the same as on
+    // the full matrix and its AVG linkage is exact. Only the legacy average linkage of the gnf
+    // clustering needs the full matrix ('Hybrid' or no distance matrix: no need for a matrix)
+    if (legacyAverageLinkage && (CLUSTERER_TYPE == ClustererType.HYBRID
+        || !saveRAMratherThanCPU_1)) {
       // distances = new double[nbPeaks][nbPeaks];
 
       int nRowCount = nbPeaks;
@@ -368,8 +374,16 @@ public class HierarAlignerGCTask extends AbstractTask {
         // rtToleranceAfter,
         maximumScore);
 
+    if (!legacyAverageLinkage) {
+      SparseDistanceMatrix sparseDistances = SparseDistanceMatrix.build(full_rows_list,
+          distProvider, mzTolerance.getMzTolerance(), rtTolerance.getTolerance(), minScore,
+          () -> processedRows++);
+      logger.fine("Stored distances of " + sparseDistances.getStoredPairCount()
+          + " candidate pairs for " + nbPeaks + " rows");
+      distancesGNF_Tri = sparseDistances;
+    }
     // If 'Hybrid' or no distance matrix: no need for a matrix
-    if (CLUSTERER_TYPE == ClustererType.HYBRID || !saveRAMratherThanCPU_1) {
+    else if (CLUSTERER_TYPE == ClustererType.HYBRID || !saveRAMratherThanCPU_1) {
 
       for (int x = 0; x < nbPeaks; ++x) {
 
@@ -442,7 +456,10 @@ public class HierarAlignerGCTask extends AbstractTask {
       if (DEBUG_2)
         logger.info(distancesGNF_Tri.toString());
 
-      if (saveRAMratherThanCPU_2) { // Requires: distances values will be
+      if (distancesGNF_Tri instanceof SparseDistanceMatrix) { // Not changed by the sparse
+                                                              // linkage, no backup needed
+        distancesGNF_Tri_Bkp = distancesGNF_Tri;
+      } else if (saveRAMratherThanCPU_2) { // Requires: distances values will be
                                     // recomputed on demand during
                                     // "getValidatedClusters_3()"
         distancesGNF_Tri_Bkp = null; // No duplicate backup storage!
@@ -456,7 +473,9 @@ public class HierarAlignerGCTask extends AbstractTask {
 
       if (DEBUG)
         logger.info("Clustering...");
-      if (distancesGNF_Tri != null)
+      if (distancesGNF_Tri instanceof SparseDistanceMatrix sparseDistances)
+        arNodes = SparseLinkageClustering.clusterDM(sparseDistances, linkageStartegyType);
+      else if (distancesGNF_Tri != null)
         arNodes = org.gnf.clustering.sequentialcache.SequentialCacheClustering
             .clusterDM(distancesGNF_Tri, linkageStartegyType, null, nRowCount);
 
@@ -32,6 +32,15 @@ import io.github.mzmine.datamodel.MZmineProject;
 
 public class RowVsRowDistanceProvider {
 
+  /**
+   * Ranked distance between two rows detected in the same raw data file (they can never align)
+   */
+  public static final double SAME_FILE_DISTANCE = 1000.0d;
+  /**
+   * Ranked distance between two rows outside the m/z or RT half tolerance of each other
+   */
+  public static final double NOT_CANDIDATE_DISTANCE = 100.0d;
+
   MZmineProject project;
   // boolean useOldestRDFancestor;
   // Hashtable<RawDataFile, List<double[]>> rtAdjustementMapping;
@@ -130,7 +139,7 @@ public class RowVsRowDistanceProvider {
     // aligned_row_id < 102)
     // || (row_id >= 102 && aligned_row_id >= 102)) {
     if (row.getRawDataFiles().get(0) == k_row.getRawDataFiles().get(0)) {
-      return 1000.0d;
+      return SAME_FILE_DISTANCE;
     }
     // Not candidate
     else {
@@ -147,7 +156,7 @@ public class RowVsRowDistanceProvider {
       if ((Math.abs(row.getBestFeature().getRT() - k_row.getBestFeature().getRT()) >= rtMaxDiff / 2.0
           || Math.abs(row.getBestFeature().getMZ() - k_row.getBestFeature().getMZ()) >= mzMaxDiff
               / 2.0)) {
-        return 100.0d;
+        return NOT_CANDIDATE_DISTANCE;
       }
     }
 
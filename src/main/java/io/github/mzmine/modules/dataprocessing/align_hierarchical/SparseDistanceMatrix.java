@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.align_hierarchical;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.gnf.clustering.DistanceMatrix;
+
+/**
+ * Symmetric distance matrix that only stores the distances of candidate pairs, i.e., rows of
+ * different raw data files within half the m/z and RT tolerance of each other. All other pairs
+ * report the constant ranked distances of {@link RowVsRowDistanceProvider}
+ * ({@link RowVsRowDistanceProvider#SAME_FILE_DISTANCE} or
+ * {@link RowVsRowDistanceProvider#NOT_CANDIDATE_DISTANCE}), so memory grows with the number of
+ * candidate pairs instead of the squared number of rows like {@link DistanceMatrixTriangular1D2D}.
+ * <p>
+ * Each row keeps the columns greater than its own index sorted ascending, together with their
+ * values.
+ */
+public class SparseDistanceMatrix implements DistanceMatrix {
+
+  private static final int[] NO_COLUMNS = new int[0];
+  private static final float[] NO_VALUES = new float[0];
+
+  private final int dimension;
+  private final int[] fileIndex;
+  private final int[][] columns;
+  private final float[][] values;
+  private final int[] sizes;
+
+  /**
+   * @param fileIndex index of the raw data file of each row. Defines the dimension of the matrix.
+   */
+  public SparseDistanceMatrix(int[] fileIndex) {
+    this.dimension = fileIndex.length;
+    this.fileIndex = fileIndex;
+    this.columns = new int[dimension][];
+    this.values = new float[dimension][];
+    this.sizes = new int[dimension];
+    Arrays.fill(columns, NO_COLUMNS);
+    Arrays.fill(values, NO_VALUES);
+  }
+
+  /**
+   * Computes the ranked distances of all candidate pairs. Rows are swept in RT order, so only pairs
+   * within half the RT tolerance are ever compared.
+   *
+   * @param rows          all rows to align, indexed like in the distance provider
+   * @param onRowFinished called after all candidates of a row were computed (progress)
+   */
+  public static SparseDistanceMatrix build(List<FeatureListRow> rows,
+      RowVsRowDistanceProvider distProvider, double mzMaxDiff, double rtMaxDiff, double minScore,
+      Runnable onRowFinished) {
+
+    final int n = rows.size();
+    final int[] fileIndex = new int[n];
+    final double[] mzs = new double[n];
+    final double[] rts = new double[n];
+    final Map<RawDataFile, Integer> fileIndices = new IdentityHashMap<>();
+    for (int i = 0; i < n; i++) {
+      final FeatureListRow row = rows.get(i);
+      final Feature best = row.getBestFeature();
+      fileIndex[i] = fileIndices.computeIfAbsent(row.getRawDataFiles().get(0),
+          f -> fileIndices.size());
+      mzs[i] = best.getMZ();
+      rts[i] = best.getRT();
+    }
+
+    final int[] rtOrder = new int[n];
+    Arrays.setAll(rtOrder, i -> i);
+    IntArrays.quickSort(rtOrder, (a, b) -> Double.compare(rts[a], rts[b]));
+
+    final SparseDistanceMatrix matrix = new SparseDistanceMatrix(fileIndex);
+    final double halfRt = rtMaxDiff / 2.0;
+    final double halfMz = mzMaxDiff / 2.0;
+    for (int a = 0; a < n; a++) {
+      final int i = rtOrder[a];
+      for (int b = a + 1; b < n && rts[rtOrder[b]] - rts[i] < halfRt; b++) {
+        final int j = rtOrder[b];
+        if (fileIndex[i] == fileIndex[j] || Math.abs(mzs[i] - mzs[j]) >= halfMz) {
+          continue;
+        }
+        final float dist = (float) distProvider.getRankedDistance(i, j, mzMaxDiff, rtMaxDiff,
+            minScore);
+        matrix.append(Math.min(i, j), Math.max(i, j), dist);
+      }
+      onRowFinished.run();
+    }
+    matrix.sortRows();
+    return matrix;
+  }
+
+  /**
+   * Appends without keeping the row sorted. {@link #sortRows()} has to be called before any access.
+   */
+  private void append(int row, int col, float value) {
+    final int size = sizes[row];
+    if (size == columns[row].length) {
+      final int capacity = Math.max(4, size + (size >> 1));
+      columns[row] = Arrays.copyOf(columns[row], capacity);
+      values[row] = Arrays.copyOf(values[row], capacity);
+    }
+    columns[row][size] = col;
+    values[row][size] = value;
+    sizes[row] = size + 1;
+  }
+
+  private void sortRows() {
+    for (int row = 0; row < dimension; row++) {
+      final int size = sizes[row];
+      if (size == 0) {
+        continue;
+      }
+      final int[] cols = columns[row];
+      final float[] vals = values[row];
+      it.unimi.dsi.fastutil.Arrays.quickSort(0, size, (a, b) -> Integer.compare(cols[a], cols[b]),
+          (a, b) -> {
+            final int c = cols[a];
+            cols[a] = cols[b];
+            cols[b] = c;
+            final float v = vals[a];
+            vals[a] = vals[b];
+            vals[b] = v;
+          });
+      columns[row] = Arrays.copyOf(cols, size);
+      values[row] = Arrays.copyOf(vals, size);
+    }
+  }
+
+  /**
+   * The distance of pairs without a stored value
+   */
+  public float getDefaultValue(int nRow, int nCol) {
+    if (nRow == nCol) {
+      return 0f;
+    }
+    return fileIndex[nRow] == fileIndex[nCol] ? (float) RowVsRowDistanceProvider.SAME_FILE_DISTANCE
+        : (float) RowVsRowDistanceProvider.NOT_CANDIDATE_DISTANCE;
+  }
+
+  public int getFileIndex(int row) {
+    return fileIndex[row];
+  }
+
+  /**
+   * @return number of stored values for the row (only columns greater than the row index)
+   */
+  public int getStoredCount(int row) {
+    return sizes[row];
+  }
+
+  public int getStoredColumn(int row, int index) {
+    return columns[row][index];
+  }
+
+  public float getStoredValue(int row, int index) {
+    return values[row][index];
+  }
+
+  /**
+   * @return total number of stored candidate pairs
+   */
+  public long getStoredPairCount() {
+    long count = 0;
+    for (int size : sizes) {
+      count += size;
+    }
+    return count;
+  }
+
+  @Override
+  public int getRowCount() {
+    return dimension;
+  }
+
+  @Override
+  public int getColCount() {
+    return dimension;
+  }
+
+  @Override
+  public float getValue(int nRow, int nCol) {
+    if (nRow == nCol) {
+      return 0f;
+    }
+    final int row = Math.min(nRow, nCol);
+    final int col = Math.max(nRow, nCol);
+    final int index = Arrays.binarySearch(columns[row], 0, sizes[row], col);
+    return index >= 0 ? values[row][index] : getDefaultValue(row, col);
+  }
+
+  @Override
+  public void setValue(int nRow, int nCol, float fVal) {
+    if (nRow == nCol) {
+      return;
+    }
+    final int row = Math.min(nRow, nCol);
+    final int col = Math.max(nRow, nCol);
+    final int index = Arrays.binarySearch(columns[row], 0, sizes[row], col);
+    if (index >= 0) {
+      values[row][index] = fVal;
+      return;
+    }
+    if (fVal == getDefaultValue(row, col)) {
+      return;
+    }
+
+    // insert keeping the columns sorted
+    final int insert = -index - 1;
+    final int size = sizes[row];
+    append(row, col, fVal);
+    System.arraycopy(columns[row], insert, columns[row], insert + 1, size - insert);
+    System.arraycopy(values[row], insert, values[row], insert + 1, size - insert);
+    columns[row][insert] = col;
+    values[row][insert] = fVal;
+  }
+
+  @Override
+  public String toString() {
+    return "SparseDistanceMatrix{dimension=" + dimension + ", stored=" + getStoredPairCount() + "}";
+  }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.align_hierarchical;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import org.gnf.clustering.LinkageMode;
+import org.gnf.clustering.Node;
+
+/**
+ * Agglomerative clustering on a {@link SparseDistanceMatrix}. Only clusters connected by stored
+ * candidate pairs are linked and kept in a priority queue, all other cluster pairs are at least
+ * {@link RowVsRowDistanceProvider#NOT_CANDIDATE_DISTANCE} apart. The MIN, MAX and AVG linkages are
+ * computed exactly from the aggregated stored distances, the cluster sizes, and the number of
+ * same-file pairs (counted from the raw data files of each cluster).
+ * <p>
+ * For MIN and MAX, merges below {@link RowVsRowDistanceProvider#NOT_CANDIDATE_DISTANCE} are the same
+ * as in the dense {@link org.gnf.clustering.sequentialcache.SequentialCacheClustering#clusterDM}.
+ * The dense AVG linkage keeps stale cluster sizes when it compacts its matrix and may deviate from
+ * the exact average that is computed here. Clusters left without any link are finally joined in
+ * index order. The result has the same layout: node k describes the k-th merge, children >= 0 are
+ * rows and children < 0 reference node -(child + 1).
+ */
+public class SparseLinkageClustering {
+
+  private static final Comparator<LinkCandidate> CANDIDATE_ORDER = Comparator.comparingDouble(
+          LinkCandidate::distance).thenComparingInt(LinkCandidate::a)
+      .thenComparingInt(LinkCandidate::b);
+
+  private final SparseDistanceMatrix mtx;
+  private final LinkageMode mode;
+  private final int nRows;
+
+  private final int[] sizes;
+  private final BitSet merged;
+  // stored distances between linked clusters, each link object is shared by both clusters
+  private final Int2ObjectOpenHashMap<Link>[] links;
+  // raw data file index -> number of rows; only for merged clusters, rows use the matrix
+  private final Int2IntOpenHashMap[] fileCounts;
+  private final PriorityQueue<LinkCandidate> queue = new PriorityQueue<>(CANDIDATE_ORDER);
+  private final Node[] nodes;
+  private int nextCluster;
+
+  @SuppressWarnings("unchecked")
+  private SparseLinkageClustering(SparseDistanceMatrix mtx, LinkageMode mode) {
+    this.mtx = mtx;
+    this.mode = mode;
+    this.nRows = mtx.getRowCount();
+    final int nClusters = 2 * nRows - 1;
+    sizes = new int[nClusters];
+    merged = new BitSet(nClusters);
+    links = new Int2ObjectOpenHashMap[nClusters];
+    fileCounts = new Int2IntOpenHashMap[nClusters];
+    nodes = new Node[nRows - 1];
+    nextCluster = nRows;
+  }
+
+  /**
+   * @return the nodes of the tree (nRows - 1), the last one being the root. Null for less than two
+   * rows.
+   */
+  public static Node[] clusterDM(SparseDistanceMatrix mtx, LinkageMode mode) {
+    if (mtx.getRowCount() < 2) {
+      return null;
+    }
+    return new SparseLinkageClustering(mtx, mode).cluster();
+  }
+
+  private Node[] cluster() {
+    Arrays.fill(sizes, 0, nRows, 1);
+    for (int row = 0; row < nRows; row++) {
+      for (int k = 0; k < mtx.getStoredCount(row); k++) {
+        final int col = mtx.getStoredColumn(row, k);
+        final Link link = new Link();
+        link.add(mtx.getStoredValue(row, k));
+        getLinks(row).put(col, link);
+        getLinks(col).put(row, link);
+        queue.add(new LinkCandidate(distance(row, col, link), row, col));
+      }
+    }
+
+    final int lastCluster = 2 * nRows - 2;
+    while (nextCluster <= lastCluster) {
+      final LinkCandidate candidate = queue.poll();
+      if (candidate == null) {
+        break;
+      }
+      // outdated candidate of an already merged cluster
+      if (merged.get(candidate.a()) || merged.get(candidate.b())) {
+        continue;
+      }
+      merge(candidate.a(), candidate.b(), candidate.distance());
+    }
+
+    // join all remaining unlinked clusters
+    final int end = nextCluster;
+    int joined = -1;
+    for (int cluster = merged.nextClearBit(0); cluster < end;
+        cluster = merged.nextClearBit(cluster + 1)) {
+      if (joined == -1) {
+        joined = cluster;
+      } else {
+        joined = merge(joined, cluster, distance(joined, cluster, null));
+      }
+    }
+    return nodes;
+  }
+
+  private Int2ObjectOpenHashMap<Link> getLinks(int cluster) {
+    Int2ObjectOpenHashMap<Link> map = links[cluster];
+    if (map == null) {
+      map = new Int2ObjectOpenHashMap<>(4);
+      links[cluster] = map;
+    }
+    return map;
+  }
+
+  /**
+   * @return the id of the new cluster
+   */
+  private int merge(int a, int b, float distance) {
+    final int c = nextCluster++;
+    nodes[c - nRows] = new Node(toNodeChild(a), toNodeChild(b), distance);
+    sizes[c] = sizes[a] + sizes[b];
+    merged.set(a);
+    merged.set(b);
+    mergeFileCounts(a, b, c);
+
+    // a and b are gone, so their link objects can be reused for c
+    final Int2ObjectOpenHashMap<Link> linksC = new Int2ObjectOpenHashMap<>();
+    for (int old : new int[]{a, b}) {
+      final Int2ObjectOpenHashMap<Link> oldLinks = links[old];
+      links[old] = null;
+      if (oldLinks == null) {
+        continue;
+      }
+      for (Int2ObjectMap.Entry<Link> entry : oldLinks.int2ObjectEntrySet()) {
+        final int other = entry.getIntKey();
+        if (other == a || other == b) {
+          continue;
+        }
+        links[other].remove(old);
+        final Link existing = linksC.get(other);
+        if (existing == null) {
+          linksC.put(other, entry.getValue());
+        } else {
+          existing.add(entry.getValue());
+        }
+      }
+    }
+
+    if (!linksC.isEmpty()) {
+      links[c] = linksC;
+      for (Int2ObjectMap.Entry<Link> entry : linksC.int2ObjectEntrySet()) {
+        final int other = entry.getIntKey();
+        links[other].put(c, entry.getValue());
+        queue.add(new LinkCandidate(distance(other, c, entry.getValue()), other, c));
+      }
+    }
+    return c;
+  }
+
+  private int toNodeChild(int cluster) {
+    return cluster < nRows ? cluster : -(cluster - nRows + 1);
+  }
+
+  private void mergeFileCounts(int a, int b, int c) {
+    // reuse the map of the larger cluster
+    final int large = sizes[a] >= sizes[b] ? a : b;
+    final int small = large == a ? b : a;
+    Int2IntOpenHashMap counts = fileCounts[large];
+    if (counts == null) {
+      counts = new Int2IntOpenHashMap();
+      counts.put(mtx.getFileIndex(large), 1);
+    }
+    if (fileCounts[small] == null) {
+      counts.addTo(mtx.getFileIndex(small), 1);
+    } else {
+      for (Int2IntOpenHashMap.Entry entry : fileCounts[small].int2IntEntrySet()) {
+        counts.addTo(entry.getIntKey(), entry.getIntValue());
+      }
+    }
+    fileCounts[c] = counts;
+    fileCounts[a] = null;
+    fileCounts[b] = null;
+  }
+
+  private int countRowsOfFile(int cluster, int file) {
+    final Int2IntOpenHashMap counts = fileCounts[cluster];
+    if (counts == null) {
+      return mtx.getFileIndex(cluster) == file ? 1 : 0;
+    }
+    return counts.get(file);
+  }
+
+  /**
+   * @return number of row pairs between both clusters that stem from the same raw data file
+   */
+  private long countSameFilePairs(int a, int b) {
+    if (fileCounts[a] == null) {
+      return countRowsOfFile(b, mtx.getFileIndex(a));
+    }
+    if (fileCounts[b] == null) {
+      return countRowsOfFile(a, mtx.getFileIndex(b));
+    }
+    final Int2IntOpenHashMap small =
+        fileCounts[a].size() <= fileCounts[b].size() ? fileCounts[a] : fileCounts[b];
+    final Int2IntOpenHashMap large = small == fileCounts[a] ? fileCounts[b] : fileCounts[a];
+    long pairs = 0;
+    for (Int2IntOpenHashMap.Entry entry : small.int2IntEntrySet()) {
+      pairs += (long) entry.getIntValue() * large.get(entry.getIntKey());
+    }
+    return pairs;
+  }
+
+  /**
+   * Linkage distance of two clusters. Pairs without stored value have the default distance of the
+   * matrix.
+   *
+   * @param link the aggregated stored distances between both clusters or null if there are none
+   */
+  private float distance(int a, int b, Link link) {
+    final long pairs = (long) sizes[a] * sizes[b];
+    final long sameFile = countSameFilePairs(a, b);
+    final long notCandidate = pairs - sameFile - (link == null ? 0 : link.count);
+
+    final double sameFileDist = RowVsRowDistanceProvider.SAME_FILE_DISTANCE;
+    final double notCandidateDist = RowVsRowDistanceProvider.NOT_CANDIDATE_DISTANCE;
+    if (mode == LinkageMode.AVG) {
+      final double sum = (link == null ? 0d : link.sum) + sameFile * sameFileDist
+          + notCandidate * notCandidateDist;
+      return (float) (sum / pairs);
+    }
+
+    final boolean max = mode == LinkageMode.MAX;
+    double dist = link == null ? Double.NaN : (max ? link.max : link.min);
+    if (sameFile > 0) {
+      dist = extreme(dist, sameFileDist, max);
+    }
+    if (notCandidate > 0) {
+      dist = extreme(dist, notCandidateDist, max);
+    }
+    return (float) dist;
+  }
+
+  private static double extreme(double current, double value, boolean max) {
+    if (Double.isNaN(current)) {
+      return value;
+    }
+    return max ? Math.max(current, value) : Math.min(current, value);
+  }
+
+  /**
+   * Aggregated stored distances between two clusters
+   */
+  private static class Link {
+
+    private int count;
+    private double sum;
+    private float min = Float.MAX_VALUE;
+    private float max = -Float.MAX_VALUE;
+
+    private void add(float value) {
+      count++;
+      sum += value;
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+    }
+
+    private void add(Link other) {
+      count += other.count;
+      sum += other.sum;
+      min = Math.min(min, other.min);
+      max = Math.max(max, other.max);
+    }
+  }
+
+  private record LinkCandidate(float distance, int a, int b) {
+
+  }
+}
@@ -49,6 +49,13 @@ public class JoinAlignerParameters extends SimpleParameterSet {
   public static final StringParameter peakListName = new StringParameter("Feature list name",
       "Feature list name", "Aligned feature list");
 
+  public static final OptionalParameter<FeatureListsParameter> appendToAlignedList = new OptionalParameter<>(
+      new FeatureListsParameter("Append to aligned feature list", """
+          Incremental alignment of new samples. The selected feature lists are aligned onto this
+          existing aligned feature list, which is extended in place (the feature list name is not
+          used). Features are added to matching rows, other features create new rows. Existing rows,
+          their IDs and results like correlation groups are kept. New rows get higher IDs.""", 1, 1), false);
+
   public static final MZToleranceParameter MZTolerance = new MZToleranceParameter();
 
   public static final DoubleParameter MZWeight = new DoubleParameter("Weight for m/z",
@@ -93,9 +100,9 @@ public class JoinAlignerParameters extends SimpleParameterSet {
           + "processed list.\nREMOVE saves memory.", false);
 
   public JoinAlignerParameters() {
-    super(new Parameter[]{peakLists, peakListName, MZTolerance, MZWeight, RTTolerance, RTWeight,
-            mobilityTolerance, mobilityWeight, SameChargeRequired, SameIDRequired,
-            compareIsotopePattern, compareSpectraSimilarity, handleOriginal},
+    super(new Parameter[]{peakLists, peakListName, appendToAlignedList, MZTolerance, MZWeight,
+            RTTolerance, RTWeight, mobilityTolerance, mobilityWeight, SameChargeRequired,
+            SameIDRequired, compareIsotopePattern, compareSpectraSimilarity, handleOriginal},
         "https://mzmine.github.io/mzmine_documentation/module_docs/join_aligner/join_aligner.html");
   }
 
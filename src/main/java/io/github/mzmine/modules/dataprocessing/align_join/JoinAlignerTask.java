@@ -40,6 +40,9 @@ import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
+import io.github.mzmine.datamodel.features.types.DataTypes;
+import io.github.mzmine.datamodel.features.types.alignment.AlignmentMainType;
+import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.MZmineProcessingStep;
 import io.github.mzmine.modules.tools.isotopepatternscore.IsotopePatternScoreCalculator;
 import io.github.mzmine.modules.tools.isotopepatternscore.IsotopePatternScoreParameters;
@@ -60,8 +63,10 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
@@ -93,6 +98,20 @@ public class JoinAlignerTask extends AbstractTask {
    * All feature lists except the base list
    */
   private final List<FeatureList> featureLists;
+  /**
+   * Existing aligned feature list for incremental alignment or null to create a new list
+   */
+  @Nullable
+  private final ModularFeatureList existingAlignedList;
+  /**
+   * Features aligned onto rows of the existing aligned list. Only added to the rows on the FX
+   * thread when all new samples are aligned
+   */
+  private final Map<FeatureListRow, Map<RawDataFile, Feature>> pendingFeatures = new HashMap<>();
+  /**
+   * The new aligned list or, for incremental alignment, the list of new rows that is appended to
+   * the existing aligned list
+   */
   private ModularFeatureList alignedFeatureList;
   // Processed rows counter
   private int totalRows;
@@ -109,8 +128,19 @@ public class JoinAlignerTask extends AbstractTask {
     this.project = project;
     this.parameters = parameters;
 
+    if (parameters.getValue(JoinAlignerParameters.appendToAlignedList)) {
+      final ModularFeatureList[] existing = parameters.getParameter(
+              JoinAlignerParameters.appendToAlignedList).getEmbeddedParameter().getValue()
+          .getMatchingFeatureLists();
+      existingAlignedList = existing.length > 0 ? existing[0] : null;
+    } else {
+      existingAlignedList = null;
+    }
+
+    // the existing aligned list is not aligned onto itself
     featureLists = Arrays.stream(parameters.getParameter(JoinAlignerParameters.peakLists).getValue()
-        .getMatchingFeatureLists()).map(flist -> (FeatureList) flist).toList();
+            .getMatchingFeatureLists()).filter(flist -> flist != existingAlignedList)
+        .map(flist -> (FeatureList) flist).toList();
 
     featureListName = parameters.getParameter(JoinAlignerParameters.peakListName).getValue();
 
@@ -169,8 +199,8 @@ public class JoinAlignerTask extends AbstractTask {
     if (totalRows == 0) {
       return 0f;
     }
-    return alignedFeatureList != null ? (alignedFeatureList.getNumberOfRows() + alignedRows.get())
-        / (double) totalRows : 0d;
+    return alignedFeatureList != null ?
+        (alignedFeatureList.getNumberOfRows() + alignedRows.get()) / (double) totalRows : 0d;
   }
 
   @Override
@@ -181,6 +211,12 @@ public class JoinAlignerTask extends AbstractTask {
       setErrorMessage("Cannot run alignment, all the weight parameters are zero");
       return;
     }
+    if (parameters.getValue(JoinAlignerParameters.appendToAlignedList)
+        && existingAlignedList == null) {
+      setStatus(TaskStatus.ERROR);
+      setErrorMessage("Cannot append to aligned feature list, no aligned feature list selected");
+      return;
+    }
 
     setStatus(TaskStatus.PROCESSING);
     logger.info(
@@ -198,13 +234,6 @@ public class JoinAlignerTask extends AbstractTask {
       return;
     }
 
-    // Create a new aligned feature list based on the baseList and renumber IDs
-    alignedFeatureList = new ModularFeatureList(featureListName, getMemoryMapStorage(),
-        allDataFiles);
-    FeatureListUtils.transferRowTypes(alignedFeatureList, featureLists);
-    FeatureListUtils.transferSelectedScans(alignedFeatureList, featureLists);
-    final AtomicInteger newRowID = new AtomicInteger(1);
-
     // list all rows for each feature list
     final List<List<FeatureListRow>> allRows = new ArrayList<>(featureLists.size());
 
@@ -212,6 +241,42 @@ public class JoinAlignerTask extends AbstractTask {
       allRows.add(new ArrayList<>(flist.getRows()));
     }
 
+    final AtomicInteger newRowID;
+    if (existingAlignedList == null) {
+      // Create a new aligned feature list based on the baseList and renumber IDs
+      alignedFeatureList = new ModularFeatureList(featureListName, getMemoryMapStorage(),
+          allDataFiles);
+      FeatureListUtils.transferRowTypes(alignedFeatureList, featureLists);
+      FeatureListUtils.transferSelectedScans(alignedFeatureList, featureLists);
+      newRowID = new AtomicInteger(1);
+    } else {
+      // incremental alignment: append the new samples to the existing aligned list
+      for (RawDataFile dataFile : allDataFiles) {
+        if (existingAlignedList.hasRawDataFile(dataFile)) {
+          setStatus(TaskStatus.ERROR);
+          setErrorMessage("File " + dataFile.getName() + " is already part of the aligned list "
+              + existingAlignedList.getName());
+          return;
+        }
+      }
+      // the existing list is part of the project and might be shown in the GUI. Keep it unchanged
+      // during the alignment: new rows are collected in a separate list and features of existing
+      // rows in pendingFeatures. Both are appended on the FX thread when done
+      alignedFeatureList = new ModularFeatureList(existingAlignedList.getName(),
+          getMemoryMapStorage(), allDataFiles);
+      FeatureListUtils.transferRowTypes(alignedFeatureList, featureLists);
+      newRowID = new AtomicInteger(
+          existingAlignedList.stream().mapToInt(FeatureListRow::getID).max().orElse(0) + 1);
+
+      // first align all new rows onto the existing rows, sorted by m/z as an index
+      final List<FeatureListRow> existingRowsByMz = new ArrayList<>(
+          existingAlignedList.getRows());
+      existingRowsByMz.sort(MZ_ASCENDING);
+      alignRowsOnBaseRows(allRows, existingRowsByMz);
+      logger.fine(() -> "Aligned %d rows onto %d existing rows of %s".formatted(alignedRows.get(),
+          existingRowsByMz.size(), existingAlignedList.getName()));
+    }
+
     // still contains rows from unaligned feature lists
     while (!allRows.isEmpty()) {
       // sort remaining unaligned rows by size
@@ -248,28 +313,32 @@ public class JoinAlignerTask extends AbstractTask {
       iteration++;
     }
 
-    // sort by RT and reset IDs
-    FeatureListUtils.sortByDefaultRT(alignedFeatureList, true);
-
-    // update row bindings
-    alignedFeatureList.parallelStream().filter(row -> row.getNumberOfFeatures() > 1)
-        .forEach(FeatureListRow::applyRowBindings);
-
     // score alignment by the number of features that fall within the mz, RT, mobility range
     // do not apply all the advanced filters to keep it simple
     MobilityTolerance mobTol = compareMobility ? mobilityTolerance : null;
     RowAlignmentScoreCalculator calculator = new RowAlignmentScoreCalculator(featureLists,
         mzTolerance, rtTolerance, mobTol, mzWeight, rtWeight, mobilityWeight);
-    FeatureListUtils.addAlignmentScores(alignedFeatureList, calculator, false);
 
-    // applied methods
-    alignedFeatureList.getAppliedMethods().addAll(featureLists.get(0).getAppliedMethods());
-    // Add task description to peakList
-    alignedFeatureList.addDescriptionOfAppliedTask(
-        new SimpleFeatureListAppliedMethod("Join aligner", JoinAlignerModule.class, parameters,
-            getModuleCallDate()));
-    // Add new aligned feature list to the project {
-    project.addFeatureList(alignedFeatureList);
+    if (existingAlignedList == null) {
+      // sort by RT and reset IDs
+      FeatureListUtils.sortByDefaultRT(alignedFeatureList, true);
+
+      // update row bindings
+      alignedFeatureList.parallelStream().filter(row -> row.getNumberOfFeatures() > 1)
+          .forEach(FeatureListRow::applyRowBindings);
+
+      FeatureListUtils.addAlignmentScores(alignedFeatureList, calculator, false);
+      // applied methods
+      alignedFeatureList.getAppliedMethods().addAll(featureLists.get(0).getAppliedMethods());
+      // Add task description to peakList
+      alignedFeatureList.addDescriptionOfAppliedTask(
+          new SimpleFeatureListAppliedMethod("Join aligner", JoinAlignerModule.class, parameters,
+              getModuleCallDate()));
+      // Add new aligned feature list to the project
+      project.addFeatureList(alignedFeatureList);
+    } else {
+      MZmineCore.runOnFxThreadAndWait(() -> appendToExistingList(allDataFiles, calculator));
+    }
 
     if (parameters.getValue(JoinAlignerParameters.handleOriginal)
         == OriginalFeatureListOption.REMOVE) {
@@ -282,6 +351,74 @@ public class JoinAlignerTask extends AbstractTask {
 
   }
 
+  /**
+   * Appends the new samples to the existing aligned list. The rows keep their identity, so row
+   * relationships, groups and other results of downstream modules are retained. Existing rows keep
+   * their IDs and new rows get higher IDs. Needs to run on the FX thread as the list might be shown
+   * in the GUI.
+   *
+   * @param dataFiles  the new raw data files
+   * @param calculator calculator for the new feature lists
+   */
+  private void appendToExistingList(List<RawDataFile> dataFiles,
+      RowAlignmentScoreCalculator calculator) {
+    final ModularFeatureList flist = existingAlignedList;
+    flist.getRawDataFiles().addAll(dataFiles);
+    FeatureListUtils.transferRowTypes(flist, featureLists);
+    FeatureListUtils.transferSelectedScans(flist, featureLists);
+
+    final List<FeatureListRow> changedRows = new ArrayList<>(
+        pendingFeatures.size() + alignedFeatureList.getNumberOfRows());
+    pendingFeatures.forEach((row, features) -> {
+      features.forEach(
+          (dataFile, feature) -> row.addFeature(dataFile, new ModularFeature(flist, feature),
+              false));
+      changedRows.add(row);
+    });
+    for (FeatureListRow newRow : alignedFeatureList.getRows()) {
+      final ModularFeatureListRow row = new ModularFeatureListRow(flist,
+          (ModularFeatureListRow) newRow, true);
+      flist.addRow(row);
+      changedRows.add(row);
+    }
+
+    // keep the IDs so that downstream results and new rows (higher IDs) can be distinguished
+    FeatureListUtils.sortByDefaultRT(flist, false);
+    changedRows.parallelStream().filter(row -> row.getNumberOfFeatures() > 1)
+        .forEach(FeatureListRow::applyRowBindings);
+
+    // the original lists of the existing rows are unknown, rescore with the new samples. Deltas and
+    // distances are recalculated over all features of a row, extra features of the new samples are
+    // added to the previous extra features and the rate is based on all samples of the list.
+    flist.addRowType(DataTypes.get(AlignmentMainType.class));
+    final int totalSamples = flist.getNumberOfRawDataFiles();
+    flist.parallelStream().forEach(row -> row.set(AlignmentMainType.class,
+        calculator.calcIncrementalScore(row, row.get(AlignmentMainType.class), totalSamples)));
+
+    flist.addDescriptionOfAppliedTask(
+        new SimpleFeatureListAppliedMethod("Join aligner", JoinAlignerModule.class, parameters,
+            getModuleCallDate()));
+  }
+
+  /**
+   * Adds a feature to an aligned row. Features for rows of the existing aligned list are only
+   * collected and added by {@link #appendToExistingList(List, RowAlignmentScoreCalculator)}.
+   *
+   * @return true if the feature was added, false if the row already contains a feature of this
+   * data file
+   */
+  private boolean addFeature(FeatureListRow alignedRow, RawDataFile dataFile, Feature feature) {
+    if (alignedRow.getFeatureList() == alignedFeatureList) {
+      if (alignedRow.hasFeature(dataFile)) {
+        return false;
+      }
+      alignedRow.addFeature(dataFile, new ModularFeature(alignedFeatureList, feature), false);
+      return true;
+    }
+    return pendingFeatures.computeIfAbsent(alignedRow, row -> new HashMap<>())
+        .putIfAbsent(dataFile, feature) == null;
+  }
+
   /**
    * all unaligned rows are checked against the list of base rows
    *
@@ -362,9 +499,7 @@ public class JoinAlignerTask extends AbstractTask {
         // no row was aligned
         // put all features of the row into the aligned row
         for (Feature feature : row.getFeatures()) {
-          final RawDataFile dataFile = feature.getRawDataFile();
-          if (!alignedRow.hasFeature(dataFile)) {
-            alignedRow.addFeature(dataFile, new ModularFeature(alignedFeatureList, feature), false);
+          if (addFeature(alignedRow, feature.getRawDataFile(), feature)) {
             alignedRowsMap.put(row, true);
             this.alignedRows.getAndIncrement();
           }
@@ -28,7 +28,9 @@ package io.github.mzmine.modules.dataprocessing.align_join;
 import static io.github.mzmine.util.FeatureListRowSorter.MZ_ASCENDING;
 
 import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.FeatureStatus;
 import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.types.alignment.AlignmentScores;
@@ -39,6 +41,7 @@ import io.github.mzmine.util.FeatureListUtils;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import javafx.collections.transformation.SortedList;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -88,6 +91,39 @@ public class RowAlignmentScoreCalculator {
    * @return alignment score
    */
   public @NotNull AlignmentScores calcScore(@NotNull FeatureListRow alignedRow) {
+    final List<Feature> features = originalRowsMap.keySet().stream().map(alignedRow::getFeature)
+        .filter(Objects::nonNull).toList();
+    return calcScore(alignedRow, features, 0, totalSamples);
+  }
+
+  /**
+   * Calculates the score of a row of an incrementally extended aligned list. The deltas and the
+   * weighted distance are recalculated over all features of the row around the current row center,
+   * so that they are consistent with the new averages. Extra features are only known for the
+   * samples of this calculator and are added to the extra features of the previous score, which
+   * were counted against the previous row center.
+   *
+   * @param alignedRow   row with features of the previous and the new samples
+   * @param previous     the previous score of the row or null for new rows
+   * @param totalSamples the number of samples in the extended aligned list
+   * @return alignment score
+   */
+  public @NotNull AlignmentScores calcIncrementalScore(@NotNull FeatureListRow alignedRow,
+      @Nullable AlignmentScores previous, int totalSamples) {
+    final List<Feature> features = alignedRow.getFeatures().stream()
+        .filter(f -> f.getFeatureStatus() != FeatureStatus.UNKNOWN).map(Feature.class::cast)
+        .toList();
+    return calcScore(alignedRow, features, previous != null ? previous.extraFeatures() : 0,
+        totalSamples);
+  }
+
+  /**
+   * @param features     the aligned features that are scored against the row center
+   * @param extra        extra features that were counted before
+   * @param totalSamples total number of samples for the rate
+   */
+  private @NotNull AlignmentScores calcScore(@NotNull FeatureListRow alignedRow,
+      @NotNull List<Feature> features, int extra, int totalSamples) {
     Float rt = alignedRow.getAverageRT();
     Float mobility = alignedRow.getAverageMobility();
     Double mz = alignedRow.getAverageMZ();
@@ -96,14 +132,8 @@ public class RowAlignmentScoreCalculator {
     Range<Float> mobilityRange =
         mobTol != null && mobility != null ? mobTol.getToleranceRange(mobility) : Range.all();
 
-    // calculate difference
-    int testedAlignedFeatures = 0;
-    double mzDiff = 0;
-    float rtDiff = 0;
-    float mobilityDiff = 0;
-    double alignmentScore = 0;
     // extra features more than the aligned
-    int sumExtra = 0;
+    int sumExtra = extra;
     for (var entry : originalRowsMap.entrySet()) {
       RawDataFile raw = entry.getKey();
       SortedList<FeatureListRow> originals = entry.getValue();
@@ -111,24 +141,29 @@ public class RowAlignmentScoreCalculator {
       // result is the number of possible features for this raw data file
       List<FeatureListRow> matchedRows = FeatureListUtils.getCandidatesWithinRanges(mzRange,
           rtRange, mobilityRange, originals, true);
-      var feature = alignedRow.getFeature(raw);
       // if the row has a feature, remove 1 and then add to the total
-      sumExtra += Math.max(0, matchedRows.size() - (feature != null ? 1 : 0));
-
-      if (feature != null) {
-        testedAlignedFeatures++;
-        if (mz != null && feature.getMZ() != null) {
-          mzDiff += Math.abs(feature.getMZ() - mz);
-        }
-        if (rt != null && feature.getRT() != null) {
-          rtDiff += Math.abs(feature.getRT() - rt);
-        }
-        if (mobility != null && feature.getMobility() != null) {
-          mobilityDiff += Math.abs(feature.getMobility() - mobility);
-        }
-        alignmentScore += FeatureListUtils.getAlignmentScore(feature, mzRange, rtRange, null,
-            mobilityRange, mzWeight, rtWeight, mobilityWeight, 1);
+      sumExtra += Math.max(0, matchedRows.size() - (alignedRow.getFeature(raw) != null ? 1 : 0));
+    }
+
+    // calculate difference
+    int testedAlignedFeatures = 0;
+    double mzDiff = 0;
+    float rtDiff = 0;
+    float mobilityDiff = 0;
+    double alignmentScore = 0;
+    for (Feature feature : features) {
+      testedAlignedFeatures++;
+      if (mz != null && feature.getMZ() != null) {
+        mzDiff += Math.abs(feature.getMZ() - mz);
+      }
+      if (rt != null && feature.getRT() != null) {
+        rtDiff += Math.abs(feature.getRT() - rt);
+      }
+      if (mobility != null && feature.getMobility() != null) {
+        mobilityDiff += Math.abs(feature.getMobility() - mobility);
       }
+      alignmentScore += FeatureListUtils.getAlignmentScore(feature, mzRange, rtRange, null,
+          mobilityRange, mzWeight, rtWeight, mobilityWeight, 1);
     }
 
     // rows
@@ -26,9 +26,6 @@
 package io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder;
 
 
-import com.google.common.collect.Range;
-import com.google.common.collect.RangeMap;
-import com.google.common.collect.TreeRangeMap;
 import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
@@ -48,20 +45,13 @@ import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
-import io.github.mzmine.util.DataPointSorter;
 import io.github.mzmine.util.DataTypeUtils;
 import io.github.mzmine.util.FeatureConvertors;
 import io.github.mzmine.util.FeatureListUtils;
 import io.github.mzmine.util.MemoryMapStorage;
-import io.github.mzmine.util.SortingDirection;
-import io.github.mzmine.util.SortingProperty;
 import io.github.mzmine.util.exceptions.MissingMassListException;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -86,6 +76,7 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
   private final Class<? extends MZmineModule> callingModule;
   private double progress = 0.0;
   private ModularFeatureList newFeatureList;
+  private PrimitiveChromatogramBuilder builder;
 
   /**
    *
@@ -124,6 +115,11 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
 
   @Override
   public double getFinishedPercentage() {
+    // first half is the chromatogram building
+    final PrimitiveChromatogramBuilder builder = this.builder;
+    if (builder != null && progress < 0.5) {
+      return builder.getFinishedPercentage() * 0.5;
+    }
     return progress;
   }
 
@@ -131,7 +127,6 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
     return dataFile;
   }
 
-  @SuppressWarnings("UnstableApiUsage")
   @Override
   public void run() {
     setStatus(TaskStatus.PROCESSING);
@@ -189,30 +184,25 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
       }
     }
 
-    // make a list of all the data points
+    // collect all data points in primitive arrays (m/z, intensity, scan index)
     // sort data points by intensity
     // loop through list
-    // add data point to chromatogrm or make new one
-    // update mz avg and other stuff
-    //
-
-    // map the mz tolerance to chromatograms
-    RangeMap<Double, ADAPChromatogram> rangeToChromMap = TreeRangeMap.create();
-
-    // make a list of all the data points
-    List<ExpandedDataPoint> allMzValues = new ArrayList<>();
-
+    // add data point to chromatogram or make new one
     ScanDataAccess scanData = EfficientDataAccess.of(dataFile,
         ScanDataType.CENTROID, scanSelection);
 
+    builder = new PrimitiveChromatogramBuilder(mzTolerance, minHighestPoint,
+        scans.length * 64);
+
+    // scans of the data access match the scans array
+    int scanIndex = 0;
     while (scanData.hasNextScan()) {
       if (isCanceled()) {
         return;
       }
 
-      Scan scan;
       try {
-        scan = scanData.nextScan();
+        scanData.nextScan();
       } catch (MissingMassListException e) {
         setStatus(TaskStatus.ERROR);
         StringBuilder b = new StringBuilder("Scan #");
@@ -232,54 +222,19 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
 
       int dps = scanData.getNumberOfDataPoints();
       for (int i = 0; i < dps; i++) {
-        ExpandedDataPoint curDatP = new ExpandedDataPoint(
-            scanData.getMzValue(i), scanData.getIntensityValue(i), scan);
-        allMzValues.add(curDatP);
+        builder.addDataPoint(scanData.getMzValue(i), scanData.getIntensityValue(i), scanIndex);
       }
+      scanIndex++;
     }
 
-    // sort data points by intensity
-    allMzValues.sort(new DataPointSorter(SortingProperty.Intensity,
-        SortingDirection.Descending));
-
-    // count starts at 1 since we already have added one with a single point.
-    progress = 0.0;
-    double progressStep =
-        (allMzValues.size() > 0) ? 0.5 / allMzValues.size() : 0.0;
-
-    for (ExpandedDataPoint mzFeature : allMzValues) {
-
-      progress += progressStep;
-
-      if (isCanceled()) {
-        return;
-      }
-
-      if (mzFeature == null || Double.isNaN(mzFeature.getMZ()) || Double.isNaN(
-          mzFeature.getIntensity())) {
-        continue;
-      }
-
-      final Entry<Range<Double>, ADAPChromatogram> existing = rangeToChromMap.getEntry(
-          mzFeature.getMZ());
-      if (existing != null) {
-        // add data point to chromatogram
-        existing.getValue().addMzFeature(mzFeature.getScan(), mzFeature);
-      } else {
-        // skip it entierly if the intensity is not high enough
-        if (mzFeature.getIntensity() < minHighestPoint) {
-          continue;
-        }
-        // add a new chromatogram to the range map - limit ranges to avoid overlap
-        startNewChromatogramLimitMzRanges(rangeToChromMap, mzFeature);
-      }
+    if (!builder.buildChromatograms(this::isCanceled)) {
+      return;
     }
 
     // finish chromatograms sorted by m/z
-    final Map<Range<Double>, ADAPChromatogram> finalRangeMap = rangeToChromMap.asMapOfRanges();
-
-    int numChromatograms = finalRangeMap.size();
-    progressStep = numChromatograms > 0 ? 0.5 / numChromatograms : 0.0;
+    int numChromatograms = builder.getNumberOfChromatograms();
+    double progressStep = numChromatograms > 0 ? 0.5 / numChromatograms : 0.0;
+    progress = 0.5;
 
     // Create new feature list
     newFeatureList = new ModularFeatureList(dataFile + " " + suffix,
@@ -289,7 +244,7 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
 
     int newFeatureID = 1;
     // add chromatograms that match criteria
-    for (ADAPChromatogram chromatogram : finalRangeMap.values()) {
+    for (int chrom = 0; chrom < numChromatograms; chrom++) {
       if (isCanceled()) {
         return;
       }
@@ -298,8 +253,9 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
 
       // And remove chromatograms who dont have a certian number of continous points above the
       // IntensityThresh2 level.
-      if (chromatogram.matchesMinContinuousDataPoints(scans, minGroupIntensity,
-          minimumScanSpan, minHighestPoint)) {
+      if (builder.matchesMinContinuousDataPoints(chrom, minGroupIntensity, minimumScanSpan,
+          minHighestPoint)) {
+        ADAPChromatogram chromatogram = builder.toADAPChromatogram(chrom, scans);
         // add zeros to edges
         chromatogram.addNZeros(scans, 1, 1);
 
@@ -315,6 +271,9 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
       }
     }
 
+    // release the primitive data
+    builder = null;
+
     // sort and reset IDs here to ahve the same sorting for every feature list
     FeatureListUtils.sortByDefaultRT(newFeatureList, true);
 
@@ -335,54 +294,4 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
     logger.info(() -> "Finished chromatogram builder on " + dataFile);
   }
 
-  /**
-   * Starts a new chromatogram and limits its range so that it does not overlap
-   * with existing m/z ranges
-   *
-   * @param rangeToChromMap started chromatograms with their non overlapping m/z
-   *                        range
-   * @param mzFeature       current tested data point
-   */
-  @SuppressWarnings("UnstableApiUsage")
-  private void startNewChromatogramLimitMzRanges(
-      RangeMap<Double, ADAPChromatogram> rangeToChromMap,
-      ExpandedDataPoint mzFeature) {
-    // start new chromatogram and create new range (subract overlapping existing ranges)
-    Range<Double> toleranceRange = mzTolerance.getToleranceRange(
-        mzFeature.getMZ());
-
-    // look +- mz tolerance to see if ther is a range near by.
-    // If there is use the proper boundry of that range for the
-    // new range to insure than NON OF THE RANGES OVERLAP.
-    final Entry<Range<Double>, ADAPChromatogram> minusRange = rangeToChromMap.getEntry(
-        toleranceRange.lowerEndpoint());
-    final Entry<Range<Double>, ADAPChromatogram> plusRange = rangeToChromMap.getEntry(
-        toleranceRange.upperEndpoint());
-
-    // If both of the above ranges are null then we make the new range spaning the full
-    // mz tolerance range.
-    // If one or both are not null we need to properly modify the range of the new
-    // chromatogram so that none of the points are overlapping.
-    Double toBeLowerBound = minusRange == null ? toleranceRange.lowerEndpoint()
-        : minusRange.getKey().upperEndpoint();
-    Double toBeUpperBound = plusRange == null ? toleranceRange.upperEndpoint()
-        : plusRange.getKey().lowerEndpoint();
-
-    if (toBeLowerBound < toBeUpperBound) {
-      // use closed open so that every value may be captured by rangeMap
-      Range<Double> newRange = Range.closedOpen(toBeLowerBound, toBeUpperBound);
-      ADAPChromatogram newChrom = new ADAPChromatogram();
-      newChrom.addMzFeature(mzFeature.getScan(), mzFeature);
-
-      rangeToChromMap.put(newRange, newChrom);
-    } else if (toBeLowerBound.equals(toBeUpperBound) && plusRange != null) {
-      plusRange.getValue().addMzFeature(mzFeature.getScan(), mzFeature);
-    } else {
-      throw new IllegalStateException(
-          String.format("Incorrect range [%f, %f] for m/z %f", toBeLowerBound,
-              toBeUpperBound, mzFeature.getMZ()));
-    }
-  }
-
 }
-
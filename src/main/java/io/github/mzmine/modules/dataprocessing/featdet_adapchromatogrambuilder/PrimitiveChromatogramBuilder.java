@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder;
+
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.collections.DoubleRangeIntMap;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Builds ADAP chromatograms on primitive data structures. All data points are collected in
+ * parallel arrays (m/z, intensity, scan index), sorted by intensity via an index sort, and
+ * assigned to chromatograms through a {@link DoubleRangeIntMap} that holds the non-overlapping m/z
+ * ranges of all chromatograms. Only chromatograms that pass the filters are converted into
+ * {@link ADAPChromatogram} objects. The results are identical to the previous implementation
+ * based on lists of {@link ExpandedDataPoint} and a {@code TreeRangeMap}.
+ * <p>
+ * Usage: {@link #addDataPoint(double, double, int)} for all data points of all scans, then
+ * {@link #buildChromatograms(BooleanSupplier)} once and access the results by the chromatogram
+ * index (sorted by m/z).
+ */
+public class PrimitiveChromatogramBuilder {
+
+  private final MZTolerance mzTolerance;
+  private final double minHighestPoint;
+
+  // all data points in the order of scans
+  private final DoubleArrayList mzs;
+  private final DoubleArrayList intensities;
+  private final IntArrayList scanIndices;
+  private int numScans = 0;
+
+  // results: data point indices grouped by chromatogram, each group in the order of addition
+  private int[] chromatogramDataPoints;
+  // start and end (exclusive) in chromatogramDataPoints for each chromatogram sorted by m/z
+  private int[] chromatogramStarts;
+  private int[] chromatogramEnds;
+
+  // reusable buffers for the filter check
+  private int[] scanBuffer;
+  private double[] intensityByScan;
+
+  private double progress = 0d;
+
+  /**
+   * @param mzTolerance        scan to scan m/z tolerance
+   * @param minHighestPoint    minimum intensity to start a new chromatogram
+   * @param expectedDataPoints initial capacity
+   */
+  public PrimitiveChromatogramBuilder(@NotNull MZTolerance mzTolerance, double minHighestPoint,
+      int expectedDataPoints) {
+    this.mzTolerance = mzTolerance;
+    this.minHighestPoint = minHighestPoint;
+    int capacity = Math.max(expectedDataPoints, 16);
+    mzs = new DoubleArrayList(capacity);
+    intensities = new DoubleArrayList(capacity);
+    scanIndices = new IntArrayList(capacity);
+  }
+
+  /**
+   * Add a data point. Data points with NaN values are skipped.
+   *
+   * @param mz        the m/z
+   * @param intensity the intensity
+   * @param scanIndex the index of the scan in the array of all scans that is later used to filter
+   *                  and convert the chromatograms
+   */
+  public void addDataPoint(double mz, double intensity, int scanIndex) {
+    if (Double.isNaN(mz) || Double.isNaN(intensity)) {
+      return;
+    }
+    mzs.add(mz);
+    intensities.add(intensity);
+    scanIndices.add(scanIndex);
+    if (scanIndex >= numScans) {
+      numScans = scanIndex + 1;
+    }
+  }
+
+  public int getNumberOfDataPoints() {
+    return mzs.size();
+  }
+
+  /**
+   * Assigns all data points to chromatograms. Data points are processed by descending intensity
+   * (ties by descending m/z, then order of addition). A data point is added to the chromatogram
+   * with an m/z range that contains its m/z or starts a new chromatogram if its intensity is
+   * &ge; minHighestPoint.
+   *
+   * @param isCanceled checked regularly
+   * @return false if canceled
+   */
+  public boolean buildChromatograms(@NotNull BooleanSupplier isCanceled) {
+    final int n = mzs.size();
+    final double[] mz = mzs.elements();
+    final double[] intensity = intensities.elements();
+    final int[] scan = scanIndices.elements();
+
+    // sort data points by intensity - stable like the previous list sort with DataPointSorter
+    final int[] order = new int[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+    IntArrays.mergeSort(order, 0, n, (a, b) -> {
+      int result = Double.compare(intensity[b], intensity[a]);
+      return result != 0 ? result : Double.compare(mz[b], mz[a]);
+    });
+    if (isCanceled.getAsBoolean()) {
+      return false;
+    }
+
+    // map the mz tolerance to chromatograms
+    final DoubleRangeIntMap rangeToChromMap = new DoubleRangeIntMap();
+    final int[] pointChrom = new int[n];
+    Arrays.fill(pointChrom, -1);
+    int numCreated = 0;
+
+    for (int k = 0; k < n; k++) {
+      if ((k & 0xFFFF) == 0) {
+        progress = (double) k / n;
+        if (isCanceled.getAsBoolean()) {
+          return false;
+        }
+      }
+      final int dp = order[k];
+      final double dpMz = mz[dp];
+      final int existing = rangeToChromMap.get(dpMz);
+      if (existing != DoubleRangeIntMap.NO_VALUE) {
+        // add data point to chromatogram
+        pointChrom[dp] = existing;
+      } else if (intensity[dp] >= minHighestPoint) {
+        // add a new chromatogram to the range map - limit ranges to avoid overlap
+        final int chrom = startNewChromatogramLimitMzRanges(rangeToChromMap, dpMz, numCreated);
+        pointChrom[dp] = chrom;
+        if (chrom == numCreated) {
+          numCreated++;
+        }
+      }
+    }
+
+    // group data points by chromatogram - counting sort keeps the processing order in each group
+    final int[] groupStarts = new int[numCreated + 1];
+    for (int k = 0; k < n; k++) {
+      final int chrom = pointChrom[order[k]];
+      if (chrom >= 0) {
+        groupStarts[chrom + 1]++;
+      }
+    }
+    for (int c = 0; c < numCreated; c++) {
+      groupStarts[c + 1] += groupStarts[c];
+    }
+    chromatogramDataPoints = new int[groupStarts[numCreated]];
+    final int[] insertAt = Arrays.copyOf(groupStarts, numCreated);
+    for (int k = 0; k < n; k++) {
+      final int dp = order[k];
+      final int chrom = pointChrom[dp];
+      if (chrom >= 0) {
+        chromatogramDataPoints[insertAt[chrom]++] = dp;
+      }
+    }
+    if (isCanceled.getAsBoolean()) {
+      return false;
+    }
+
+    // remaining chromatograms sorted by m/z. Chromatograms may have been removed from the map by
+    // later ranges. Only the first (highest) data point of each scan is used.
+    final int[] sortedChroms = rangeToChromMap.values();
+    final int numChroms = sortedChroms.length;
+    chromatogramStarts = new int[numChroms];
+    chromatogramEnds = new int[numChroms];
+    final int[] scanUsedByChrom = new int[numScans];
+    Arrays.fill(scanUsedByChrom, -1);
+
+    for (int i = 0; i < numChroms; i++) {
+      final int chrom = sortedChroms[i];
+      final int start = groupStarts[chrom];
+      int end = start;
+      for (int j = start; j < groupStarts[chrom + 1]; j++) {
+        final int dp = chromatogramDataPoints[j];
+        if (scanUsedByChrom[scan[dp]] != chrom) {
+          scanUsedByChrom[scan[dp]] = chrom;
+          chromatogramDataPoints[end++] = dp;
+        }
+      }
+      chromatogramStarts[i] = start;
+      chromatogramEnds[i] = end;
+    }
+
+    scanBuffer = new int[numScans];
+    intensityByScan = new double[numScans];
+    progress = 1d;
+    return true;
+  }
+
+  /**
+   * Starts a new chromatogram and limits its range so that it does not overlap with existing m/z
+   * ranges
+   *
+   * @param rangeToChromMap started chromatograms with their non overlapping m/z range
+   * @param mz              current tested data point
+   * @param newChrom        the index of the new chromatogram
+   * @return the chromatogram index the data point was added to
+   */
+  private int startNewChromatogramLimitMzRanges(DoubleRangeIntMap rangeToChromMap, double mz,
+      int newChrom) {
+    // start new chromatogram and create new range (subract overlapping existing ranges)
+    final double absoluteTolerance = mzTolerance.getMzToleranceForMass(mz);
+    final double toleranceLower = mz - absoluteTolerance;
+    final double toleranceUpper = mz + absoluteTolerance;
+
+    // look +- mz tolerance to see if ther is a range near by.
+    // If there is use the proper boundry of that range for the
+    // new range to insure than NON OF THE RANGES OVERLAP.
+    final double minusUpper = rangeToChromMap.getUpperEndpoint(toleranceLower);
+    final double plusLower = rangeToChromMap.getLowerEndpoint(toleranceUpper);
+
+    // If both of the above ranges are null then we make the new range spaning the full
+    // mz tolerance range.
+    // If one or both are not null we need to properly modify the range of the new
+    // chromatogram so that none of the points are overlapping.
+    final double toBeLowerBound = Double.isNaN(minusUpper) ? toleranceLower : minusUpper;
+    final double toBeUpperBound = Double.isNaN(plusLower) ? toleranceUpper : plusLower;
+
+    if (toBeLowerBound < toBeUpperBound) {
+      // closed open so that every value may be captured by rangeMap
+      rangeToChromMap.put(toBeLowerBound, toBeUpperBound, newChrom);
+      return newChrom;
+    } else if (toBeLowerBound == toBeUpperBound && !Double.isNaN(plusLower)) {
+      return rangeToChromMap.get(toleranceUpper);
+    } else {
+      throw new IllegalStateException(
+          String.format("Incorrect range [%f, %f] for m/z %f", toBeLowerBound, toBeUpperBound,
+              mz));
+    }
+  }
+
+  /**
+   * @return number of chromatograms after {@link #buildChromatograms(BooleanSupplier)}
+   */
+  public int getNumberOfChromatograms() {
+    return chromatogramStarts == null ? 0 : chromatogramStarts.length;
+  }
+
+  /**
+   * Check for a minimum number of continuous scans. Same as
+   * {@link ADAPChromatogram#matchesMinContinuousDataPoints(Scan[], double, int, double)} without
+   * creating the chromatogram.
+   *
+   * @param chrom           chromatogram index (sorted by m/z)
+   * @param intensityThresh minimum intensity to consider data point connected
+   * @param minimumScanSpan minimum number of connected dp
+   * @param minHeight       minimum height
+   * @return true if a minimum number of scans are connected (without holes)
+   */
+  public boolean matchesMinContinuousDataPoints(int chrom, double intensityThresh,
+      int minimumScanSpan, double minHeight) {
+    final double[] intensity = intensities.elements();
+    final int[] scan = scanIndices.elements();
+    final int start = chromatogramStarts[chrom];
+    final int numDp = chromatogramEnds[chrom] - start;
+    for (int i = 0; i < numDp; i++) {
+      final int dp = chromatogramDataPoints[start + i];
+      scanBuffer[i] = scan[dp];
+      intensityByScan[scan[dp]] = intensity[dp];
+    }
+    Arrays.sort(scanBuffer, 0, numDp);
+
+    int connectedScans = 0;
+    int lastScan = -2;
+    double maxCurrentHeight = 0d;
+    for (int i = 0; i < numDp; i++) {
+      final int scanIndex = scanBuffer[i];
+      final double dpIntensity = intensityByScan[scanIndex];
+      if (dpIntensity >= intensityThresh) {
+        // scans without data points break the connection
+        connectedScans = scanIndex == lastScan + 1 ? connectedScans + 1 : 1;
+        lastScan = scanIndex;
+        // track height of current segment
+        if (maxCurrentHeight < dpIntensity) {
+          maxCurrentHeight = dpIntensity;
+        }
+        // check conditions
+        if (connectedScans >= minimumScanSpan && maxCurrentHeight >= minHeight) {
+          return true;
+        }
+      } else {
+        connectedScans = 0;
+        lastScan = -2;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Creates the chromatogram. Data points are added in the same order as they were assigned.
+   *
+   * @param chrom    chromatogram index (sorted by m/z)
+   * @param allScans all scans, the scan indices of the data points point into this array
+   * @return a new chromatogram
+   */
+  public ADAPChromatogram toADAPChromatogram(int chrom, @NotNull Scan[] allScans) {
+    final double[] mz = mzs.elements();
+    final double[] intensity = intensities.elements();
+    final int[] scan = scanIndices.elements();
+    final ADAPChromatogram chromatogram = new ADAPChromatogram();
+    for (int j = chromatogramStarts[chrom]; j < chromatogramEnds[chrom]; j++) {
+      final int dp = chromatogramDataPoints[j];
+      chromatogram.addMzFeature(allScans[scan[dp]], new SimpleDataPoint(mz[dp], intensity[dp]));
+    }
+    return chromatogram;
+  }
+
+  public double getFinishedPercentage() {
+    return progress;
+  }
+}
@@ -30,6 +30,7 @@ import io.github.mzmine.datamodel.featuredata.FeatureDataUtils;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.modules.MZmineModuleCategory;
 import io.github.mzmine.modules.MZmineProcessingModule;
+import io.github.mzmine.modules.batchmode.BatchStepScope;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.util.ExitCode;
@@ -48,6 +49,11 @@ public abstract class FeatureResolverModule implements MZmineProcessingModule {
     return MZmineModuleCategory.FEATURE_RESOLVING;
   }
 
+  @Override
+  public @NotNull BatchStepScope getBatchStepScope() {
+    return BatchStepScope.PER_FILE;
+  }
+
   @Override
   @NotNull
   public ExitCode runModule(@NotNull MZmineProject project, @NotNull final ParameterSet parameters,
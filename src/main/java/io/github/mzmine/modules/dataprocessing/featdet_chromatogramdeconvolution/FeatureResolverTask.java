@@ -35,6 +35,7 @@ import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
@@ -42,6 +43,7 @@ import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.types.ImageType;
 import io.github.mzmine.datamodel.features.types.MobilityUnitType;
 import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.dataprocessing.filter_groupms2.GroupMS2SubParameters;
 import io.github.mzmine.modules.dataprocessing.filter_groupms2.GroupMS2Task;
 import io.github.mzmine.parameters.ParameterSet;
@@ -56,15 +58,22 @@ import io.github.mzmine.util.R.RSessionWrapper;
 import io.github.mzmine.util.R.RSessionWrapperException;
 import io.github.mzmine.util.maths.CenterFunction;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 
 public class FeatureResolverTask extends AbstractTask {
 
   // Logger.
   private static final Logger logger = Logger.getLogger(FeatureResolverTask.class.getName());
+  // more blocks than threads to balance the load of long and short chromatograms
+  private static final int BLOCKS_PER_THREAD = 8;
+  // maximum number of row blocks that are resolved in parallel, 0 to use the number of threads
+  private int maxBlocks = 0;
 
   // Feature lists.
   private final MZmineProject project;
@@ -75,7 +84,7 @@ public class FeatureResolverTask extends AbstractTask {
   private final CenterFunction mzCenterFunction;
   private FeatureList newPeakList;
   // Counters.
-  private int processedRows;
+  private final AtomicInteger processedRows = new AtomicInteger();
   private int totalRows;
   private RSessionWrapper rSession;
   private String errorMsg;
@@ -101,11 +110,20 @@ public class FeatureResolverTask extends AbstractTask {
     parameters = parameterSet;
     originalPeakList = list;
     newPeakList = null;
-    processedRows = 0;
     totalRows = 0;
     this.mzCenterFunction = mzCenterFunction;
   }
 
+  /**
+   * The rows are split into blocks that are resolved in parallel. The result does not depend on
+   * the number of blocks.
+   *
+   * @param maxBlocks maximum number of blocks or 0 to use a multiple of the number of threads
+   */
+  void setMaxBlocks(int maxBlocks) {
+    this.maxBlocks = maxBlocks;
+  }
+
   @Override
   public String getTaskDescription() {
     if (groupMS2Task != null) {
@@ -119,7 +137,7 @@ public class FeatureResolverTask extends AbstractTask {
     if (groupMS2Task != null) {
       return groupMS2Task.getFinishedPercentage();
     }
-    return totalRows == 0 ? 0.0 : processedRows / (double) totalRows;
+    return totalRows == 0 ? 0.0 : processedRows.get() / (double) totalRows;
   }
 
   @Override
@@ -139,9 +157,10 @@ public class FeatureResolverTask extends AbstractTask {
             "Feature resolving can only be performed on feature lists with a single raw data file");
       } else {
         try {
-          if (((GeneralResolverParameters) parameters).getResolver(parameters,
-              (ModularFeatureList) originalPeakList) != null) {
-            dimensionIndependentResolve((ModularFeatureList) originalPeakList);
+          final Resolver resolver = ((GeneralResolverParameters) parameters).getResolver(
+              parameters, (ModularFeatureList) originalPeakList);
+          if (resolver != null) {
+            dimensionIndependentResolve((ModularFeatureList) originalPeakList, resolver);
           } else {
             legacyResolve();
           }
@@ -241,33 +260,39 @@ public class FeatureResolverTask extends AbstractTask {
     newPeakList = resolvePeaks((ModularFeatureList) originalPeakList, this.rSession);
   }
 
-  private void dimensionIndependentResolve(ModularFeatureList originalFeatureList) {
-    final Resolver resolver = ((GeneralResolverParameters) parameters).getResolver(parameters,
-        originalFeatureList);
-    if (resolver == null) {
-      setErrorMessage("Resolver could not be initialised.");
-      setStatus(TaskStatus.ERROR);
-      return;
-    }
-
+  /**
+   * @param resolver resolves the first block, all other blocks create their own resolver
+   */
+  private void dimensionIndependentResolve(ModularFeatureList originalFeatureList,
+      Resolver resolver) {
     final RawDataFile dataFile = originalFeatureList.getRawDataFile(0);
     final ModularFeatureList resolvedFeatureList = createNewFeatureList(originalFeatureList);
 
-    final FeatureDataAccess access = EfficientDataAccess.of(originalFeatureList,
-        EfficientDataAccess.FeatureDataType.INCLUDE_ZEROS, dataFile);
-
-    processedRows = 0;
+    processedRows.set(0);
     totalRows = originalFeatureList.getNumberOfRows();
-    int peakId = 1;
 
+    // resolve blocks of rows in parallel. Each block has its own resolver and data access, as both
+    // keep buffers of the current feature
+    final List<FeatureListRow> rows = List.copyOf(originalFeatureList.getRows());
+    final int numBlocks = Math.max(1, Math.min(rows.size(), maxBlocks > 0 ? maxBlocks
+        : MZmineCore.getConfiguration().getNumOfThreads() * BLOCKS_PER_THREAD));
+    final List<List<ResolvedFeature>> resolvedBlocks = IntStream.range(0, numBlocks).parallel()
+        .mapToObj(block -> {
+          final Resolver blockResolver = block == 0 ? resolver
+              : ((GeneralResolverParameters) parameters).getResolver(parameters,
+                  originalFeatureList);
+          return resolveBlock(originalFeatureList, dataFile, rows.subList(
+              (int) ((long) rows.size() * block / numBlocks),
+              (int) ((long) rows.size() * (block + 1) / numBlocks)), blockResolver);
+        }).toList();
+
+    // creating features is not thread safe. Add them in the original order to keep the IDs
+    int peakId = 1;
     int c = 0;
-
-    while (access.hasNextFeature()) {
-      final ModularFeature originalFeature = (ModularFeature) access.nextFeature();
-      final List<IonTimeSeries<? extends Scan>> resolvedSeries = resolver.resolve(access,
-          getMemoryMapStorage());
-
-      for (IonTimeSeries<? extends Scan> resolved : resolvedSeries) {
+    for (List<ResolvedFeature> block : resolvedBlocks) {
+      for (ResolvedFeature resolvedFeature : block) {
+        final ModularFeature originalFeature = resolvedFeature.originalFeature();
+        final IonTimeSeries<? extends Scan> resolved = resolvedFeature.resolved();
         final ModularFeatureListRow newRow = new ModularFeatureListRow(resolvedFeatureList,
             peakId++);
         final ModularFeature f = new ModularFeature(resolvedFeatureList,
@@ -285,7 +310,6 @@ public class FeatureResolverTask extends AbstractTask {
           c++;
         }
       }
-      processedRows++;
     }
     logger.info(c + "/" + resolvedFeatureList.getNumberOfRows()
         + " have less than 4 scans (frames for IMS data)");
@@ -298,6 +322,33 @@ public class FeatureResolverTask extends AbstractTask {
     newPeakList = resolvedFeatureList;
   }
 
+  /**
+   * Resolves the features of a block of rows with a resolver and data access confined to the
+   * calling thread. The resolved series are written to the (synchronized) storage.
+   *
+   * @return the resolved series in the order of the rows
+   */
+  private List<ResolvedFeature> resolveBlock(ModularFeatureList originalFeatureList,
+      RawDataFile dataFile, List<FeatureListRow> rows, Resolver resolver) {
+    final List<ResolvedFeature> resolvedFeatures = new ArrayList<>();
+    final FeatureDataAccess access = EfficientDataAccess.of(originalFeatureList,
+        EfficientDataAccess.FeatureDataType.INCLUDE_ZEROS, dataFile, rows);
+
+    while (access.hasNextFeature()) {
+      if (isCanceled()) {
+        return resolvedFeatures;
+      }
+      final ModularFeature originalFeature = (ModularFeature) access.nextFeature();
+      final List<IonTimeSeries<? extends Scan>> resolvedSeries = resolver.resolve(access,
+          getMemoryMapStorage());
+      for (IonTimeSeries<? extends Scan> resolved : resolvedSeries) {
+        resolvedFeatures.add(new ResolvedFeature(originalFeature, resolved));
+      }
+      processedRows.incrementAndGet();
+    }
+    return resolvedFeatures;
+  }
+
   @Override
   public void cancel() {
     super.cancel();
@@ -325,7 +376,7 @@ public class FeatureResolverTask extends AbstractTask {
 
     final FeatureResolver resolver = ((GeneralResolverParameters) parameters).getResolver();
 
-    processedRows = 0;
+    processedRows.set(0);
     totalRows = originalFeatureList.getNumberOfRows();
     int peakId = 1;
     final Integer minNumDp = parameters.getValue(
@@ -356,7 +407,7 @@ public class FeatureResolverTask extends AbstractTask {
         newRow.setFeatureInformation(peak.getPeakInformation());
         resolvedFeatureList.addRow(newRow);
       }
-      processedRows++;
+      processedRows.incrementAndGet();
     }
 
     resolvedFeatureList.addDescriptionOfAppliedTask(
@@ -405,4 +456,12 @@ public class FeatureResolverTask extends AbstractTask {
 
     return resolvedFeatureList;
   }
+
+  /**
+   * A resolved series and the feature it was resolved from
+   */
+  private record ResolvedFeature(ModularFeature originalFeature,
+                                 IonTimeSeries<? extends Scan> resolved) {
+
+  }
 }
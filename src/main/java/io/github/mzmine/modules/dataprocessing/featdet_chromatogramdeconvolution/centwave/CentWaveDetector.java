@@ -0,0 +1,506 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.PeakIntegrationMethod;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Java implementation of the CentWave peak detection of xcms (findPeaks.centWave, Tautenhahn et
+ * al. 2008) for a single EIC. Regions of interest (ROIs) are the consecutive non-zero data points.
+ * Each ROI is transformed by a continuous wavelet transform (Mexican hat), ridge lines of local
+ * maxima are followed from the largest to the smallest scale, and peaks are reported for ridges
+ * above the signal to noise threshold. Peak bounds are found by descending from the peak apex on
+ * the wavelet coefficients or on the raw data, like in xcms.
+ * <p>
+ * Not thread safe: The buffers are reused for all EICs, so use one instance per thread.
+ *
+ * @author https://github.com/mzmine
+ */
+public class CentWaveDetector {
+
+  // the Mexican hat wavelet is truncated at +- this many scales
+  private static final double WAVELET_SUPPORT = 5d;
+  // normalization of the Mexican hat wavelet
+  private static final double MEXICAN_HAT_NORM = 2d / (Math.sqrt(3d) * Math.pow(Math.PI, 0.25));
+  // same as in xcms
+  private static final double NOISE_TRIM = 0.05;
+  private static final int MAX_RIDGE_GAP = 3;
+  private static final int MIN_LOCAL_MAXIMUM_WINDOW = 2;
+
+  private final double snThreshold;
+  private final Range<Double> peakWidth;
+  private final PeakIntegrationMethod integrationMethod;
+
+  // buffers: wavelet coefficients [scale][data point] and local maxima of the current ROI
+  private double[][] coefficients = new double[0][0];
+  private boolean[][] localMaxima = new boolean[0][0];
+  // wavelet kernels by scale
+  private final Int2ObjectOpenHashMap<double[]> kernels = new Int2ObjectOpenHashMap<>();
+
+  /**
+   * @param snThreshold       minimum signal to noise ratio
+   * @param peakWidth         the range of peak widths in x units (e.g. RT). Defines the scales of
+   *                          the wavelet transform.
+   * @param integrationMethod find the peak bounds on the wavelet coefficients (smoothed) or on the
+   *                          raw data
+   */
+  public CentWaveDetector(double snThreshold, @NotNull Range<Double> peakWidth,
+      @NotNull PeakIntegrationMethod integrationMethod) {
+    this.snThreshold = snThreshold;
+    this.peakWidth = peakWidth;
+    this.integrationMethod = integrationMethod;
+  }
+
+  /**
+   * @param x         domain values, strictly increasing (e.g. RT)
+   * @param y         intensities, 0 for missing data points
+   * @param numValues number of values to use from x and y
+   * @return the x ranges of all detected peaks, sorted by x
+   */
+  @NotNull
+  public List<Range<Double>> detect(@NotNull final double[] x, @NotNull final double[] y,
+      final int numValues) {
+    final int n = Math.min(numValues, Math.min(x.length, y.length));
+    if (n < 2) {
+      return List.of();
+    }
+
+    final int[] scales = getScales(x, n);
+    if (scales.length == 0) {
+      return List.of();
+    }
+    final int minPeakWidth = scales[0];
+    final int noiseRange = scales[scales.length - 1] * 3;
+    final double noise = estimateChromNoise(y, n, 3 * minPeakWidth);
+
+    final List<Peak> peaks = new ArrayList<>();
+    for (int roiStart = 0; roiStart < n; roiStart++) {
+      if (y[roiStart] <= 0) {
+        continue;
+      }
+      int roiEnd = roiStart;
+      while (roiEnd + 1 < n && y[roiEnd + 1] > 0) {
+        roiEnd++;
+      }
+      detectInRoi(y, n, roiStart, roiEnd, scales, noiseRange, noise, peaks);
+      roiStart = roiEnd;
+    }
+
+    // higher peaks first. Lower peaks are removed if their apex is within a higher peak or
+    // trimmed to the bounds of the higher peak otherwise.
+    peaks.sort(Comparator.comparingDouble(Peak::height).reversed());
+    final List<Peak> accepted = new ArrayList<>();
+    for (Peak peak : peaks) {
+      Peak trimmed = peak;
+      for (int i = 0; i < accepted.size() && trimmed != null; i++) {
+        trimmed = trimmed.trimTo(accepted.get(i));
+      }
+      if (trimmed != null) {
+        accepted.add(trimmed);
+      }
+    }
+    accepted.sort(Comparator.comparingInt(Peak::left));
+
+    final List<Range<Double>> ranges = new ArrayList<>(accepted.size());
+    for (Peak peak : accepted) {
+      ranges.add(Range.closed(x[peak.left()], x[peak.right()]));
+    }
+    return ranges;
+  }
+
+  /**
+   * Scales (half peak widths in data points) as in xcms: every second value between the smallest
+   * and the largest half peak width.
+   */
+  private int[] getScales(final double[] x, final int n) {
+    final double spacing = (x[n - 1] - x[0]) / (n - 1);
+    if (!(spacing > 0)) {
+      return new int[0];
+    }
+    final int lower = (int) Math.round(peakWidth.lowerEndpoint() / spacing / 2);
+    final int upper = (int) Math.round(peakWidth.upperEndpoint() / spacing / 2);
+    if (lower <= 0 && upper <= 0) {
+      return new int[0];
+    }
+    if (lower <= 0 || upper <= lower) {
+      return new int[]{Math.max(lower, upper)};
+    }
+    final int[] scales = new int[(upper - lower) / 2 + 1];
+    for (int i = 0; i < scales.length; i++) {
+      scales[i] = lower + 2 * i;
+    }
+    return scales;
+  }
+
+  private void detectInRoi(final double[] y, final int n, final int roiStart, final int roiEnd,
+      final int[] scales, final int noiseRange, final double noise, final List<Peak> peaks) {
+    // the ROI is extended for the noise estimation and the wavelet transform
+    final int from = Math.max(0, roiStart - noiseRange);
+    final int to = Math.min(n - 1, roiEnd + noiseRange);
+    final int length = to - from + 1;
+
+    // use the data in the ROI if there is no data around it
+    double[] localNoise = estimateLocalNoise(y, from, to, roiStart, roiEnd, noise, scales[0]);
+    if (localNoise == null) {
+      localNoise = estimateLocalNoise(y, from, to, -1, -1, noise, scales[0]);
+    }
+    if (localNoise == null) {
+      localNoise = new double[]{1d, 1d};
+    }
+    final double baseline = Math.max(1d, Math.min(localNoise[0], noise));
+    final double sdNoise = Math.max(1d, localNoise[1]);
+    final double sdThreshold = sdNoise * snThreshold;
+
+    boolean aboveThreshold = false;
+    for (int i = roiStart; i <= roiEnd && !aboveThreshold; i++) {
+      aboveThreshold = y[i] - baseline >= sdThreshold;
+    }
+    if (!aboveThreshold) {
+      return;
+    }
+
+    ensureCapacity(scales.length, length);
+    for (int s = 0; s < scales.length; s++) {
+      transform(y, from, length, scales[s], coefficients[s]);
+      findLocalMaxima(coefficients[s], length, Math.max(scales[s], MIN_LOCAL_MAXIMUM_WINDOW),
+          localMaxima[s]);
+    }
+
+    for (Ridge ridge : findRidges(scales, length)) {
+      boolean passes = false;
+      int bestScale = -1;
+      int center = -1;
+      for (int i = 0; i < ridge.size(); i++) {
+        final int s = ridge.scaleIndices.getInt(i);
+        final int position = ridge.positions.getInt(i);
+        final double coefficient = coefficients[s][position];
+        passes |= coefficient - baseline >= sdThreshold;
+        if (bestScale == -1 || coefficient > coefficients[bestScale][center]) {
+          bestScale = s;
+          center = position;
+        }
+      }
+      // the apex needs to be in the ROI
+      if (!passes || center + from < roiStart || center + from > roiEnd) {
+        continue;
+      }
+
+      final int left;
+      final int right;
+      if (integrationMethod == PeakIntegrationMethod.UseSmoothedData) {
+        final double[] smoothed = coefficients[bestScale];
+        int l = center;
+        while (l > 0 && smoothed[l - 1] < smoothed[l]) {
+          l--;
+        }
+        int r = center;
+        while (r < length - 1 && smoothed[r + 1] < smoothed[r]) {
+          r++;
+        }
+        left = l + from;
+        right = r + from;
+      } else {
+        final int maxOutliers = scales[0] / 2;
+        left = descendWithTolerance(y, Math.max(from, center + from - scales[bestScale]), from, -1,
+            maxOutliers);
+        right = descendWithTolerance(y, Math.min(to, center + from + scales[bestScale]), to, 1,
+            maxOutliers);
+      }
+
+      // peaks are limited to the ROI
+      final int peakLeft = Math.max(left, roiStart);
+      final int peakRight = Math.min(right, roiEnd);
+      if (peakRight <= peakLeft) {
+        continue;
+      }
+      int apex = peakLeft;
+      for (int i = peakLeft; i <= peakRight; i++) {
+        if (y[i] > y[apex]) {
+          apex = i;
+        }
+      }
+      final double sn = (y[apex] - baseline) / sdNoise;
+      if (sn >= snThreshold) {
+        peaks.add(new Peak(peakLeft, peakRight, apex, y[apex]));
+      }
+    }
+  }
+
+  /**
+   * Descend from start in the given direction as long as the data decreases, allowing a number of
+   * higher data points in between.
+   *
+   * @return the index of the minimum
+   */
+  private static int descendWithTolerance(final double[] y, final int start, final int limit,
+      final int direction, final int maxOutliers) {
+    int minIndex = start;
+    int outliers = 0;
+    for (int i = start + direction; direction < 0 ? i >= limit : i <= limit; i += direction) {
+      if (y[i] <= y[minIndex]) {
+        minIndex = i;
+        outliers = 0;
+      } else if (++outliers > maxOutliers) {
+        break;
+      }
+    }
+    return minIndex;
+  }
+
+  /**
+   * Continuous wavelet transform with the Mexican hat wavelet at one scale. The data is mirrored at
+   * both ends.
+   */
+  private void transform(final double[] y, final int from, final int length, final int scale,
+      final double[] result) {
+    final double[] kernel = getKernel(scale);
+    final int support = kernel.length / 2;
+    for (int b = 0; b < length; b++) {
+      double sum = 0;
+      for (int k = -support; k <= support; k++) {
+        sum += kernel[k + support] * y[from + reflect(b + k, length)];
+      }
+      result[b] = sum;
+    }
+  }
+
+  /**
+   * The Mexican hat wavelet at one scale, truncated and shifted to zero mean. Computed once per
+   * scale and reused for all ROIs and EICs.
+   */
+  private double[] getKernel(final int scale) {
+    double[] kernel = kernels.get(scale);
+    if (kernel != null) {
+      return kernel;
+    }
+    final int support = (int) Math.ceil(WAVELET_SUPPORT * scale);
+    kernel = new double[2 * support + 1];
+    double mean = 0;
+    for (int k = -support; k <= support; k++) {
+      final double t = k / (double) scale;
+      kernel[k + support] = MEXICAN_HAT_NORM * (1 - t * t) * Math.exp(-t * t / 2);
+      mean += kernel[k + support];
+    }
+    // zero mean of the truncated wavelet
+    mean /= kernel.length;
+    final double norm = 1 / Math.sqrt(scale);
+    for (int k = 0; k < kernel.length; k++) {
+      kernel[k] = (kernel[k] - mean) * norm;
+    }
+    kernels.put(scale, kernel);
+    return kernel;
+  }
+
+  private static int reflect(int index, final int length) {
+    if (length == 1) {
+      return 0;
+    }
+    final int period = 2 * (length - 1);
+    index = Math.abs(index) % period;
+    return index < length ? index : period - index;
+  }
+
+  /**
+   * A data point is a local maximum if it is positive and the maximum within +- window points.
+   * The first of equal maxima is used.
+   */
+  private static void findLocalMaxima(final double[] values, final int length, final int window,
+      final boolean[] result) {
+    Arrays.fill(result, 0, length, false);
+    for (int i = 0; i < length; i++) {
+      if (values[i] <= 0) {
+        continue;
+      }
+      boolean maximum = true;
+      for (int j = Math.max(0, i - window); j <= Math.min(length - 1, i + window) && maximum;
+          j++) {
+        maximum = j < i ? values[j] < values[i] : values[j] <= values[i];
+      }
+      result[i] = maximum;
+    }
+  }
+
+  /**
+   * Follows ridge lines of local maxima from the largest to the smallest scale. A ridge continues
+   * at the closest local maximum within the local maximum window and ends after more than
+   * {@link #MAX_RIDGE_GAP} scales without a maximum. New ridges start at unused local maxima.
+   */
+  private List<Ridge> findRidges(final int[] scales, final int length) {
+    final List<Ridge> ridges = new ArrayList<>();
+    final List<Ridge> active = new ArrayList<>();
+    final boolean[] used = new boolean[length];
+    for (int s = scales.length - 1; s >= 0; s--) {
+      Arrays.fill(used, false);
+      final boolean[] maxima = localMaxima[s];
+      final int window = Math.max(scales[s], MIN_LOCAL_MAXIMUM_WINDOW);
+
+      for (int r = 0; r < active.size(); r++) {
+        final Ridge ridge = active.get(r);
+        final int last = ridge.lastPosition();
+        int next = -1;
+        for (int d = 0; d <= window && next == -1; d++) {
+          if (last - d >= 0 && maxima[last - d] && !used[last - d]) {
+            next = last - d;
+          } else if (last + d < length && maxima[last + d] && !used[last + d]) {
+            next = last + d;
+          }
+        }
+        if (next != -1) {
+          used[next] = true;
+          ridge.add(s, next);
+          ridge.gap = 0;
+        } else if (++ridge.gap > MAX_RIDGE_GAP) {
+          active.remove(r--);
+        }
+      }
+
+      for (int i = 0; i < length; i++) {
+        if (maxima[i] && !used[i]) {
+          final Ridge ridge = new Ridge();
+          ridge.add(s, i);
+          ridges.add(ridge);
+          active.add(ridge);
+        }
+      }
+    }
+    return ridges;
+  }
+
+  /**
+   * xcms estimateChromNoise: trimmed mean of the positive intensities.
+   */
+  private static double estimateChromNoise(final double[] y, final int n, final int minPoints) {
+    final double[] positive = Arrays.stream(y, 0, n).filter(v -> v > 0).sorted().toArray();
+    if (positive.length < minPoints) {
+      return Arrays.stream(y, 0, n).average().orElse(0d);
+    }
+    final int trim = (int) Math.floor(positive.length * NOISE_TRIM);
+    return Arrays.stream(positive, trim, positive.length - trim).average().orElse(0d);
+  }
+
+  /**
+   * Mean and standard deviation of the positive data points around the ROI. Runs of at least
+   * minRun data points above the threshold (probably peaks) are excluded. Zeros are missing values
+   * and would underestimate the noise.
+   *
+   * @param roiStart first data point of the ROI, -1 to include the ROI
+   * @param roiEnd   last data point of the ROI, -1 to include the ROI
+   * @return {mean, sd} or null if less than two data points are left
+   */
+  @Nullable
+  private static double[] estimateLocalNoise(final double[] y, final int from, final int to,
+      final int roiStart, final int roiEnd, final double threshold, final int minRun) {
+    double sum = 0;
+    double sumSquares = 0;
+    int count = 0;
+    for (int i = from; i <= to; i++) {
+      if (i >= roiStart && i <= roiEnd) {
+        i = roiEnd;
+        continue;
+      }
+      if (y[i] <= 0) {
+        continue;
+      }
+      if (y[i] > threshold) {
+        int runEnd = i;
+        while (runEnd + 1 <= to && (runEnd + 1 < roiStart || runEnd + 1 > roiEnd)
+            && y[runEnd + 1] > threshold) {
+          runEnd++;
+        }
+        if (runEnd - i + 1 >= minRun) {
+          i = runEnd;
+          continue;
+        }
+      }
+      sum += y[i];
+      sumSquares += y[i] * y[i];
+      count++;
+    }
+    if (count < 2) {
+      return null;
+    }
+    final double mean = sum / count;
+    final double variance = Math.max(0, (sumSquares - count * mean * mean) / (count - 1));
+    return new double[]{mean, Math.sqrt(variance)};
+  }
+
+  private void ensureCapacity(final int numScales, final int length) {
+    if (coefficients.length < numScales || coefficients[0].length < length) {
+      final int capacity = Math.max(length, coefficients.length > 0 ? coefficients[0].length : 0);
+      final int scales = Math.max(numScales, coefficients.length);
+      coefficients = new double[scales][capacity];
+      localMaxima = new boolean[scales][capacity];
+    }
+  }
+
+  private record Peak(int left, int right, int apex, double height) {
+
+    /**
+     * @return this peak, this peak without the overlap to the other peak or null if the apex is
+     * within the other peak
+     */
+    Peak trimTo(Peak other) {
+      if (left > other.right || other.left > right) {
+        return this;
+      }
+      if (apex >= other.left && apex <= other.right) {
+        return null;
+      }
+      final int newLeft = apex > other.right ? other.right + 1 : left;
+      final int newRight = apex < other.left ? other.left - 1 : right;
+      return newRight > newLeft ? new Peak(newLeft, newRight, apex, height) : null;
+    }
+  }
+
+  private static class Ridge {
+
+    private final IntArrayList scaleIndices = new IntArrayList();
+    private final IntArrayList positions = new IntArrayList();
+    private int gap = 0;
+
+    void add(int scaleIndex, int position) {
+      scaleIndices.add(scaleIndex);
+      positions.add(position);
+    }
+
+    int lastPosition() {
+      return positions.getInt(positions.size() - 1);
+    }
+
+    int size() {
+      return positions.size();
+    }
+  }
+}
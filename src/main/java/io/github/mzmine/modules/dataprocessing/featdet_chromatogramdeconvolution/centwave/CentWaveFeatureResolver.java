@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave;
+
+import static io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.INTEGRATION_METHOD;
+import static io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.MIN_NUMBER_OF_DATAPOINTS;
+import static io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.PEAK_DURATION;
+import static io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.PEAK_SCALES;
+import static io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.SN_THRESHOLD;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.modules.MZmineProcessingModule;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.AbstractResolver;
+import io.github.mzmine.parameters.ParameterSet;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * CentWave peak detection in Java ({@link CentWaveDetector}). Replaces the round trip to
+ * findPeaks.centWave of xcms in R ({@link CentWaveResolver}).
+ */
+public class CentWaveFeatureResolver extends AbstractResolver {
+
+  private final CentWaveDetector detector;
+  private final Range<Double> peakDuration;
+  private final int minDataPoints;
+
+  public CentWaveFeatureResolver(@NotNull ParameterSet parameters,
+      @NotNull ModularFeatureList flist) {
+    super(parameters, flist);
+    detector = new CentWaveDetector(parameters.getParameter(SN_THRESHOLD).getValue(),
+        parameters.getParameter(PEAK_SCALES).getValue(),
+        parameters.getParameter(INTEGRATION_METHOD).getValue());
+    peakDuration = parameters.getParameter(PEAK_DURATION).getValue();
+    minDataPoints = parameters.getParameter(MIN_NUMBER_OF_DATAPOINTS).getValue();
+  }
+
+  @Override
+  public Class<? extends MZmineProcessingModule> getModuleClass() {
+    return CentWaveResolverModule.class;
+  }
+
+  @Override
+  public @NotNull List<Range<Double>> resolve(double[] x, double[] y) {
+    // the buffers may be longer than the data, unused values are 0
+    int numValues = Math.min(x.length, y.length);
+    while (numValues > 1 && x[numValues - 1] <= x[numValues - 2]) {
+      numValues--;
+    }
+
+    final List<Range<Double>> ranges = new ArrayList<>();
+    for (Range<Double> range : detector.detect(x, y, numValues)) {
+      if (!peakDuration.contains(range.upperEndpoint() - range.lowerEndpoint())) {
+        continue;
+      }
+      int numDataPoints = 0;
+      for (int i = 0; i < numValues; i++) {
+        if (range.contains(x[i]) && y[i] > 0) {
+          numDataPoints++;
+        }
+      }
+      if (numDataPoints >= minDataPoints) {
+        ranges.add(range);
+      }
+    }
+    return ranges;
+  }
+}
@@ -51,7 +51,8 @@ import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 
 /**
- * Use XCMS findPeaks.centWave to identify peaks.
+ * Use XCMS findPeaks.centWave to identify peaks. Used for the R engine, the Java engine is
+ * {@link CentWaveFeatureResolver}.
  */
 public class CentWaveResolver implements FeatureResolver {
 
@@ -26,16 +26,20 @@
 package io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave;
 
 import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.FeatureResolver;
 import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.FeatureResolverSetupDialog;
 import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.GeneralResolverParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.Resolver;
 import io.github.mzmine.parameters.Parameter;
+import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.ComboParameter;
 import io.github.mzmine.parameters.parametertypes.DoubleParameter;
 import io.github.mzmine.parameters.parametertypes.ranges.DoubleRangeParameter;
 import io.github.mzmine.util.ExitCode;
 import java.text.NumberFormat;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Parameters used by CentWaveDetector.
@@ -76,6 +80,31 @@ public class CentWaveResolverParameters extends GeneralResolverParameters {
     }
   }
 
+  /**
+   * The implementation that detects the peaks.
+   */
+  public enum CentWaveEngine {
+
+    JAVA("Java"), XCMS("R (xcms)");
+
+    private final String name;
+
+    CentWaveEngine(final String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  public static final ComboParameter<CentWaveEngine> ENGINE = new ComboParameter<>("Engine",
+      "Java runs the CentWave algorithm without R. Its results are close to xcms but not identical: "
+          + "e.g., a lower peak that overlaps a higher peak is trimmed instead of removed. "
+          + "R (xcms) calls findPeaks.centWave and requires an R installation with xcms.",
+      CentWaveEngine.values(), CentWaveEngine.JAVA);
+
   public static final DoubleRangeParameter PEAK_DURATION =
       new DoubleRangeParameter("Peak duration range", "Range of acceptable peak lengths",
           MZmineCore.getConfiguration().getRTFormat(), Range.closed(0.0, 10.0));
@@ -94,8 +123,9 @@ public class CentWaveResolverParameters extends GeneralResolverParameters {
 
   public CentWaveResolverParameters() {
 
-    super(new Parameter[]{PEAK_LISTS, SUFFIX, handleOriginal, groupMS2Parameters, SN_THRESHOLD,
-        PEAK_SCALES, PEAK_DURATION, INTEGRATION_METHOD, RENGINE_TYPE, MIN_NUMBER_OF_DATAPOINTS},
+    super(new Parameter[]{PEAK_LISTS, SUFFIX, handleOriginal, groupMS2Parameters, dimension,
+        ENGINE, SN_THRESHOLD, PEAK_SCALES, PEAK_DURATION, INTEGRATION_METHOD, RENGINE_TYPE,
+        MIN_NUMBER_OF_DATAPOINTS},
         "https://mzmine.github.io/mzmine_documentation/module_docs/featdet_resolver_centwave/centwave-resolver.html");
   }
 
@@ -112,4 +142,16 @@ public class CentWaveResolverParameters extends GeneralResolverParameters {
   public FeatureResolver getResolver() {
     return new CentWaveResolver();
   }
+
+  /**
+   * @return the Java resolver or null for the R engine, which only supports the legacy
+   * {@link #getResolver()}
+   */
+  @Override
+  public @Nullable Resolver getResolver(ParameterSet parameterSet, ModularFeatureList flist) {
+    if (parameterSet.getParameter(ENGINE).getValue() == CentWaveEngine.XCMS) {
+      return null;
+    }
+    return new CentWaveFeatureResolver(parameterSet, flist);
+  }
 }
@@ -199,15 +199,17 @@ public class ImsExpanderTask extends AbstractTask {
 
     MZmineCore.getTaskController().addTasks(tasks.toArray(AbstractTask[]::new));
 
-    while (!allThreadsFinished.get()) {
-      try {
-        Thread.sleep(100L);
-      } catch (InterruptedException e) {
-        e.printStackTrace();
-        logger.log(Level.WARNING, e.getMessage(), e);
-        setErrorMessage(e.getMessage());
-        setStatus(TaskStatus.ERROR);
-        return;
+    try (var blockingWait = MZmineCore.getTaskController().startBlockingWait()) {
+      while (!allThreadsFinished.get()) {
+        try {
+          Thread.sleep(100L);
+        } catch (InterruptedException e) {
+          e.printStackTrace();
+          logger.log(Level.WARNING, e.getMessage(), e);
+          setErrorMessage(e.getMessage());
+          setStatus(TaskStatus.ERROR);
+          return;
+        }
       }
     }
 
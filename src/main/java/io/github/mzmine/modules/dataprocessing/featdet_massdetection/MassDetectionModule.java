@@ -29,6 +29,7 @@ import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.modules.MZmineModuleCategory;
 import io.github.mzmine.modules.MZmineProcessingModule;
+import io.github.mzmine.modules.batchmode.BatchStepScope;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.util.ExitCode;
@@ -78,6 +79,11 @@ public class MassDetectionModule implements MZmineProcessingModule {
     return MZmineModuleCategory.RAWDATA;
   }
 
+  @Override
+  public @NotNull BatchStepScope getBatchStepScope() {
+    return BatchStepScope.PER_FILE;
+  }
+
   @Override
   public @NotNull Class<? extends ParameterSet> getParameterSetClass() {
     return MassDetectionParameters.class;
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_recursiveimsbuilder;
+
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.MathUtils;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.collections.DoubleRangeIntMap;
+import io.github.mzmine.util.maths.CenterMeasure;
+import io.github.mzmine.util.maths.Weighting;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.doubles.DoubleArrays;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Builds the mobilograms of a single frame on primitive data structures. All data points of the
+ * frame are collected in parallel arrays (m/z, intensity, mobility scan number), sorted by
+ * intensity via an index sort, and assigned to mobilograms through a {@link DoubleRangeIntMap}
+ * that holds the m/z ranges of all mobilograms. Data points that do not fit into a mobilogram are
+ * processed recursively, if there are more than the recursive threshold. The results are
+ * identical to the previous implementation based on a {@code TreeSet} of
+ * {@code RetentionTimeMobilityDataPoint}s and a {@code TreeRangeMap}.
+ * <p>
+ * Usage: {@link #addDataPoint(double, double, int)} for all data points of a frame, then
+ * {@link #buildMobilograms(MemoryMapStorage)}. The builder is reset afterwards and can be reused
+ * for the next frame. All buffers are kept for the next frame, the output buffers only if the
+ * mobilograms are written to a storage. Not thread safe, use one builder per thread.
+ *
+ * @author https://github.com/mzmine
+ */
+public class FrameMobilogramBuilder {
+
+  private final MZTolerance tolerance;
+  private final int recursiveThreshold;
+
+  // all data points of the current frame
+  private final DoubleArrayList mzs = new DoubleArrayList();
+  private final DoubleArrayList intensities = new DoubleArrayList();
+  private final IntArrayList scanNumbers = new IntArrayList();
+
+  // data points of the current and the next recursion level, sorted by intensity
+  private final IntArrayList current = new IntArrayList();
+  private final IntArrayList leftovers = new IntArrayList();
+  private int[] sortBuffer = IntArrays.EMPTY_ARRAY;
+
+  private final DoubleRangeIntMap rangeToMobilogramMap = new DoubleRangeIntMap();
+  // mobilograms are reused between frames, only the first numMobilograms are in use
+  private final List<TempMobilogram> mobilograms = new ArrayList<>();
+  private int numMobilograms = 0;
+  // all finished mobilograms of all recursion levels, sorted by m/z within each level
+  private final IntArrayList finished = new IntArrayList();
+
+  // output buffers, only reused if the values are copied to a storage
+  private double[] storeMzs = DoubleArrays.EMPTY_ARRAY;
+  private double[] storeIntensities = DoubleArrays.EMPTY_ARRAY;
+  private int[] storeScanNumbers = IntArrays.EMPTY_ARRAY;
+  private double[] storeAvgMzs = DoubleArrays.EMPTY_ARRAY;
+  private double[] storeSummedIntensities = DoubleArrays.EMPTY_ARRAY;
+
+  /**
+   * @param tolerance          m/z tolerance to assign data points to a mobilogram
+   * @param recursiveThreshold leftover data points are only processed recursively if there are
+   *                           more than this number
+   */
+  public FrameMobilogramBuilder(@NotNull MZTolerance tolerance, int recursiveThreshold) {
+    this(tolerance, recursiveThreshold, 0);
+  }
+
+  /**
+   * @param tolerance          m/z tolerance to assign data points to a mobilogram
+   * @param recursiveThreshold leftover data points are only processed recursively if there are
+   *                           more than this number
+   * @param expectedDataPoints the number of data points of the largest frame. The buffers are
+   *                           allocated once with this size.
+   */
+  public FrameMobilogramBuilder(@NotNull MZTolerance tolerance, int recursiveThreshold,
+      int expectedDataPoints) {
+    this.tolerance = tolerance;
+    this.recursiveThreshold = recursiveThreshold;
+    mzs.ensureCapacity(expectedDataPoints);
+    intensities.ensureCapacity(expectedDataPoints);
+    scanNumbers.ensureCapacity(expectedDataPoints);
+    current.ensureCapacity(expectedDataPoints);
+    sortBuffer = new int[expectedDataPoints];
+  }
+
+  /**
+   * @param mz                 the m/z
+   * @param intensity          the intensity
+   * @param mobilityScanNumber the mobility scan number of the data point
+   */
+  public void addDataPoint(double mz, double intensity, int mobilityScanNumber) {
+    mzs.add(mz);
+    intensities.add(intensity);
+    scanNumbers.add(mobilityScanNumber);
+  }
+
+  /**
+   * Assigns all data points to mobilograms. Data points are processed by descending intensity
+   * (ties in order of addition). Each mobilogram holds at most one data point per mobility scan.
+   * Afterwards, the data points are cleared and the builder may be used for the next frame.
+   *
+   * @param storage the storage for the mobilogram data or null to keep it in memory
+   * @return the mobilograms of this frame or null if no mobilogram was found
+   */
+  @Nullable
+  public StoredFrameMobilograms buildMobilograms(@Nullable MemoryMapStorage storage) {
+    final int n = mzs.size();
+    final double[] intensity = intensities.elements();
+    // same order as a TreeSet with a comparator that sorts equal intensities behind each other
+    final IntComparator byIntensity = (a, b) -> Double.compare(intensity[b], intensity[a]);
+
+    current.clear();
+    for (int i = 0; i < n; i++) {
+      current.add(i);
+    }
+    sortStable(current, byIntensity);
+
+    numMobilograms = 0;
+    finished.clear();
+    while (!current.isEmpty()) {
+      calcMobilograms();
+      for (int mobilogram : rangeToMobilogramMap.values()) {
+        finished.add(mobilogram);
+      }
+
+      current.clear();
+      if (leftovers.size() > recursiveThreshold) {
+        // leftovers are already in the order of their detection. sort by intensity - stable
+        current.addAll(leftovers);
+        sortStable(current, byIntensity);
+      }
+    }
+
+    final StoredFrameMobilograms result = finished.isEmpty() ? null : store(storage);
+
+    mzs.clear();
+    intensities.clear();
+    scanNumbers.clear();
+    leftovers.clear();
+    rangeToMobilogramMap.clear();
+    return result;
+  }
+
+  /**
+   * One recursion level. Assigns all current data points to new mobilograms and collects the data
+   * points that did not fit in the leftovers.
+   */
+  private void calcMobilograms() {
+    final double[] mz = mzs.elements();
+    final int[] dps = current.elements();
+    final int numDps = current.size();
+    rangeToMobilogramMap.clear();
+    leftovers.clear();
+
+    for (int i = 0; i < numDps; i++) {
+      final int dp = dps[i];
+      final double dpMz = mz[dp];
+      int mobilogram = rangeToMobilogramMap.get(dpMz);
+      if (mobilogram == DoubleRangeIntMap.NO_VALUE) {
+        // only start a new mobilogram if the full tolerance range is free. All ranges are closed,
+        // therefore the upper endpoint is stored as the next double (closed-open map).
+        final double absTolerance = tolerance.getMzToleranceForMass(dpMz);
+        final double lower = dpMz - absTolerance;
+        final double upper = dpMz + absTolerance;
+        if (rangeToMobilogramMap.get(lower) != DoubleRangeIntMap.NO_VALUE
+            || rangeToMobilogramMap.get(upper) != DoubleRangeIntMap.NO_VALUE) {
+          leftovers.add(dp);
+          continue;
+        }
+        mobilogram = nextMobilogram();
+        rangeToMobilogramMap.put(lower, Math.nextUp(upper), mobilogram);
+      }
+
+      final int previousDp = mobilograms.get(mobilogram).keepBetterFittingDataPoint(dp);
+      if (previousDp != -1) {
+        leftovers.add(previousDp);
+      }
+    }
+  }
+
+  private int nextMobilogram() {
+    if (numMobilograms == mobilograms.size()) {
+      mobilograms.add(new TempMobilogram());
+    }
+    final TempMobilogram mobilogram = mobilograms.get(numMobilograms);
+    mobilogram.reset(mzs.elements(), intensities.elements(), scanNumbers.elements());
+    return numMobilograms++;
+  }
+
+  private void sortStable(IntArrayList list, IntComparator comparator) {
+    if (sortBuffer.length < list.size()) {
+      sortBuffer = new int[list.size()];
+    }
+    // merge sort is stable, the buffer is overwritten
+    System.arraycopy(list.elements(), 0, sortBuffer, 0, list.size());
+    IntArrays.mergeSort(list.elements(), 0, list.size(), comparator, sortBuffer);
+  }
+
+  /**
+   * Writes the finished mobilograms to the storage. The data points of each mobilogram are sorted
+   * by mobility scan number. The center m/z and summed intensity are calculated exactly like in
+   * {@link BuildingIonMobilitySeries}, without copying the values of each mobilogram.
+   */
+  private StoredFrameMobilograms store(@Nullable MemoryMapStorage storage) {
+    final double[] mz = mzs.elements();
+    final double[] intensity = intensities.elements();
+    final int[] scan = scanNumbers.elements();
+
+    final int numFinished = finished.size();
+    final int[] offsets = new int[numFinished + 1];
+    for (int i = 0; i < numFinished; i++) {
+      offsets[i + 1] = offsets[i] + mobilograms.get(finished.getInt(i)).size();
+    }
+
+    // without storage, the arrays are wrapped and kept by the result
+    final int numValues = offsets[numFinished];
+    final boolean reuse = storage != null;
+    if (!reuse || storeMzs.length < numValues) {
+      storeMzs = new double[numValues];
+      storeIntensities = new double[numValues];
+      storeScanNumbers = new int[numValues];
+    }
+    if (!reuse || storeAvgMzs.length < numFinished) {
+      storeAvgMzs = new double[numFinished];
+      storeSummedIntensities = new double[numFinished];
+    }
+
+    for (int i = 0; i < numFinished; i++) {
+      final TempMobilogram mobilogram = mobilograms.get(finished.getInt(i));
+      final int[] dps = mobilogram.dataPoints.elements();
+      final int start = offsets[i];
+      for (int j = 0; j < mobilogram.size(); j++) {
+        storeMzs[start + j] = mz[dps[j]];
+        storeIntensities[start + j] = intensity[dps[j]];
+        storeScanNumbers[start + j] = scan[dps[j]];
+      }
+
+      storeAvgMzs[i] = calcWeightedAvgMz(start, offsets[i + 1]);
+      double summedIntensity = 0d;
+      for (int j = start; j < offsets[i + 1]; j++) {
+        summedIntensity += storeIntensities[j];
+      }
+      storeSummedIntensities[i] = summedIntensity;
+    }
+
+    if (!reuse) {
+      return new StoredFrameMobilograms(offsets, DoubleBuffer.wrap(storeAvgMzs),
+          DoubleBuffer.wrap(storeSummedIntensities), DoubleBuffer.wrap(storeMzs),
+          DoubleBuffer.wrap(storeIntensities), IntBuffer.wrap(storeScanNumbers));
+    }
+    return new StoredFrameMobilograms(offsets,
+        StorageUtils.storeValuesToDoubleBuffer(storage, storeAvgMzs, numFinished),
+        StorageUtils.storeValuesToDoubleBuffer(storage, storeSummedIntensities, numFinished),
+        StorageUtils.storeValuesToDoubleBuffer(storage, storeMzs, numValues),
+        StorageUtils.storeValuesToDoubleBuffer(storage, storeIntensities, numValues),
+        StorageUtils.storeValuesToIntBuffer(storage, storeScanNumbers, numValues));
+  }
+
+  /**
+   * Same result as {@link MathUtils#calcCenter(CenterMeasure, double[], double[], Weighting)} with
+   * {@link CenterMeasure#AVG} and {@link Weighting#LINEAR} on the values in [start, end) of the
+   * output buffers.
+   */
+  private double calcWeightedAvgMz(int start, int end) {
+    // linear weights are limited to >= 0, the sum uses the same compensated summation
+    final double weightSum = Arrays.stream(storeIntensities, start, end).map(w -> Math.max(0, w))
+        .sum();
+    if (weightSum == 0) {
+      return MathUtils.calcAvg(Arrays.copyOfRange(storeMzs, start, end));
+    }
+
+    double avg = 0;
+    for (int i = start; i < end; i++) {
+      avg += storeMzs[i] * Math.max(0, storeIntensities[i]) / weightSum;
+    }
+    return avg;
+  }
+}
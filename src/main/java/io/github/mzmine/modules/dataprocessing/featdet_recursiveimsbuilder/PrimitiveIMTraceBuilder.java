@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_recursiveimsbuilder;
+
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.collections.DoubleRangeIntMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Builds ion mobility traces from the mobilograms of all frames on primitive data structures.
+ * Mobilograms are identified by an index into the buffers of their average m/z, summed intensity
+ * and frame index. The buffers may be in a {@link io.github.mzmine.util.MemoryMapStorage}, so only
+ * the mobilogram indices of the traces are kept on the heap. Mobilograms are processed by
+ * descending summed intensity and assigned to traces through a {@link DoubleRangeIntMap} that holds
+ * the non-overlapping m/z ranges of all traces. Mobilograms that do not fit into a trace are
+ * processed recursively, if there are more than the recursive threshold.
+ * <p>
+ * The ranges of the previous {@code TreeRangeMap} were closed, or open where they were limited by
+ * a neighbouring range. Closed upper endpoints are stored as the next larger double, which keeps
+ * the assignment identical apart from m/z values that hit the open endpoint of a limited range
+ * exactly.
+ *
+ * @author https://github.com/mzmine
+ */
+public class PrimitiveIMTraceBuilder {
+
+  private final MZTolerance tolerance;
+  private final int recursiveThreshold;
+  private final DoubleBuffer avgMzs;
+  private final DoubleBuffer summedIntensities;
+  private final IntBuffer frameIndices;
+
+  private final DoubleRangeIntMap rangeToTraceMap = new DoubleRangeIntMap();
+  private final List<Trace> traces = new ArrayList<>();
+  // traces of all recursion levels, sorted by m/z within each level
+  private final IntArrayList finished = new IntArrayList();
+
+  private double progress = 0d;
+
+  /**
+   * @param tolerance          m/z tolerance to assign mobilograms to a trace
+   * @param recursiveThreshold leftover mobilograms are only processed recursively if there are more
+   *                           than this number
+   * @param avgMzs             average m/z of all mobilograms
+   * @param summedIntensities  summed intensity of all mobilograms
+   * @param frameIndices       index of the frame of all mobilograms
+   */
+  public PrimitiveIMTraceBuilder(@NotNull MZTolerance tolerance, int recursiveThreshold,
+      @NotNull DoubleBuffer avgMzs, @NotNull DoubleBuffer summedIntensities,
+      @NotNull IntBuffer frameIndices) {
+    if (avgMzs.limit() != summedIntensities.limit() || avgMzs.limit() != frameIndices.limit()) {
+      throw new IllegalArgumentException(
+          "Length of m/z, intensity and frame buffers does not match.");
+    }
+    this.tolerance = tolerance;
+    this.recursiveThreshold = recursiveThreshold;
+    this.avgMzs = avgMzs;
+    this.summedIntensities = summedIntensities;
+    this.frameIndices = frameIndices;
+  }
+
+  /**
+   * Assigns all mobilograms to traces. Mobilograms are processed by descending summed intensity,
+   * ties in order of their index. Each trace holds at most one mobilogram per frame.
+   *
+   * @param isCanceled checked regularly
+   * @return false if canceled
+   */
+  public boolean buildTraces(@NotNull BooleanSupplier isCanceled) {
+    final int n = avgMzs.limit();
+    final IntComparator byIntensity = (a, b) -> {
+      final int result = Double.compare(summedIntensities.get(b), summedIntensities.get(a));
+      return result != 0 ? result : Integer.compare(a, b);
+    };
+
+    int[] current = new int[n];
+    for (int i = 0; i < n; i++) {
+      current[i] = i;
+    }
+    IntArrays.parallelQuickSort(current, byIntensity);
+    if (isCanceled.getAsBoolean()) {
+      return false;
+    }
+
+    traces.clear();
+    finished.clear();
+    int processed = 0;
+    while (current.length > 0) {
+      final IntArrayList leftovers = new IntArrayList();
+      for (int i = 0; i < current.length; i++) {
+        if ((i & 0xFFFF) == 0) {
+          progress = Math.min((double) processed / n, 1d);
+          if (isCanceled.getAsBoolean()) {
+            return false;
+          }
+        }
+        processed++;
+
+        final int mobilogram = current[i];
+        int trace = rangeToTraceMap.get(avgMzs.get(mobilogram));
+        if (trace == DoubleRangeIntMap.NO_VALUE) {
+          trace = startNewTraceLimitMzRanges(avgMzs.get(mobilogram));
+        }
+        final int previous = traces.get(trace).keepBetterFittingMobilogram(mobilogram);
+        if (previous != -1) {
+          leftovers.add(previous);
+        }
+      }
+
+      for (int trace : rangeToTraceMap.values()) {
+        finished.add(trace);
+      }
+      rangeToTraceMap.clear();
+
+      if (leftovers.size() > recursiveThreshold) {
+        current = leftovers.toIntArray();
+        IntArrays.parallelQuickSort(current, byIntensity);
+      } else {
+        current = IntArrays.EMPTY_ARRAY;
+      }
+    }
+
+    progress = 1d;
+    return true;
+  }
+
+  /**
+   * Starts a new trace with the tolerance range around the m/z, limited by the ranges of existing
+   * traces.
+   *
+   * @return the index of the new trace
+   */
+  private int startNewTraceLimitMzRanges(double mz) {
+    final double absTolerance = tolerance.getMzToleranceForMass(mz);
+    double lower = mz - absTolerance;
+    // closed range, the map is closed-open
+    double upper = Math.nextUp(mz + absTolerance);
+
+    // the m/z is not within any range, so limiting the range always keeps it within [lower, upper)
+    boolean limited;
+    do {
+      limited = false;
+      final double lowerEntryUpper = rangeToTraceMap.getUpperEndpoint(lower);
+      if (!Double.isNaN(lowerEntryUpper)) {
+        lower = lowerEntryUpper;
+        limited = true;
+      }
+      final double upperEntryLower = rangeToTraceMap.getLowerEndpoint(Math.nextDown(upper));
+      if (!Double.isNaN(upperEntryLower)) {
+        upper = upperEntryLower;
+        limited = true;
+      }
+    } while (limited);
+
+    final int trace = traces.size();
+    traces.add(new Trace());
+    rangeToTraceMap.put(lower, upper, trace);
+    return trace;
+  }
+
+  public int getNumberOfTraces() {
+    return finished.size();
+  }
+
+  /**
+   * @param trace the trace index
+   * @return the mobilograms of this trace sorted by frame
+   */
+  public int[] getMobilograms(int trace) {
+    return traces.get(finished.getInt(trace)).mobilograms.toIntArray();
+  }
+
+  public double getFinishedPercentage() {
+    return progress;
+  }
+
+  /**
+   * A trace during {@link #buildTraces(BooleanSupplier)}. Holds the mobilogram indices sorted by
+   * frame, with at most one mobilogram per frame.
+   */
+  private class Trace {
+
+    private final IntArrayList mobilograms = new IntArrayList(4);
+    private double centerMz;
+
+    private void updateValues() {
+      centerMz = 0d;
+      double summedIntensity = 0d;
+      final int[] mobs = mobilograms.elements();
+      for (int i = 0; i < mobilograms.size(); i++) {
+        final double intensity = summedIntensities.get(mobs[i]);
+        centerMz += avgMzs.get(mobs[i]) * intensity;
+        summedIntensity += intensity;
+      }
+      centerMz /= summedIntensity;
+    }
+
+    /**
+     * Binary search on the frames of the mobilograms.
+     *
+     * @return the index of the mobilogram of this frame or (-(insertion point) - 1)
+     */
+    private int indexOfFrame(int frame) {
+      final int[] mobs = mobilograms.elements();
+      int low = 0;
+      int high = mobilograms.size() - 1;
+      while (low <= high) {
+        final int mid = (low + high) >>> 1;
+        final int midFrame = frameIndices.get(mobs[mid]);
+        if (midFrame < frame) {
+          low = mid + 1;
+        } else if (midFrame > frame) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -(low + 1);
+    }
+
+    /**
+     * Adds the mobilogram if there is no mobilogram of the same frame. Otherwise, a mobilogram that
+     * is closer to the center m/z replaces the current one, if its intensity fits better to the
+     * average intensity of the neighbouring mobilograms.
+     *
+     * @return the mobilogram that was not added or replaced, -1 if the mobilogram was added.
+     */
+    private int keepBetterFittingMobilogram(int mobilogram) {
+      final int frame = frameIndices.get(mobilogram);
+      final int index = indexOfFrame(frame);
+      if (index < 0) {
+        mobilograms.add(-index - 1, mobilogram);
+        updateValues();
+        return -1;
+      }
+
+      final int current = mobilograms.getInt(index);
+      final double currentDelta = Math.abs(centerMz - avgMzs.get(current));
+      final double proposedDelta = Math.abs(centerMz - avgMzs.get(mobilogram));
+      if (currentDelta > proposedDelta && index > 0 && index < mobilograms.size() - 1) {
+        final double ceilingIntensity = summedIntensities.get(mobilograms.getInt(index + 1));
+        final double floorIntensity = summedIntensities.get(mobilograms.getInt(index - 1));
+        final double avgIntensity = (ceilingIntensity + floorIntensity) / 2;
+
+        // only replace if the proposed intensity fits better
+        if (Math.abs(avgIntensity - summedIntensities.get(mobilogram)) < Math.abs(
+            avgIntensity - summedIntensities.get(current))) {
+          mobilograms.set(index, mobilogram);
+          updateValues();
+          return current;
+        }
+      }
+      return mobilogram;
+    }
+  }
+}
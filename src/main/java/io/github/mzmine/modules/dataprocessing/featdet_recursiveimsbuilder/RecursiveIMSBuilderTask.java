@@ -25,9 +25,6 @@
 
 package io.github.mzmine.modules.dataprocessing.featdet_recursiveimsbuilder;
 
-import com.google.common.collect.Range;
-import com.google.common.collect.RangeMap;
-import com.google.common.collect.TreeRangeMap;
 import io.github.mzmine.datamodel.Frame;
 import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.MZmineProject;
@@ -37,12 +34,13 @@ import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess.MobilityScanDataType;
 import io.github.mzmine.datamodel.data_access.MobilityScanDataAccess;
 import io.github.mzmine.datamodel.featuredata.IonMobilitySeries;
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.types.FeatureShapeMobilogramType;
-import io.github.mzmine.modules.dataprocessing.featdet_ionmobilitytracebuilder.RetentionTimeMobilityDataPoint;
+import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
@@ -53,26 +51,26 @@ import io.github.mzmine.util.FeatureConvertors;
 import io.github.mzmine.util.FeatureListUtils;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.exceptions.MissingMassListException;
-import io.github.mzmine.util.scans.SpectraMerging;
 import java.io.IOException;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import sun.misc.Unsafe;
@@ -82,6 +80,11 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
   private static final Logger logger = Logger.getLogger(RecursiveIMSBuilderTask.class.getName());
   private static final int RECURSIVE_THRESHOLD = 50;
   private static final int STEPS = 5;
+  /**
+   * Approximate heap of one frame data point in a worker: data access and builder buffers, the
+   * mobilogram indices and the output buffers.
+   */
+  private static final int BYTES_PER_FRAME_DATA_POINT = 80;
 
   private final IMSRawDataFile file;
   private final ParameterSet parameters;
@@ -96,6 +99,7 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
   private AtomicInteger stepProcessed = new AtomicInteger(0);
   private int stepTotal = 0;
   private int currentStep = 0;
+  private PrimitiveIMTraceBuilder traceBuilder;
 
   public RecursiveIMSBuilderTask(@Nullable MemoryMapStorage storage,
       @NotNull final IMSRawDataFile file,
@@ -155,6 +159,10 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
 
   @Override
   public double getFinishedPercentage() {
+    final PrimitiveIMTraceBuilder traceBuilder = this.traceBuilder;
+    if (currentStep == 1 && traceBuilder != null) {
+      return (traceBuilder.getFinishedPercentage() + currentStep) / STEPS;
+    }
     return ((stepProcessed.get() / (double) stepTotal) / STEPS + (currentStep / (double) STEPS));
   }
 
@@ -170,18 +178,17 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
     stepTotal = access.getNumberOfScans();
 
     // build mobilograms for all frames
-    final TreeSet<BuildingIonMobilitySeries> sortedMobilograms = buildFrameMobilograms(access);
-    if (isCanceled()) {
+    final StoredFrameMobilograms[] frameMobilograms = buildFrameMobilograms(
+        access.getEligibleFrames());
+    if (isCanceled() || frameMobilograms == null) {
       return;
     }
 
     // create ion traces from mobilograms
     currentStep++;
-    stepProcessed.set(0);
-    stepTotal = sortedMobilograms.size();
-    final List<TempIMTrace> ionMobilityTraces = createTempIMTraces(
-        sortedMobilograms, tolerance);
-    if (isCanceled()) {
+    final List<TempIMTrace> ionMobilityTraces = createTempIMTraces(frameMobilograms,
+        access.getEligibleFrames());
+    if (isCanceled() || ionMobilityTraces == null) {
       return;
     }
 
@@ -246,7 +253,7 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
     DataTypeUtils.addDefaultIonMobilityTypeColumns(flist);
     project.addFeatureList(flist);
 
-    final Unsafe theUnsafe = initUnsafe();
+    final Unsafe theUnsafe = MemoryMapStorage.getUnsafe();
     if (theUnsafe != null && tempStorage != null) {
       logger.finest(() -> "Clearing temporary files...");
       try {
@@ -387,183 +394,180 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
     );
   }
 
-  private TreeSet<BuildingIonMobilitySeries> buildFrameMobilograms(MobilityScanDataAccess access) {
-    Set<BuildingIonMobilitySeries> buildingTraces = new HashSet<>();
-    try {
+  /**
+   * Builds the mobilograms of all frames. Frames are independent and processed in parallel by
+   * workers that take the next frame until all are done. Each worker has its own data access and
+   * builder, as both keep buffers for the current frame. The number of workers is limited by the
+   * free heap. The mobilogram data is written to the (synchronized) temporary storage.
+   *
+   * @return the mobilograms of each eligible frame (null for frames without mobilograms) or null
+   * if canceled
+   */
+  @Nullable
+  private StoredFrameMobilograms[] buildFrameMobilograms(final List<Frame> eligibleFrames) {
+    final int numFrames = eligibleFrames.size();
+    final StoredFrameMobilograms[] frameMobilograms = new StoredFrameMobilograms[numFrames];
+    final int maxDataPoints = eligibleFrames.stream()
+        .mapToInt(Frame::getTotalMobilityScanMassListDataPoints).max().orElse(0);
+
+    // every worker keeps buffers for the largest frame, limit the workers to half of the free heap
+    final Runtime rt = Runtime.getRuntime();
+    final long freeHeap = rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+    final long bytesPerWorker = Math.max(1L, (long) maxDataPoints * BYTES_PER_FRAME_DATA_POINT);
+    final int numWorkers = (int) Math.max(1, Math.min(Math.min(numFrames,
+        MZmineCore.getConfiguration().getNumOfThreads()), freeHeap / 2 / bytesPerWorker));
+    logger.finest(() -> "Building mobilograms of %d frames on %d workers".formatted(numFrames,
+        numWorkers));
+
+    final AtomicInteger nextFrame = new AtomicInteger(0);
+    IntStream.range(0, numWorkers).parallel()
+        .forEach(worker -> buildMobilograms(nextFrame, maxDataPoints, frameMobilograms));
+    return isCanceled() ? null : frameMobilograms;
+  }
 
-      while (access.hasNextFrame()) {
+  /**
+   * Builds the mobilograms of the next frame until all eligible frames are processed. The buffers
+   * of the data access and the builder are reused for all frames of this worker.
+   *
+   * @param nextFrame     index of the next eligible frame to process, shared by all workers
+   * @param maxDataPoints the maximum number of data points in a frame
+   */
+  private void buildMobilograms(final AtomicInteger nextFrame, final int maxDataPoints,
+      final StoredFrameMobilograms[] frameMobilograms) {
+    final MobilityScanDataAccess access = EfficientDataAccess.of(file,
+        MobilityScanDataType.CENTROID, scanSelection);
+    final FrameMobilogramBuilder builder = new FrameMobilogramBuilder(tolerance,
+        getRecursiveThreshold(), maxDataPoints);
+    try {
+      for (int i = nextFrame.getAndIncrement(); i < frameMobilograms.length;
+          i = nextFrame.getAndIncrement()) {
         if (isCanceled()) {
-          return null;
+          return;
         }
 
-        final Frame frame = access.nextFrame();
-
-        final TreeSet<RetentionTimeMobilityDataPoint> dps = new TreeSet<>(
-            (o1, o2) -> {
-              if (o1.getIntensity() > o2.getIntensity()) {
-                return -1;
-              }
-              return 1;
-            });
+        access.jumpToFrameIndex(i);
         // get all datapoints
         while (access.hasNextMobilityScan()) {
-          final MobilityScan currentMobilityScan = access.nextMobilityScan();
-          for (int i = 0; i < access.getNumberOfDataPoints(); i++) {
-            dps.add(new RetentionTimeMobilityDataPoint(currentMobilityScan, access.getMzValue(i),
-                access.getIntensityValue(i)));
+          final int mobilityScanNumber = access.nextMobilityScan().getMobilityScanNumber();
+          for (int j = 0; j < access.getNumberOfDataPoints(); j++) {
+            builder.addDataPoint(access.getMzValue(j), access.getIntensityValue(j),
+                mobilityScanNumber);
           }
         }
 
-        final Set<TempMobilogram> mobilogramMap = calcMobilograms(dps, tolerance);
-        final List<BuildingIonMobilitySeries> storedTraces = storeBuldingMobilograms(mobilogramMap);
-        buildingTraces.addAll(storedTraces);
-
+        frameMobilograms[i] = builder.buildMobilograms(tempStorage);
         stepProcessed.getAndIncrement();
       }
     } catch (MissingMassListException e) {
-      e.printStackTrace();
+      logger.log(Level.WARNING, e.getMessage(), e);
     }
-
-    // now sort chromatograms like the adap builder
-    logger.finest(() -> "Sorting mobilograms");
-    final TreeSet<BuildingIonMobilitySeries> sortedMobilograms = new TreeSet<>(
-        (o1, o2) -> {
-          if (o1.getSummedIntensity() > o2.getSummedIntensity()) {
-            return -1;
-          }
-          return 1;
-        });
-    sortedMobilograms.addAll(buildingTraces);
-
-    logger.finest(() -> "Mobilograms sorted");
-
-    return sortedMobilograms;
   }
 
-  @NotNull
-  private Set<TempMobilogram> calcMobilograms(Collection<RetentionTimeMobilityDataPoint> dps,
-      final MZTolerance tolerance) {
-    final RangeMap<Double, TempMobilogram> map = TreeRangeMap.create();
-    Set<RetentionTimeMobilityDataPoint> leftoverDataPoints = new TreeSet<>((o1, o2) -> {
-      if (o1.getIntensity() > o2.getIntensity()) {
-        return -1;
-      }
-      return 1;
-    });
-
-    for (final var dp : dps) {
-      TempMobilogram mobilogram = map.get(dp.getMZ());
-      if (mobilogram == null) {
-        final Range<Double> proposed = tolerance.getToleranceRange(dp.getMZ());
-        final Range<Double> actual = SpectraMerging.createNewNonOverlappingRange(map, proposed);
-        if (proposed.equals(actual)) {
-          mobilogram = new TempMobilogram();
-          map.put(actual, mobilogram);
-        } else {
-          leftoverDataPoints.add(dp);
-          continue;
-        }
-      }
-      final RetentionTimeMobilityDataPoint previousDp = mobilogram.keepBetterFittingDataPoint(dp);
-      if (previousDp != null) {
-        leftoverDataPoints.add(previousDp);
-      }
-    }
-
-    Set<TempMobilogram> mobilograms = new HashSet<>(map.asMapOfRanges().values());
-
-    if (!leftoverDataPoints.isEmpty()) {
-      if (enableRecursive && leftoverDataPoints.size() > RECURSIVE_THRESHOLD) {
-        Set<TempMobilogram> recursiveMobilograms = calcMobilograms(leftoverDataPoints, tolerance);
-//        logger.finest(() -> "Created additional " + recursiveMobilograms.size()
-//            + " mobilograms recursively from " + leftoverDataPoints.size() + " datapoints. "
-//            + leftoverDataPoints.stream().findFirst().get().getMobilityScan().getFrame()
-//            .getFrameId());
-        mobilograms.addAll(recursiveMobilograms);
-      }
+  /**
+   * Creates ion mobility traces from the mobilograms of all frames. Traces are built on the
+   * primitive values of the mobilograms. Only traces that have enough data points and mobilograms
+   * to pass the noise filter are converted to {@link TempIMTrace}s.
+   *
+   * @param frameMobilograms the mobilograms of each eligible frame
+   * @param eligibleFrames   the eligible frames
+   * @return the traces or null if canceled
+   */
+  @Nullable
+  private List<TempIMTrace> createTempIMTraces(final StoredFrameMobilograms[] frameMobilograms,
+      final List<Frame> eligibleFrames) {
+    final int numFrames = frameMobilograms.length;
+    final int[] firstMobilogram = new int[numFrames + 1];
+    for (int i = 0; i < numFrames; i++) {
+      firstMobilogram[i + 1] = firstMobilogram[i] + (frameMobilograms[i] == null ? 0
+          : frameMobilograms[i].getNumberOfMobilograms());
     }
-    return mobilograms;
-  }
 
-  private List<BuildingIonMobilitySeries> storeBuldingMobilograms(
-      final Set<TempMobilogram> traces) {
-    List<BuildingIonMobilitySeries> storedTraces = new ArrayList<>(traces.size());
-    for (TempMobilogram trace : traces) {
-      final BuildingIonMobilitySeries building = trace.toBuildingSeries(tempStorage);
-      storedTraces.add(building);
+    // the values of all mobilograms are copied to the temporary storage one after another, so only
+    // the traces are kept on the heap while they are built
+    final int numMobilograms = firstMobilogram[numFrames];
+    final DoubleBuffer avgMzs = storeMobilogramValues(frameMobilograms, firstMobilogram,
+        StoredFrameMobilograms::avgMzs);
+    final DoubleBuffer summedIntensities = storeMobilogramValues(frameMobilograms,
+        firstMobilogram, StoredFrameMobilograms::summedIntensities);
+    final IntBuffer frameIndices = storeFrameIndices(firstMobilogram);
+
+    final PrimitiveIMTraceBuilder builder = new PrimitiveIMTraceBuilder(tolerance,
+        getRecursiveThreshold(), avgMzs, summedIntensities, frameIndices);
+    traceBuilder = builder;
+    if (!builder.buildTraces(this::isCanceled)) {
+      return null;
     }
-    return storedTraces;
-  }
-
-  @Nullable
-  private List<TempIMTrace> createTempIMTraces(
-      Collection<BuildingIonMobilitySeries> ionMobilitySeries, MZTolerance tolerance) {
-    final RangeMap<Double, TempIMTrace> map = TreeRangeMap.create();
-    Set<BuildingIonMobilitySeries> leftoverMobilograms = new HashSet<>();
-    for (final var mobilogram : ionMobilitySeries) {
+    final int numTraces = builder.getNumberOfTraces();
+    logger.finest(() -> "Created " + numTraces + " traces from " + numMobilograms + " mobilograms");
+
+    // mobility scans are created on every call, reuse them for all mobilograms of a frame
+    final List<List<MobilityScan>> mobilityScans = new ArrayList<>(
+        Collections.nCopies(numFrames, null));
+    final List<TempIMTrace> traces = new ArrayList<>();
+    for (int t = 0; t < numTraces; t++) {
       if (isCanceled()) {
         return null;
       }
 
-      TempIMTrace trace = map.get(mobilogram.getAvgMZ());
-      if (trace == null) {
-        final Range<Double> mzRange = SpectraMerging
-            .createNewNonOverlappingRange(map, tolerance.getToleranceRange(mobilogram.getAvgMZ()));
-        trace = new TempIMTrace();
-        map.put(mzRange, trace);
+      final int[] mobilograms = builder.getMobilograms(t);
+      int numDp = 0;
+      for (final int mobilogram : mobilograms) {
+        final int frame = frameIndices.get(mobilogram);
+        numDp += frameMobilograms[frame].getNumberOfValues(mobilogram - firstMobilogram[frame]);
       }
-      final BuildingIonMobilitySeries previousDp = trace.keepBetterFittingDataPoint(mobilogram);
-      if (previousDp != null) {
-        leftoverMobilograms.add(previousDp);
+      // same as the first check in checkConsecutiveRemoveNoise
+      if (numDp < numDataPoints || mobilograms.length < numConsecutiveFrames) {
+        continue;
       }
 
-      stepProcessed.getAndIncrement();
-    }
-
-    List<TempIMTrace> traces = new ArrayList<>(map.asMapOfRanges().values());
-
-    if (!leftoverMobilograms.isEmpty()) {
-      logger.finest(() -> leftoverMobilograms.size() + "/" + ionMobilitySeries.size()
-          + " leftover mobilograms");
-      if (enableRecursive && leftoverMobilograms.size() > RECURSIVE_THRESHOLD) {
-        List<TempIMTrace> recursiveTraces = createTempIMTraces(leftoverMobilograms, tolerance);
-        if (recursiveTraces != null) {
-          logger.finest(() -> "Created additional " + recursiveTraces.size()
-              + " traces recursively from " + leftoverMobilograms.size() + " mobilograms.");
-          traces.addAll(recursiveTraces);
+      final List<BuildingIonMobilitySeries> series = new ArrayList<>(mobilograms.length);
+      for (final int mobilogram : mobilograms) {
+        final int frame = frameIndices.get(mobilogram);
+        if (mobilityScans.get(frame) == null) {
+          mobilityScans.set(frame, eligibleFrames.get(frame).getMobilityScans());
         }
+        series.add(frameMobilograms[frame].toBuildingSeries(mobilogram - firstMobilogram[frame],
+            mobilityScans.get(frame), tempStorage));
       }
+      final TempIMTrace trace = new TempIMTrace();
+      trace.addMobilograms(series);
+      traces.add(trace);
     }
 
     return traces;
   }
 
+  /**
+   * @param firstMobilogram index of the first mobilogram of each frame and the total number of
+   *                        mobilograms at the end
+   * @param values          the values of the mobilograms of a frame
+   * @return the values of all mobilograms in the temporary storage
+   */
+  private DoubleBuffer storeMobilogramValues(final StoredFrameMobilograms[] frameMobilograms,
+      final int[] firstMobilogram, final Function<StoredFrameMobilograms, DoubleBuffer> values) {
+    final double[] allValues = new double[firstMobilogram[frameMobilograms.length]];
+    for (int i = 0; i < frameMobilograms.length; i++) {
+      if (frameMobilograms[i] != null) {
+        values.apply(frameMobilograms[i]).get(0, allValues, firstMobilogram[i],
+            frameMobilograms[i].getNumberOfMobilograms());
+      }
+    }
+    return StorageUtils.storeValuesToDoubleBuffer(tempStorage, allValues);
+  }
 
   /**
-   * Taken from https://stackoverflow.com/a/48821002
-   *
-   * @return Instance {@link Unsafe} or null.
-   * @author https://github.com/SteffenHeu
+   * @return the frame index of all mobilograms in the temporary storage
    */
-  @Nullable
-  private Unsafe initUnsafe() {
-    try {
-      Class unsafeClass = Class.forName("sun.misc.Unsafe");
-//      unsafeClass = Class.forName("jdk.internal.misc.Unsafe");
-      Method clean = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
-      clean.setAccessible(true);
-      Field theUnsafeField = unsafeClass.getDeclaredField("theUnsafe");
-      theUnsafeField.setAccessible(true);
-      Object theUnsafe = theUnsafeField.get(null);
-
-      return (Unsafe) theUnsafe;
-
-    } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException |
-        NoSuchFieldException | ClassCastException e) {
-      // jdk.internal.misc.Unsafe doesn't yet have an invokeCleaner() method,
-      // but that method should be added if sun.misc.Unsafe is removed.
-      e.printStackTrace();
+  private IntBuffer storeFrameIndices(final int[] firstMobilogram) {
+    final int numFrames = firstMobilogram.length - 1;
+    final int[] frameIndices = new int[firstMobilogram[numFrames]];
+    for (int i = 0; i < numFrames; i++) {
+      Arrays.fill(frameIndices, firstMobilogram[i], firstMobilogram[i + 1], i);
     }
-    return null;
+    return StorageUtils.storeValuesToIntBuffer(tempStorage, frameIndices);
+  }
+
+  private int getRecursiveThreshold() {
+    return enableRecursive ? RECURSIVE_THRESHOLD : Integer.MAX_VALUE;
   }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_recursiveimsbuilder;
+
+import io.github.mzmine.datamodel.MobilityScan;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The mobilograms of a single frame, as created by the {@link FrameMobilogramBuilder}. The values
+ * of all mobilograms are stored consecutively, the values of the mobilogram i are in the range
+ * [offsets[i], offsets[i+1]).
+ *
+ * @param offsets             start of each mobilogram and the total number of values at the end
+ * @param avgMzs              the intensity weighted average m/z of each mobilogram
+ * @param summedIntensities   the summed intensity of each mobilogram
+ * @param mzs                 the m/z values of all mobilograms
+ * @param intensities         the intensity values of all mobilograms
+ * @param mobilityScanNumbers the mobility scan numbers of all values
+ * @author https://github.com/mzmine
+ */
+public record StoredFrameMobilograms(@NotNull int[] offsets, @NotNull DoubleBuffer avgMzs,
+                                     @NotNull DoubleBuffer summedIntensities,
+                                     @NotNull DoubleBuffer mzs, @NotNull DoubleBuffer intensities,
+                                     @NotNull IntBuffer mobilityScanNumbers) {
+
+  public int getNumberOfMobilograms() {
+    return offsets.length - 1;
+  }
+
+  public int getNumberOfValues(int mobilogram) {
+    return offsets[mobilogram + 1] - offsets[mobilogram];
+  }
+
+  /**
+   * @param mobilogram    the index of the mobilogram in this frame
+   * @param mobilityScans all mobility scans of the frame
+   * @param storage       the storage for the series or null
+   * @return a new series of the mobilogram
+   */
+  public BuildingIonMobilitySeries toBuildingSeries(int mobilogram,
+      @NotNull List<MobilityScan> mobilityScans, @Nullable MemoryMapStorage storage) {
+    final int start = offsets[mobilogram];
+    final int numValues = getNumberOfValues(mobilogram);
+    final double[] mzValues = new double[numValues];
+    final double[] intensityValues = new double[numValues];
+    final List<MobilityScan> scans = new ArrayList<>(numValues);
+    mzs.get(start, mzValues, 0, numValues);
+    intensities.get(start, intensityValues, 0, numValues);
+    for (int i = 0; i < numValues; i++) {
+      scans.add(mobilityScans.get(mobilityScanNumbers.get(start + i)));
+    }
+    return new BuildingIonMobilitySeries(storage, mzValues, intensityValues, scans);
+  }
+}
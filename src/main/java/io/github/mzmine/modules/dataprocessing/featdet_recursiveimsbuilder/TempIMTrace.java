@@ -60,6 +60,19 @@ public class TempIMTrace {
     return currentValue;
   }
 
+  /**
+   * Adds all mobilograms of a trace that was built by the {@link PrimitiveIMTraceBuilder}. Does not
+   * check for duplicate frames.
+   *
+   * @param mobilograms the mobilograms, at most one per frame
+   */
+  void addMobilograms(Collection<BuildingIonMobilitySeries> mobilograms) {
+    for (BuildingIonMobilitySeries mobilogram : mobilograms) {
+      this.mobilograms.put(mobilogram.getFrame().getFrameId(), mobilogram);
+    }
+    updateValues();
+  }
+
   /**
    * @param mobilogram
    * @return The replaced data point
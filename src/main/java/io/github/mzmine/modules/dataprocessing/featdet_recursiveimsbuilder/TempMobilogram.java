@@ -25,133 +25,93 @@
 
 package io.github.mzmine.modules.dataprocessing.featdet_recursiveimsbuilder;
 
-import io.github.mzmine.datamodel.MobilityScan;
-import io.github.mzmine.modules.dataprocessing.featdet_ionmobilitytracebuilder.RetentionTimeMobilityDataPoint;
-import io.github.mzmine.util.MemoryMapStorage;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.TreeMap;
-import java.util.logging.Logger;
-import org.jetbrains.annotations.Nullable;
-
-public class TempMobilogram {
-
-  private static Logger logger = Logger.getLogger(TempMobilogram.class.getName());
+import it.unimi.dsi.fastutil.doubles.DoubleArrays;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+/**
+ * A mobilogram during {@link FrameMobilogramBuilder#buildMobilograms}. Holds the indices of its
+ * data points in the arrays of the builder, sorted by mobility scan number, with at most one data
+ * point per mobility scan.
+ */
+class TempMobilogram {
 
-  protected final TreeMap<Integer, RetentionTimeMobilityDataPoint> datapoints = new TreeMap<>();
-  protected double lowestMz = Double.MAX_VALUE;
-  protected double highestMz = Double.MIN_VALUE;
+  // sorted mobility scan numbers and the respective data point indices
+  protected final IntArrayList scanNumbers = new IntArrayList();
+  protected final IntArrayList dataPoints = new IntArrayList();
   protected double centerMz;
 
-  public TempMobilogram() {
-
-  }
-
+  private double[] mzs = DoubleArrays.EMPTY_ARRAY;
+  private double[] intensities = DoubleArrays.EMPTY_ARRAY;
+  private int[] dataPointScanNumbers = IntArrays.EMPTY_ARRAY;
 
-  /**
-   * Adds a data point if no data point of the same scan number is contained in this trace.
-   *
-   * @param dp
-   * @return
-   */
-  public RetentionTimeMobilityDataPoint tryToAddDataPoint(RetentionTimeMobilityDataPoint dp) {
-    var currentValue = datapoints.putIfAbsent(dp.getMobilityScan().getMobilityScanNumber(), dp);
-    if (currentValue == null) {
-      updateValues();
-    }
-    return currentValue;
+  TempMobilogram() {
   }
 
   /**
-   * @param dp
-   * @return The replaced data point
+   * Clears this mobilogram for reuse.
    */
-  public RetentionTimeMobilityDataPoint replaceDataPoint(RetentionTimeMobilityDataPoint dp) {
-
-    final RetentionTimeMobilityDataPoint replaced = datapoints
-        .put(dp.getMobilityScan().getMobilityScanNumber(), dp);
-    if (replaced == null) {
-      logger.fine(() -> "Data point did not replace another data point");
-    }
-    updateValues();
-    return replaced;
-  }
-
-  public double getLowestMz() {
-    return lowestMz;
-  }
-
-  public void setLowestMz(double lowestMz) {
-    this.lowestMz = lowestMz;
-  }
-
-  public double getHighestMz() {
-    return highestMz;
+  void reset(double[] mzs, double[] intensities, int[] dataPointScanNumbers) {
+    this.mzs = mzs;
+    this.intensities = intensities;
+    this.dataPointScanNumbers = dataPointScanNumbers;
+    scanNumbers.clear();
+    dataPoints.clear();
+    centerMz = 0d;
   }
 
-  public void setHighestMz(double highestMz) {
-    this.highestMz = highestMz;
+  int size() {
+    return dataPoints.size();
   }
 
   private void updateValues() {
     centerMz = 0d;
     double summedIntensities = 0d;
-    for (RetentionTimeMobilityDataPoint value : datapoints.values()) {
-      final double intensity = value.getIntensity();
-      final double mz = value.getMZ();
-
-      if (mz > highestMz) {
-        highestMz = mz;
-      }
-      if (mz < lowestMz) {
-        lowestMz = mz;
-      }
-
-      centerMz += mz * intensity;
+    final int[] dps = dataPoints.elements();
+    for (int i = 0; i < dataPoints.size(); i++) {
+      final double intensity = intensities[dps[i]];
+      centerMz += mzs[dps[i]] * intensity;
       summedIntensities += intensity;
     }
     centerMz /= summedIntensities;
   }
 
-  public RetentionTimeMobilityDataPoint keepBetterFittingDataPoint(
-      RetentionTimeMobilityDataPoint dp) {
-    final RetentionTimeMobilityDataPoint current = tryToAddDataPoint(dp);
-    if (current == null) {
-      return null;
+  /**
+   * Adds the data point if there is no data point of the same mobility scan. Otherwise, the data
+   * point that is closer to the center m/z is kept. A closer data point only replaces the current
+   * one if its intensity fits better to the average intensity of the neighbouring data points.
+   *
+   * @param dp the data point index
+   * @return the data point that was not added or replaced, -1 if the data point was added.
+   */
+  int keepBetterFittingDataPoint(int dp) {
+    final int scanNumber = dataPointScanNumbers[dp];
+    final int index = IntArrays.binarySearch(scanNumbers.elements(), 0, scanNumbers.size(),
+        scanNumber);
+    if (index < 0) {
+      scanNumbers.add(-index - 1, scanNumber);
+      dataPoints.add(-index - 1, dp);
+      updateValues();
+      return -1;
     }
 
-    final double currentDelta = Math.abs(centerMz - current.getMZ());
-    final double proposedDelta = Math.abs(centerMz - dp.getMZ());
+    final int current = dataPoints.getInt(index);
+    final double currentDelta = Math.abs(centerMz - mzs[current]);
+    final double proposedDelta = Math.abs(centerMz - mzs[dp]);
     if (currentDelta < proposedDelta) {
       return dp;
     }
-    var ceilingEntry = datapoints.ceilingEntry(dp.getMobilityScan().getMobilityScanNumber() + 1);
-    var floorEntry = datapoints.floorEntry(dp.getMobilityScan().getMobilityScanNumber() - 1);
-    if (ceilingEntry != null && floorEntry != null) {
-      final double ceilingIntensity = ceilingEntry.getValue().getIntensity();
-      final double floorIntensity = floorEntry.getValue().getIntensity();
+    if (index > 0 && index < dataPoints.size() - 1) {
+      final double ceilingIntensity = intensities[dataPoints.getInt(index + 1)];
+      final double floorIntensity = intensities[dataPoints.getInt(index - 1)];
       final double avg = (ceilingIntensity + floorIntensity) / 2;
-      if (Math.abs(avg - dp.getIntensity()) < Math.abs(avg - current.getIntensity())) {
-        return replaceDataPoint(dp);
+      if (Math.abs(avg - intensities[dp]) < Math.abs(avg - intensities[current])) {
+        dataPoints.set(index, dp);
+        updateValues();
+        return current;
       }
     }
 
     return dp;
   }
-
-  public BuildingIonMobilitySeries toBuildingSeries(@Nullable MemoryMapStorage storage) {
-    final int numValues = datapoints.size();
-    double[] mzs = new double[numValues];
-    double[] intensities = new double[numValues];
-    List<MobilityScan> scans = new ArrayList<>();
-
-    int i = 0;
-    for (RetentionTimeMobilityDataPoint value : datapoints.values()) {
-      mzs[i] = value.getMZ();
-      intensities[i] = value.getIntensity();
-      scans.add(value.getMobilityScan());
-      i++;
-    }
-    return new BuildingIonMobilitySeries(storage, mzs, intensities, scans);
-  }
 }
@@ -29,6 +29,7 @@ import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.modules.MZmineModuleCategory;
 import io.github.mzmine.modules.MZmineProcessingModule;
+import io.github.mzmine.modules.batchmode.BatchStepScope;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.util.ExitCode;
@@ -81,4 +82,10 @@ public class SmoothingModule implements MZmineProcessingModule {
   public MZmineModuleCategory getModuleCategory() {
     return MZmineModuleCategory.FEATURE_RESOLVING;
   }
+
+  @NotNull
+  @Override
+  public BatchStepScope getBatchStepScope() {
+    return BatchStepScope.PER_FILE;
+  }
 }
@@ -45,6 +45,7 @@ import io.github.mzmine.datamodel.features.compoundannotations.CompoundDBAnnotat
 import io.github.mzmine.datamodel.features.types.numbers.MzPpmDifferenceType;
 import io.github.mzmine.datamodel.features.types.numbers.RtRelativeErrorType;
 import io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.Gap;
+import io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.GapScanDispatcher;
 import io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.multithreaded.ImsGap;
 import io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionidnetworking.IonNetworkLibrary;
 import io.github.mzmine.parameters.ParameterSet;
@@ -245,9 +246,12 @@ class TargetedFeatureDetectionModuleTask extends AbstractTask {
   }
 
   private boolean processImsFile(List<? extends Gap> gaps, IMSRawDataFile imsFile) {
+    final List<Frame> frames = (List<Frame>) processedFeatureList.getSeletedScans(imsFile);
     final MobilityScanDataAccess access = new MobilityScanDataAccess(imsFile,
-        MobilityScanDataType.CENTROID, (List<Frame>) processedFeatureList.getSeletedScans(imsFile));
+        MobilityScanDataType.CENTROID, frames);
     List<ImsGap> imsGaps = (List<ImsGap>) gaps;
+    // only offer frames to gaps with a matching RT range
+    final GapScanDispatcher<ImsGap> dispatcher = new GapScanDispatcher<>(imsGaps, frames);
 
     while (access.hasNextFrame()) {
       if (isCanceled()) {
@@ -255,10 +259,10 @@ class TargetedFeatureDetectionModuleTask extends AbstractTask {
       }
 
       final Frame frame = access.nextFrame();
-      for (ImsGap gap : imsGaps) {
+      dispatcher.forEachGapInRange(frame.getRetentionTime(), gap -> {
         access.resetMobilityScan();
         gap.offerNextScan(access);
-      }
+      });
       processedScans++;
     }
 
@@ -274,6 +278,8 @@ class TargetedFeatureDetectionModuleTask extends AbstractTask {
   private boolean processLcmsFile(List<Gap> gaps) {
     final ScanDataAccess access = EfficientDataAccess.of(dataFile, ScanDataType.CENTROID,
         matchingScans);
+    // only offer scans to gaps with a matching RT range
+    final GapScanDispatcher<Gap> dispatcher = new GapScanDispatcher<>(gaps, matchingScans);
 
     while (access.hasNextScan()) {
       access.nextScan();
@@ -282,10 +288,8 @@ class TargetedFeatureDetectionModuleTask extends AbstractTask {
         return false;
       }
 
-      // Feed this scan to all gaps
-      for (Gap gap : gaps) {
-        gap.offerNextScan(access);
-      }
+      // Feed this scan to all gaps in RT range
+      dispatcher.forEachGapInRange(access.getRetentionTime(), gap -> gap.offerNextScan(access));
 
       processedScans++;
     }
@@ -27,6 +27,11 @@ package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection;
 
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.AsymmetryCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.JavaAsymmetryCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.JavaLocMinLoessCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.JavaPeakDetectionCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.JavaRollingBallCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.JavaRubberBandCorrector;
 import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.LocMinLoessCorrector;
 import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.PeakDetectionCorrector;
 import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.RollingBallCorrector;
@@ -88,9 +93,12 @@ public class BaselineCorrectionParameters extends SimpleParameterSet {
                                     // http://cran.r-project.org/web/packages/baseline/baseline.pdf)
       new RubberBandCorrector(), // (Package R "hyperSpec" -
                                  // http://cran.r-project.org/web/packages/hyperSpec/vignettes/baseline.pdf)
-      new LocMinLoessCorrector() // (Package R/Bioc. "PROcess" -
-                                 // http://bioconductor.org/packages/release/bioc/manuals/PROcess/man/PROcess.pdf)
-  };
+      new LocMinLoessCorrector(), // (Package R/Bioc. "PROcess" -
+                                  // http://bioconductor.org/packages/release/bioc/manuals/PROcess/man/PROcess.pdf)
+      // Java implementations of the same methods, no R needed
+      new JavaAsymmetryCorrector(), new JavaRollingBallCorrector(),
+      new JavaPeakDetectionCorrector(), new JavaRubberBandCorrector(),
+      new JavaLocMinLoessCorrector()};
 
   public static final ModuleComboParameter<BaselineCorrector> BASELINE_CORRECTORS =
       new ModuleComboParameter<BaselineCorrector>("Correction method",
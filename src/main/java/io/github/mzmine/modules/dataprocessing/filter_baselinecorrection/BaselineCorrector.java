@@ -29,6 +29,7 @@ import io.github.mzmine.util.MemoryMapStorage;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.RawDataFile;
@@ -113,7 +114,7 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
       final RawDataFile dataFile, final ParameterSet parameters,
       final ParameterSet commonParameters, @Nullable MemoryMapStorage storage) throws IOException, RSessionWrapperException {
 
-    if (isAborted(dataFile) || !rSession.isSessionRunning())
+    if (isAborted(dataFile) || (getRequiresR() && !rSession.isSessionRunning()))
       return null;
     // Get very last information from root module setup
     // this.setGeneralParameters(MZmineCore.getConfiguration().getModuleParameters(BaselineCorrectionModule.class));
@@ -251,11 +252,7 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
     // Calculate baselines: done in-place, i.e. overwrite chromatograms to
     // save memory.
     logger.finest("Calculating baselines.");
-    for (int binIndex = 0; !isAborted(origDataFile) && binIndex < numBins; binIndex++) {
-      baseChrom[binIndex] =
-          computeBaseline(rSession, origDataFile, baseChrom[binIndex], parameters);
-      progressMap.get(origDataFile)[0]++;
-    }
+    computeBaselines(rSession, origDataFile, baseChrom, parameters, baseChrom);
 
     // Subtract baselines.
     logger.finest("Subtracting baselines.");
@@ -299,15 +296,14 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
     logger.finest("Building TIC chromatograms.");
     final double[][] baseChrom = buildTICChromatograms(origDataFile, level, numBins);
 
-    // Calculate baselines: done in-place, i.e. overwrite chromatograms to
-    // save memory.
+    // Calculate baselines.
     logger.finest("Calculating baselines.");
-    for (int binIndex = 0; !isAborted(origDataFile) && binIndex < numBins; binIndex++) {
+    final double[][] baselines = new double[numBins][];
+    computeBaselines(rSession, origDataFile, baseChrom, parameters, baselines);
 
-      // Calculate baseline.
-      // final double[] baseline = asymBaseline(baseChrom[binIndex]);
-      final double[] baseline =
-          computeBaseline(rSession, origDataFile, baseChrom[binIndex], parameters);
+    // Normalize the baselines: done in-place, i.e. overwrite chromatograms.
+    for (int binIndex = 0; !isAborted(origDataFile) && binIndex < numBins; binIndex++) {
+      final double[] baseline = baselines[binIndex];
 
       // Normalize the baseline w.r.t. chromatogram (TIC).
       for (int scanIndex = 0; !isAborted(origDataFile) && scanIndex < numScans; scanIndex++) {
@@ -316,7 +312,6 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
           baseChrom[binIndex][scanIndex] = baseline[scanIndex] / bc;
         }
       }
-      progressMap.get(origDataFile)[0]++;
     }
 
     // Subtract baselines.
@@ -339,6 +334,42 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
 
   }
 
+  /**
+   * Calculates the baselines of all chromatograms (m/z bins). Correctors that need R calculate one
+   * baseline after the other in the R session, {@link JavaBaselineCorrector}s calculate all
+   * baselines in parallel.
+   *
+   * @param origDataFile dataFile of concern.
+   * @param chromatograms the chromatograms as double[number of bins][number of scans].
+   * @param parameters parameters specific to the actual method for baseline computing.
+   * @param baselines the target for the baselines, may be chromatograms to calculate in-place.
+   * @throws RSessionWrapperException
+   */
+  private void computeBaselines(final RSessionWrapper rSession, final RawDataFile origDataFile,
+      final double[][] chromatograms, final ParameterSet parameters, final double[][] baselines)
+      throws RSessionWrapperException {
+    final int[] progress = progressMap.get(origDataFile);
+
+    if (this instanceof JavaBaselineCorrector javaCorrector) {
+      IntStream.range(0, chromatograms.length).parallel().forEach(binIndex -> {
+        if (!isAborted(origDataFile)) {
+          baselines[binIndex] = javaCorrector.computeBaseline(chromatograms[binIndex], parameters);
+          synchronized (progress) {
+            progress[0]++;
+          }
+        }
+      });
+      return;
+    }
+
+    for (int binIndex = 0; !isAborted(origDataFile) && binIndex < chromatograms.length;
+        binIndex++) {
+      baselines[binIndex] =
+          computeBaseline(rSession, origDataFile, chromatograms[binIndex], parameters);
+      progress[0]++;
+    }
+  }
+
   /**
    * Constructs base peak (max) chromatograms - one for each m/z bin.
    *
@@ -544,6 +575,13 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
     progressMap.remove(origDataFile);
   }
 
+  /**
+   * @return true if the baselines are calculated in an R session
+   */
+  public boolean getRequiresR() {
+    return true;
+  }
+
   public REngineType getRengineType() {
     return this.rEgineType;
   }
@@ -206,10 +206,12 @@ public class BaselineCorrectorSetupDialog extends ParameterSetupDialogWithChroma
 
         // Check R availability, by trying to open the connection
         try {
-          String[] reqPackages = baselineCorrector.getRequiredRPackages();
-          this.rSession = new RSessionWrapper(baselineCorrector.getRengineType(),
-              baselineCorrector.getName(), reqPackages, null);
-          this.rSession.open();
+          if (baselineCorrector.getRequiresR()) {
+            String[] reqPackages = baselineCorrector.getRequiredRPackages();
+            this.rSession = new RSessionWrapper(baselineCorrector.getRengineType(),
+                baselineCorrector.getName(), reqPackages, null);
+            this.rSession.open();
+          }
         } catch (RSessionWrapperException e) {
           errorMsg = e.getMessage();
           updateStatus(TaskStatus.ERROR);
@@ -261,7 +263,7 @@ public class BaselineCorrectorSetupDialog extends ParameterSetupDialogWithChroma
 
         // Turn off R instance.
         try {
-          if (!this.userCanceled)
+          if (!this.userCanceled && this.rSession != null)
             this.rSession.close(false);
         } catch (RSessionWrapperException e) {
           if (!this.userCanceled) {
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.util.R.RSessionWrapper;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * @description Base class for baseline correctors implemented in Java. No R session is needed and
+ *              the baselines of all chromatograms (m/z bins) are calculated in parallel. Therefore,
+ *              implementations need to be stateless.
+ *
+ */
+public abstract class JavaBaselineCorrector extends BaselineCorrector {
+
+  @Override
+  public String[] getRequiredRPackages() {
+    return new String[0];
+  }
+
+  @Override
+  public boolean getRequiresR() {
+    return false;
+  }
+
+  @Override
+  public final double[] computeBaseline(@Nullable final RSessionWrapper rSession,
+      final RawDataFile origDataFile, final double[] chromatogram, ParameterSet parameters) {
+    return computeBaseline(chromatogram, parameters);
+  }
+
+  /**
+   * Returns a baseline for correcting the given chromatogram. Called concurrently for different
+   * chromatograms.
+   *
+   * @param chromatogram the intensities, one value per scan. Must not be changed.
+   * @param parameters   the parameters of this corrector
+   * @return the baseline, one value per scan
+   */
+  public abstract double[] computeBaseline(final double[] chromatogram, ParameterSet parameters);
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors;
+
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.JavaBaselineCorrector;
+import io.github.mzmine.parameters.ParameterSet;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * @description Asymmetric baseline corrector implemented in Java. Estimates a trend based on
+ *              asymmetric least squares, following "asysm" from the "ptw" R-package
+ *              (http://cran.r-project.org/web/packages/ptw/ptw.pdf): A Whittaker smoother with
+ *              second order differences is fitted repeatedly, with weight p for points above the
+ *              trend and 1-p for points below it, until the weights do not change anymore.
+ *
+ */
+public class JavaAsymmetryCorrector extends JavaBaselineCorrector {
+
+  // same as in ptw
+  private static final int MAX_ITERATIONS = 25;
+
+  @Override
+  public double[] computeBaseline(final double[] chromatogram, ParameterSet parameters) {
+
+    // Smoothing and asymmetry parameters.
+    final double smoothing =
+        parameters.getParameter(AsymmetryCorrectorParameters.SMOOTHING).getValue();
+    final double asymmetry =
+        parameters.getParameter(AsymmetryCorrectorParameters.ASYMMETRY).getValue();
+
+    return asymmetricLeastSquares(chromatogram, smoothing, asymmetry);
+  }
+
+  /**
+   * Asymmetric least squares baseline.
+   *
+   * @param y         the signal
+   * @param lambda    the smoothing factor
+   * @param asymmetry the weight of points above the baseline, 1-asymmetry is used for points below
+   * @return the baseline
+   */
+  public static double[] asymmetricLeastSquares(final double[] y, final double lambda,
+      final double asymmetry) {
+    final double[] weights = new double[y.length];
+    Arrays.fill(weights, 1d);
+
+    double[] baseline = y.clone();
+    for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+      baseline = whittakerSmooth(y, weights, lambda);
+
+      boolean changed = false;
+      for (int i = 0; i < y.length; i++) {
+        final double w = y[i] > baseline[i] ? asymmetry : 1d - asymmetry;
+        changed |= w != weights[i];
+        weights[i] = w;
+      }
+      if (!changed) {
+        break;
+      }
+    }
+    return baseline;
+  }
+
+  /**
+   * Weighted Whittaker smoother with a penalty on second order differences. Solves (W + lambda
+   * D'D) z = W y with a banded Cholesky decomposition in linear time.
+   *
+   * @param y       the signal
+   * @param weights the weight of each point, at least three need to be positive
+   * @param lambda  the smoothing factor
+   * @return the smoothed signal
+   */
+  public static double[] whittakerSmooth(final double[] y, final double[] weights,
+      final double lambda) {
+    final int n = y.length;
+    if (n < 3) {
+      return y.clone();
+    }
+
+    // symmetric penta-diagonal matrix W + lambda D'D: main, first and second upper diagonal
+    final double[] d0 = new double[n];
+    final double[] d1 = new double[n];
+    final double[] d2 = new double[n];
+    for (int row = 0; row < n - 2; row++) {
+      // row of D: 1, -2, 1 at row, row+1, row+2
+      d0[row] += lambda;
+      d0[row + 1] += 4 * lambda;
+      d0[row + 2] += lambda;
+      d1[row] -= 2 * lambda;
+      d1[row + 1] -= 2 * lambda;
+      d2[row] += lambda;
+    }
+    for (int i = 0; i < n; i++) {
+      d0[i] += weights[i];
+    }
+
+    // Cholesky L L' with L lower triangular, bandwidth 2
+    final double[] l0 = new double[n];
+    final double[] l1 = new double[n];
+    final double[] l2 = new double[n];
+    for (int i = 0; i < n; i++) {
+      if (i >= 2) {
+        l2[i] = d2[i - 2] / l0[i - 2];
+      }
+      if (i >= 1) {
+        l1[i] = (d1[i - 1] - l2[i] * l1[i - 1]) / l0[i - 1];
+      }
+      l0[i] = Math.sqrt(d0[i] - l1[i] * l1[i] - l2[i] * l2[i]);
+    }
+
+    // forward substitution L x = W y
+    final double[] z = new double[n];
+    for (int i = 0; i < n; i++) {
+      double sum = weights[i] * y[i];
+      if (i >= 1) {
+        sum -= l1[i] * z[i - 1];
+      }
+      if (i >= 2) {
+        sum -= l2[i] * z[i - 2];
+      }
+      z[i] = sum / l0[i];
+    }
+    // back substitution L' z = x
+    for (int i = n - 1; i >= 0; i--) {
+      double sum = z[i];
+      if (i + 1 < n) {
+        sum -= l1[i + 1] * z[i + 1];
+      }
+      if (i + 2 < n) {
+        sum -= l2[i + 2] * z[i + 2];
+      }
+      z[i] = sum / l0[i];
+    }
+    return z;
+  }
+
+  @Override
+  public @NotNull String getName() {
+    return "Asymmetric baseline corrector (Java)";
+  }
+
+  @Override
+  public @NotNull Class<? extends ParameterSet> getParameterSetClass() {
+    return JavaAsymmetryCorrectorParameters.class;
+  }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors;
+
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.JavaBaselineCorrector;
+import io.github.mzmine.parameters.ParameterSet;
+import java.util.Arrays;
+import org.apache.commons.math3.analysis.interpolation.LoessInterpolator;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * @description Local Minima + LOESS (smoothed low-percentile intensity) baseline corrector
+ *              implemented in Java, like "bslnoff" from the "PROcess" R/Bioconductor package
+ *              (http://bioconductor.org/packages/release/ bioc/manuals/PROcess/man/PROcess.pdf):
+ *              The chromatogram is cut into equally sized breaks. The minimum (or quantile) of
+ *              each break is either smoothed by LOESS or linearly interpolated.
+ *
+ */
+public class JavaLocMinLoessCorrector extends JavaBaselineCorrector {
+
+  private static final double BW_MIN_VAL = 0.001d;
+
+  @Override
+  public double[] computeBaseline(final double[] chromatogram, ParameterSet parameters) {
+
+    // Local Minima parameters.
+    String method = parameters.getParameter(LocMinLoessCorrectorParameters.METHOD).getValue();
+    double bw = parameters.getParameter(LocMinLoessCorrectorParameters.BW).getValue();
+    int breaks = parameters.getParameter(LocMinLoessCorrectorParameters.BREAKS).getValue();
+    int breaks_width =
+        parameters.getParameter(LocMinLoessCorrectorParameters.BREAK_WIDTH).getValue();
+    double qntl = parameters.getParameter(LocMinLoessCorrectorParameters.QNTL).getValue();
+
+    // same as the R variant
+    final int mini = 1;
+    final int maxi = chromatogram.length;
+    final int numBreaks =
+        (breaks_width > 0) ? (int) Math.round((double) (maxi - mini) / (double) breaks_width)
+            : breaks;
+    final boolean loess = !method.equals("approx");
+
+    return localMinima(chromatogram, numBreaks, qntl, loess, Math.max(bw, BW_MIN_VAL));
+  }
+
+  /**
+   * @param y         the signal
+   * @param breaks    number of equally sized breaks
+   * @param quantile  0 for the minimum of each break, otherwise the quantile
+   * @param loess     smooth the break values by LOESS or interpolate linearly
+   * @param bandwidth the LOESS bandwidth (fraction of the breaks)
+   * @return the baseline
+   */
+  public static double[] localMinima(final double[] y, final int breaks, final double quantile,
+      final boolean loess, final double bandwidth) {
+    final int n = y.length;
+    if (n == 0) {
+      return new double[0];
+    }
+    final int numBreaks = Math.max(1, Math.min(n, breaks));
+
+    // value and center of each break
+    final double[] x = new double[numBreaks];
+    final double[] values = new double[numBreaks];
+    for (int b = 0; b < numBreaks; b++) {
+      final int from = (int) ((long) n * b / numBreaks);
+      final int to = (int) ((long) n * (b + 1) / numBreaks);
+      final double[] sorted = Arrays.copyOfRange(y, from, to);
+      Arrays.sort(sorted);
+      // type 7 quantile as the R default
+      final double h = (sorted.length - 1) * quantile;
+      final int lower = (int) Math.floor(h);
+      final int upper = Math.min(sorted.length - 1, lower + 1);
+      values[b] = sorted[lower] + (h - lower) * (sorted[upper] - sorted[lower]);
+      x[b] = (from + to - 1) / 2d;
+    }
+
+    final double[] knots;
+    if (loess && numBreaks > 2) {
+      // LOESS needs at least two points in each local fit
+      final double minBandwidth = Math.min(1d, Math.max(bandwidth, 2d / numBreaks));
+      knots = new LoessInterpolator(minBandwidth, 0).smooth(x, values);
+    } else {
+      knots = values;
+    }
+
+    // linear interpolation, constant outside of the first and last break
+    final double[] baseline = new double[n];
+    int b = 0;
+    for (int i = 0; i < n; i++) {
+      while (b < numBreaks - 1 && x[b + 1] <= i) {
+        b++;
+      }
+      if (i <= x[0]) {
+        baseline[i] = knots[0];
+      } else if (b == numBreaks - 1) {
+        baseline[i] = knots[numBreaks - 1];
+      } else {
+        final double fraction = (i - x[b]) / (x[b + 1] - x[b]);
+        baseline[i] = knots[b] + fraction * (knots[b + 1] - knots[b]);
+      }
+    }
+    return baseline;
+  }
+
+  @Override
+  public @NotNull String getName() {
+    return "Local minima + LOESS baseline corrector (Java)";
+  }
+
+  @Override
+  public @NotNull Class<? extends ParameterSet> getParameterSetClass() {
+    return JavaLocMinLoessCorrectorParameters.class;
+  }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors;
+
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.JavaBaselineCorrector;
+import io.github.mzmine.parameters.ParameterSet;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * @description Feature Detection baseline corrector implemented in Java, following the steps of
+ *              "peakDetection" from the "baseline" R-package
+ *              (http://cran.r-project.org/web/packages/baseline/baseline.pdf): Peaks above the
+ *              minimum signal to noise ratio are removed from the chromatogram, the gaps are
+ *              interpolated, and minimums and medians are used to smooth the remaining parts. The
+ *              peak window (left to right) and the smoothing window (lwin to rwin) grow linearly
+ *              along the chromatogram. The noise level is a robust estimate from the differences of
+ *              neighbouring points.
+ *
+ */
+public class JavaPeakDetectionCorrector extends JavaBaselineCorrector {
+
+  // scale of the median absolute deviation to the standard deviation of normal noise
+  private static final double MAD_SCALE = 1.4826;
+
+  @Override
+  public double[] computeBaseline(final double[] chromatogram, ParameterSet parameters) {
+
+    // Feature Detection parameters.
+    int left = parameters.getParameter(PeakDetectionCorrectorParameters.LEFT).getValue();
+    int right = parameters.getParameter(PeakDetectionCorrectorParameters.RIGHT).getValue();
+    int lwin = parameters.getParameter(PeakDetectionCorrectorParameters.LWIN).getValue();
+    int rwin = parameters.getParameter(PeakDetectionCorrectorParameters.RWIN).getValue();
+    double snminimum =
+        parameters.getParameter(PeakDetectionCorrectorParameters.SNMINIMUM).getValue();
+    double mono = parameters.getParameter(PeakDetectionCorrectorParameters.MONO).getValue();
+    double multiplier =
+        parameters.getParameter(PeakDetectionCorrectorParameters.MULTIPLIER).getValue();
+
+    return peakDetection(chromatogram, left, right, lwin, rwin, snminimum, mono, multiplier);
+  }
+
+  /**
+   * @param y          the signal
+   * @param left       peak window (points to both sides) at the start
+   * @param right      peak window at the end
+   * @param lwin       window for minimums and medians at the start
+   * @param rwin       window for minimums and medians at the end
+   * @param snMinimum  minimum signal to noise ratio of peaks
+   * @param mono       monotonically decreasing baseline if > 0
+   * @param multiplier the peak window times the multiplier is used to find the peak height
+   * @return the baseline
+   */
+  public static double[] peakDetection(final double[] y, final int left, final int right,
+      final int lwin, final int rwin, final double snMinimum, final double mono,
+      final double multiplier) {
+    final int n = y.length;
+    if (n < 3) {
+      return y.clone();
+    }
+
+    // robust noise level of the differences of neighbouring points
+    final double[] differences = new double[n - 1];
+    for (int i = 0; i < n - 1; i++) {
+      differences[i] = Math.abs(y[i + 1] - y[i]);
+    }
+    Arrays.sort(differences);
+    final double noise = MAD_SCALE * median(differences) / Math.sqrt(2);
+
+    // remove peaks: local maxima within the peak window with a high signal to noise ratio
+    final boolean[] removed = new boolean[n];
+    for (int i = 0; i < n; i++) {
+      final int window = window(left, right, i, n);
+      if (!isLocalMaximum(y, i, window)) {
+        continue;
+      }
+      final int heightWindow = (int) Math.round(window * multiplier);
+      double min = y[i];
+      for (int j = Math.max(0, i - heightWindow); j <= Math.min(n - 1, i + heightWindow); j++) {
+        min = Math.min(min, y[j]);
+      }
+      final double height = y[i] - min;
+      if (height > 0 && (noise == 0 || height / noise >= snMinimum)) {
+        Arrays.fill(removed, Math.max(0, i - window), Math.min(n, i + window + 1), true);
+      }
+    }
+
+    // interpolate the removed parts linearly
+    final double[] remaining = y.clone();
+    int lastKept = -1;
+    for (int i = 0; i <= n; i++) {
+      if (i < n && removed[i]) {
+        continue;
+      }
+      final int gapStart = lastKept + 1;
+      if (gapStart < i) {
+        for (int j = gapStart; j < i; j++) {
+          if (lastKept < 0 && i == n) {
+            remaining[j] = min(y);
+          } else if (lastKept < 0) {
+            remaining[j] = y[i];
+          } else if (i == n) {
+            remaining[j] = y[lastKept];
+          } else {
+            remaining[j] = y[lastKept] + (y[i] - y[lastKept]) * (j - lastKept) / (i - lastKept);
+          }
+        }
+      }
+      lastKept = i;
+    }
+
+    // minimums, then medians
+    final double[] minimums = new double[n];
+    for (int i = 0; i < n; i++) {
+      final int window = window(lwin, rwin, i, n);
+      double min = remaining[i];
+      for (int j = Math.max(0, i - window); j <= Math.min(n - 1, i + window); j++) {
+        min = Math.min(min, remaining[j]);
+      }
+      minimums[i] = min;
+    }
+    final double[] baseline = new double[n];
+    for (int i = 0; i < n; i++) {
+      final int window = window(lwin, rwin, i, n);
+      final int from = Math.max(0, i - window);
+      final double[] sorted = Arrays.copyOfRange(minimums, from, Math.min(n, i + window + 1));
+      Arrays.sort(sorted);
+      baseline[i] = median(sorted);
+    }
+
+    if (mono > 0) {
+      for (int i = 1; i < n; i++) {
+        baseline[i] = Math.min(baseline[i], baseline[i - 1]);
+      }
+    }
+    return baseline;
+  }
+
+  /**
+   * @return the window size at index i, linear from start to end
+   */
+  private static int window(final int start, final int end, final int i, final int n) {
+    return (int) Math.round(start + (end - start) * (double) i / (n - 1));
+  }
+
+  private static boolean isLocalMaximum(final double[] y, final int i, final int window) {
+    for (int j = Math.max(0, i - window); j <= Math.min(y.length - 1, i + window); j++) {
+      if (y[j] > y[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static double median(final double[] sorted) {
+    final int mid = sorted.length / 2;
+    return sorted.length % 2 == 1 ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2d;
+  }
+
+  private static double min(final double[] y) {
+    double min = Double.POSITIVE_INFINITY;
+    for (double v : y) {
+      min = Math.min(min, v);
+    }
+    return min;
+  }
+
+  @Override
+  public @NotNull String getName() {
+    return "PeakDetection baseline corrector (Java)";
+  }
+
+  @Override
+  public @NotNull Class<? extends ParameterSet> getParameterSetClass() {
+    return JavaPeakDetectionCorrectorParameters.class;
+  }
+
+}
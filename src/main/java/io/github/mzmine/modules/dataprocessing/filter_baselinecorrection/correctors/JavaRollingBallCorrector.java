@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors;
+
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.JavaBaselineCorrector;
+import io.github.mzmine.parameters.ParameterSet;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * @description Rolling Ball baseline corrector implemented in Java. Estimates a trend based on the
+ *              Rolling Ball algorithm for X-ray spectra by M.A.Kneen and H.J. Annegarn, like
+ *              "rollingBall" from the "baseline" R-package
+ *              (http://cran.r-project.org/web/packages/baseline/baseline.pdf): local minima, then
+ *              local maxima of the minima within wm scans to both sides, then a moving average
+ *              within ws scans. Windows are truncated at both ends of the chromatogram.
+ *
+ */
+public class JavaRollingBallCorrector extends JavaBaselineCorrector {
+
+  @Override
+  public double[] computeBaseline(final double[] chromatogram, ParameterSet parameters) {
+
+    // Rolling Ball parameters.
+    int wm = parameters.getParameter(RollingBallCorrectorParameters.MIN_MAX_WIDTH).getValue();
+    int ws = parameters.getParameter(RollingBallCorrectorParameters.SMOOTHING).getValue();
+
+    return rollingBall(chromatogram, wm, ws);
+  }
+
+  /**
+   * @param y  the signal
+   * @param wm number of points to both sides for the minimization and maximization
+   * @param ws number of points to both sides for smoothing
+   * @return the baseline
+   */
+  public static double[] rollingBall(final double[] y, final int wm, final int ws) {
+    final double[] minima = movingExtreme(y, wm, true);
+    final double[] maxima = movingExtreme(minima, wm, false);
+    return movingAverage(maxima, ws);
+  }
+
+  /**
+   * Minimum or maximum within a window of halfWidth points to both sides in linear time (monotonic
+   * queue of indices).
+   */
+  private static double[] movingExtreme(final double[] y, final int halfWidth,
+      final boolean minimum) {
+    final int n = y.length;
+    final double[] result = new double[n];
+    final int[] queue = new int[n];
+    int head = 0;
+    int tail = 0;
+    int added = 0;
+    for (int i = 0; i < n; i++) {
+      // add all points up to the right end of the window
+      final int right = Math.min(n - 1, i + halfWidth);
+      for (; added <= right; added++) {
+        while (tail > head && (minimum ? y[queue[tail - 1]] >= y[added]
+            : y[queue[tail - 1]] <= y[added])) {
+          tail--;
+        }
+        queue[tail++] = added;
+      }
+      // remove points left of the window
+      while (queue[head] < i - halfWidth) {
+        head++;
+      }
+      result[i] = y[queue[head]];
+    }
+    return result;
+  }
+
+  private static double[] movingAverage(final double[] y, final int halfWidth) {
+    final int n = y.length;
+    final double[] cumulative = new double[n + 1];
+    for (int i = 0; i < n; i++) {
+      cumulative[i + 1] = cumulative[i] + y[i];
+    }
+    final double[] result = new double[n];
+    for (int i = 0; i < n; i++) {
+      final int left = Math.max(0, i - halfWidth);
+      final int right = Math.min(n - 1, i + halfWidth);
+      result[i] = (cumulative[right + 1] - cumulative[left]) / (right - left + 1);
+    }
+    return result;
+  }
+
+  @Override
+  public @NotNull String getName() {
+    return "RollingBall baseline corrector (Java)";
+  }
+
+  @Override
+  public @NotNull Class<? extends ParameterSet> getParameterSetClass() {
+    return JavaRollingBallCorrectorParameters.class;
+  }
+
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors;
+
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.JavaBaselineCorrector;
+import io.github.mzmine.parameters.ParameterSet;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * @description Rubber Band baseline corrector implemented in Java. Estimates a trend based on the
+ *              lower convex envelope of the chromatogram, like "spc.rubberband" from the
+ *              "hyperSpec" R-package
+ *              (http://cran.r-project.org/web/packages/hyperSpec/vignettes/baseline.pdf).
+ *              With "spline", a cubic smoothing spline with df degrees of freedom is fitted to all
+ *              points within the noise level above the envelope, like "smooth.spline" in R with
+ *              all points as knots.
+ *
+ */
+public class JavaRubberBandCorrector extends JavaBaselineCorrector {
+
+  @Override
+  public double[] computeBaseline(final double[] chromatogram, ParameterSet parameters) {
+
+    // Rubber Band parameters.
+    double noise = parameters.getParameter(RubberBandCorrectorParameters.NOISE).getValue();
+    boolean autoNoise =
+        parameters.getParameter(RubberBandCorrectorParameters.AUTO_NOISE).getValue();
+    double df = parameters.getParameter(RubberBandCorrectorParameters.DF).getValue();
+    boolean spline = parameters.getParameter(RubberBandCorrectorParameters.SPLINE).getValue();
+    double bend = parameters.getParameter(RubberBandCorrectorParameters.BEND_FACTOR).getValue();
+
+    if (autoNoise) {
+      noise = Double.POSITIVE_INFINITY;
+      for (double v : chromatogram) {
+        noise = Math.min(noise, v);
+      }
+    }
+    return rubberBand(chromatogram, noise, df, spline, bend);
+  }
+
+  /**
+   * @param y      the signal
+   * @param noise  points up to this level above the envelope are used for the spline
+   * @param df     degrees of freedom of the spline. Values below 2 use the envelope.
+   * @param spline smooth the support points instead of linear interpolation between the envelope
+   * @param bend   bends the signal by bend * x^2 (x normalized to 0-1) before finding the envelope
+   * @return the baseline
+   */
+  public static double[] rubberBand(final double[] y, final double noise, final double df,
+      final boolean spline, final double bend) {
+    final int n = y.length;
+    if (n < 3) {
+      return y.clone();
+    }
+
+    final double[] bendOffset = new double[n];
+    final double[] bent = new double[n];
+    for (int i = 0; i < n; i++) {
+      final double x = i / (double) (n - 1);
+      bendOffset[i] = bend * x * x;
+      bent[i] = y[i] + bendOffset[i];
+    }
+
+    // lower convex hull (monotone chain)
+    final int[] hull = new int[n];
+    int hullSize = 0;
+    for (int i = 0; i < n; i++) {
+      while (hullSize >= 2 && cross(hull[hullSize - 2], hull[hullSize - 1], i, bent) <= 0) {
+        hullSize--;
+      }
+      hull[hullSize++] = i;
+    }
+
+    // linear interpolation between the hull points
+    double[] baseline = new double[n];
+    for (int h = 0; h < hullSize - 1; h++) {
+      final int left = hull[h];
+      final int right = hull[h + 1];
+      final double slope = (bent[right] - bent[left]) / (right - left);
+      for (int i = left; i <= right; i++) {
+        baseline[i] = bent[left] + slope * (i - left);
+      }
+    }
+
+    if (spline && df >= 2) {
+      final double[] supportX = new double[n];
+      final double[] supportY = new double[n];
+      final double[] positions = new double[n];
+      int supportPoints = 0;
+      for (int i = 0; i < n; i++) {
+        positions[i] = i;
+        if (bent[i] <= baseline[i] + noise) {
+          supportX[supportPoints] = i;
+          supportY[supportPoints] = bent[i];
+          supportPoints++;
+        }
+      }
+      // hyperSpec also keeps the envelope for less than four support points
+      if (supportPoints > 3) {
+        baseline = smoothingSpline(Arrays.copyOf(supportX, supportPoints),
+            Arrays.copyOf(supportY, supportPoints), df, positions);
+      }
+    }
+
+    for (int i = 0; i < n; i++) {
+      baseline[i] -= bendOffset[i];
+    }
+    return baseline;
+  }
+
+  /**
+   * Natural cubic smoothing spline, minimizes sum (y - g(x))^2 + lambda * integral g''(x)^2 dx. The
+   * smoothing parameter lambda is chosen so that the trace of the smoother matrix equals df, like
+   * "smooth.spline(x, y, df = df)" in R with all points as knots. Uses the Reinsch algorithm with
+   * banded matrices in linear time (Green and Silverman, Nonparametric Regression and Generalized
+   * Linear Models, 1994).
+   *
+   * @param x    strictly increasing positions, at least three
+   * @param y    the values at x
+   * @param df   equivalent degrees of freedom, 2 gives the linear regression and x.length the
+   *             interpolating spline
+   * @param xout the positions to evaluate, increasing. Linear extrapolation outside of x.
+   * @return the spline at xout
+   */
+  public static double[] smoothingSpline(final double[] x, final double[] y, final double df,
+      final double[] xout) {
+    final SplineSystem system = new SplineSystem(x);
+    final int n = x.length;
+
+    double lambda;
+    if (df >= n) {
+      lambda = 0d;
+    } else {
+      // bracket the smoothing parameter around the ratio of both penalty matrices, then bisect on
+      // the log scale. df decreases monotonically from n to 2 with increasing lambda
+      final double target = Math.max(df, 2d + 1e-6);
+      double low = Math.log(system.getScale()) - 10;
+      double high = Math.log(system.getScale()) + 10;
+      while (system.degreesOfFreedom(Math.exp(low)) < target && low > -700) {
+        low -= 10;
+      }
+      while (system.degreesOfFreedom(Math.exp(high)) > target && high < 700) {
+        high += 10;
+      }
+      for (int i = 0; i < 100 && high - low > 1e-10; i++) {
+        final double mid = (low + high) / 2d;
+        if (system.degreesOfFreedom(Math.exp(mid)) > target) {
+          low = mid;
+        } else {
+          high = mid;
+        }
+      }
+      lambda = Math.exp((low + high) / 2d);
+    }
+    return system.fit(y, lambda).evaluate(xout);
+  }
+
+  /**
+   * Banded matrices of the Reinsch algorithm for fixed knots. Q is the n x (n-2) matrix of second
+   * divided differences, R the (n-2) x (n-2) matrix of the roughness penalty. The interior knots are
+   * indexed by k = 0..n-3, for knot k + 1.
+   */
+  private static class SplineSystem {
+
+    private final double[] x;
+    private final double[] h;
+    private final int m;
+    // R: diagonal and first off diagonal
+    private final double[] r0;
+    private final double[] r1;
+    // Q'Q: diagonal, first and second off diagonal
+    private final double[] qq0;
+    private final double[] qq1;
+    private final double[] qq2;
+    // LDL' decomposition of R + lambda Q'Q, L with unit diagonal
+    private final double[] l1;
+    private final double[] l2;
+    private final double[] d;
+
+    private SplineSystem(final double[] x) {
+      this.x = x;
+      final int n = x.length;
+      m = n - 2;
+      h = new double[n - 1];
+      for (int i = 0; i < n - 1; i++) {
+        h[i] = x[i + 1] - x[i];
+      }
+      r0 = new double[m];
+      r1 = new double[m];
+      qq0 = new double[m];
+      qq1 = new double[m];
+      qq2 = new double[m];
+      for (int k = 0; k < m; k++) {
+        // column k of Q: 1/h[k], -1/h[k] - 1/h[k+1], 1/h[k+1] in rows k, k+1, k+2
+        final double a = 1d / h[k];
+        final double b = 1d / h[k + 1];
+        r0[k] = (h[k] + h[k + 1]) / 3d;
+        qq0[k] = a * a + (a + b) * (a + b) + b * b;
+        if (k + 1 < m) {
+          r1[k] = h[k + 1] / 6d;
+          final double c = 1d / h[k + 2];
+          qq1[k] = -(a + b) * b - b * (b + c);
+        }
+        if (k + 2 < m) {
+          qq2[k] = b / h[k + 2];
+        }
+      }
+      l1 = new double[m];
+      l2 = new double[m];
+      d = new double[m];
+    }
+
+    /**
+     * @return a smoothing parameter of the same magnitude as the effect of both penalty terms
+     */
+    private double getScale() {
+      double traceR = 0d;
+      double traceQQ = 0d;
+      for (int k = 0; k < m; k++) {
+        traceR += r0[k];
+        traceQQ += qq0[k];
+      }
+      return traceR / traceQQ;
+    }
+
+    private void decompose(final double lambda) {
+      for (int k = 0; k < m; k++) {
+        final double b0 = r0[k] + lambda * qq0[k];
+        l2[k] = k >= 2 ? (lambda * qq2[k - 2]) / d[k - 2] : 0d;
+        l1[k] = k >= 1 ? (r1[k - 1] + lambda * qq1[k - 1] - (k >= 2 ? l2[k] * d[k - 2] * l1[k - 1]
+            : 0d)) / d[k - 1] : 0d;
+        d[k] = b0 - l1[k] * l1[k] * (k >= 1 ? d[k - 1] : 0d) - l2[k] * l2[k] * (k >= 2 ? d[k - 2]
+            : 0d);
+      }
+    }
+
+    /**
+     * @return the trace of the smoother matrix, n - lambda * trace(Q (R + lambda Q'Q)^-1 Q')
+     */
+    private double degreesOfFreedom(final double lambda) {
+      decompose(lambda);
+      // band of the inverse Z = (R + lambda Q'Q)^-1 from the decomposition (Takahashi)
+      double trace = 0d;
+      double z0Next = 0d, z0Next2 = 0d, z1Next = 0d;
+      for (int k = m - 1; k >= 0; k--) {
+        final double a = k + 1 < m ? l1[k + 1] : 0d;
+        final double b = k + 2 < m ? l2[k + 2] : 0d;
+        final double z1 = -(a * z0Next + b * z1Next);
+        final double z2 = -(a * z1Next + b * z0Next2);
+        final double z0 = 1d / d[k] - a * z1 - b * z2;
+        trace += z0 * qq0[k] + 2d * z1 * qq1[k] + 2d * z2 * qq2[k];
+        z0Next2 = z0Next;
+        z0Next = z0;
+        z1Next = z1;
+      }
+      return x.length - lambda * trace;
+    }
+
+    /**
+     * @return the fitted values and second derivatives
+     */
+    private FittedSpline fit(final double[] y, final double lambda) {
+      decompose(lambda);
+      // (R + lambda Q'Q) gamma = Q'y
+      final double[] gamma = new double[m];
+      for (int k = 0; k < m; k++) {
+        gamma[k] = (y[k + 2] - y[k + 1]) / h[k + 1] - (y[k + 1] - y[k]) / h[k];
+      }
+      for (int k = 0; k < m; k++) {
+        if (k >= 1) {
+          gamma[k] -= l1[k] * gamma[k - 1];
+        }
+        if (k >= 2) {
+          gamma[k] -= l2[k] * gamma[k - 2];
+        }
+      }
+      for (int k = m - 1; k >= 0; k--) {
+        gamma[k] /= d[k];
+        if (k + 1 < m) {
+          gamma[k] -= l1[k + 1] * gamma[k + 1];
+        }
+        if (k + 2 < m) {
+          gamma[k] -= l2[k + 2] * gamma[k + 2];
+        }
+      }
+
+      // g = y - lambda Q gamma, natural spline: second derivatives at both ends are zero
+      final double[] g = y.clone();
+      final double[] secondDerivatives = new double[x.length];
+      for (int k = 0; k < m; k++) {
+        secondDerivatives[k + 1] = gamma[k];
+        g[k] -= lambda * gamma[k] / h[k];
+        g[k + 1] += lambda * gamma[k] * (1d / h[k] + 1d / h[k + 1]);
+        g[k + 2] -= lambda * gamma[k] / h[k + 1];
+      }
+      return new FittedSpline(x, h, g, secondDerivatives);
+    }
+  }
+
+  private record FittedSpline(double[] x, double[] h, double[] g, double[] gamma) {
+
+    private double[] evaluate(final double[] xout) {
+      final int n = x.length;
+      final double startSlope = (g[1] - g[0]) / h[0] - h[0] * gamma[1] / 6d;
+      final double endSlope = (g[n - 1] - g[n - 2]) / h[n - 2] + h[n - 2] * gamma[n - 2] / 6d;
+
+      final double[] result = new double[xout.length];
+      int i = 0;
+      for (int j = 0; j < xout.length; j++) {
+        final double v = xout[j];
+        if (v <= x[0]) {
+          result[j] = g[0] + startSlope * (v - x[0]);
+          continue;
+        }
+        if (v >= x[n - 1]) {
+          result[j] = g[n - 1] + endSlope * (v - x[n - 1]);
+          continue;
+        }
+        while (x[i + 1] < v) {
+          i++;
+        }
+        final double left = v - x[i];
+        final double right = x[i + 1] - v;
+        result[j] = (left * g[i + 1] + right * g[i]) / h[i]
+            - left * right / 6d * ((1d + left / h[i]) * gamma[i + 1] + (1d + right / h[i])
+            * gamma[i]);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * @return the z component of the cross product of (a-o) and (b-o). Negative or zero if o, a, b
+   * is not a counter-clockwise turn.
+   */
+  private static double cross(final int o, final int a, final int b, final double[] y) {
+    return (a - o) * (y[b] - y[o]) - (y[a] - y[o]) * (b - o);
+  }
+
+  @Override
+  public @NotNull String getName() {
+    return "RubberBand baseline corrector (Java)";
+  }
+
+  @Override
+  public @NotNull Class<? extends ParameterSet> getParameterSetClass() {
+    return JavaRubberBandCorrectorParameters.class;
+  }
+
+}
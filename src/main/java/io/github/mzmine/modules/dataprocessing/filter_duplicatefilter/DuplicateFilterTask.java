@@ -54,12 +54,19 @@ import io.github.mzmine.util.FeatureUtils;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.SortingDirection;
 import io.github.mzmine.util.SortingProperty;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -78,7 +85,7 @@ public class DuplicateFilterTask extends AbstractTask {
   private final ParameterSet parameters;
   private FeatureList filteredPeakList;
   // Counters.
-  private int processedRows;
+  private final AtomicInteger processedRows = new AtomicInteger();
   private int totalRows;
 
   public DuplicateFilterTask(final MZmineProject project, final FeatureList list,
@@ -92,7 +99,6 @@ public class DuplicateFilterTask extends AbstractTask {
     peakList = list;
     filteredPeakList = null;
     totalRows = 0;
-    processedRows = 0;
   }
 
   @Override
@@ -104,7 +110,7 @@ public class DuplicateFilterTask extends AbstractTask {
   @Override
   public double getFinishedPercentage() {
 
-    return totalRows == 0 ? 0.0 : (double) processedRows / (double) totalRows;
+    return totalRows == 0 ? 0.0 : (double) processedRows.get() / (double) totalRows;
   }
 
   @Override
@@ -184,8 +190,9 @@ public class DuplicateFilterTask extends AbstractTask {
     RawDataFile[] rawFiles = newPeakList.getRawDataFiles().toArray(RawDataFile[]::new);
 
     // filter by average mz and rt
-    totalRows = rowCount;
-    processedRows = 0;
+    // rows are processed twice: parallel duplicate checks and sequential removal
+    totalRows = rowCount * 2;
+    processedRows.set(0);
     // sort rows
     final int removedDuplicates = switch (mode) {
       case OLD_AVERAGE ->
@@ -233,42 +240,63 @@ public class DuplicateFilterTask extends AbstractTask {
     Arrays.sort(peakListRows,
         new FeatureListRowSorter(SortingProperty.Area, SortingDirection.Descending));
 
-    // Loop through all feature list rows
-    int removedDuplicates = 0;
-    for (int firstRowIndex = 0; firstRowIndex < rowCount; firstRowIndex++) {
-      if (isCanceled()) {
-        return -1;
-      }
+    // m/z sorted view of the rows to find candidates by a range query
+    final double[] sortedMzs = new double[rowCount];
+    final int[] mzOrder = new int[rowCount];
+    Arrays.setAll(mzOrder, i -> i);
+    IntArrays.quickSort(mzOrder,
+        (a, b) -> Double.compare(peakListRows[a].getAverageMZ(), peakListRows[b].getAverageMZ()));
+    for (int i = 0; i < rowCount; i++) {
+      sortedMzs[i] = peakListRows[mzOrder[i]].getAverageMZ();
+    }
 
+    // rows are not changed by this filter, so all decisions can be made up front
+    final int[][] duplicates = findDuplicatesInParallel(rowCount, firstRowIndex -> {
       final ModularFeatureListRow firstRow = peakListRows[firstRowIndex];
+      final Range<Double> mzRange = mzTolerance.getToleranceRange(firstRow.getAverageMZ());
+      final IntArrayList rows = new IntArrayList();
+      for (int i = lowerBound(sortedMzs, mzRange.lowerEndpoint());
+          i < rowCount && sortedMzs[i] <= mzRange.upperEndpoint(); i++) {
+        final int secondRowIndex = mzOrder[i];
+        if (secondRowIndex <= firstRowIndex) {
+          continue;
+        }
+        final FeatureListRow secondRow = peakListRows[secondRowIndex];
+        // Compare identifications
+        final boolean sameID =
+            !requireSameId || FeatureUtils.compareIdentities(firstRow, secondRow);
 
-      if (firstRow != null) {
-        for (int secondRowIndex = firstRowIndex + 1; secondRowIndex < rowCount; secondRowIndex++) {
-          if (isCanceled()) {
-            return -1;
-          }
-
-          final FeatureListRow secondRow = peakListRows[secondRowIndex];
-          if (secondRow != null) {
-            // Compare identifications
-            final boolean sameID =
-                !requireSameId || FeatureUtils.compareIdentities(firstRow, secondRow);
+        final boolean sameMZRT = checkSameAverageRTMZ(firstRow, secondRow, mzTolerance,
+            rtTolerance);
 
-            final boolean sameMZRT = checkSameAverageRTMZ(firstRow, secondRow, mzTolerance,
-                rtTolerance);
+        final boolean sameMobility = checkMobility(firstRow, secondRow, mobilityTolerance);
 
-            final boolean sameMobility = checkMobility(firstRow, secondRow, mobilityTolerance);
+        // Duplicate peaks?
+        if (sameID && sameMZRT && sameMobility) {
+          rows.add(secondRowIndex);
+        }
+      }
+      final int[] sorted = rows.toIntArray();
+      Arrays.sort(sorted);
+      return sorted;
+    });
+    if (isCanceled()) {
+      return -1;
+    }
 
-            // Duplicate peaks?
-            if (sameID && sameMZRT && sameMobility) {
-              // second row deleted
-              removedDuplicates++;
-              peakListRows[secondRowIndex] = null;
-            }
+    // Loop through all feature list rows, the row with the higher area is kept
+    int removedDuplicates = 0;
+    for (int firstRowIndex = 0; firstRowIndex < rowCount; firstRowIndex++) {
+      if (peakListRows[firstRowIndex] != null) {
+        for (int secondRowIndex : duplicates[firstRowIndex]) {
+          if (peakListRows[secondRowIndex] != null) {
+            // second row deleted
+            removedDuplicates++;
+            peakListRows[secondRowIndex] = null;
           }
         }
       }
-      processedRows++;
+      processedRows.incrementAndGet();
     }
     return removedDuplicates;
   }
@@ -281,64 +309,21 @@ public class DuplicateFilterTask extends AbstractTask {
     Arrays.sort(peakListRows,
         new FeatureListRowSorter(SortingProperty.MZ, SortingDirection.Ascending));
 
-    // Loop through all feature list rows
-    int n = 0;
-    for (int firstRowIndex = 0; firstRowIndex < rowCount; firstRowIndex++) {
-      if (isCanceled()) {
-        return -1;
-      }
-
-      final ModularFeatureListRow firstRow = peakListRows[firstRowIndex];
+    return mergeDuplicates(newPeakList, peakListRows, rowCount, rawFiles,
+        firstRow -> mzTolerance.getToleranceRange(firstRow.getAverageMZ()),
+        (firstRow, secondRow) -> {
+          // Compare identifications
+          final boolean sameID =
+              !requireSameId || FeatureUtils.compareIdentities(firstRow, secondRow);
 
-      if (firstRow != null) {
+          final boolean sameRT = rtTolerance.checkWithinTolerance(firstRow.getAverageRT(),
+              secondRow.getAverageRT());
 
-        final double averageMZ1 = firstRow.getAverageMZ();
-        final Range<Double> mzRange = mzTolerance.getToleranceRange(averageMZ1);
-        double lowerMZ = mzRange.lowerEndpoint();
-        double upperMZ = mzRange.upperEndpoint();
+          final boolean sameMobility = checkMobility(firstRow, secondRow, mobilityTolerance);
 
-        for (int secondRowIndex = firstRowIndex + 1; secondRowIndex < rowCount; secondRowIndex++) {
-          if (isCanceled()) {
-            return -1;
-          }
-
-          final FeatureListRow secondRow = peakListRows[secondRowIndex];
-          if (secondRow != null) {
-            // check mz first to stop loop
-            final double averageMZ2 = secondRow.getAverageMZ();
-            if (averageMZ2 < lowerMZ) {
-              continue;
-            }
-            if (averageMZ2 > upperMZ) {
-              break;
-            }
-
-            // Compare identifications
-            final boolean sameID =
-                !requireSameId || FeatureUtils.compareIdentities(firstRow, secondRow);
-
-            final boolean sameRT = rtTolerance.checkWithinTolerance(firstRow.getAverageRT(),
-                secondRow.getAverageRT());
-
-            final boolean sameMobility = checkMobility(firstRow, secondRow, mobilityTolerance);
-
-            // Duplicate peaks?
-            if (sameID && sameRT && sameMobility) {
-              // create consensus row in new filter
-              // copy all detected features of row2 into row1
-              // to exchange gap-filled against detected
-              // features
-              createConsensusFirstRow(newPeakList, rawFiles, firstRow, secondRow);
-              // second row deleted
-              n++;
-              peakListRows[secondRowIndex] = null;
-            }
-          }
-        }
-      }
-      processedRows++;
-    }
-    return n;
+          // Duplicate peaks?
+          return sameID && sameRT && sameMobility;
+        });
   }
 
   /**
@@ -353,6 +338,96 @@ public class DuplicateFilterTask extends AbstractTask {
     Arrays.sort(peakListRows,
         new FeatureListRowSorter(SortingProperty.MZ, SortingDirection.Ascending));
 
+    return mergeDuplicates(newPeakList, peakListRows, rowCount, rawFiles, firstRow -> {
+      final List<ModularFeature> firstFeatures = firstRow.getFeatures();
+      double minMZ = Double.MAX_VALUE;
+      double maxMZ = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < firstFeatures.size(); i++) {
+        Double mz = firstFeatures.get(i).getMZ();
+        if (mz == null) {
+          continue;
+        }
+        if (mz < minMZ) {
+          minMZ = mz;
+        }
+        if (mz > maxMZ) {
+          maxMZ = mz;
+        }
+      }
+      double lowerMZ = mzTolerance.getToleranceRange(minMZ).lowerEndpoint();
+      double upperMZ = mzTolerance.getToleranceRange(maxMZ).upperEndpoint();
+      // not a valid range if there are no features
+      return lowerMZ <= upperMZ ? Range.closed(lowerMZ, upperMZ) : null;
+    }, (firstRow, secondRow) -> {
+      // Compare identifications
+      final boolean sameID =
+          !requireSameId || FeatureUtils.compareIdentities(firstRow, secondRow);
+
+      final boolean sameRT = checkSameSingleFeatureRTMZ(rawFiles, firstRow, secondRow,
+          mzTolerance, rtTolerance);
+
+      final boolean sameMobility = checkMobility(firstRow, secondRow, mobilityTolerance);
+
+      // Duplicate peaks?
+      return sameID && sameRT && sameMobility;
+    });
+  }
+
+  /**
+   * Merges each row with all later duplicates in its m/z window into a consensus row. The rows
+   * need to be sorted by m/z.
+   * <p>
+   * The duplicate checks on the unchanged rows run in parallel. The merging itself is sequential,
+   * in row order, just like checking all pairs sequentially. Once a row was merged with a
+   * duplicate, its remaining candidates are checked again against the consensus row.
+   *
+   * @param mzWindow    m/z range of candidates for a first row or null for no candidates
+   * @param isDuplicate the duplicate check of a first and second row
+   * @return number of duplicates
+   */
+  private int mergeDuplicates(ModularFeatureList newPeakList,
+      ModularFeatureListRow[] peakListRows, int rowCount, RawDataFile[] rawFiles,
+      Function<ModularFeatureListRow, Range<Double>> mzWindow,
+      BiPredicate<ModularFeatureListRow, FeatureListRow> isDuplicate) {
+    final double[] mzs = new double[rowCount];
+    for (int i = 0; i < rowCount; i++) {
+      mzs[i] = peakListRows[i].getAverageMZ();
+    }
+
+    // windows and decisions are based on the unchanged rows. The parallel checks stop at the first
+    // row above the window. The sequential loop skips removed rows and may continue further.
+    final double[] lowerMZs = new double[rowCount];
+    final double[] upperMZs = new double[rowCount];
+    final int[] checkedEnds = new int[rowCount];
+    final int[][] duplicates = findDuplicatesInParallel(rowCount, firstRowIndex -> {
+      final ModularFeatureListRow firstRow = peakListRows[firstRowIndex];
+      final Range<Double> mzRange = mzWindow.apply(firstRow);
+      final double lowerMZ = mzRange != null ? mzRange.lowerEndpoint() : Double.POSITIVE_INFINITY;
+      final double upperMZ = mzRange != null ? mzRange.upperEndpoint() : Double.NEGATIVE_INFINITY;
+      lowerMZs[firstRowIndex] = lowerMZ;
+      upperMZs[firstRowIndex] = upperMZ;
+
+      final IntArrayList rows = new IntArrayList();
+      int secondRowIndex = firstRowIndex + 1;
+      for (; secondRowIndex < rowCount && mzRange != null; secondRowIndex++) {
+        // check mz first to stop loop
+        if (mzs[secondRowIndex] < lowerMZ) {
+          continue;
+        }
+        if (mzs[secondRowIndex] > upperMZ) {
+          break;
+        }
+        if (isDuplicate.test(firstRow, peakListRows[secondRowIndex])) {
+          rows.add(secondRowIndex);
+        }
+      }
+      checkedEnds[firstRowIndex] = secondRowIndex;
+      return rows.toIntArray();
+    });
+    if (isCanceled()) {
+      return -1;
+    }
+
     // Loop through all feature list rows
     int n = 0;
     for (int firstRowIndex = 0; firstRowIndex < rowCount; firstRowIndex++) {
@@ -361,71 +436,89 @@ public class DuplicateFilterTask extends AbstractTask {
       }
 
       final ModularFeatureListRow firstRow = peakListRows[firstRowIndex];
+      processedRows.incrementAndGet();
+      if (firstRow == null || lowerMZs[firstRowIndex] > upperMZs[firstRowIndex]) {
+        continue;
+      }
 
-      if (firstRow != null) {
-
-        final List<ModularFeature> firstFeatures = firstRow.getFeatures();
-        double minMZ = Double.MAX_VALUE;
-        double maxMZ = Double.NEGATIVE_INFINITY;
-        for (int i = 0; i < firstFeatures.size(); i++) {
-          Double mz = firstFeatures.get(i).getMZ();
-          if (mz == null) {
-            continue;
-          }
-          if (mz < minMZ) {
-            minMZ = mz;
-          }
-          if (mz > maxMZ) {
-            maxMZ = mz;
-          }
+      final int[] checkedDuplicates = duplicates[firstRowIndex];
+      int nextChecked = 0;
+      boolean merged = false;
+      for (int secondRowIndex = firstRowIndex + 1; secondRowIndex < rowCount; secondRowIndex++) {
+        final FeatureListRow secondRow = peakListRows[secondRowIndex];
+        if (secondRow == null) {
+          continue;
+        }
+        // check mz first to stop loop
+        if (mzs[secondRowIndex] < lowerMZs[firstRowIndex]) {
+          continue;
+        }
+        if (mzs[secondRowIndex] > upperMZs[firstRowIndex]) {
+          break;
         }
-        double lowerMZ = mzTolerance.getToleranceRange(minMZ).lowerEndpoint();
-        double upperMZ = mzTolerance.getToleranceRange(maxMZ).upperEndpoint();
 
-        for (int secondRowIndex = firstRowIndex + 1; secondRowIndex < rowCount; secondRowIndex++) {
-          if (isCanceled()) {
-            return -1;
+        final boolean duplicate;
+        if (!merged && secondRowIndex < checkedEnds[firstRowIndex]) {
+          // result of the parallel check
+          while (nextChecked < checkedDuplicates.length
+              && checkedDuplicates[nextChecked] < secondRowIndex) {
+            nextChecked++;
           }
+          duplicate = nextChecked < checkedDuplicates.length
+              && checkedDuplicates[nextChecked] == secondRowIndex;
+        } else {
+          // the first row is a consensus row now or the check was not done
+          duplicate = isDuplicate.test(firstRow, secondRow);
+        }
 
-          final FeatureListRow secondRow = peakListRows[secondRowIndex];
-          if (secondRow != null) {
-            // check mz first to stop loop
-            final double averageMZ2 = secondRow.getAverageMZ();
-            if (averageMZ2 < lowerMZ) {
-              continue;
-            }
-            if (averageMZ2 > upperMZ) {
-              break;
-            }
-
-            // Compare identifications
-            final boolean sameID =
-                !requireSameId || FeatureUtils.compareIdentities(firstRow, secondRow);
-
-            final boolean sameRT = checkSameSingleFeatureRTMZ(rawFiles, firstRow, secondRow,
-                mzTolerance, rtTolerance);
-
-            final boolean sameMobility = checkMobility(firstRow, secondRow, mobilityTolerance);
-
-            // Duplicate peaks?
-            if (sameID && sameRT && sameMobility) {
-              // create consensus row in new filter
-              // copy all detected features of row2 into row1
-              // to exchange gap-filled against detected
-              // features
-              createConsensusFirstRow(newPeakList, rawFiles, firstRow, secondRow);
-              // second row deleted
-              n++;
-              peakListRows[secondRowIndex] = null;
-            }
-          }
+        if (duplicate) {
+          // create consensus row in new filter
+          // copy all detected features of row2 into row1
+          // to exchange gap-filled against detected
+          // features
+          createConsensusFirstRow(newPeakList, rawFiles, firstRow, secondRow);
+          merged = true;
+          // second row deleted
+          n++;
+          peakListRows[secondRowIndex] = null;
         }
       }
-      processedRows++;
     }
     return n;
   }
 
+  /**
+   * Runs the duplicate checks of all rows in parallel.
+   *
+   * @param duplicatesOfRow all later duplicates (ascending indices) of the row at the given index
+   * @return the duplicates of each row
+   */
+  private int[][] findDuplicatesInParallel(int rowCount, IntFunction<int[]> duplicatesOfRow) {
+    final int[][] duplicates = new int[rowCount][];
+    IntStream.range(0, rowCount).parallel().forEach(i -> {
+      duplicates[i] = isCanceled() ? IntArrays.EMPTY_ARRAY : duplicatesOfRow.apply(i);
+      processedRows.incrementAndGet();
+    });
+    return duplicates;
+  }
+
+  /**
+   * @return the first index with a value >= the given value
+   */
+  private static int lowerBound(double[] sortedValues, double value) {
+    int low = 0;
+    int high = sortedValues.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (sortedValues[mid] < value) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
   /**
    * Turns firstRow to consensus row. With all features with highest FeatureStatus:
    * DETECTED>ESTIMATED>UNKNOWN Or the highest feature when comparing two ESTIMATED features
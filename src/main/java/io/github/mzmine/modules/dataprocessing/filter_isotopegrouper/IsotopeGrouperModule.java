@@ -29,6 +29,7 @@ import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.modules.MZmineModuleCategory;
 import io.github.mzmine.modules.MZmineProcessingModule;
+import io.github.mzmine.modules.batchmode.BatchStepScope;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.util.ExitCode;
@@ -83,6 +84,11 @@ public class IsotopeGrouperModule implements MZmineProcessingModule {
     return MZmineModuleCategory.ISOTOPES;
   }
 
+  @Override
+  public @NotNull BatchStepScope getBatchStepScope() {
+    return BatchStepScope.PER_FILE;
+  }
+
   @Override
   public @NotNull Class<? extends ParameterSet> getParameterSetClass() {
     return IsotopeGrouperParameters.class;
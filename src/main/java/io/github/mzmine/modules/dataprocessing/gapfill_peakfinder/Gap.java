@@ -79,6 +79,24 @@ public class Gap {
     this.validateRtShape = validateRtShape;
   }
 
+  /**
+   * @return the lowest retention time of scans that are processed by this gap
+   */
+  public float getRtLowerBound() {
+    return rtRange.hasLowerBound() ? rtRange.lowerEndpoint() : Float.NEGATIVE_INFINITY;
+  }
+
+  /**
+   * Scans are offered in the order of increasing retention times. Used by
+   * {@link GapScanDispatcher} to stop offering scans to this gap.
+   *
+   * @param rt the retention time of the next scan
+   * @return true if this gap ignores all scans with a retention time &ge; rt
+   */
+  public boolean isFinished(float rt) {
+    return rtRange.hasUpperBound() && rt > rtRange.upperEndpoint();
+  }
+
   public void offerNextScan(Scan scan) {
 
     float scanRT = scan.getRetentionTime();
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.gapfill_peakfinder;
+
+import io.github.mzmine.datamodel.Scan;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Offers scans only to the gaps that process them. Gaps are sorted by the start of their RT range
+ * and kept in an active set until {@link Gap#isFinished(float)}. This way, each scan is only
+ * offered to the gaps with an RT range that contains the scan, instead of to all gaps. Requires
+ * scans sorted by retention time, otherwise all scans are offered to all gaps.
+ *
+ * @param <T> the gap type
+ */
+public class GapScanDispatcher<T extends Gap> {
+
+  private final List<T> gaps;
+  private final List<T> sortedByStart;
+  private final List<T> active = new ArrayList<>();
+  private final boolean sweep;
+  private int nextGap = 0;
+
+  /**
+   * @param gaps  all gaps of one raw data file
+   * @param scans the scans that will be offered in this order
+   */
+  public GapScanDispatcher(List<T> gaps, List<? extends Scan> scans) {
+    this.gaps = gaps;
+    sweep = isSortedByRT(scans);
+    sortedByStart = new ArrayList<>(gaps);
+    sortedByStart.sort(Comparator.comparingDouble(Gap::getRtLowerBound));
+  }
+
+  private static boolean isSortedByRT(List<? extends Scan> scans) {
+    float lastRT = Float.NEGATIVE_INFINITY;
+    for (Scan scan : scans) {
+      final float rt = scan.getRetentionTime();
+      if (rt < lastRT) {
+        return false;
+      }
+      lastRT = rt;
+    }
+    return true;
+  }
+
+  /**
+   * Call for every scan in the order of the scans list
+   *
+   * @param rt       the retention time of the current scan
+   * @param consumer offers the scan to a gap
+   */
+  public void forEachGapInRange(float rt, Consumer<? super T> consumer) {
+    if (!sweep) {
+      gaps.forEach(consumer);
+      return;
+    }
+
+    // start all gaps that begin before this scan
+    while (nextGap < sortedByStart.size()
+           && sortedByStart.get(nextGap).getRtLowerBound() <= rt) {
+      active.add(sortedByStart.get(nextGap));
+      nextGap++;
+    }
+
+    // offer the scan and remove finished gaps
+    int kept = 0;
+    for (int i = 0; i < active.size(); i++) {
+      final T gap = active.get(i);
+      if (gap.isFinished(rt)) {
+        continue;
+      }
+      consumer.accept(gap);
+      active.set(kept++, gap);
+    }
+    active.subList(kept, active.size()).clear();
+  }
+}
@@ -86,6 +86,12 @@ public class ImsGap extends Gap {
     this.mobilogramBinning = mobilogramBinning;
   }
 
+  @Override
+  public boolean isFinished(float rt) {
+    // a started peak is continued after the RT range
+    return super.isFinished(rt) && currentPeakDataPoints == null;
+  }
+
   @Override
   public void offerNextScan(Scan scan) {
     if (!(scan instanceof MobilityScanDataAccess access)) {
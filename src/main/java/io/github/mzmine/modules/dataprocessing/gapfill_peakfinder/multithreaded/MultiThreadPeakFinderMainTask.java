@@ -157,11 +157,13 @@ class MultiThreadPeakFinderMainTask extends AbstractTask {
     MZmineCore.getTaskController().addTasks(tasks.toArray(AbstractTask[]::new));
 
     // wait till finish
-    while (!(isCanceled() || isFinished())) {
-      try {
-        Thread.sleep(100);
-      } catch (InterruptedException e) {
-        logger.log(Level.SEVERE, "Error in GNPS export/submit task", e);
+    try (var blockingWait = MZmineCore.getTaskController().startBlockingWait()) {
+      while (!(isCanceled() || isFinished())) {
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          logger.log(Level.SEVERE, "Error in GNPS export/submit task", e);
+        }
       }
     }
   }
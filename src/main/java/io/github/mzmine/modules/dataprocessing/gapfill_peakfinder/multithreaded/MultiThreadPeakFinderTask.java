@@ -30,6 +30,7 @@ import io.github.mzmine.datamodel.FeatureStatus;
 import io.github.mzmine.datamodel.Frame;
 import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.data_access.BinningMobilogramDataAccess;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess.MobilityScanDataType;
@@ -41,6 +42,7 @@ import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.types.numbers.MobilityType;
 import io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.Gap;
+import io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.GapScanDispatcher;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
@@ -209,9 +211,12 @@ class MultiThreadPeakFinderTask extends AbstractTask {
 
   private void processFile(RawDataFile file, List<Gap> gaps) {
     if (file instanceof IMSRawDataFile imsFile && peakList.hasFeatureType(MobilityType.class)) {
+      final List<Frame> frames = (List<Frame>) peakList.getSeletedScans(file);
       final MobilityScanDataAccess access = new MobilityScanDataAccess(imsFile,
-          MobilityScanDataType.CENTROID, (List<Frame>) peakList.getSeletedScans(file));
+          MobilityScanDataType.CENTROID, frames);
       List<ImsGap> imsGaps = (List<ImsGap>) (List<? extends Gap>) gaps;
+      // only offer frames to gaps with a matching RT range
+      final GapScanDispatcher<ImsGap> dispatcher = new GapScanDispatcher<>(imsGaps, frames);
 
       while (access.hasNextFrame()) {
         if (isCanceled()) {
@@ -219,27 +224,29 @@ class MultiThreadPeakFinderTask extends AbstractTask {
         }
 
         final Frame frame = access.nextFrame();
-        for (ImsGap gap : imsGaps) {
+        dispatcher.forEachGapInRange(frame.getRetentionTime(), gap -> {
           access.resetMobilityScan();
           gap.offerNextScan(access);
-        }
+        });
         processedScans.incrementAndGet();
       }
 
     } else {
       // no IMS dimension
 
+      final List<? extends Scan> scans = peakList.getSeletedScans(file);
       final ScanDataAccess scanAccess = EfficientDataAccess.of(file, ScanDataType.CENTROID,
-          peakList.getSeletedScans(file));
+          scans);
+      // only offer scans to gaps with a matching RT range
+      final GapScanDispatcher<Gap> dispatcher = new GapScanDispatcher<>(gaps, scans);
       while (scanAccess.hasNextScan()) {
         if (isCanceled()) {
           return;
         }
         scanAccess.nextScan();
-        // Feed this scan to all gaps
-        for (Gap gap : gaps) {
-          gap.offerNextScan(scanAccess);
-        }
+        // Feed this scan to all gaps in RT range
+        dispatcher.forEachGapInRange(scanAccess.getRetentionTime(),
+            gap -> gap.offerNextScan(scanAccess));
 
         processedScans.incrementAndGet();
       }
@@ -26,11 +26,13 @@
 package io.github.mzmine.modules.dataprocessing.group_metacorrelate.corrgrouping;
 
 
+import com.google.common.collect.Range;
 import com.google.common.util.concurrent.AtomicDouble;
 import io.github.msdk.MSDKRuntimeException;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.data_access.CachedFeatureDataAccess;
+import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.RowGroup;
@@ -54,14 +56,18 @@ import io.github.mzmine.util.CorrelationGroupingUtils;
 import io.github.mzmine.util.FeatureListRowSorter;
 import io.github.mzmine.util.SortingDirection;
 import io.github.mzmine.util.SortingProperty;
+import io.github.mzmine.util.collections.DoubleIntervalIndex;
 import io.github.mzmine.util.maths.similarity.SimilarityMeasure;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import java.text.MessageFormat;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class CorrelateGroupingTask extends AbstractTask {
 
@@ -284,18 +290,29 @@ public class CorrelateGroupingTask extends AbstractTask {
     // preload all intensity values
     CachedFeatureDataAccess data = new CachedFeatureDataAccess(rows, false, true);
 
+    // only generate row pairs that can pass the RT overlap filter
+    final DoubleIntervalIndex rtIndex = createRtIndex(rows, raws);
+    final long totalPairs = countCandidatePairs(rows, raws, rtIndex);
+    logger.fine(() -> MessageFormat.format(
+        "Corr: Comparing {0} candidate pairs of {1} rows within the RT tolerance", totalPairs,
+        totalRows));
+
     // for all rows - do in parallel
     IntStream.range(0, totalRows - 1).parallel().forEach(i -> {
       if (!isCanceled()) {
         try {
           FeatureListRow row = rows[i];
-          // compare to the rest of rows
-          for (int x = i + 1; x < totalRows; x++) {
+          // compare to all later rows within the RT window, null to compare all later rows.
+          // Computed here to only keep the partners of the rows in progress
+          final int[] partners =
+              rtIndex == null ? null : getCandidatePartners(rows, raws, rtIndex, i);
+          final int numPartners = partners == null ? totalRows - 1 - i : partners.length;
+          for (int p = 0; p < numPartners; p++) {
             if (isCanceled()) {
               break;
             }
 
-            FeatureListRow row2 = rows[x];
+            FeatureListRow row2 = rows[partners == null ? i + 1 + p : partners[p]];
 
             // has a minimum number/% of overlapping features in all samples / in at least one
             // groups
@@ -322,7 +339,9 @@ public class CorrelateGroupingTask extends AbstractTask {
               }
             }
           }
-          stageProgress.addAndGet(1d / totalRows);
+          if (totalPairs > 0) {
+            stageProgress.addAndGet((double) numPartners / totalPairs);
+          }
         } catch (Exception e) {
           logger.log(Level.SEVERE, "Error in parallel R2Rcomparison: " + e.getMessage(), e);
           throw new MSDKRuntimeException(e);
@@ -347,4 +366,95 @@ public class CorrelateGroupingTask extends AbstractTask {
         nR2Rcorr, nF2F, map.size()));
   }
 
+  /**
+   * Index of the RT range of all features in each row. Only used if the minimum feature filter
+   * requires at least one pair of features within the RT tolerance, see
+   * {@link MinimumFeatureFilter#requiresFeatureOverlap(int)}.
+   *
+   * @return the index or null if all row pairs need to be compared
+   */
+  @Nullable
+  private DoubleIntervalIndex createRtIndex(FeatureListRow[] rows, List<RawDataFile> raws) {
+    if (rtTolerance == null || !minFFilter.requiresFeatureOverlap(raws.size())) {
+      return null;
+    }
+    final double[] lower = new double[rows.length];
+    final double[] upper = new double[rows.length];
+    for (int i = 0; i < rows.length; i++) {
+      // rows without features are empty intervals
+      lower[i] = Double.POSITIVE_INFINITY;
+      upper[i] = Double.NEGATIVE_INFINITY;
+      for (RawDataFile raw : raws) {
+        final Feature feature = rows[i].getFeature(raw);
+        if (feature != null) {
+          final float rt = feature.getRT();
+          lower[i] = Math.min(lower[i], rt);
+          upper[i] = Math.max(upper[i], rt);
+        }
+      }
+    }
+    return new DoubleIntervalIndex(lower, upper);
+  }
+
+  /**
+   * Counts the row pairs that are compared without creating the lists of candidate partners.
+   *
+   * @param rtIndex the index of all row RT ranges or null to compare all row pairs
+   * @return the number of row pairs to compare
+   */
+  private long countCandidatePairs(FeatureListRow[] rows, List<RawDataFile> raws,
+      @Nullable DoubleIntervalIndex rtIndex) {
+    if (rtIndex == null) {
+      return (long) rows.length * (rows.length - 1) / 2;
+    }
+    return IntStream.range(0, rows.length - 1).parallel().mapToLong(i -> {
+      final Range<Float> rtRange = getCandidateRtRange(rows, raws, i);
+      return rtRange == null ? 0
+          : rtIndex.countOverlapping(rtRange.lowerEndpoint(), rtRange.upperEndpoint(), i);
+    }).sum();
+  }
+
+  /**
+   * @param i the index of the row
+   * @return the union of all feature RT tolerance ranges of the row or null if the row has no
+   * features
+   */
+  @Nullable
+  private Range<Float> getCandidateRtRange(FeatureListRow[] rows, List<RawDataFile> raws, int i) {
+    Range<Float> union = null;
+    for (RawDataFile raw : raws) {
+      final Feature feature = rows[i].getFeature(raw);
+      if (feature != null) {
+        final Range<Float> tolRange = rtTolerance.getToleranceRange(feature.getRT());
+        union = union == null ? tolRange : union.span(tolRange);
+      }
+    }
+    return union;
+  }
+
+  /**
+   * All rows with a higher index that may pass the RT overlap filter. A feature of the second row
+   * needs to be within the RT tolerance of a feature in the first row.
+   *
+   * @param rtIndex the index of all row RT ranges
+   * @param i       the index of the first row
+   * @return sorted indices of all candidate rows > i
+   */
+  private int[] getCandidatePartners(FeatureListRow[] rows, List<RawDataFile> raws,
+      @NotNull DoubleIntervalIndex rtIndex, int i) {
+    final Range<Float> rtRange = getCandidateRtRange(rows, raws, i);
+    if (rtRange == null) {
+      return new int[0];
+    }
+    final IntArrayList partners = new IntArrayList();
+    rtIndex.forEachOverlapping(rtRange.lowerEndpoint(), rtRange.upperEndpoint(), x -> {
+      if (x > i) {
+        partners.add(x);
+      }
+    });
+    final int[] sorted = partners.toIntArray();
+    Arrays.sort(sorted);
+    return sorted;
+  }
+
 }
@@ -50,6 +50,9 @@ import io.github.mzmine.util.exceptions.MissingMassListException;
 import io.github.mzmine.util.maths.similarity.Similarity;
 import io.github.mzmine.util.scans.ScanAlignment;
 import io.github.mzmine.util.scans.ScanMZDiffConverter;
+import io.github.mzmine.util.scans.similarity.EncodedSpectrum;
+import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
+import io.github.mzmine.util.scans.similarity.SpectralSimilarityKernel;
 import io.github.mzmine.util.scans.similarity.Weights;
 import java.text.MessageFormat;
 import java.time.Instant;
@@ -258,6 +261,35 @@ public class MS2SimilarityTask extends AbstractTask {
     return null;
   }
 
+  /**
+   * Same result as {@link #createMS2SimModificationAware(MZTolerance, Weights, DataPoint[],
+   * DataPoint[], double, Function, double, double)} with {@link #SIZE_OVERLAP} and the weights of
+   * the encoded spectra, but without creating aligned data points.
+   *
+   * @param minMatch     minimum overlapping signals in the two mass lists a and b
+   * @param precursorMzA precursor mz of a, modified cosine if both precursors are > 0
+   * @param precursorMzB precursor mz of b, modified cosine if both precursors are > 0
+   * @return the spectral similarity if number of overlapping signals >= minimum, else null
+   */
+  @Nullable
+  public static SpectralSimilarity createMS2SimModificationAware(MZTolerance mzTol,
+      EncodedSpectrum a, EncodedSpectrum b, double minMatch, double precursorMzA,
+      double precursorMzB) {
+    // b is aligned to a like in alignDataPoints
+    final SpectralSimilarityKernel kernel = SpectralSimilarityKernel.forCurrentThread();
+    final int overlap = precursorMzA > 0 && precursorMzB > 0 ? kernel.match(mzTol, b, a,
+        precursorMzA - precursorMzB) : kernel.match(mzTol, b, a);
+
+    if (overlap >= minMatch) {
+      final double cosine = kernel.cosine(HandleUnmatchedSignalOptions.KEEP_ALL_AND_MATCH_TO_ZERO);
+      // the signals of b are the first dimension of the alignment
+      return new SpectralSimilarity(cosine, overlap, b.size(), a.size(),
+          kernel.getMatchedIntensityA() / b.getTotalIntensity(),
+          kernel.getMatchedIntensityB() / a.getTotalIntensity());
+    }
+    return null;
+  }
+
   /**
    * Make sure to use arrays sorted by intensity
    *
@@ -400,8 +432,7 @@ public class MS2SimilarityTask extends AbstractTask {
           if (!isCanceled()) {
             FilteredRowData a = filteredRows.get(i);
             FilteredRowData b = filteredRows.get(j);
-            checkR2RMs2Similarity(mapSimilarity, a.row(), b.row(), a.data(), b.data(),
-                Type.MS2_COSINE_SIM);
+            checkR2RMs2Similarity(mapSimilarity, a.row(), b.row(), a.encoded(), b.encoded());
 
             // check neutral loss similarity
             if (checkNeutralLoss) {
@@ -442,6 +473,10 @@ public class MS2SimilarityTask extends AbstractTask {
         filteredRows.add(row);
       }
     }
+    // encode once for all comparisons
+    Map<Feature, EncodedSpectrum> mapFeatureEncoded = new HashMap<>();
+    mapFeatureData.forEach(
+        (feature, data) -> mapFeatureEncoded.put(feature, new EncodedSpectrum(data, Weights.SQRT)));
     int numRows = filteredRows.size();
     LOG.log(Level.INFO, () -> MessageFormat.format("Checking MS2 similarity on {0} rows", numRows));
     // run in parallel
@@ -452,7 +487,7 @@ public class MS2SimilarityTask extends AbstractTask {
             FeatureListRow a = filteredRows.get(i);
             FeatureListRow b = filteredRows.get(j);
 
-            checkR2RAllFeaturesMs2Similarity(mapFeatureData, a, b);
+            checkR2RAllFeaturesMs2Similarity(mapFeatureData, mapFeatureEncoded, a, b);
           }
         }
       }
@@ -463,7 +498,7 @@ public class MS2SimilarityTask extends AbstractTask {
   }
 
   private void checkR2RAllFeaturesMs2Similarity(Map<Feature, DataPoint[]> mapFeatureData,
-      FeatureListRow a, FeatureListRow b) {
+      Map<Feature, EncodedSpectrum> mapFeatureEncoded, FeatureListRow a, FeatureListRow b) {
 
     R2RSpectralSimilarityList cosineSim = new R2RSpectralSimilarityList(a, b, Type.MS2_COSINE_SIM);
     R2RSpectralSimilarityList neutralLossSim =
@@ -484,8 +519,9 @@ public class MS2SimilarityTask extends AbstractTask {
           DataPoint[] dpb = mapFeatureData.get(fb);
           if (dpb != null) {
             // align and check spectra
-            SpectralSimilarity spectralSim = createMS2SimModificationAware(mzTolerance, dpa, dpb,
-                minMatch, SIZE_OVERLAP, fa.getMZ(), fb.getMZ());
+            SpectralSimilarity spectralSim = createMS2SimModificationAware(mzTolerance,
+                mapFeatureEncoded.get(fa), mapFeatureEncoded.get(fb), minMatch, fa.getMZ(),
+                fb.getMZ());
             if (spectralSim != null && spectralSim.cosine() >= minCosineSimilarity) {
               cosineSim.addSpectralSim(spectralSim);
             }
@@ -542,7 +578,8 @@ public class MS2SimilarityTask extends AbstractTask {
     if (filteredData.length >= minDP) {
       // sort by intensity
       Arrays.sort(filteredData, dpSorter);
-      return new FilteredRowData(row, filteredData);
+      return new FilteredRowData(row, filteredData,
+          new EncodedSpectrum(filteredData, Weights.SQRT));
     } else {
       return null;
     }
@@ -611,6 +648,24 @@ public class MS2SimilarityTask extends AbstractTask {
     }
   }
 
+  /**
+   * MS2 cosine similarity of the encoded spectra of two rows
+   *
+   * @param mapSimilarity map to add new MS2 cosine similarity edges to
+   * @param a             row a
+   * @param b             row b
+   */
+  private void checkR2RMs2Similarity(R2RMap<RowsRelationship> mapSimilarity, FeatureListRow a,
+      FeatureListRow b, EncodedSpectrum encodedA, EncodedSpectrum encodedB) {
+    SpectralSimilarity spectralSim = createMS2SimModificationAware(mzTolerance, encodedA,
+        encodedB, minMatch, a.getAverageMZ(), b.getAverageMZ());
+
+    if (spectralSim != null && spectralSim.cosine() >= minCosineSimilarity) {
+      var r2r = new R2RSpectralSimilarity(a, b, Type.MS2_COSINE_SIM, spectralSim);
+      mapSimilarity.add(a, b, r2r);
+    }
+  }
+
   @Override
   public double getFinishedPercentage() {
     return stageProgress.get();
@@ -640,9 +695,10 @@ public class MS2SimilarityTask extends AbstractTask {
   }
 
   /**
-   * the filtered data of the best MS2 scan from row
+   * the filtered data of the best MS2 scan from row, sorted by intensity and encoded for the cosine
+   * similarity
    */
-  private record FilteredRowData(FeatureListRow row, DataPoint[] data) {
+  private record FilteredRowData(FeatureListRow row, DataPoint[] data, EncodedSpectrum encoded) {
 
   }
 }
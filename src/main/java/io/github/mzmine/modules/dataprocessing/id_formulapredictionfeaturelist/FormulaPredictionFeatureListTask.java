@@ -50,14 +50,24 @@ import io.github.mzmine.modules.tools.msmsscore.MSMSScoreParameters;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.TaskController.AdditionalPermits;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.FormulaUtils;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.openscience.cdk.formula.MolecularFormulaGenerator;
 import org.openscience.cdk.formula.MolecularFormulaRange;
 import org.openscience.cdk.interfaces.IChemObjectBuilder;
@@ -84,11 +94,12 @@ public class FormulaPredictionFeatureListTask extends AbstractTask {
   private Double sortPPMFactor;
   private Double sortMSMSFactor;
   private Double sortIsotopeFactor;
-  private MolecularFormulaGenerator generator;
-  private String message;
-  private int totalRows, finishedRows;
+  // generators of the rows that are currently processed, used for cancellation
+  private final Set<MolecularFormulaGenerator> generators = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger finishedRows = new AtomicInteger(0);
+  private volatile String message;
+  private int totalRows;
   private Boolean isSorting;
-  private List<ResultFormula> resultingFormulas;
   private Range<Double> rdbeRange;
   private Boolean rdbeIsInteger;
   private Boolean checkHCRatio;
@@ -185,7 +196,7 @@ public class FormulaPredictionFeatureListTask extends AbstractTask {
     if (totalRows == 0) {
       return 0.0;
     }
-    return (double) finishedRows / (double) totalRows;
+    return (double) finishedRows.get() / (double) totalRows;
   }
 
   @Override
@@ -203,69 +214,154 @@ public class FormulaPredictionFeatureListTask extends AbstractTask {
     featureList.addRowType(DataTypes
         .get(io.github.mzmine.datamodel.features.types.annotations.formula.FormulaListType.class));
 
-    for (FeatureListRow row : featureList.getRows()) {
-
-      if (row.getPeakIdentities().size() > 0) {
-        continue;
-      }
-      this.resultingFormulas = new ArrayList<>();
+    // rows are independent. Predict in parallel and set the results in the original row order
+    // afterwards to keep the row updates deterministic. This thread predicts formulas, too, so
+    // one permit less than the number of threads is needed for the workers.
+    final List<FeatureListRow> rows = List.copyOf(featureList.getRows());
+    final List<List<ResultFormula>> rowFormulas;
+    try (AdditionalPermits permits = MZmineCore.getTaskController()
+        .acquireAdditionalPermits(MZmineCore.getConfiguration().getNumOfThreads() - 1)) {
+      rowFormulas = predictFormulas(rows, permits.count() + 1);
+    }
 
-      double searchedMass = (row.getAverageMZ() - ionType.getAddedMass()) * charge;
+    if (isStopped()) {
+      return;
+    }
 
-      message = "Formula prediction for " + MZmineCore.getConfiguration().getMZFormat()
-          .format(searchedMass);
+    for (int i = 0; i < rows.size(); i++) {
+      final List<ResultFormula> formulas = rowFormulas.get(i);
+      // Add the new formula entry top results
+      if (formulas != null && !formulas.isEmpty()) {
+        rows.get(i).setFormulas(
+            formulas.subList(0, Math.min(formulas.size() - 1, maxBestFormulasPerFeature)));
+      }
+    }
 
-      Range<Double> massRange = mzTolerance.getToleranceRange(searchedMass);
+    if (isCanceled()) {
+      return;
+    }
 
-      IChemObjectBuilder builder = SilentChemObjectBuilder.getInstance();
-      generator = new MolecularFormulaGenerator(builder, massRange.lowerEndpoint(),
-          massRange.upperEndpoint(), elementCounts);
+    featureList.getAppliedMethods().add(
+        new SimpleFeatureListAppliedMethod(FormulaPredictionFeatureListModule.class, parameters,
+            getModuleCallDate()));
 
-      IMolecularFormula cdkFormula;
+    logger.finest("Finished formula search for all the features");
 
-      // create a map to store ResultFormula and relative mass deviation
-      // for sorting
-      while ((cdkFormula = generator.getNextFormula()) != null) {
-        // Mass is ok, so test other constraints
-        ResultFormula molf = checkConstraints(cdkFormula, row, searchedMass);
+    setStatus(TaskStatus.FINISHED);
 
-        if (isCanceled() || getStatus().equals(TaskStatus.ERROR)) {
-          return;
-        }
+  }
 
-        if (molf != null) {
-          resultingFormulas.add(molf);
-        }
+  /**
+   * Predicts the formulas of all rows on the current thread and numThreads - 1 worker threads. Each
+   * thread takes the next row until all rows are processed.
+   *
+   * @return the candidate formulas of each row in row order, see
+   * {@link #predictFormulas(FeatureListRow)}
+   */
+  List<List<ResultFormula>> predictFormulas(List<FeatureListRow> rows, int numThreads) {
+    final List<List<ResultFormula>> rowFormulas = new ArrayList<>(
+        Collections.nCopies(rows.size(), null));
+    final AtomicInteger nextRow = new AtomicInteger(0);
+    final Runnable predictRows = () -> {
+      int i;
+      while ((i = nextRow.getAndIncrement()) < rows.size()) {
+        rowFormulas.set(i, predictFormulas(rows.get(i)));
       }
+    };
 
-      if (isCanceled()) {
-        return;
-      }
+    final int numWorkers = Math.min(numThreads, rows.size()) - 1;
+    if (numWorkers <= 0) {
+      predictRows.run();
+      return rowFormulas;
+    }
 
-      // Add the new formula entry top results
-      if (!resultingFormulas.isEmpty()) {
-        row.setFormulas(resultingFormulas
-            .subList(0, Math.min(resultingFormulas.size() - 1, maxBestFormulasPerFeature)));
+    final AtomicInteger threadCounter = new AtomicInteger(0);
+    final ExecutorService executor = Executors.newFixedThreadPool(numWorkers, r -> {
+      final Thread thread = new Thread(r, "Formula prediction " + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      final List<Future<?>> workers = new ArrayList<>(numWorkers);
+      for (int w = 0; w < numWorkers; w++) {
+        workers.add(executor.submit(predictRows));
       }
-
-      if (isCanceled()) {
-        return;
+      predictRows.run();
+      // results of the workers are visible after get
+      for (Future<?> worker : workers) {
+        worker.get();
       }
-      finishedRows++;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted during formula prediction", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(
+          "Error during formula prediction: " + e.getCause().getMessage(), e.getCause());
+    } finally {
+      executor.shutdownNow();
     }
+    return rowFormulas;
+  }
 
-    if (isCanceled()) {
-      return;
+  /**
+   * Generates and checks all formulas of a single row. Only the candidates that may end up in the
+   * top results are kept, so the generation stops early once enough candidates are found.
+   *
+   * @return the candidate formulas in generation order or null if the row was skipped or the task
+   * stopped
+   */
+  @Nullable
+  private List<ResultFormula> predictFormulas(FeatureListRow row) {
+    if (isStopped() || row.getPeakIdentities().size() > 0) {
+      finishedRows.incrementAndGet();
+      return null;
     }
 
-    featureList.getAppliedMethods().add(
-        new SimpleFeatureListAppliedMethod(FormulaPredictionFeatureListModule.class, parameters,
-            getModuleCallDate()));
+    final double searchedMass = (row.getAverageMZ() - ionType.getAddedMass()) * charge;
 
-    logger.finest("Finished formula search for all the features");
+    message = "Formula prediction for " + MZmineCore.getConfiguration().getMZFormat()
+        .format(searchedMass);
 
-    setStatus(TaskStatus.FINISHED);
+    final Range<Double> massRange = mzTolerance.getToleranceRange(searchedMass);
+
+    // the generator keeps the state of the search, so every row needs its own instance
+    final IChemObjectBuilder builder = SilentChemObjectBuilder.getInstance();
+    final MolecularFormulaGenerator generator = new MolecularFormulaGenerator(builder,
+        massRange.lowerEndpoint(), massRange.upperEndpoint(), elementCounts);
+    generators.add(generator);
+
+    // one more than the maximum is kept, as the top results exclude the last candidate
+    final int maxCandidates = maxBestFormulasPerFeature + 1;
+    final List<ResultFormula> resultingFormulas = new ArrayList<>();
+    try {
+      // the generator may have missed a cancel call before it was registered
+      if (isStopped()) {
+        return null;
+      }
+      IMolecularFormula cdkFormula;
+      while (resultingFormulas.size() < maxCandidates
+          && (cdkFormula = generator.getNextFormula()) != null) {
+        // Mass is ok, so test other constraints
+        ResultFormula molf = checkConstraints(cdkFormula, row, searchedMass);
+
+        if (isStopped()) {
+          return null;
+        }
+
+        if (molf != null) {
+          resultingFormulas.add(molf);
+        }
+      }
+    } finally {
+      generators.remove(generator);
+    }
+
+    finishedRows.incrementAndGet();
+    return isStopped() ? null : resultingFormulas;
+  }
 
+  private boolean isStopped() {
+    return isCanceled() || getStatus() == TaskStatus.ERROR;
   }
 
   /**
@@ -358,7 +454,7 @@ public class FormulaPredictionFeatureListTask extends AbstractTask {
 
     // We need to cancel the formula generator, because searching for next
     // candidate formula may take a looong time
-    if (generator != null) {
+    for (MolecularFormulaGenerator generator : generators) {
       generator.cancel();
     }
 
@@ -28,6 +28,7 @@ package io.github.mzmine.modules.dataprocessing.id_lipididentification;
 import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.IonizationType;
+import io.github.mzmine.datamodel.PolarityType;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
@@ -39,7 +40,8 @@ import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidident
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipididentificationtools.MSMSLipidTools;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipids.*;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipids.customlipidclass.CustomLipidClass;
-import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils.LipidFactory;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils.LipidIonIndex;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils.LipidIonIndex.LipidIon;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils.MatchedLipid;
 import io.github.mzmine.modules.visualization.spectra.simplespectra.datapointprocessing.isotopes.MassListDeisotoper;
 import io.github.mzmine.modules.visualization.spectra.simplespectra.datapointprocessing.isotopes.MassListDeisotoperParameters;
@@ -50,14 +52,11 @@ import io.github.mzmine.taskcontrol.TaskStatus;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
-import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
-import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
 
 /**
  * Task to search and annotate lipids in feature list
@@ -66,8 +65,6 @@ import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
  */
 public class LipidSearchTask extends AbstractTask {
 
-  private static final LipidFactory LIPID_FACTORY = new LipidFactory();
-
   private final Logger logger = Logger.getLogger(this.getClass().getName());
   private double finishedSteps;
   private double totalSteps;
@@ -163,14 +160,15 @@ public class LipidSearchTask extends AbstractTask {
     }
     totalSteps = rows.size();
 
-    // build lipid species database
-    Set<ILipidAnnotation> lipidDatabase = buildLipidDatabase();
+    // build lipid species database or reuse the ion index of a previous run
+    LipidIonIndex lipidIonIndex = LipidIonIndex.getIndex(getAllLipidClasses(), minChainLength,
+        maxChainLength, minDoubleBonds, maxDoubleBonds);
+    logger.finest(() -> "Searching " + lipidIonIndex.getNumberOfIons() + " ions of "
+        + lipidIonIndex.getNumberOfLipids() + " lipids");
 
     // start lipid annotation
     rows.parallelStream().forEach(row -> {
-      for (ILipidAnnotation lipidAnnotation : lipidDatabase) {
-        findPossibleLipid(lipidAnnotation, row);
-      }
+      findPossibleLipids(lipidIonIndex, row);
       finishedSteps++;
     });
 
@@ -183,80 +181,49 @@ public class LipidSearchTask extends AbstractTask {
     logger.info("Finished lipid annotation task in " + featureList);
   }
 
-  private Set<ILipidAnnotation> buildLipidDatabase() {
-
-    Set<ILipidAnnotation> lipidDatabase = new LinkedHashSet<>();
-
-    // add selected lipids
-    buildLipidCombinations(lipidDatabase, selectedLipids);
-
-    // add custom lipids
-    if (customLipidClasses != null && customLipidClasses.length > 0) {
-      buildLipidCombinations(lipidDatabase, customLipidClasses);
-    }
-
-    return lipidDatabase;
-  }
-
-  private void buildLipidCombinations(Set<ILipidAnnotation> lipidDatabase,
-      ILipidClass[] lipidClasses) {
-    // Try all combinations of fatty acid lengths and double bonds
-    for (ILipidClass lipidClass : lipidClasses) {
-      for (int chainLength = minChainLength; chainLength <= maxChainLength; chainLength++) {
-        for (int chainDoubleBonds =
-            minDoubleBonds; chainDoubleBonds <= maxDoubleBonds; chainDoubleBonds++) {
-
-          if (chainLength / 2 < chainDoubleBonds || chainLength == 0) {
-            continue;
-          }
-
-          // Prepare a lipid instance
-          ILipidAnnotation lipid = LIPID_FACTORY.buildSpeciesLevelLipid(lipidClass,
-              chainLength, chainDoubleBonds);
-          if (lipid != null) {
-            lipidDatabase.add(lipid);
-          }
-        }
-      }
+  private ILipidClass[] getAllLipidClasses() {
+    // selected lipids first, then custom lipids
+    if (customLipidClasses == null || customLipidClasses.length == 0) {
+      return selectedLipids;
     }
+    ILipidClass[] lipidClasses = Arrays.copyOf(selectedLipids,
+        selectedLipids.length + customLipidClasses.length, ILipidClass[].class);
+    System.arraycopy(customLipidClasses, 0, lipidClasses, selectedLipids.length,
+        customLipidClasses.length);
+    return lipidClasses;
   }
 
   /**
-   * Check if candidate peak may be a possible adduct of a given main peak
+   * Annotate the row with all lipid ions in m/z tolerance of the matching polarity. Annotations
+   * are added lipid by lipid in the order of the lipid database.
    */
-  private void findPossibleLipid(ILipidAnnotation lipid, FeatureListRow row) {
+  private void findPossibleLipids(LipidIonIndex lipidIonIndex, FeatureListRow row) {
     if (isCanceled()) {
       return;
     }
+    Range<Double> mzTolRange12C = mzTolerance.getToleranceRange(row.getAverageMZ());
+    PolarityType polarity = Objects.requireNonNull(
+        row.getBestFeature().getRepresentativeScan()).getPolarity();
+
+    ILipidAnnotation lipid = null;
     Set<MatchedLipid> possibleRowAnnotations = new HashSet<>();
-    Set<IonizationType> ionizationTypeList = new HashSet<>();
-    LipidFragmentationRule[] fragmentationRules = lipid.getLipidClass().getFragmentationRules();
-    for (LipidFragmentationRule fragmentationRule : fragmentationRules) {
-      ionizationTypeList.add(fragmentationRule.getIonizationType());
-    }
-    for (IonizationType ionization : ionizationTypeList) {
-      if (!Objects.requireNonNull(row.getBestFeature().getRepresentativeScan()).getPolarity()
-          .equals(ionization.getPolarity())) {
-        continue;
+    // MS1 check
+    for (LipidIon lipidIon : lipidIonIndex.getIons(mzTolRange12C, polarity)) {
+      if (lipidIon.lipid() != lipid) {
+        addAnnotationsToFeatureList(row, possibleRowAnnotations);
+        possibleRowAnnotations = new HashSet<>();
+        lipid = lipidIon.lipid();
       }
-      double lipidIonMass = MolecularFormulaManipulator.getMass(lipid.getMolecularFormula(),
-          AtomContainerManipulator.MonoIsotopic) + ionization.getAddedMass();
-      Range<Double> mzTolRange12C = mzTolerance.getToleranceRange(row.getAverageMZ());
-
-      // MS1 check
-      if (mzTolRange12C.contains(lipidIonMass)) {
 
-        // If search for MSMS fragments is selected search for fragments
-        if (searchForMSMSFragments.booleanValue()) {
-          possibleRowAnnotations.addAll(searchMsmsFragments(row, ionization, lipid));
-        } else {
+      // If search for MSMS fragments is selected search for fragments
+      if (searchForMSMSFragments.booleanValue()) {
+        possibleRowAnnotations.addAll(searchMsmsFragments(row, lipidIon));
+      } else {
 
-          // make MS1 annotation
-          possibleRowAnnotations
-              .add(new MatchedLipid(lipid, row.getAverageMZ(), ionization, null, 0.0));
-        }
+        // make MS1 annotation
+        possibleRowAnnotations.add(
+            new MatchedLipid(lipid, row.getAverageMZ(), lipidIon.ionization(), null, 0.0));
       }
-
     }
     addAnnotationsToFeatureList(row, possibleRowAnnotations);
   }
@@ -274,9 +241,10 @@ public class LipidSearchTask extends AbstractTask {
   /**
    * This method searches for MS/MS fragments. A mass list for MS2 scans will be used if present.
    */
-  private Set<MatchedLipid> searchMsmsFragments(FeatureListRow row, IonizationType ionization,
-      ILipidAnnotation lipid) {
+  private Set<MatchedLipid> searchMsmsFragments(FeatureListRow row, LipidIon lipidIon) {
 
+    ILipidAnnotation lipid = lipidIon.lipid();
+    IonizationType ionization = lipidIon.ionization();
     Set<MatchedLipid> matchedLipids = new HashSet<>();
 
     // Check if selected feature has MSMS spectra and LipidIdentity
@@ -292,7 +260,8 @@ public class LipidSearchTask extends AbstractTask {
         massList = msmsScan.getMassList().getDataPoints();
         massList = deisotopeMassList(massList);
         MSMSLipidTools msmsLipidTools = new MSMSLipidTools();
-        LipidFragmentationRule[] rules = lipid.getLipidClass().getFragmentationRules();
+        // only the rules of this ionization type
+        LipidFragmentationRule[] rules = lipidIon.fragmentationRules();
         Set<LipidFragment> annotatedFragments = new HashSet<>();
         if (rules != null && rules.length > 0) {
           for (DataPoint dataPoint : massList) {
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.IonizationType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipididentificationtools.LipidFragmentationRule;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipids.ILipidAnnotation;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipids.ILipidClass;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
+
+/**
+ * All ions (lipid x ionization type) of a lipid database, sorted by m/z for range queries. The
+ * ionization types of a lipid are defined by the fragmentation rules of its class. The species
+ * level lipids are built for all combinations of chain length and double bonds, like the lipid
+ * search did before. Indexes are cached for the last used lipid classes and chain parameters, so
+ * repeated runs (e.g., in batch mode, one task per feature list) share the same index.
+ */
+public class LipidIonIndex {
+
+  private static final Logger logger = Logger.getLogger(LipidIonIndex.class.getName());
+
+  private static final LipidFactory LIPID_FACTORY = new LipidFactory();
+  private static final int MAX_CACHED_INDEXES = 4;
+  private static final Map<IndexKey, LipidIonIndex> CACHE = new LinkedHashMap<>(8, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<IndexKey, LipidIonIndex> eldest) {
+      return size() > MAX_CACHED_INDEXES;
+    }
+  };
+
+  private final int numberOfLipids;
+  // sorted by m/z
+  private final double[] mzs;
+  private final LipidIon[] ions;
+  // position of the lipid in the database, to report matches in database order
+  private final int[] lipidIndices;
+
+  private LipidIonIndex(Set<ILipidAnnotation> lipidDatabase) {
+    numberOfLipids = lipidDatabase.size();
+    final List<LipidIon> ionList = new ArrayList<>();
+    final List<Integer> lipidIndexList = new ArrayList<>();
+    // the fragmentation rules of a class for each ionization type
+    final Map<ILipidClass, Map<IonizationType, LipidFragmentationRule[]>> classRules =
+        new IdentityHashMap<>();
+
+    int lipidIndex = 0;
+    for (ILipidAnnotation lipid : lipidDatabase) {
+      final double neutralMass = MolecularFormulaManipulator.getMass(lipid.getMolecularFormula(),
+          AtomContainerManipulator.MonoIsotopic);
+      final Map<IonizationType, LipidFragmentationRule[]> rulesByIonization =
+          classRules.computeIfAbsent(lipid.getLipidClass(), LipidIonIndex::groupRulesByIonization);
+      for (var entry : rulesByIonization.entrySet()) {
+        final IonizationType ionization = entry.getKey();
+        ionList.add(new LipidIon(lipid, ionization, neutralMass + ionization.getAddedMass(),
+            entry.getValue()));
+        lipidIndexList.add(lipidIndex);
+      }
+      lipidIndex++;
+    }
+
+    final int n = ionList.size();
+    final int[] order = new int[n];
+    Arrays.setAll(order, i -> i);
+    IntArrays.quickSort(order, (a, b) -> Double.compare(ionList.get(a).mz(), ionList.get(b).mz()));
+
+    mzs = new double[n];
+    ions = new LipidIon[n];
+    lipidIndices = new int[n];
+    for (int i = 0; i < n; i++) {
+      ions[i] = ionList.get(order[i]);
+      mzs[i] = ions[i].mz();
+      lipidIndices[i] = lipidIndexList.get(order[i]);
+    }
+  }
+
+  /**
+   * The index for the lipid classes and chain parameters. Built on first use and cached.
+   *
+   * @param lipidClasses all lipid classes in the order of the database
+   */
+  public static LipidIonIndex getIndex(ILipidClass[] lipidClasses, int minChainLength,
+      int maxChainLength, int minDoubleBonds, int maxDoubleBonds) {
+    final IndexKey key = new IndexKey(List.of(lipidClasses), minChainLength, maxChainLength,
+        minDoubleBonds, maxDoubleBonds);
+    synchronized (CACHE) {
+      LipidIonIndex index = CACHE.get(key);
+      if (index == null) {
+        index = new LipidIonIndex(
+            buildLipidDatabase(lipidClasses, minChainLength, maxChainLength, minDoubleBonds,
+                maxDoubleBonds));
+        logger.finest(() -> "Built lipid ion index for " + key);
+        CACHE.put(key, index);
+      }
+      return index;
+    }
+  }
+
+  private static Set<ILipidAnnotation> buildLipidDatabase(ILipidClass[] lipidClasses,
+      int minChainLength, int maxChainLength, int minDoubleBonds, int maxDoubleBonds) {
+    final Set<ILipidAnnotation> lipidDatabase = new LinkedHashSet<>();
+    // Try all combinations of fatty acid lengths and double bonds
+    for (ILipidClass lipidClass : lipidClasses) {
+      for (int chainLength = minChainLength; chainLength <= maxChainLength; chainLength++) {
+        for (int chainDoubleBonds =
+            minDoubleBonds; chainDoubleBonds <= maxDoubleBonds; chainDoubleBonds++) {
+
+          if (chainLength / 2 < chainDoubleBonds || chainLength == 0) {
+            continue;
+          }
+
+          // Prepare a lipid instance
+          ILipidAnnotation lipid = LIPID_FACTORY.buildSpeciesLevelLipid(lipidClass, chainLength,
+              chainDoubleBonds);
+          if (lipid != null) {
+            lipidDatabase.add(lipid);
+          }
+        }
+      }
+    }
+    return lipidDatabase;
+  }
+
+  /**
+   * @return all ionization types of the lipid class, each with its MS/MS fragmentation rules
+   * (rules without a fragmentation rule type only define the ionization)
+   */
+  private static Map<IonizationType, LipidFragmentationRule[]> groupRulesByIonization(
+      ILipidClass lipidClass) {
+    final Map<IonizationType, List<LipidFragmentationRule>> grouped = new LinkedHashMap<>();
+    for (LipidFragmentationRule rule : lipidClass.getFragmentationRules()) {
+      final List<LipidFragmentationRule> rules = grouped.computeIfAbsent(rule.getIonizationType(),
+          ionization -> new ArrayList<>());
+      if (rule.getLipidFragmentationRuleType() != null) {
+        rules.add(rule);
+      }
+    }
+    final Map<IonizationType, LipidFragmentationRule[]> result = new LinkedHashMap<>();
+    grouped.forEach((ionization, rules) -> result.put(ionization,
+        rules.toArray(LipidFragmentationRule[]::new)));
+    return result;
+  }
+
+  /**
+   * @param mzRange  the m/z range of the ions
+   * @param polarity only ionization types of this polarity
+   * @return all ions in range, in the order of the lipid database
+   */
+  public List<LipidIon> getIons(Range<Double> mzRange, PolarityType polarity) {
+    final double upper = mzRange.upperEndpoint();
+    final List<LipidIon> matches = new ArrayList<>();
+    final List<Integer> matchLipidIndices = new ArrayList<>();
+    for (int i = lowerBound(mzRange.lowerEndpoint()); i < mzs.length && mzs[i] <= upper; i++) {
+      if (ions[i].ionization().getPolarity().equals(polarity) && mzRange.contains(mzs[i])) {
+        matches.add(ions[i]);
+        matchLipidIndices.add(lipidIndices[i]);
+      }
+    }
+    if (matches.size() < 2) {
+      return matches;
+    }
+
+    final Integer[] order = new Integer[matches.size()];
+    Arrays.setAll(order, i -> i);
+    Arrays.sort(order, Comparator.comparingInt(matchLipidIndices::get));
+    return Arrays.stream(order).map(matches::get).toList();
+  }
+
+  private int lowerBound(double mz) {
+    int low = 0;
+    int high = mzs.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (mzs[mid] < mz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  public int getNumberOfLipids() {
+    return numberOfLipids;
+  }
+
+  public int getNumberOfIons() {
+    return ions.length;
+  }
+
+  /**
+   * @param fragmentationRules MS/MS fragmentation rules of the lipid class for this ionization type
+   */
+  public record LipidIon(ILipidAnnotation lipid, IonizationType ionization, double mz,
+                         LipidFragmentationRule[] fragmentationRules) {
+
+  }
+
+  private record IndexKey(List<ILipidClass> lipidClasses, int minChainLength, int maxChainLength,
+                          int minDoubleBonds, int maxDoubleBonds) {
+
+  }
+}
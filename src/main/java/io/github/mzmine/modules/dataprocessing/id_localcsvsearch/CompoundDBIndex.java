@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.modules.dataprocessing.id_localcsvsearch;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.compoundannotations.CompoundDBAnnotation;
+import io.github.mzmine.datamodel.identities.iontype.IonType;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.MobilityTolerance;
+import io.github.mzmine.util.collections.BinarySearch;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Index of database compounds sorted by m/z. A row is only compared to the compounds within its m/z
+ * tolerance range and to compounds without m/z. Each entry of the index is a compound of the
+ * database, or a compound and one adduct of the ion library, and only keeps the primitive m/z. The
+ * ionized compound is only created for candidates that pass the m/z, retention time and CCS checks,
+ * so the index does not hold all compounds times all adducts as annotations. Matches are returned in
+ * the order of the database lines and adducts, so the results do not depend on the index.
+ *
+ * @author https://github.com/mzmine
+ */
+class CompoundDBIndex {
+
+  private static final Logger logger = Logger.getLogger(CompoundDBIndex.class.getName());
+
+  private final CompoundDBAnnotation[] compounds;
+  private final IonType[] adducts;
+  // entries in database order, adduct index -1 if the compound is used as it is
+  private final int[] entryCompound;
+  private final int[] entryAdduct;
+  // sorted by m/z
+  private final double[] mzs;
+  private final int[] sortedToEntry;
+  // per compound, NaN if not set. Ionization does not change RT and CCS
+  private final float[] rts;
+  private final float[] ccs;
+  // entries without m/z, they match any row m/z
+  private final int[] withoutMz;
+
+  /**
+   * @param compounds the compounds in database order
+   * @param adducts   the adducts to ionize each compound with, see
+   *                  {@link CompoundDBAnnotation#getIonizingAdducts}, or null to use the
+   *                  compounds as they are
+   */
+  CompoundDBIndex(@NotNull List<CompoundDBAnnotation> compounds, @Nullable List<IonType> adducts) {
+    this.compounds = compounds.toArray(CompoundDBAnnotation[]::new);
+    this.adducts = adducts == null ? null : adducts.toArray(IonType[]::new);
+    final int n = this.compounds.length;
+
+    rts = new float[n];
+    ccs = new float[n];
+    final IntArrayList entryCompounds = new IntArrayList(n);
+    final IntArrayList entryAdducts = new IntArrayList(n);
+    final DoubleArrayList entryMzs = new DoubleArrayList(n);
+    for (int i = 0; i < n; i++) {
+      final CompoundDBAnnotation a = this.compounds[i];
+      rts[i] = a.getRT() != null ? a.getRT() : Float.NaN;
+      ccs[i] = a.getCCS() != null ? a.getCCS() : Float.NaN;
+
+      if (this.adducts == null) {
+        entryCompounds.add(i);
+        entryAdducts.add(-1);
+        entryMzs.add(a.getPrecursorMZ() != null ? a.getPrecursorMZ() : Double.NaN);
+        continue;
+      }
+      final int firstEntry = entryCompounds.size();
+      try {
+        for (int j = 0; j < this.adducts.length; j++) {
+          try {
+            // same m/z as the ionized compound
+            entryMzs.add(a.calcMzForAdduct(this.adducts[j]));
+            entryCompounds.add(i);
+            entryAdducts.add(j);
+          } catch (IllegalStateException e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+          }
+        }
+      } catch (RuntimeException e) {
+        // skip the whole compound, like a database line that cannot be read
+        logger.log(Level.FINE, "Cannot ionize compound " + a.getCompoundName(), e);
+        entryCompounds.size(firstEntry);
+        entryAdducts.size(firstEntry);
+        entryMzs.size(firstEntry);
+      }
+    }
+    entryCompound = entryCompounds.toIntArray();
+    entryAdduct = entryAdducts.toIntArray();
+
+    final IntArrayList noMz = new IntArrayList();
+    final IntArrayList withMz = new IntArrayList(entryCompound.length);
+    for (int i = 0; i < entryCompound.length; i++) {
+      if (Double.isNaN(entryMzs.getDouble(i))) {
+        noMz.add(i);
+      } else {
+        withMz.add(i);
+      }
+    }
+    withoutMz = noMz.toIntArray();
+
+    // stable sort keeps the database order for equal m/z
+    sortedToEntry = withMz.toIntArray();
+    IntArrays.stableSort(sortedToEntry,
+        (e1, e2) -> Double.compare(entryMzs.getDouble(e1), entryMzs.getDouble(e2)));
+    mzs = new double[sortedToEntry.length];
+    for (int i = 0; i < sortedToEntry.length; i++) {
+      mzs[i] = entryMzs.getDouble(sortedToEntry[i]);
+    }
+  }
+
+  /**
+   * @return the number of entries, i.e., compounds times adducts
+   */
+  public int size() {
+    return entryCompound.length;
+  }
+
+  /**
+   * Same result as ionizing all compounds by all adducts and calling
+   * {@link CompoundDBAnnotation#checkMatchAndCalculateDeviation} for all of them in database
+   * order.
+   *
+   * @return clones of all matching compounds with the deviations set, in database order
+   */
+  @NotNull
+  public List<CompoundDBAnnotation> findMatches(@NotNull FeatureListRow row,
+      @Nullable MZTolerance mzTolerance, @Nullable RTTolerance rtTolerance,
+      @Nullable MobilityTolerance mobTolerance, @Nullable Double percCcsTolerance) {
+    final int[] candidates = findCandidates(row, mzTolerance, rtTolerance, percCcsTolerance);
+    if (candidates.length == 0) {
+      return List.of();
+    }
+    Arrays.sort(candidates);
+
+    final List<CompoundDBAnnotation> matches = new ArrayList<>();
+    for (int candidate : candidates) {
+      final CompoundDBAnnotation clone = getAnnotation(candidate).checkMatchAndCalculateDeviation(
+          row, mzTolerance, rtTolerance, mobTolerance, percCcsTolerance);
+      if (clone != null) {
+        matches.add(clone);
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * @return the compound of this entry, ionized by the adduct of the entry
+   */
+  private CompoundDBAnnotation getAnnotation(int entry) {
+    final CompoundDBAnnotation compound = compounds[entryCompound[entry]];
+    final int adduct = entryAdduct[entry];
+    return adduct < 0 ? compound : compound.ionize(adducts[adduct]);
+  }
+
+  /**
+   * @return entry indices of all entries that pass the m/z, RT and CCS checks
+   */
+  private int[] findCandidates(@NotNull FeatureListRow row, @Nullable MZTolerance mzTolerance,
+      @Nullable RTTolerance rtTolerance, @Nullable Double percCcsTolerance) {
+    final IntArrayList candidates = new IntArrayList();
+    if (mzTolerance == null) {
+      for (int i = 0; i < entryCompound.length; i++) {
+        addIfRtAndCcsMatch(candidates, i, row, rtTolerance, percCcsTolerance);
+      }
+      return candidates.toIntArray();
+    }
+
+    final Double rowMz = row.getAverageMZ();
+    if (rowMz != null && mzs.length > 0) {
+      final Range<Double> mzRange = mzTolerance.getToleranceRange(rowMz);
+      final double lower = mzRange.lowerEndpoint();
+      final double upper = mzRange.upperEndpoint();
+
+      // the closest index may be on either side of the lower bound and m/z values may be equal
+      int i = BinarySearch.binarySearch(lower, true, mzs.length, j -> mzs[j]);
+      while (i > 0 && mzs[i - 1] >= lower) {
+        i--;
+      }
+      while (i < mzs.length && mzs[i] < lower) {
+        i++;
+      }
+      for (; i < mzs.length && mzs[i] <= upper; i++) {
+        addIfRtAndCcsMatch(candidates, sortedToEntry[i], row, rtTolerance, percCcsTolerance);
+      }
+    }
+
+    for (int i : withoutMz) {
+      addIfRtAndCcsMatch(candidates, i, row, rtTolerance, percCcsTolerance);
+    }
+    return candidates.toIntArray();
+  }
+
+  /**
+   * Applies the same retention time and CCS conditions as
+   * {@link CompoundDBAnnotation#matches}.
+   */
+  private void addIfRtAndCcsMatch(IntArrayList candidates, int entry, FeatureListRow row,
+      @Nullable RTTolerance rtTolerance, @Nullable Double percCcsTolerance) {
+    final int compound = entryCompound[entry];
+    final float rt = rts[compound];
+    if (rtTolerance != null && !Float.isNaN(rt)) {
+      final Float rowRt = row.getAverageRT();
+      if (rowRt == null || !rtTolerance.checkWithinTolerance(rowRt, rt)) {
+        return;
+      }
+    }
+
+    final float compoundCcs = ccs[compound];
+    if (percCcsTolerance != null && !Float.isNaN(compoundCcs)) {
+      final Float rowCcs = row.getAverageCCS();
+      if (rowCcs == null || Math.abs(1 - (rowCcs / compoundCcs)) > percCcsTolerance) {
+        return;
+      }
+    }
+    candidates.add(entry);
+  }
+}
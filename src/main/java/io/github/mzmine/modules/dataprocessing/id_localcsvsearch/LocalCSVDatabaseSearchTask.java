@@ -25,7 +25,6 @@
 
 package io.github.mzmine.modules.dataprocessing.id_localcsvsearch;
 
-import com.Ostermiller.util.CSVParser;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
@@ -61,7 +60,6 @@ import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.CSVParsingUtils;
 import java.io.File;
-import java.io.FileReader;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -98,6 +96,7 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
 
   private String[][] databaseValues;
   private int finishedLines = 0;
+  private int finishedRows = 0;
   private final FeatureList flist;
   private int sampleColIndex = -1;
 
@@ -134,7 +133,10 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
     if (databaseValues == null) {
       return 0;
     }
-    return ((double) finishedLines) / databaseValues.length;
+    // first half reads the database, second half matches the rows
+    final int numRows = flist.getNumberOfRows();
+    return 0.5 * finishedLines / databaseValues.length + (numRows == 0 ? 0
+        : 0.5 * finishedRows / numRows);
   }
 
   @Override
@@ -151,9 +153,8 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
       ionNetworkLibrary =
           ionLibraryParameterSet != null ? new IonNetworkLibrary(ionLibraryParameterSet,
               mzTolerance) : null;
-      // read database contents in memory
-      FileReader dbFileReader = new FileReader(dataBaseFile);
-      databaseValues = CSVParser.parse(dbFileReader,
+      // read database contents in memory. The parsed database is cached by file hash
+      databaseValues = ParsedCSVDatabaseCache.parse(dataBaseFile,
           "\\t".equals(fieldSeparator) ? '\t' : fieldSeparator.charAt(0));
 
       final StringProperty error = new SimpleStringProperty();
@@ -181,10 +182,11 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
         }
       }
 
+      // all compounds in database order, they are ionized by the index
+      final List<CompoundDBAnnotation> compounds = new ArrayList<>();
       finishedLines++;
       for (; finishedLines < databaseValues.length; finishedLines++) {
         if (isCanceled()) {
-          dbFileReader.close();
           return;
         }
         try {
@@ -194,12 +196,23 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
             continue;
           }
 
-          processOneLine(currentLine, lineIds, commentFields);
+          compounds.add(getCompoundFromLine(currentLine, lineIds, commentFields));
         } catch (Exception e) {
           logger.log(Level.FINE, "Exception while processing csv line " + finishedLines, e);
         }
       }
-      dbFileReader.close();
+
+      // only compare rows to the compounds within the m/z tolerance
+      final CompoundDBIndex index = new CompoundDBIndex(compounds,
+          ionNetworkLibrary != null ? CompoundDBAnnotation.getIonizingAdducts(ionNetworkLibrary)
+              : null);
+      for (FeatureListRow row : flist.getRows()) {
+        if (isCanceled()) {
+          return;
+        }
+        annotateRow(index, row);
+        finishedRows++;
+      }
 
     } catch (Exception e) {
       logger.log(Level.WARNING, "Could not read file " + dataBaseFile, e);
@@ -245,38 +258,19 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
     return raws.stream().anyMatch(raw -> raw.getName().contains(sample));
   }
 
-  private void processOneLine(@NotNull String[] values, @NotNull List<ImportType> linesWithIndices,
-      @NotNull final List<ImportType> commentFields) {
-
-    final CompoundDBAnnotation baseAnnotation = getCompoundFromLine(values, linesWithIndices,
-        commentFields);
-    final List<CompoundDBAnnotation> annotations = new ArrayList<>();
-    if (ionNetworkLibrary != null) {
-      annotations.addAll(
-          CompoundDBAnnotation.buildCompoundsWithAdducts(baseAnnotation, ionNetworkLibrary));
-    } else {
-      annotations.add(baseAnnotation);
-    }
-
-    for (CompoundDBAnnotation annotation : annotations) {
-      for (FeatureListRow peakRow : flist.getRows()) {
-        checkMatchAndAnnotate(annotation, peakRow, mzTolerance, rtTolerance, mobTolerance,
-            ccsTolerance);
-      }
+  private void annotateRow(CompoundDBIndex index, FeatureListRow row) {
+    final List<CompoundDBAnnotation> matches = index.findMatches(row, mzTolerance, rtTolerance,
+        mobTolerance, ccsTolerance);
+    if (matches.isEmpty()) {
+      return;
     }
-  }
-
-  private void checkMatchAndAnnotate(CompoundDBAnnotation annotation, FeatureListRow row,
-      MZTolerance mzTolerance, RTTolerance rtTolerance, MobilityTolerance mobTolerance,
-      Double percCcsTolerance) {
-
-    final CompoundDBAnnotation clone = annotation.checkMatchAndCalculateDeviation(row, mzTolerance,
-        rtTolerance, mobTolerance, percCcsTolerance);
-    if (clone != null) {
-      row.addCompoundAnnotation(clone);
-      row.getCompoundAnnotations()
-          .sort(Comparator.comparingDouble(a -> Objects.requireNonNullElse(a.getScore(), 0f)));
+    // matches are in database order, sorting once results in the same order as sorting after
+    // every single annotation
+    for (CompoundDBAnnotation match : matches) {
+      row.addCompoundAnnotation(match);
     }
+    row.getCompoundAnnotations()
+        .sort(Comparator.comparingDouble(a -> Objects.requireNonNullElse(a.getScore(), 0f)));
   }
 
   @NotNull
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.modules.dataprocessing.id_localcsvsearch;
+
+import com.Ostermiller.util.CSVParser;
+import io.github.mzmine.gui.preferences.MZminePreferences;
+import io.github.mzmine.main.MZmineCore;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps parsed csv databases as binary files in the temp directory. The files are keyed by the
+ * SHA-256 hash of the database content and the separator, so repeated searches of the same
+ * database skip the csv parsing. Only the {@link #MAX_CACHE_FILES} most recently used databases are
+ * kept and files that were not used for {@link #MAX_CACHE_AGE_DAYS} days are deleted.
+ *
+ * @author https://github.com/mzmine
+ */
+class ParsedCSVDatabaseCache {
+
+  private static final Logger logger = Logger.getLogger(ParsedCSVDatabaseCache.class.getName());
+  private static final int FILE_VERSION = 1;
+  private static final String PREFIX = "mzmine_csv_db_";
+  private static final String SUFFIX = ".bin";
+  private static final int MAX_CACHE_FILES = 10;
+  private static final int MAX_CACHE_AGE_DAYS = 30;
+
+  private ParsedCSVDatabaseCache() {
+  }
+
+  /**
+   * Reads the parsed table from the cache or parses the csv file and caches the result. Failures
+   * of the cache only result in parsing the csv file again.
+   *
+   * @return all lines of the csv file including the header
+   */
+  @NotNull
+  static String[][] parse(@NotNull File file, char separator) throws IOException {
+    final File cacheFile = getCacheFile(file, separator);
+    if (cacheFile != null && cacheFile.exists()) {
+      try {
+        final String[][] values = read(cacheFile);
+        logger.finest(() -> "Read parsed database %s from cache %s".formatted(file, cacheFile));
+        // marks the file as recently used for the eviction
+        cacheFile.setLastModified(System.currentTimeMillis());
+        return values;
+      } catch (IOException | RuntimeException e) {
+        logger.log(Level.WARNING, "Cannot read database cache " + cacheFile + ". Parsing "
+            + file + " again.", e);
+      }
+    }
+
+    final String[][] values;
+    try (FileReader reader = new FileReader(file)) {
+      values = CSVParser.parse(reader, separator);
+    }
+
+    if (cacheFile != null) {
+      try {
+        write(values, cacheFile);
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Cannot write database cache " + cacheFile, e);
+      }
+      evict(cacheFile.getParentFile());
+    }
+    return values;
+  }
+
+  /**
+   * Deletes the least recently used cache files beyond {@link #MAX_CACHE_FILES}, cache files that
+   * were not used for {@link #MAX_CACHE_AGE_DAYS} days, and temporary files of interrupted writes.
+   */
+  static void evict(@NotNull File cacheDir) {
+    final File[] files = cacheDir.listFiles(f -> f.isFile() && f.getName().startsWith(PREFIX));
+    if (files == null) {
+      return;
+    }
+    final long now = System.currentTimeMillis();
+    final long maxAge = TimeUnit.DAYS.toMillis(MAX_CACHE_AGE_DAYS);
+    // most recently used first
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+    int kept = 0;
+    for (File f : files) {
+      final long age = now - f.lastModified();
+      final boolean keep = f.getName().endsWith(SUFFIX) ? kept < MAX_CACHE_FILES && age < maxAge
+          : age < TimeUnit.DAYS.toMillis(1);
+      if (keep) {
+        if (f.getName().endsWith(SUFFIX)) {
+          kept++;
+        }
+      } else if (f.delete()) {
+        logger.finest(() -> "Deleted database cache file " + f);
+      }
+    }
+  }
+
+  @Nullable
+  private static File getCacheFile(@NotNull File file, char separator) {
+    final File tempDir = MZmineCore.getConfiguration().getPreferences()
+        .getValue(MZminePreferences.tempDirectory);
+    if (tempDir == null || !tempDir.isDirectory()) {
+      return null;
+    }
+    try (DigestInputStream in = new DigestInputStream(
+        new BufferedInputStream(new FileInputStream(file)), MessageDigest.getInstance("SHA-256"))) {
+      final byte[] buffer = new byte[1 << 16];
+      while (in.read(buffer) != -1) {
+        // only reading to update the digest
+      }
+      final String hash = HexFormat.of().formatHex(in.getMessageDigest().digest());
+      return new File(tempDir, PREFIX + hash + "_" + (int) separator + SUFFIX);
+    } catch (IOException | NoSuchAlgorithmException e) {
+      logger.log(Level.WARNING, "Cannot hash database " + file, e);
+      return null;
+    }
+  }
+
+  private static void write(@NotNull String[][] values, @NotNull File cacheFile)
+      throws IOException {
+    // write to a temporary file first, so concurrent tasks never read partial files
+    final File tmp = File.createTempFile(PREFIX, ".tmp", cacheFile.getParentFile());
+    try {
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(tmp)))) {
+        out.writeInt(FILE_VERSION);
+        out.writeInt(values.length);
+        for (String[] line : values) {
+          out.writeInt(line.length);
+          for (String value : line) {
+            // writeUTF is limited to 64 kB, comment fields may be longer
+            if (value == null) {
+              out.writeInt(-1);
+            } else {
+              final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+              out.writeInt(bytes.length);
+              out.write(bytes);
+            }
+          }
+        }
+      }
+      Files.move(tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp.toPath());
+    }
+  }
+
+  private static String[][] read(@NotNull File cacheFile) throws IOException {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(cacheFile)))) {
+      final int version = in.readInt();
+      if (version != FILE_VERSION) {
+        throw new IOException("Unsupported database cache version " + version);
+      }
+      final String[][] values = new String[in.readInt()][];
+      for (int i = 0; i < values.length; i++) {
+        final String[] line = new String[in.readInt()];
+        for (int j = 0; j < line.length; j++) {
+          final int length = in.readInt();
+          if (length >= 0) {
+            final byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            line[j] = new String(bytes, StandardCharsets.UTF_8);
+          }
+        }
+        values[i] = line;
+      }
+      return values;
+    }
+  }
+}
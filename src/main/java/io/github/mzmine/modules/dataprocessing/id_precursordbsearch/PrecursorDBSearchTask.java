@@ -116,18 +116,20 @@ class PrecursorDBSearchTask extends AbstractTask {
       totalTasks = tasks.size();
       if (!tasks.isEmpty()) {
         // wait for the tasks to finish
-        while (!isCanceled() && !tasks.isEmpty()) {
-          for (int i = 0; i < tasks.size(); i++) {
-            if (tasks.get(i).isFinished() || tasks.get(i).isCanceled()) {
-              tasks.remove(i);
-              i--;
+        try (var blockingWait = MZmineCore.getTaskController().startBlockingWait()) {
+          while (!isCanceled() && !tasks.isEmpty()) {
+            for (int i = 0; i < tasks.size(); i++) {
+              if (tasks.get(i).isFinished() || tasks.get(i).isCanceled()) {
+                tasks.remove(i);
+                i--;
+              }
+            }
+            // wait for all sub tasks to finish
+            try {
+              Thread.sleep(100);
+            } catch (Exception e) {
+              cancel();
             }
-          }
-          // wait for all sub tasks to finish
-          try {
-            Thread.sleep(100);
-          } catch (Exception e) {
-            cancel();
           }
         }
         // cancelled
@@ -25,6 +25,7 @@
 
 package io.github.mzmine.modules.dataprocessing.id_spectral_library_match;
 
+import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.MassList;
@@ -65,6 +66,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class RowsSpectralMatchTask extends AbstractTask {
 
@@ -263,42 +265,95 @@ public class RowsSpectralMatchTask extends AbstractTask {
 
   @Override
   public void run() {
-
-    // combine libraries
-    List<SpectralLibraryEntry> entries = new ArrayList<>();
-    for (var lib : libraries) {
-      entries.addAll(lib.getEntries());
+    // precursor matching uses the sorted precursor index of each library to only visit candidates
+    // otherwise all entries of all libraries are matched
+    final boolean usePrecursorIndex = mzTolerancePrecursor != null;
+    final List<SpectralLibraryEntry> entries = new ArrayList<>();
+    if (usePrecursorIndex) {
+      // create indexes before parallel matching
+      for (var lib : libraries) {
+        lib.getPrecursorIndex();
+      }
+    } else {
+      // combine libraries
+      for (var lib : libraries) {
+        entries.addAll(lib.getEntries());
+      }
     }
+    final int totalEntries = libraries.stream().mapToInt(SpectralLibrary::size).sum();
 
     // run on spectra
     if (scan != null) {
       logger.info(
-          () -> String.format("Comparing %d library spectra to scan: %s", entries.size(), scan));
+          () -> String.format("Comparing %d library spectra to scan: %s", totalEntries, scan));
 
-      matchScan(entries, scan);
+      matchScan(!usePrecursorIndex ? entries
+          : getPrecursorCandidates(scanPrecursorMZ, getPrecursorCCSFromMsMs(scan)), scan);
 
       logger.info(
           () -> String.format("library matches=%d (Errors:%d); library entries=%d; for scan: %s",
-              getCount(), getErrorCount(), entries.size(), scan));
+              getCount(), getErrorCount(), totalEntries, scan));
     }
 
     // run in parallel
     if (rows != null) {
       logger.info(() -> String.format("Comparing %d library spectra to %d feature list rows",
-          entries.size(), totalRows));
+          totalEntries, totalRows));
       rows.stream().parallel().forEach(row -> {
         if (!isCanceled()) {
-          matchRowToLibraries(entries, row);
+          matchRowToLibraries(!usePrecursorIndex ? entries
+              : getPrecursorCandidates(row.getAverageMZ(), row.getAverageCCS()), row);
           finishedRows.incrementAndGet();
         }
       });
 
       logger.info(() -> String.format("library matches=%d (Errors:%d); rows=%d; library entries=%d",
-          getCount(), getErrorCount(), totalRows, entries.size()));
+          getCount(), getErrorCount(), totalRows, totalEntries));
     }
 
   }
 
+  /**
+   * Uses the precursor index of all libraries to find candidates within the precursor tolerance
+   * (and the CCS tolerance if active). The final checks are still done in
+   * {@link #matchSpectrum(Float, double, Float, DataPoint[], SpectralLibraryEntry)}, so the
+   * candidate ranges are slightly wider than the tolerances.
+   *
+   * @param precursorMZ the query precursor m/z
+   * @param ccs         the query ccs or null
+   * @return all candidate entries in the order of the combined libraries
+   */
+  private List<SpectralLibraryEntry> getPrecursorCandidates(double precursorMZ,
+      @Nullable Float ccs) {
+    Range<Double> ccsRange = null;
+    if (ccsTolerance != null) {
+      if (ccs == null) {
+        // cannot match any ccs
+        return List.of();
+      }
+      final Range<Double> range = ccsTolerance.getToleranceRange(ccs);
+      final double margin = Math.abs(ccs) * 1E-6;
+      ccsRange = Range.closed(range.lowerEndpoint() - margin, range.upperEndpoint() + margin);
+    }
+
+    // the tolerance is checked around the library precursor m/z, which may be larger than the
+    // query m/z - use the tolerance of a larger mass and a few ulps for rounding
+    final double tol = mzTolerancePrecursor.getMzToleranceForMass(
+        precursorMZ + 2 * mzTolerancePrecursor.getMzToleranceForMass(precursorMZ))
+        + 4 * Math.ulp(precursorMZ);
+
+    final List<SpectralLibraryEntry> candidates = new ArrayList<>();
+    for (var lib : libraries) {
+      final List<SpectralLibraryEntry> libEntries = lib.getEntries();
+      final int[] indices = lib.getPrecursorIndex()
+          .getCandidates(precursorMZ - tol, precursorMZ + tol, null, ccsRange);
+      for (int index : indices) {
+        candidates.add(libEntries.get(index));
+      }
+    }
+    return candidates;
+  }
+
   /**
    * Match row against all entries, add matches, sort them by score
    *
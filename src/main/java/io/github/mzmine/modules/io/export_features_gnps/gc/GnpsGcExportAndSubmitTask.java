@@ -187,11 +187,13 @@ public class GnpsGcExportAndSubmitTask extends AbstractTask {
     MZmineCore.getTaskController().addTasks(list.toArray(new AbstractTask[list.size()]));
 
     // wait till finish
-    while (!(isCanceled() || isFinished())) {
-      try {
-        Thread.sleep(100);
-      } catch (InterruptedException e) {
-        logger.log(Level.SEVERE, "Error in GNPS-GC export/submit task", e);
+    try (var blockingWait = MZmineCore.getTaskController().startBlockingWait()) {
+      while (!(isCanceled() || isFinished())) {
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          logger.log(Level.SEVERE, "Error in GNPS-GC export/submit task", e);
+        }
       }
     }
   }
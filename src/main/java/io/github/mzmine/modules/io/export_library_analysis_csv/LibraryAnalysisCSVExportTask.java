@@ -263,19 +263,21 @@ public class LibraryAnalysisCSVExportTask extends AbstractTask {
       // the sub tasks are populating the outputList
       // track finished tasks
       String line;
-      while (tasks.size() > 0 || outputList.size() > 0) {
-        Thread.sleep(20);
-        // write data
-        while (outputList.size() > 0) {
-          line = outputList.remove();
-          if (line != null) {
-            writer.append(line).append("\n");
+      try (var blockingWait = MZmineCore.getTaskController().startBlockingWait()) {
+        while (tasks.size() > 0 || outputList.size() > 0) {
+          Thread.sleep(20);
+          // write data
+          while (outputList.size() > 0) {
+            line = outputList.remove();
+            if (line != null) {
+              writer.append(line).append("\n");
+            }
+            processedTypes.incrementAndGet();
           }
-          processedTypes.incrementAndGet();
-        }
 
-        // remove all finished tasks to track progress
-        tasks.removeIf(t -> t.isCanceled() || t.isFinished());
+          // remove all finished tasks to track progress
+          tasks.removeIf(t -> t.isCanceled() || t.isFinished());
+        }
       }
 
     } catch (IOException e) {
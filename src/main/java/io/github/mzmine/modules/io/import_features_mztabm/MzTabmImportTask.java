@@ -243,21 +243,23 @@ public class MzTabmImportTask extends AbstractTask {
       }
 
       // Wait until all raw data file imports have completed
-      while (true) {
-        if (isCanceled()) {
-          return null;
-        }
-        boolean tasksFinished = true;
-        for (Task task : underlyingTasks) {
-          if ((task.getStatus() == TaskStatus.WAITING) || (task.getStatus()
-              == TaskStatus.PROCESSING)) {
-            tasksFinished = false;
+      try (var blockingWait = MZmineCore.getTaskController().startBlockingWait()) {
+        while (true) {
+          if (isCanceled()) {
+            return null;
           }
+          boolean tasksFinished = true;
+          for (Task task : underlyingTasks) {
+            if ((task.getStatus() == TaskStatus.WAITING) || (task.getStatus()
+                == TaskStatus.PROCESSING)) {
+              tasksFinished = false;
+            }
+          }
+          if (tasksFinished) {
+            break;
+          }
+          Thread.sleep(1000);
         }
-        if (tasksFinished) {
-          break;
-        }
-        Thread.sleep(1000);
       }
     } else {
       finishedPercentage = 0.5;
@@ -32,6 +32,8 @@ import io.github.mzmine.parameters.impl.SimpleParameterSet;
 import io.github.mzmine.parameters.parametertypes.BooleanParameter;
 import io.github.mzmine.parameters.parametertypes.ModuleComboParameter;
 import io.github.mzmine.parameters.parametertypes.OptionalParameter;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelectionParameter;
 
 public class AdvancedSpectraImportParameters extends SimpleParameterSet {
 
@@ -52,8 +54,21 @@ public class AdvancedSpectraImportParameters extends SimpleParameterSet {
       This reduces the intensity differences between spectra acquired with different injection times
       and reverts to "raw" intensities.""", false);
 
+  public static final BooleanParameter discardProfileData = new BooleanParameter(
+      "Discard profile data", """
+      Replace the profile data of scans with the detected masses (mzML import).
+      Uncheck to keep the profile data in the scans and store the detected masses as a mass list.
+      Keeping the profile data requires more memory and disk space.""", true);
+
+  public static final OptionalParameter<ScanSelectionParameter> scanFilter = new OptionalParameter<>(
+      new ScanSelectionParameter("Scan filters", """
+          Only import scans that match the filters (mzML import). Indexed mzML files only read the
+          matching spectra, which is much faster for a retention time range or a single MS level.
+          The mobility range is not applied.""", new ScanSelection(1)), false);
+
   public AdvancedSpectraImportParameters() {
-    super(new Parameter[]{msMassDetection, ms2MassDetection, denormalizeMSnScans});
+    super(new Parameter[]{msMassDetection, ms2MassDetection, denormalizeMSnScans,
+        discardProfileData, scanFilter});
   }
 
 }
@@ -35,6 +35,7 @@ import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.MZmineModule;
 import io.github.mzmine.modules.MZmineModuleCategory;
 import io.github.mzmine.modules.MZmineProcessingModule;
+import io.github.mzmine.modules.batchmode.BatchStepScope;
 import io.github.mzmine.modules.io.import_rawdata_aird.AirdImportTask;
 import io.github.mzmine.modules.io.import_rawdata_bruker_tdf.TDFImportTask;
 import io.github.mzmine.modules.io.import_rawdata_bruker_tdf.TDFUtils;
@@ -106,6 +107,12 @@ public class AllSpectralDataImportModule implements MZmineProcessingModule {
     return MZmineModuleCategory.RAWDATAIMPORT;
   }
 
+  @NotNull
+  @Override
+  public BatchStepScope getBatchStepScope() {
+    return BatchStepScope.PER_FILE;
+  }
+
   @NotNull
   @Override
   public Class<? extends ParameterSet> getParameterSetClass() {
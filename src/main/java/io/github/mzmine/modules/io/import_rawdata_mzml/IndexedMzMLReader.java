@@ -0,0 +1,510 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.modules.io.import_rawdata_mzml;
+
+import com.google.common.collect.Range;
+import io.github.msdk.MSDKException;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.MzMLFileImportMethod;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLMsScan;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLParser;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLRawDataFile;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLTags;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.util.ByteBufferInputStream;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.util.FileMemoryMapper;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import io.github.mzmine.util.MemoryMapStorage;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javolution.text.CharArray;
+import javolution.xml.internal.stream.XMLStreamReaderImpl;
+import javolution.xml.stream.XMLStreamConstants;
+import javolution.xml.stream.XMLStreamException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import sun.misc.Unsafe;
+
+/**
+ * Random access to the spectra of an indexedmzML file. Only the header of the file and the
+ * &lt;indexList&gt; with the byte offset of each spectrum are read on opening. Spectra are parsed
+ * on demand from their offset in the memory mapped file, and their binary data arrays are only
+ * decoded when the data is accessed. Spectra can be accessed by index, scan number, and retention
+ * time (binary search, assuming spectra are sorted by retention time), or filtered with a
+ * {@link ScanSelection} without decoding spectra that do not match.
+ * <p>
+ * Parsed spectra are cached. Decoded data stays in the spectrum until
+ * {@link MzMLMsScan#clearDecodedValues()} is called. All methods are thread safe, the returned
+ * spectra read from their own copy of the mapped file. {@link #close()} unmaps the file, the
+ * spectra must not be accessed afterwards.
+ *
+ * @author https://github.com/mzmine
+ */
+public class IndexedMzMLReader implements AutoCloseable {
+
+  private static final Logger logger = Logger.getLogger(IndexedMzMLReader.class.getName());
+
+  /**
+   * The indexListOffset is the last element before the optional checksum at the end of the file
+   */
+  private static final int INDEX_LIST_OFFSET_SEARCH_BYTES = 4096;
+  private static final Pattern INDEX_LIST_OFFSET_PATTERN = Pattern.compile(
+      "<" + MzMLTags.TAG_INDEX_LIST_OFFSET + ">\\s*(\\d+)\\s*</" + MzMLTags.TAG_INDEX_LIST_OFFSET
+          + ">");
+
+  private final File file;
+  private final ByteBufferInputStream mappedFile;
+  private final MzMLParser parser;
+  private final String[] spectrumIds;
+  private final long[] spectrumOffsets;
+  private final int[] scanNumbers;
+  private final Int2IntOpenHashMap scanNumberToIndex;
+  // in minutes, NaN if not parsed yet
+  private final float[] retentionTimes;
+  private final MzMLMsScan[] spectra;
+  private MzMLMsScan lastParsedSpectrum;
+  private boolean closed = false;
+
+  private IndexedMzMLReader(File file, ByteBufferInputStream mappedFile, String[] spectrumIds,
+      long[] spectrumOffsets) throws MSDKException {
+    this.file = file;
+    this.mappedFile = mappedFile;
+    this.spectrumIds = spectrumIds;
+    this.spectrumOffsets = spectrumOffsets;
+
+    final MzMLFileImportMethod importMethod = new MzMLFileImportMethod(file);
+    importMethod.setSpectrumConsumer(spectrum -> lastParsedSpectrum = spectrum);
+    parser = new MzMLParser(importMethod);
+    parseHeader();
+
+    final int numSpectra = spectrumIds.length;
+    scanNumbers = new int[numSpectra];
+    scanNumberToIndex = new Int2IntOpenHashMap(numSpectra);
+    scanNumberToIndex.defaultReturnValue(-1);
+    for (int i = 0; i < numSpectra; i++) {
+      // same scan numbers as the parser: scan=xx in the id or the index + 1
+      scanNumbers[i] = parser.getScanNumber(spectrumIds[i]).orElse(i + 1);
+      scanNumberToIndex.putIfAbsent(scanNumbers[i], i);
+    }
+    retentionTimes = new float[numSpectra];
+    Arrays.fill(retentionTimes, Float.NaN);
+    spectra = new MzMLMsScan[numSpectra];
+  }
+
+  /**
+   * Opens an indexedmzML file and reads its index.
+   *
+   * @param file the mzML file
+   * @return the reader or null if the file does not contain a spectrum index
+   * @throws IOException   if the file cannot be read
+   * @throws MSDKException if the header or index cannot be parsed
+   */
+  @Nullable
+  public static IndexedMzMLReader open(@NotNull File file) throws IOException, MSDKException {
+    final ByteBufferInputStream mappedFile = FileMemoryMapper.mapToMemory(file);
+    try {
+      final long indexListOffset = findIndexListOffset(mappedFile);
+      if (indexListOffset < 0) {
+        logger.fine(() -> "No index list offset in file " + file.getName());
+        unmap(mappedFile);
+        return null;
+      }
+
+      final List<String> ids = new ArrayList<>();
+      final LongArrayList offsets = new LongArrayList();
+      readSpectrumIndex(mappedFile, indexListOffset, ids, offsets);
+      if (ids.isEmpty()) {
+        logger.fine(() -> "No spectrum index in file " + file.getName());
+        unmap(mappedFile);
+        return null;
+      }
+      return new IndexedMzMLReader(file, mappedFile, ids.toArray(String[]::new),
+          offsets.toLongArray());
+    } catch (MSDKException | RuntimeException e) {
+      unmap(mappedFile);
+      throw e;
+    }
+  }
+
+  private static void unmap(ByteBufferInputStream mappedFile) {
+    final Unsafe theUnsafe = MemoryMapStorage.getUnsafe();
+    if (theUnsafe != null) {
+      mappedFile.unmap(theUnsafe);
+    }
+  }
+
+  /**
+   * @return the byte offset of the indexList or -1 if the file is not indexed
+   */
+  private static long findIndexListOffset(ByteBufferInputStream mappedFile) {
+    final ByteBufferInputStream is = mappedFile.copy();
+    final int length = (int) Math.min(INDEX_LIST_OFFSET_SEARCH_BYTES, is.length());
+    is.position(is.length() - length);
+    final byte[] tail = new byte[length];
+    int read = 0;
+    while (read < length) {
+      final int n = is.read(tail, read, length - read);
+      if (n <= 0) {
+        break;
+      }
+      read += n;
+    }
+
+    final Matcher matcher = INDEX_LIST_OFFSET_PATTERN.matcher(
+        new String(tail, 0, read, StandardCharsets.US_ASCII));
+    long offset = -1;
+    // use the last match
+    while (matcher.find()) {
+      offset = Long.parseLong(matcher.group(1));
+    }
+    return offset < is.length() ? offset : -1;
+  }
+
+  private static void readSpectrumIndex(ByteBufferInputStream mappedFile, long indexListOffset,
+      List<String> ids, LongArrayList offsets) throws MSDKException {
+    final ByteBufferInputStream is = mappedFile.copy();
+    is.position(indexListOffset);
+
+    final XMLStreamReaderImpl reader = new XMLStreamReaderImpl();
+    try {
+      reader.setInput(is, "UTF-8");
+      boolean inSpectrumIndex = false;
+      String idRef = null;
+      final StringBuilder offset = new StringBuilder();
+      int eventType;
+      do {
+        eventType = reader.next();
+        switch (eventType) {
+          case XMLStreamConstants.START_ELEMENT -> {
+            final CharArray name = reader.getLocalName();
+            if (name.contentEquals(MzMLTags.TAG_INDEX)) {
+              final CharArray indexName = reader.getAttributeValue(null, "name");
+              inSpectrumIndex = indexName != null && indexName.contentEquals("spectrum");
+            } else if (inSpectrumIndex && name.contentEquals(MzMLTags.TAG_OFFSET)) {
+              final CharArray id = reader.getAttributeValue(null, "idRef");
+              idRef = id != null ? id.toString() : null;
+              offset.setLength(0);
+            }
+          }
+          case XMLStreamConstants.CHARACTERS -> {
+            if (idRef != null) {
+              offset.append(reader.getText());
+            }
+          }
+          case XMLStreamConstants.END_ELEMENT -> {
+            final CharArray name = reader.getLocalName();
+            if (idRef != null && name.contentEquals(MzMLTags.TAG_OFFSET)) {
+              ids.add(idRef);
+              offsets.add(Long.parseLong(offset.toString().trim()));
+              idRef = null;
+            } else if (name.contentEquals(MzMLTags.TAG_INDEX)) {
+              inSpectrumIndex = false;
+            } else if (name.contentEquals(MzMLTags.TAG_INDEX_LIST)) {
+              return;
+            }
+          }
+        }
+      } while (eventType != XMLStreamConstants.END_DOCUMENT);
+    } catch (XMLStreamException | NumberFormatException e) {
+      throw new MSDKException(e);
+    } finally {
+      closeQuietly(reader);
+    }
+  }
+
+  /**
+   * Parses the file header up to the opening spectrumList tag, which contains the referenceable
+   * param groups used by the spectra.
+   */
+  private void parseHeader() throws MSDKException {
+    final ByteBufferInputStream is = mappedFile.copy();
+    is.position(0);
+    final XMLStreamReaderImpl reader = new XMLStreamReaderImpl();
+    try {
+      reader.setInput(is, "UTF-8");
+      int eventType;
+      do {
+        eventType = reader.next();
+        switch (eventType) {
+          case XMLStreamConstants.START_ELEMENT -> {
+            final CharArray name = reader.getLocalName();
+            parser.processOpeningTag(reader, is, name);
+            if (name.contentEquals(MzMLTags.TAG_SPECTRUM_LIST)) {
+              return;
+            }
+          }
+          case XMLStreamConstants.END_ELEMENT ->
+              parser.processClosingTag(reader, reader.getLocalName());
+          case XMLStreamConstants.CHARACTERS -> parser.processCharacters(reader);
+        }
+      } while (eventType != XMLStreamConstants.END_DOCUMENT);
+      throw new MSDKException("No spectrumList in file " + file.getName());
+    } catch (XMLStreamException e) {
+      throw new MSDKException(e);
+    } finally {
+      closeQuietly(reader);
+    }
+  }
+
+  private MzMLMsScan parseSpectrum(int index) throws MSDKException {
+    final long offset = spectrumOffsets[index];
+    // the spectrum keeps this stream to decode its data later
+    final ByteBufferInputStream is = mappedFile.copy();
+    is.position(offset);
+    parser.setPositionOffset(offset);
+    lastParsedSpectrum = null;
+
+    final XMLStreamReaderImpl reader = new XMLStreamReaderImpl();
+    try {
+      reader.setInput(is, "UTF-8");
+      boolean first = true;
+      int eventType;
+      do {
+        eventType = reader.next();
+        switch (eventType) {
+          case XMLStreamConstants.START_ELEMENT -> {
+            final CharArray name = reader.getLocalName();
+            if (first && !name.contentEquals(MzMLTags.TAG_SPECTRUM)) {
+              throw new MSDKException(
+                  "Invalid offset %d of spectrum %s in index of file %s".formatted(offset,
+                      spectrumIds[index], file.getName()));
+            }
+            first = false;
+            parser.processOpeningTag(reader, is, name);
+          }
+          case XMLStreamConstants.END_ELEMENT -> {
+            final CharArray name = reader.getLocalName();
+            parser.processClosingTag(reader, name);
+            if (name.contentEquals(MzMLTags.TAG_SPECTRUM)) {
+              return lastParsedSpectrum;
+            }
+          }
+          case XMLStreamConstants.CHARACTERS -> parser.processCharacters(reader);
+        }
+      } while (eventType != XMLStreamConstants.END_DOCUMENT);
+      return null;
+    } catch (XMLStreamException e) {
+      throw new MSDKException(e);
+    } finally {
+      closeQuietly(reader);
+    }
+  }
+
+  private static void closeQuietly(XMLStreamReaderImpl reader) {
+    try {
+      reader.close();
+    } catch (XMLStreamException e) {
+      logger.finest(() -> "Cannot close XML reader: " + e.getMessage());
+    }
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public int getNumberOfSpectra() {
+    return spectrumIds.length;
+  }
+
+  public String getSpectrumId(int index) {
+    return spectrumIds[index];
+  }
+
+  /**
+   * @return the scan number of the spectrum, does not parse the spectrum
+   */
+  public int getScanNumber(int index) {
+    return scanNumbers[index];
+  }
+
+  /**
+   * @return the index of the spectrum or -1 if there is no spectrum with this scan number
+   */
+  public int indexOfScanNumber(int scanNumber) {
+    return scanNumberToIndex.get(scanNumber);
+  }
+
+  /**
+   * Parses the spectrum at the index on first access. The binary data arrays are decoded when
+   * the data is accessed.
+   *
+   * @return the spectrum or null if the spectrum has no m/z or intensity array
+   * @throws MSDKException         if the spectrum cannot be parsed
+   * @throws IllegalStateException if the reader was closed
+   */
+  @Nullable
+  public synchronized MzMLMsScan getSpectrum(int index) throws MSDKException {
+    if (closed) {
+      throw new IllegalStateException("Reader of file " + file.getName() + " is closed.");
+    }
+    if (spectra[index] == null) {
+      spectra[index] = parseSpectrum(index);
+    }
+    return spectra[index];
+  }
+
+  /**
+   * @return the spectrum or null if there is no spectrum with this scan number
+   * @throws MSDKException if the spectrum cannot be parsed
+   */
+  @Nullable
+  public MzMLMsScan getSpectrumByScanNumber(int scanNumber) throws MSDKException {
+    final int index = indexOfScanNumber(scanNumber);
+    return index >= 0 ? getSpectrum(index) : null;
+  }
+
+  /**
+   * @return the retention time in minutes or NaN if the spectrum has no retention time
+   * @throws MSDKException if the spectrum cannot be parsed
+   */
+  public synchronized float getRetentionTime(int index) throws MSDKException {
+    if (Float.isNaN(retentionTimes[index])) {
+      final MzMLMsScan spectrum = getSpectrum(index);
+      final Float rt = spectrum != null ? spectrum.getRetentionTime() : null;
+      retentionTimes[index] = rt != null ? rt / 60f : Float.NaN;
+    }
+    return retentionTimes[index];
+  }
+
+  /**
+   * Binary search for the first spectrum with a retention time greater or equal to rt. Parses only
+   * the spectra visited by the search. Spectra without retention time are treated as lower.
+   *
+   * @param rt the retention time in minutes
+   * @return the index of the first spectrum at or after rt, or the number of spectra if all
+   * spectra are before rt
+   * @throws MSDKException if a spectrum cannot be parsed
+   */
+  public int indexOfRetentionTime(float rt) throws MSDKException {
+    int low = 0;
+    int high = spectrumIds.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      final float midRt = getRetentionTime(mid);
+      if (Float.isNaN(midRt) || midRt < rt) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Parses only the spectra in the retention time range and scan number range of the selection.
+   * The remaining criteria are checked on the metadata of each spectrum, so spectra that do not
+   * match are never decoded. The mobility range is not checked.
+   *
+   * @param selection the scan selection
+   * @return all matching spectra in file order
+   * @throws MSDKException if a spectrum cannot be parsed
+   */
+  public List<MzMLMsScan> getSpectra(@NotNull ScanSelection selection) throws MSDKException {
+    final Range<Float> rtRange = selection.getScanRTRange();
+    final Range<Integer> scanNumberRange = selection.getScanNumberRange();
+    final int start =
+        rtRange != null && rtRange.hasLowerBound() ? indexOfRetentionTime(rtRange.lowerEndpoint())
+            : 0;
+    final int scanNumberOffset =
+        scanNumberRange != null && scanNumberRange.hasLowerBound() ? scanNumberRange.lowerEndpoint()
+            : (scanNumbers.length > 0 ? scanNumbers[0] : 1);
+
+    final List<MzMLMsScan> matching = new ArrayList<>();
+    for (int i = start; i < spectrumIds.length; i++) {
+      if (scanNumberRange != null && !scanNumberRange.contains(scanNumbers[i])) {
+        continue;
+      }
+      final MzMLMsScan spectrum = getSpectrum(i);
+      if (spectrum == null) {
+        continue;
+      }
+      final float rt = getRetentionTime(i);
+      if (rtRange != null && rtRange.hasUpperBound() && rt > rtRange.upperEndpoint()) {
+        break;
+      }
+      if (matches(selection, spectrum, rt, scanNumberOffset)) {
+        matching.add(spectrum);
+      }
+    }
+    return matching;
+  }
+
+  /**
+   * Checks the metadata of a spectrum. The mobility range is not checked.
+   *
+   * @param scanNumberOffset is used for the base filtering integer (filter every n-th scan)
+   * @return true if the spectrum matches the selection
+   */
+  public static boolean matches(@NotNull ScanSelection selection, @NotNull MzMLMsScan spectrum,
+      int scanNumberOffset) {
+    final Float rt = spectrum.getRetentionTime();
+    return matches(selection, spectrum, rt != null ? rt / 60f : Float.NaN, scanNumberOffset);
+  }
+
+  private static boolean matches(ScanSelection selection, MzMLMsScan spectrum, float rt,
+      int scanNumberOffset) {
+    // the spectrum type might require decoding if it is not defined in the file
+    return selection.matches(spectrum.getMsLevel(),
+        ConversionUtils.msdkToMZminePolarityType(spectrum.getPolarity()),
+        selection.getSpectrumType() != null ? ConversionUtils.msdkToMZmineSpectrumType(
+            spectrum.getSpectrumType()) : null, spectrum.getScanNumber(), rt,
+        spectrum.getScanDefinition(), scanNumberOffset);
+  }
+
+  /**
+   * @param spectra spectra of this reader
+   * @return a raw data file with the spectra and the start time stamp of this file
+   */
+  @NotNull
+  public MzMLRawDataFile createRawDataFile(@NotNull List<MzMLMsScan> spectra) {
+    final MzMLRawDataFile headerFile = parser.getMzMLRawFile();
+    final MzMLRawDataFile rawFile = new MzMLRawDataFile(file, headerFile.getMsFunctions(),
+        new ArrayList<>(spectra), new ArrayList<>());
+    rawFile.setStartTimeStamp(headerFile.getStartTimeStamp());
+    return rawFile;
+  }
+
+  /**
+   * Unmaps the file. The spectra of this reader must not be accessed afterwards, as their data is
+   * decoded from the mapped file. Copy the data first, e.g., by converting the spectra to scans.
+   */
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    Arrays.fill(spectra, null);
+    lastParsedSpectrum = null;
+    unmap(mappedFile);
+  }
+}
@@ -41,6 +41,7 @@ import io.github.mzmine.datamodel.impl.BuildingMobilityScan;
 import io.github.mzmine.datamodel.impl.MsdkScanWrapper;
 import io.github.mzmine.datamodel.impl.SimpleFrame;
 import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
 import io.github.mzmine.datamodel.msms.PasefMsMsInfo;
 import io.github.mzmine.modules.MZmineModule;
 import io.github.mzmine.modules.MZmineProcessingStep;
@@ -51,6 +52,7 @@ import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.MzMLFileImportMethod
 import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLMsScan;
 import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLRawDataFile;
 import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
 import io.github.mzmine.project.impl.IMSRawDataFileImpl;
 import io.github.mzmine.project.impl.RawDataFileImpl;
 import io.github.mzmine.taskcontrol.AbstractTask;
@@ -106,6 +108,11 @@ public class MSDKmzMLImportTask extends AbstractTask {
   private MZmineProcessingStep<MassDetector> ms1Detector = null;
   private MZmineProcessingStep<MassDetector> ms2Detector = null;
   private boolean denormalizeMSnScans;
+  private boolean discardProfileData = true;
+  // only scans that match are imported, null to import all scans
+  private ScanSelection scanSelection = null;
+  // applies mass detection while the file is parsed
+  private MzMLMassDetectionPipeline massDetectionPipeline = null;
 
   public MSDKmzMLImportTask(MZmineProject project, File fileToOpen,
       @NotNull final Class<? extends MZmineModule> module, @NotNull final ParameterSet parameters,
@@ -137,6 +144,12 @@ public class MSDKmzMLImportTask extends AbstractTask {
       }
       denormalizeMSnScans = advancedParam.getValue(
           AdvancedSpectraImportParameters.denormalizeMSnScans);
+      discardProfileData = advancedParam.getValue(
+          AdvancedSpectraImportParameters.discardProfileData);
+      if (advancedParam.getValue(AdvancedSpectraImportParameters.scanFilter)) {
+        scanSelection = advancedParam.getParameter(AdvancedSpectraImportParameters.scanFilter)
+            .getEmbeddedParameter().getValue();
+      }
     }
 
     this.applyMassDetection = ms1Detector != null || ms2Detector != null;
@@ -152,24 +165,51 @@ public class MSDKmzMLImportTask extends AbstractTask {
     setStatus(TaskStatus.PROCESSING);
 
     RawDataFileImpl newMZmineFile;
+    IndexedMzMLReader indexedReader = null;
     try {
+      if (fis == null && scanSelection != null) {
+        indexedReader = IndexedMzMLReader.open(file);
+      }
 
-      if (fis != null) {
-        msdkTask = new MzMLFileImportMethod(fis);
-      } else {
-        msdkTask = new MzMLFileImportMethod(file);
+      if (applyMassDetection) {
+        // decode and detect masses on worker threads while the XML is parsed. The indexed reader
+        // only returns the selected spectra, otherwise the pipeline skips the other spectra.
+        massDetectionPipeline = new MzMLMassDetectionPipeline(ms1Detector, ms2Detector,
+            denormalizeMSnScans, indexedReader == null ? scanSelection : null);
       }
-      addTaskStatusListener((task, newStatus, oldStatus) -> {
-        if (newStatus == TaskStatus.CANCELED) {
-          msdkTask.cancel();
+
+      final MzMLRawDataFile msdkTaskRes;
+      if (indexedReader != null) {
+        // only parse the selected spectra of indexed files
+        final List<MzMLMsScan> spectra = indexedReader.getSpectra(scanSelection);
+        if (massDetectionPipeline != null) {
+          spectra.forEach(massDetectionPipeline);
+        }
+        msdkTaskRes = indexedReader.createRawDataFile(spectra);
+      } else {
+        if (fis != null) {
+          msdkTask = new MzMLFileImportMethod(fis);
+        } else {
+          msdkTask = new MzMLFileImportMethod(file);
         }
-      });
-      MzMLRawDataFile msdkTaskRes = msdkTask.execute();
-      io.github.msdk.datamodel.RawDataFile msdkFile = msdkTask.getResult();
+        addTaskStatusListener((task, newStatus, oldStatus) -> {
+          if (newStatus == TaskStatus.CANCELED) {
+            msdkTask.cancel();
+          }
+        });
+        msdkTask.setSpectrumConsumer(massDetectionPipeline);
+        final MzMLRawDataFile parsedFile = msdkTask.execute();
+        msdkTaskRes = scanSelection != null && parsedFile != null ? filterScans(parsedFile)
+            : parsedFile;
+      }
+      io.github.msdk.datamodel.RawDataFile msdkFile = msdkTaskRes;
 
       if (isCanceled()) {
         return;
       }
+      if (massDetectionPipeline != null) {
+        massDetectionPipeline.awaitCompletion();
+      }
 
       if (msdkFile == null) {
         setStatus(TaskStatus.ERROR);
@@ -201,11 +241,23 @@ public class MSDKmzMLImportTask extends AbstractTask {
         buildLCMSFile(msdkFile, newMZmineFile);
       }
 
+      if (indexedReader != null) {
+        // all data was copied to the new file. On errors, the mapping is released by the GC
+        // instead, as mass detection might still be reading from the file.
+        indexedReader.close();
+      }
+
     } catch (Throwable e) {
       e.printStackTrace();
       setStatus(TaskStatus.ERROR);
       setErrorMessage("Error parsing mzML: " + ExceptionUtils.exceptionToString(e));
       return;
+    } finally {
+      if (massDetectionPipeline != null) {
+        massDetectionPipeline.close();
+        // releases the temporary storage of the detected masses
+        massDetectionPipeline = null;
+      }
     }
 
     if (isCanceled()) {
@@ -227,6 +279,24 @@ public class MSDKmzMLImportTask extends AbstractTask {
     setStatus(TaskStatus.FINISHED);
   }
 
+  /**
+   * @return a file with only the scans that match the scan selection
+   */
+  private MzMLRawDataFile filterScans(MzMLRawDataFile parsedFile) {
+    final List<MsScan> scans = parsedFile.getScans();
+    final int scanNumberOffset = scans.isEmpty() ? 1 : scans.get(0).getScanNumber();
+    final List<MsScan> filtered = new ArrayList<>();
+    for (MsScan scan : scans) {
+      if (IndexedMzMLReader.matches(scanSelection, (MzMLMsScan) scan, scanNumberOffset)) {
+        filtered.add(scan);
+      }
+    }
+    final MzMLRawDataFile filteredFile = new MzMLRawDataFile(file, parsedFile.getMsFunctions(),
+        filtered, parsedFile.getChromatograms());
+    filteredFile.setStartTimeStamp(parsedFile.getStartTimeStamp());
+    return filteredFile;
+  }
+
   private double[][] applyMassDetection(MZmineProcessingStep<MassDetector> msDetector,
       MsdkScanWrapper scan) {
     // run mass detection on data object
@@ -244,39 +314,58 @@ public class MSDKmzMLImportTask extends AbstractTask {
 
   public void buildLCMSFile(io.github.msdk.datamodel.RawDataFile file, RawDataFile newMZmineFile)
       throws IOException {
-    for (MsScan scan : file.getScans()) {
+    // scans with detected masses only need their profile data if it is kept
+    final MzMLParallelScanDecoder decoder = new MzMLParallelScanDecoder(file.getScans(),
+        scan -> !discardProfileData || massDetectionPipeline == null
+            || !massDetectionPipeline.isProcessed(scan));
+    final int numScans = file.getScans().size();
+    for (int i = 0; i < numScans; i++) {
       if (isCanceled()) {
+        decoder.release();
         return;
       }
-      MzMLMsScan mzMLScan = (MzMLMsScan) scan;
+      final MzMLMsScan mzMLScan = decoder.get(i);
+      final MsScan scan = mzMLScan;
 
       Scan newScan = null;
       if (applyMassDetection) {
-        // wrap scan
-        MsdkScanWrapper wrapper = new MsdkScanWrapper(scan);
-        double[][] mzIntensities = null;
-
-        // apply mass detection
-        if (ms1Detector != null && wrapper.getMSLevel() == 1) {
-          mzIntensities = applyMassDetection(ms1Detector, wrapper);
-        } else if (ms2Detector != null && wrapper.getMSLevel() >= 2) {
-          mzIntensities = applyMassDetection(ms2Detector, wrapper);
-          if (denormalizeMSnScans) {
-            ScanUtils.denormalizeIntensitiesMultiplyByInjectTime(mzIntensities[1],
-                wrapper.getInjectionTime());
+        // most scans were already processed by the pipeline during parsing
+        double[][] mzIntensities = massDetectionPipeline != null
+            ? massDetectionPipeline.getDetectedMasses(mzMLScan) : null;
+
+        if (mzIntensities == null) {
+          // wrap scan
+          MsdkScanWrapper wrapper = new MsdkScanWrapper(scan);
+
+          // apply mass detection
+          if (ms1Detector != null && wrapper.getMSLevel() == 1) {
+            mzIntensities = applyMassDetection(ms1Detector, wrapper);
+          } else if (ms2Detector != null && wrapper.getMSLevel() >= 2) {
+            mzIntensities = applyMassDetection(ms2Detector, wrapper);
+            if (denormalizeMSnScans) {
+              ScanUtils.denormalizeIntensitiesMultiplyByInjectTime(mzIntensities[1],
+                  wrapper.getInjectionTime());
+            }
+          }
+
+          if (mzIntensities != null) {
+            // sort arrays because some files are unsorted. Latest versions of msconvert should fix that
+            mzIntensities = DataPointUtils.sort(mzIntensities[0], mzIntensities[1],
+                DataPointSorter.DEFAULT_MZ_ASCENDING);
           }
         }
 
         if (mzIntensities != null) {
-          // sort arrays because some files are unsorted. Latest versions of msconvert should fix that
-          mzIntensities = DataPointUtils.sort(mzIntensities[0], mzIntensities[1],
-              DataPointSorter.DEFAULT_MZ_ASCENDING);
-
-          // create mass list and scan. Override data points and spectrum type
-          newScan = ConversionUtils.msdkScanToSimpleScan(newMZmineFile, mzMLScan, mzIntensities[0],
-              mzIntensities[1], MassSpectrumType.CENTROIDED);
-          ScanPointerMassList newMassList = new ScanPointerMassList(newScan);
-          newScan.addMassList(newMassList);
+          if (discardProfileData) {
+            // create mass list and scan. Override data points and spectrum type
+            newScan = ConversionUtils.msdkScanToSimpleScan(newMZmineFile, mzMLScan,
+                mzIntensities[0], mzIntensities[1], MassSpectrumType.CENTROIDED);
+            newScan.addMassList(new ScanPointerMassList(newScan));
+          } else {
+            // keep the profile data in the scan
+            newScan = ConversionUtils.msdkScanToSimpleScan(newMZmineFile, mzMLScan);
+            newScan.addMassList(new SimpleMassList(storage, mzIntensities));
+          }
         }
       }
 
@@ -291,6 +380,7 @@ public class MSDKmzMLImportTask extends AbstractTask {
           "Importing " + this.file.getName() + ", parsed " + parsedScans + "/" + totalScans
               + " scans";
     }
+    decoder.release();
   }
 
   public void buildIonMobilityFile(io.github.msdk.datamodel.RawDataFile file,
@@ -311,12 +401,17 @@ public class MSDKmzMLImportTask extends AbstractTask {
     final double[] mobilities = mobilitiesMap.keySet().stream().mapToDouble(RangeUtils::rangeCenter)
         .toArray();
 
+    final MzMLParallelScanDecoder decoder = new MzMLParallelScanDecoder(file.getScans(),
+        scan -> scan.getMobility() != null);
+    final int numScans = file.getScans().size();
 //    int previousFunction = 1;
-    for (MsScan scan : file.getScans()) {
+    for (int i = 0; i < numScans; i++) {
       if (isCanceled()) {
+        decoder.release();
         return;
       }
-      MzMLMsScan mzMLScan = (MzMLMsScan) scan;
+      final MzMLMsScan mzMLScan = decoder.get(i);
+      final MsScan scan = mzMLScan;
       if (mzMLScan.getMobility() == null) {
         continue;
       }
@@ -389,6 +484,7 @@ public class MSDKmzMLImportTask extends AbstractTask {
       mobilityScanNumberCounter++;
       parsedScans++;
     }
+    decoder.release();
 
     // apply mass detection to frames and mobility scans
     if (advancedParam != null) {
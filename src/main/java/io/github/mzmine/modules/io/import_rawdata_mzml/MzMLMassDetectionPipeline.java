@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.modules.io.import_rawdata_mzml;
+
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.datamodel.impl.MsdkScanWrapper;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.MZmineProcessingStep;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLMsScan;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.util.ByteBufferInputStream;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import io.github.mzmine.taskcontrol.TaskController.AdditionalPermits;
+import io.github.mzmine.util.DataPointSorter;
+import io.github.mzmine.util.DataPointUtils;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.scans.ScanUtils;
+import java.nio.DoubleBuffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Applies mass detection to mzML spectra while the file is still parsed. The parser passes every
+ * finished spectrum to {@link #accept(MzMLMsScan)}, which hands decoding of the binary arrays and
+ * mass detection of the spectra that match the scan selection to a worker pool. Each spectrum gets
+ * its own copy of the memory mapped input stream, so workers never move the position of the stream
+ * that the XML reader uses. The number of spectra in flight is limited, which blocks the parser if
+ * the workers fall behind and bounds the number of decoded profile spectra held in memory. The
+ * decoded profile arrays are released after mass detection and the detected masses are written to
+ * a temporary memory mapped storage, so the results of a whole file are not held on the heap until
+ * the scans are built. The temporary files are reclaimed once the pipeline is closed and
+ * unreachable.
+ * <p>
+ * The workers run on CPU permits of the task controller, which the import task takes in addition
+ * to its own permit as long as no other task waits for them. Without additional permits, mass
+ * detection runs on the parsing thread. So parallel imports never run more threads than the number
+ * set in the preferences.
+ * <p>
+ * Spectra that cannot be decoded independently (not memory mapped), ion mobility spectra, and
+ * spectra without a detector for their MS level are skipped and have no result.
+ *
+ * @author https://github.com/mzmine
+ */
+class MzMLMassDetectionPipeline implements Consumer<MzMLMsScan>, AutoCloseable {
+
+  private static final int SPECTRA_IN_FLIGHT_PER_THREAD = 4;
+
+  private final @Nullable MZmineProcessingStep<MassDetector> ms1Detector;
+  private final @Nullable MZmineProcessingStep<MassDetector> ms2Detector;
+  private final boolean denormalizeMSnScans;
+  private final @Nullable ScanSelection scanSelection;
+  private final AdditionalPermits workerPermits;
+  // null to detect masses on the parsing thread
+  private final @Nullable ExecutorService executor;
+  private final int maxSpectraInFlight;
+  private final Semaphore spectraInFlight;
+  // null to keep the detected masses in memory, see preferences
+  private final @Nullable MemoryMapStorage resultStorage = MemoryMapStorage.forMassList();
+  // only accessed by the parsing thread, which is also the thread that collects the results
+  private final Map<MzMLMsScan, Future<DetectedMasses>> results = new IdentityHashMap<>();
+  // scan number of the first parsed spectrum, as used to filter the parsed file
+  private int scanNumberOffset = -1;
+
+  /**
+   * Call on the thread of the import task to use additional permits of the task controller.
+   *
+   * @param scanSelection only spectra that match are processed, null for all spectra
+   */
+  MzMLMassDetectionPipeline(@Nullable MZmineProcessingStep<MassDetector> ms1Detector,
+      @Nullable MZmineProcessingStep<MassDetector> ms2Detector, boolean denormalizeMSnScans,
+      @Nullable ScanSelection scanSelection) {
+    this.ms1Detector = ms1Detector;
+    this.ms2Detector = ms2Detector;
+    this.denormalizeMSnScans = denormalizeMSnScans;
+    this.scanSelection = scanSelection;
+
+    // the parsing thread runs on the permit of the import task
+    final int numThreads = Math.max(1, MZmineCore.getConfiguration().getNumOfThreads());
+    workerPermits = MZmineCore.getTaskController().acquireAdditionalPermits(numThreads - 1);
+    final int numWorkers = workerPermits.count();
+    if (numWorkers > 0) {
+      final AtomicInteger threadCounter = new AtomicInteger(0);
+      executor = Executors.newFixedThreadPool(numWorkers, r -> {
+        final Thread thread = new Thread(r,
+            "mzML mass detection " + threadCounter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    } else {
+      executor = null;
+    }
+    maxSpectraInFlight = Math.max(1, numWorkers) * SPECTRA_IN_FLIGHT_PER_THREAD;
+    spectraInFlight = new Semaphore(maxSpectraInFlight);
+  }
+
+  @Override
+  public void accept(MzMLMsScan scan) {
+    if (scanNumberOffset == -1) {
+      scanNumberOffset = scan.getScanNumber();
+    }
+    // ion mobility spectra are merged into frames first and mass detection runs afterwards
+    if (scan.getMobility() != null
+        || !(scan.getInputStream() instanceof ByteBufferInputStream sharedStream)) {
+      return;
+    }
+    final MZmineProcessingStep<MassDetector> detector =
+        scan.getMsLevel() == 1 ? ms1Detector : ms2Detector;
+    if (detector == null) {
+      return;
+    }
+    // spectra that are not selected are removed after parsing
+    if (scanSelection != null && !IndexedMzMLReader.matches(scanSelection, scan,
+        scanNumberOffset)) {
+      return;
+    }
+
+    // the copy has its own position but shares the mapped memory
+    scan.setInputStream(sharedStream.copy());
+    spectraInFlight.acquireUninterruptibly();
+    if (executor == null) {
+      try {
+        results.put(scan, CompletableFuture.completedFuture(detectMasses(scan, detector)));
+      } catch (RuntimeException e) {
+        // reported when the result is collected, like errors of the workers
+        results.put(scan, CompletableFuture.failedFuture(e));
+      }
+      return;
+    }
+    try {
+      results.put(scan, executor.submit(() -> detectMasses(scan, detector)));
+    } catch (RuntimeException e) {
+      spectraInFlight.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Waits until all submitted spectra are processed. Call after parsing finished, before the
+   * spectra are accessed by other threads.
+   */
+  void awaitCompletion() throws InterruptedException {
+    // all permits are free once no spectrum is in flight
+    spectraInFlight.acquire(maxSpectraInFlight);
+    spectraInFlight.release(maxSpectraInFlight);
+  }
+
+  /**
+   * @return true if the spectrum was submitted to this pipeline
+   */
+  boolean isProcessed(MzMLMsScan scan) {
+    return results.containsKey(scan);
+  }
+
+  /**
+   * @return the sorted [mzs, intensities] of the detected masses or null if the spectrum was not
+   * processed by this pipeline
+   */
+  @Nullable
+  double[][] getDetectedMasses(MzMLMsScan scan) {
+    final Future<DetectedMasses> result = results.remove(scan);
+    if (result == null) {
+      return null;
+    }
+    try {
+      return result.get().toArrays();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted during mass detection", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(
+          "Error during mass detection of scan #" + scan.getScanNumber() + ": " + e.getCause()
+              .getMessage(), e.getCause());
+    }
+  }
+
+  private DetectedMasses detectMasses(MzMLMsScan scan,
+      MZmineProcessingStep<MassDetector> detector) {
+    try {
+      final MsdkScanWrapper wrapper = new MsdkScanWrapper(scan);
+      final double[][] mzIntensities = detector.getModule()
+          .getMassValues(wrapper, detector.getParameterSet());
+      if (denormalizeMSnScans && wrapper.getMSLevel() >= 2) {
+        ScanUtils.denormalizeIntensitiesMultiplyByInjectTime(mzIntensities[1],
+            wrapper.getInjectionTime());
+      }
+      // sort arrays because some files are unsorted. Latest versions of msconvert should fix that
+      final double[][] sorted = DataPointUtils.sort(mzIntensities[0], mzIntensities[1],
+          DataPointSorter.DEFAULT_MZ_ASCENDING);
+      return new DetectedMasses(StorageUtils.storeValuesToDoubleBuffer(resultStorage, sorted[0]),
+          StorageUtils.storeValuesToDoubleBuffer(resultStorage, sorted[1]));
+    } finally {
+      // profile data is decoded again if it is needed later
+      scan.clearDecodedValues();
+      spectraInFlight.release();
+    }
+  }
+
+  /**
+   * Stops the workers and hands back their permits
+   */
+  @Override
+  public void close() {
+    results.values().forEach(result -> result.cancel(true));
+    results.clear();
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+    workerPermits.close();
+  }
+
+  /**
+   * Detected masses of one spectrum in the temporary storage
+   */
+  private record DetectedMasses(DoubleBuffer mzs, DoubleBuffer intensities) {
+
+    double[][] toArrays() {
+      final double[] mzValues = new double[mzs.limit()];
+      final double[] intensityValues = new double[intensities.limit()];
+      mzs.get(0, mzValues);
+      intensities.get(0, intensityValues);
+      return new double[][]{mzValues, intensityValues};
+    }
+  }
+}
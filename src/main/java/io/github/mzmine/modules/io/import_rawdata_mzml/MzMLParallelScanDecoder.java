@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.modules.io.import_rawdata_mzml;
+
+import io.github.msdk.datamodel.MsScan;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLMsScan;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.util.ByteBufferInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Provides the scans of a parsed mzML file in order while their binary data arrays are decoded in
+ * parallel. The parser only records the positions of the binary data in the memory mapped file.
+ * Once a scan outside the current batch is requested, the next batch of scans is decoded on all
+ * threads, each scan reading from its own copy of the memory mapped input stream. The decoded
+ * arrays of the previous batch are released, so only one batch is held in memory.
+ * <p>
+ * Scans that were read from a stream (not memory mapped) are already decoded during parsing and
+ * are returned as they are.
+ *
+ * @author https://github.com/mzmine
+ */
+class MzMLParallelScanDecoder {
+
+  private static final int SCANS_PER_THREAD = 16;
+
+  private final List<MsScan> scans;
+  private final Predicate<MzMLMsScan> decodeFilter;
+  private final int batchSize;
+  private final List<MzMLMsScan> decodedScans = new ArrayList<>();
+  private int batchStart = 0;
+  private int batchEnd = 0;
+
+  /**
+   * @param scans        the scans of the parsed file
+   * @param decodeFilter only scans that match this filter are decoded in parallel
+   */
+  MzMLParallelScanDecoder(List<MsScan> scans, Predicate<MzMLMsScan> decodeFilter) {
+    this.scans = scans;
+    this.decodeFilter = decodeFilter;
+    batchSize = Math.max(1, MZmineCore.getConfiguration().getNumOfThreads()) * SCANS_PER_THREAD;
+  }
+
+  /**
+   * @param index the scan index. Scans should be requested in ascending order.
+   * @return the scan with decoded data if it matches the filter
+   */
+  MzMLMsScan get(int index) {
+    if (index < batchStart || index >= batchEnd) {
+      decodeBatch(index);
+    }
+    return (MzMLMsScan) scans.get(index);
+  }
+
+  private void decodeBatch(int start) {
+    release();
+    batchStart = start;
+    batchEnd = Math.min(start + batchSize, scans.size());
+
+    for (int i = batchStart; i < batchEnd; i++) {
+      final MzMLMsScan scan = (MzMLMsScan) scans.get(i);
+      if (scan.getInputStream() instanceof ByteBufferInputStream stream && decodeFilter.test(
+          scan)) {
+        // the copy has its own position but shares the mapped memory
+        scan.setInputStream(stream.copy());
+        decodedScans.add(scan);
+      }
+    }
+    decodedScans.parallelStream().forEach(MzMLMsScan::decodeValues);
+  }
+
+  /**
+   * Releases the decoded arrays of the current batch. They are decoded again on demand.
+   */
+  void release() {
+    for (MzMLMsScan scan : decodedScans) {
+      scan.clearDecodedValues();
+    }
+    decodedScans.clear();
+  }
+}
@@ -30,6 +30,7 @@ import io.github.msdk.MSDKMethod;
 import io.github.msdk.datamodel.Chromatogram;
 import io.github.msdk.datamodel.MsScan;
 import io.github.msdk.datamodel.RawDataFile;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLMsScan;
 import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLParser;
 import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLRawDataFile;
 import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.util.FileMemoryMapper;
@@ -37,12 +38,14 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.logging.Logger;
 import javolution.text.CharArray;
 import javolution.xml.internal.stream.XMLStreamReaderImpl;
 import javolution.xml.stream.XMLStreamConstants;
 import javolution.xml.stream.XMLStreamException;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * <p>
@@ -66,6 +69,7 @@ public class MzMLFileImportMethod implements MSDKMethod<RawDataFile> {
   private final Logger logger = Logger.getLogger(this.getClass().getName());
   private Predicate<MsScan> msScanPredicate = s -> true;
   private Predicate<Chromatogram> chromatogramPredicate = c -> true;
+  private @Nullable Consumer<MzMLMsScan> spectrumConsumer;
 
   /**
    * <p>
@@ -338,6 +342,24 @@ public class MzMLFileImportMethod implements MSDKMethod<RawDataFile> {
     return chromatogramPredicate;
   }
 
+  /**
+   * @return the consumer that is called for every spectrum as soon as it was parsed or null
+   */
+  public @Nullable Consumer<MzMLMsScan> getSpectrumConsumer() {
+    return spectrumConsumer;
+  }
+
+  /**
+   * Sets a consumer that is called for every spectrum as soon as its closing tag was parsed and
+   * the spectrum was added to the result. The consumer is called on the parsing thread, while the
+   * rest of the file is not yet parsed. Used to process spectra while the XML is still read.
+   *
+   * @param spectrumConsumer the consumer or null to disable
+   */
+  public void setSpectrumConsumer(@Nullable Consumer<MzMLMsScan> spectrumConsumer) {
+    this.spectrumConsumer = spectrumConsumer;
+  }
+
   /**
    * <p>
    * Getter for the field <code>mzMLFile</code>.
@@ -297,6 +297,28 @@ public class MzMLMsScan implements MsScan {
     return array;
   }
 
+  /**
+   * Decodes the m/z and intensity arrays into preallocated arrays of the binary array length and
+   * keeps them until {@link #clearDecodedValues()}. Does nothing for already decoded arrays.
+   */
+  public void decodeValues() {
+    if (mzValues == null) {
+      getMzValues(new double[getMzBinaryDataInfo().getArrayLength()]);
+    }
+    if (intensityValues == null) {
+      getIntensityValues(new float[getIntensityBinaryDataInfo().getArrayLength()]);
+    }
+  }
+
+  /**
+   * Releases the decoded m/z and intensity arrays. The values are decoded again from the
+   * {@link #getInputStream() input stream} on the next access.
+   */
+  public void clearDecodedValues() {
+    mzValues = null;
+    intensityValues = null;
+  }
+
   /**
    * {@inheritDoc}
    */
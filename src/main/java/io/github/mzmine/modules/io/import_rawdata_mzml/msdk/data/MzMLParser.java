@@ -54,6 +54,8 @@ public class MzMLParser {
   private final MzMLRawDataFile newRawFile;
   private final MzMLFileImportMethod importer;
   private int totalScans = 0, parsedScans = 0;
+  // start of the parsed stream in the file, if the parsing does not start at the beginning
+  private long positionOffset = 0;
   private static final Logger logger = Logger.getLogger(MzMLParser.class.getName());
 
   /**
@@ -207,7 +209,7 @@ public class MzMLParser {
         if (vars.spectrum != null && !vars.skipBinaryDataArray) {
           int bomOffset = xmlStreamReader.getLocation().getBomLength();
           vars.binaryDataInfo.setPosition(
-              xmlStreamReader.getLocation().getTotalCharsRead() + bomOffset);
+              positionOffset + xmlStreamReader.getLocation().getTotalCharsRead() + bomOffset);
         }
         if (!vars.skipBinaryDataArray) {
           if (MzMLCV.cvMzArray.equals(vars.binaryDataInfo.getArrayType().getAccession())) {
@@ -323,7 +325,7 @@ public class MzMLParser {
         if (vars.chromatogram != null && !vars.skipBinaryDataArray) {
           int bomOffset = xmlStreamReader.getLocation().getBomLength();
           vars.binaryDataInfo.setPosition(
-              xmlStreamReader.getLocation().getTotalCharsRead() + bomOffset);
+              positionOffset + xmlStreamReader.getLocation().getTotalCharsRead() + bomOffset);
         }
         if (!vars.skipBinaryDataArray) {
           if (MzMLCV.cvRetentionTimeArray.equals(
@@ -493,6 +495,9 @@ public class MzMLParser {
             && vars.spectrum.getIntensityBinaryDataInfo() != null && (importer.getMzMLFile() != null
             || importer.getMsScanPredicate().test(vars.spectrum))) {
           vars.spectrumList.add(vars.spectrum);
+          if (importer.getSpectrumConsumer() != null) {
+            importer.getSpectrumConsumer().accept(vars.spectrum);
+          }
         }
       }
 
@@ -736,6 +741,17 @@ public class MzMLParser {
     }
   }
 
+  /**
+   * Sets the byte position in the file at which the following tags are read, e.g., when a single
+   * spectrum is read from its offset in the index of an indexedmzML file. The offset is added to
+   * the positions of the binary data arrays.
+   *
+   * @param positionOffset the byte position of the parsed stream in the file
+   */
+  public void setPositionOffset(long positionOffset) {
+    this.positionOffset = positionOffset;
+  }
+
   public Float getFinishedPercentage() {
     if (totalScans == 0) {
       return 0.0f;
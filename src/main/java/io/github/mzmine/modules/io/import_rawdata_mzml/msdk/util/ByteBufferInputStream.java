@@ -32,6 +32,7 @@ import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.util.Arrays;
+import sun.misc.Unsafe;
 
 
 /**
@@ -271,6 +272,20 @@ public class ByteBufferInputStream extends InputStream {
     return new ByteBufferInputStream(byteBuffer.clone(), size, curr, new boolean[n]);
   }
 
+  /**
+   * Unmaps the buffers of a stream that was created by {@link #map(FileChannel, MapMode)}. This
+   * stream and all of its copies must not be read afterwards.
+   *
+   * @param theUnsafe used to invoke the cleaner of the mapped buffers
+   */
+  public void unmap(final Unsafe theUnsafe) {
+    for (final ByteBuffer buffer : byteBuffer) {
+      if (buffer.isDirect()) {
+        theUnsafe.invokeCleaner(buffer);
+      }
+    }
+  }
+
   /**
    * <p>constrain.</p>
    *
@@ -355,11 +355,13 @@ public class ProjectOpeningTask extends AbstractTask {
     FeatureListLoadTask task = new FeatureListLoadTask(MemoryMapStorage.forFeatureList(), newProject, zipFile);
     MZmineCore.getTaskController().addTask(task);
     currentLoadedObjectName = "Feature lists";
-    while(task.getStatus() != TaskStatus.FINISHED && !task.isCanceled() && ! isCanceled()) {
-      try {
-        Thread.sleep(50);
-      } catch (InterruptedException e) {
-        e.printStackTrace();
+    try (var blockingWait = MZmineCore.getTaskController().startBlockingWait()) {
+      while(task.getStatus() != TaskStatus.FINISHED && !task.isCanceled() && ! isCanceled()) {
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          e.printStackTrace();
+        }
       }
     }
   }
@@ -407,11 +409,13 @@ public class ProjectOpeningTask extends AbstractTask {
     });
     MZmineCore.getTaskController().addTask(rawDataFileOpenHandler);
 
-    while (!finished.get() && !isCanceled()) {
-      try {
-        Thread.sleep(100);
-      } catch (InterruptedException e) {
-        e.printStackTrace();
+    try (var blockingWait = MZmineCore.getTaskController().startBlockingWait()) {
+      while (!finished.get() && !isCanceled()) {
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          e.printStackTrace();
+        }
       }
     }
 
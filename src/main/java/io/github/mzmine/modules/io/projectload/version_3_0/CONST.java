@@ -56,6 +56,10 @@ public class CONST {
   public static final String XML_INTENSITY_MERGE_TYPE_ATTR = "mergingtype";
   public static final String XML_SCAN_LIST_ELEMENT = "scans";
   public static final String XML_POLARITY_ATTR = "polarity";
+  /**
+   * index of a series in the binary feature series file of the feature list
+   */
+  public static final String XML_BINARY_SERIES_INDEX_ATTR = "binaryseriesindex";
 
   public static final String XML_MERGE_TYPE_ATTR = "merge_spec_type";
   /**
@@ -35,6 +35,7 @@ import io.github.mzmine.datamodel.features.ModularFeatureListRow;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.types.DataType;
 import io.github.mzmine.datamodel.features.types.DataTypes;
+import io.github.mzmine.datamodel.features.types.FeatureDataType;
 import io.github.mzmine.datamodel.features.types.numbers.IDType;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.io.projectload.CachedIMSRawDataFile;
@@ -116,8 +117,24 @@ public class FeatureListLoadTask extends AbstractTask {
   public static Object parseDataType(XMLStreamReader reader, DataType<?> type,
       MZmineProject project, ModularFeatureList flist, ModularFeatureListRow row,
       ModularFeature feature, RawDataFile file) {
+    return parseDataType(reader, type, project, flist, row, feature, file, null);
+  }
+
+  /**
+   * @param seriesReader The binary feature series file of the feature list. null for legacy
+   *                     projects that store all feature data in the xml.
+   * @see #parseDataType(XMLStreamReader, DataType, MZmineProject, ModularFeatureList,
+   * ModularFeatureListRow, ModularFeature, RawDataFile)
+   */
+  public static Object parseDataType(XMLStreamReader reader, DataType<?> type,
+      MZmineProject project, ModularFeatureList flist, ModularFeatureListRow row,
+      ModularFeature feature, RawDataFile file, @Nullable FeatureSeriesBinaryReader seriesReader) {
     if (type != null) {
       try {
+        if (type instanceof FeatureDataType featureDataType) {
+          return featureDataType.loadFromXML(reader, project, flist, row, feature, file,
+              seriesReader);
+        }
         return type.loadFromXML(reader, project, flist, row, feature, file);
       } catch (Exception e) {
         logger.log(Level.WARNING, e,
@@ -184,7 +201,13 @@ public class FeatureListLoadTask extends AbstractTask {
                     + metadataFile.getAbsolutePath());
           continue;
         }
-        parseFeatureList(storage, project, flist, flistFile);
+        // projects saved by older versions store all feature data in the xml
+        final File seriesFile = new File(flistFile.toString()
+            .replace(FeatureListSaveTask.DATA_FILE_SUFFIX, FeatureListSaveTask.SERIES_FILE_SUFFIX));
+        try (FeatureSeriesBinaryReader seriesReader = seriesFile.exists()
+            ? new FeatureSeriesBinaryReader(seriesFile) : null) {
+          parseFeatureList(storage, project, flist, flistFile, seriesReader);
+        }
 
         // disable buffering after the import (replace references to CachedIMSRawDataFiles with IMSRawDataFiles
         flist.replaceCachedFilesAndScans();
@@ -207,7 +230,7 @@ public class FeatureListLoadTask extends AbstractTask {
   }
 
   private void parseFeatureList(MemoryMapStorage storage, MZmineProject project,
-      ModularFeatureList flist, File flistFile) {
+      ModularFeatureList flist, File flistFile, @Nullable FeatureSeriesBinaryReader seriesReader) {
     currentFlist = flist.getName();
     processedRows = 0;
     totalRows = flist.getNumberOfRows();
@@ -233,7 +256,7 @@ public class FeatureListLoadTask extends AbstractTask {
                       .getAttributeValue(null, CONST.XML_FLIST_NAME_ATTR));
             }
           } else if (CONST.XML_ROW_ELEMENT.equals(localName)) {
-            parseRow(reader, storage, project, flist);
+            parseRow(reader, storage, project, flist, seriesReader);
             processedRows++;
           }
         }
@@ -381,7 +404,8 @@ public class FeatureListLoadTask extends AbstractTask {
   }
 
   private void parseRow(XMLStreamReader reader, MemoryMapStorage storage, MZmineProject project,
-      ModularFeatureList flist) throws XMLStreamException {
+      ModularFeatureList flist, @Nullable FeatureSeriesBinaryReader seriesReader)
+      throws XMLStreamException {
     if (!reader.getLocalName().equals(CONST.XML_ROW_ELEMENT)) {
       throw new IllegalStateException("Cannot parse row if current element is not a row element");
     }
@@ -404,7 +428,7 @@ public class FeatureListLoadTask extends AbstractTask {
                                  + ". File does not exist in project.");
             continue;
           }
-          parseFeature(reader, storage, project, flist, row, file);
+          parseFeature(reader, storage, project, flist, row, file, seriesReader);
         } else if (reader.getLocalName().equals(CONST.XML_DATA_TYPE_ELEMENT)) {
           DataType type = DataTypes.getTypeForId(
               reader.getAttributeValue(null, CONST.XML_DATA_TYPE_ID_ATTR));
@@ -428,7 +452,8 @@ public class FeatureListLoadTask extends AbstractTask {
 
   private void parseFeature(@NotNull XMLStreamReader reader, @Nullable MemoryMapStorage storage,
       MZmineProject project, @NotNull ModularFeatureList flist, @NotNull ModularFeatureListRow row,
-      @NotNull RawDataFile file) throws XMLStreamException {
+      @NotNull RawDataFile file, @Nullable FeatureSeriesBinaryReader seriesReader)
+      throws XMLStreamException {
 
     // create feature with original file, but use buffered file for data type loading.
     final RawDataFile originalFile =
@@ -445,7 +470,8 @@ public class FeatureListLoadTask extends AbstractTask {
         // the data types are responsible for loading their values
         DataType type = DataTypes.getTypeForId(
             reader.getAttributeValue(null, CONST.XML_DATA_TYPE_ID_ATTR));
-        Object value = parseDataType(reader, type, project, flist, row, feature, file);
+        Object value = parseDataType(reader, type, project, flist, row, feature, file,
+            seriesReader);
         if (type != null && value != null) {
           try {
             feature.set(type, value);
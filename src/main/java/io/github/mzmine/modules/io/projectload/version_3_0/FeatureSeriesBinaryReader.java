@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.projectload.version_3_0;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.modules.io.projectsave.FeatureSeriesBinaryWriter;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads the ion time series written by {@link FeatureSeriesBinaryWriter}. The offset table is read
+ * on creation, each series is then read by a single positional read of its block.
+ */
+public class FeatureSeriesBinaryReader implements Closeable {
+
+  private final File file;
+  private final FileChannel channel;
+  // start of each series, the last element is the start of the offset table
+  private final long[] offsets;
+
+  public FeatureSeriesBinaryReader(@NotNull File file) throws IOException {
+    this.file = file;
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      final long size = channel.size();
+      if (size < FeatureSeriesBinaryWriter.HEADER_BYTES + FeatureSeriesBinaryWriter.FOOTER_BYTES) {
+        throw new IOException("Feature series file " + file + " is incomplete.");
+      }
+
+      final ByteBuffer header = read(0, FeatureSeriesBinaryWriter.HEADER_BYTES);
+      final int magic = header.getInt();
+      final int version = header.getInt();
+      if (magic != FeatureSeriesBinaryWriter.MAGIC) {
+        throw new IOException("File " + file + " is not a feature series file.");
+      }
+      if (version > FeatureSeriesBinaryWriter.VERSION) {
+        throw new IOException(
+            "Feature series file " + file + " was written by a newer version (" + version + ").");
+      }
+
+      final ByteBuffer footer = read(size - FeatureSeriesBinaryWriter.FOOTER_BYTES,
+          FeatureSeriesBinaryWriter.FOOTER_BYTES);
+      final long tableOffset = footer.getLong();
+      final int numSeries = footer.getInt();
+      if (footer.getInt() != FeatureSeriesBinaryWriter.MAGIC) {
+        throw new IOException("Feature series file " + file + " is incomplete.");
+      }
+
+      offsets = new long[numSeries + 1];
+      final ByteBuffer table = read(tableOffset, numSeries * Long.BYTES);
+      for (int i = 0; i < numSeries; i++) {
+        offsets[i] = table.getLong();
+      }
+      offsets[numSeries] = tableOffset;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return the number of series in this file
+   */
+  public int getNumberOfSeries() {
+    return offsets.length - 1;
+  }
+
+  /**
+   * @param index   the index of the series as referenced in the feature list xml
+   * @param storage the storage of the feature list
+   * @param file    the raw data file of the feature. The scan indices refer to all scans of this
+   *                file
+   * @return the series
+   */
+  public SimpleIonTimeSeries readIonTimeSeries(int index, @Nullable MemoryMapStorage storage,
+      @NotNull RawDataFile file) throws IOException {
+    if (index < 0 || index >= getNumberOfSeries()) {
+      throw new IOException(
+          "Series index " + index + " out of bounds for " + getNumberOfSeries() + " series in file "
+              + this.file);
+    }
+    final ByteBuffer block = read(offsets[index], (int) (offsets[index + 1] - offsets[index]));
+
+    final int n = block.getInt();
+    final int[] scanIndices = new int[n];
+    final double[] mzs = new double[n];
+    final double[] intensities = new double[n];
+    block.asIntBuffer().get(scanIndices);
+    block.position(block.position() + n * Integer.BYTES);
+    block.asDoubleBuffer().get(mzs);
+    block.position(block.position() + n * Double.BYTES);
+    block.asDoubleBuffer().get(intensities);
+
+    return SimpleIonTimeSeries.create(storage, file, scanIndices, mzs, intensities);
+  }
+
+  private ByteBuffer read(long position, int length) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException("Unexpected end of feature series file " + file);
+      }
+    }
+    return buffer.flip();
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -236,10 +236,12 @@ public class RawDataFileOpenHandler_3_0 extends AbstractTask implements RawDataF
 
         MZmineCore.getTaskController().addTasks(tasks.toArray(Task[]::new));
 
-        while (!finished.get()) {
-          Thread.sleep(100);
-          if (isCanceled()) {
-            return false;
+        try (var blockingWait = MZmineCore.getTaskController().startBlockingWait()) {
+          while (!finished.get()) {
+            Thread.sleep(100);
+            if (isCanceled()) {
+              return false;
+            }
           }
         }
 
@@ -35,6 +35,7 @@ import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
 import io.github.mzmine.datamodel.features.types.DataType;
+import io.github.mzmine.datamodel.features.types.FeatureDataType;
 import io.github.mzmine.datamodel.features.types.FeaturesType;
 import io.github.mzmine.datamodel.features.types.numbers.IDType;
 import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
@@ -49,6 +50,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map.Entry;
@@ -72,6 +74,7 @@ public class FeatureListSaveTask extends AbstractTask {
 
   public static final String METADATA_FILE_SUFFIX = "_metadata.xml";
   public static final String DATA_FILE_SUFFIX = "_data.xml";
+  public static final String SERIES_FILE_SUFFIX = "_series.bin";
   public static final String FLIST_FOLDER = "featurelists/";
   private static final Logger logger = Logger.getLogger(FeatureListSaveTask.class.getName());
   private static final IDType idType = new IDType();
@@ -81,6 +84,8 @@ public class FeatureListSaveTask extends AbstractTask {
   private final int rows;
   private final StreamCopy copy;
   private int processedRows = 0;
+  // binary file for the feature data while writing the data xml
+  private FeatureSeriesBinaryWriter seriesWriter;
 
   public FeatureListSaveTask(ModularFeatureList flist, ZipOutputStream zos) {
     super(null, Instant.now());
@@ -94,6 +99,10 @@ public class FeatureListSaveTask extends AbstractTask {
     return FLIST_FOLDER + CONST.XML_FEATURE_LIST_ELEMENT + "_" + flistname + DATA_FILE_SUFFIX;
   }
 
+  public static String getSeriesFileName(String flistname) {
+    return FLIST_FOLDER + CONST.XML_FEATURE_LIST_ELEMENT + "_" + flistname + SERIES_FILE_SUFFIX;
+  }
+
   public static String getMetadataFileName(String flistname) {
     return FLIST_FOLDER + CONST.XML_FEATURE_LIST_ELEMENT + "_" + flistname + METADATA_FILE_SUFFIX;
   }
@@ -210,15 +219,21 @@ public class FeatureListSaveTask extends AbstractTask {
   private boolean saveFeatureData() {
     logger.finest(() -> "Creating temporary file for feature list " + flist.getName() + ".");
     File tempFile;
+    File seriesTempFile;
     try {
       tempFile = File.createTempFile("mzmine_featurelist_data", ".tmp");
+      seriesTempFile = File.createTempFile("mzmine_featurelist_series", ".tmp");
+      seriesTempFile.deleteOnExit();
     } catch (IOException e) {
       logger.log(Level.SEVERE, "Cannot create temporary file.", e);
       setStatus(TaskStatus.ERROR);
       return false;
     }
 
-    try (OutputStream os = new FileOutputStream(tempFile)) {
+    // m/z, intensity and scan arrays of the feature data are written to a binary file
+    try (OutputStream os = new FileOutputStream(tempFile);
+        FeatureSeriesBinaryWriter binaryWriter = new FeatureSeriesBinaryWriter(seriesTempFile)) {
+      seriesWriter = binaryWriter;
       final XMLOutputFactory xof = XMLOutputFactory.newInstance();
       final XMLStreamWriter writer = new IndentingXMLStreamWriter(xof.createXMLStreamWriter(os));
       writer.writeStartDocument("UTF-8", "1.0");
@@ -242,20 +257,27 @@ public class FeatureListSaveTask extends AbstractTask {
       writer.writeEndDocument();
       writer.flush();
       writer.close();
-    } catch (IOException | XMLStreamException e) {
+    } catch (IOException | UncheckedIOException | XMLStreamException e) {
       logger.log(Level.SEVERE, e.getMessage(), e);
       setStatus(TaskStatus.ERROR);
+      seriesTempFile.delete();
       return false;
+    } finally {
+      seriesWriter = null;
     }
 
     if (isCanceled()) {
       tempFile.delete();
+      seriesTempFile.delete();
       return false;
     }
 
-    try (FileInputStream is = new FileInputStream(tempFile)) {
+    try (FileInputStream is = new FileInputStream(tempFile);
+        FileInputStream seriesIs = new FileInputStream(seriesTempFile)) {
       zos.putNextEntry(new ZipEntry(getDataFileName(flist.getName())));
       copy.copy(is, zos);
+      zos.putNextEntry(new ZipEntry(getSeriesFileName(flist.getName())));
+      copy.copy(seriesIs, zos);
     } catch (IOException e) {
       logger.log(Level.SEVERE, e.getMessage(), e);
       setStatus(TaskStatus.ERROR);
@@ -263,6 +285,7 @@ public class FeatureListSaveTask extends AbstractTask {
     }
 
 //    tempFile.delete();
+    seriesTempFile.delete();
     return true;
   }
 
@@ -297,7 +320,11 @@ public class FeatureListSaveTask extends AbstractTask {
     writer.writeAttribute(CONST.XML_DATA_TYPE_ID_ATTR, dataType.getUniqueID());
 
     try { // catch here, so we can easily debug and don't destroy the flist while saving in case an unexpected exception happens
-      dataType.saveToXML(writer, value, flist, row, feature, file);
+      if (dataType instanceof FeatureDataType featureDataType) {
+        featureDataType.saveToXML(writer, value, flist, row, feature, file, seriesWriter);
+      } else {
+        dataType.saveToXML(writer, value, flist, row, feature, file);
+      }
     } catch (XMLStreamException e) {
       logger.warning(() -> "Error while writing data type " + dataType.getClass().getSimpleName()
           + " with value " + value + " to xml.");
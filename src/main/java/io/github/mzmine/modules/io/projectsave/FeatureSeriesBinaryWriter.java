@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.projectsave;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Writes the ion time series of a feature list into one binary file next to the feature list xml.
+ * The xml only references the series by their index in this file. All values are little-endian.
+ * <pre>
+ * header:  int magic, int version
+ * series:  int n, int[n] scan indices (in all scans of the raw data file), double[n] m/z,
+ *          double[n] intensities
+ * offsets: long[numSeries] start of each series
+ * footer:  long offset of the offset table, int numSeries, int magic
+ * </pre>
+ * Each series is written as one contiguous block, the offset table allows random access.
+ */
+public class FeatureSeriesBinaryWriter implements Closeable {
+
+  public static final int MAGIC = 0x4D5A5342; // MZSB
+  public static final int VERSION = 1;
+  public static final int HEADER_BYTES = Integer.BYTES * 2;
+  public static final int FOOTER_BYTES = Long.BYTES + Integer.BYTES * 2;
+
+  private final OutputStream os;
+  private final LongArrayList offsets = new LongArrayList();
+  // index of each scan in all scans of a raw data file
+  private final Map<RawDataFile, Object2IntMap<Scan>> scanIndexMaps = new HashMap<>();
+  private ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+  private long position = 0;
+
+  public FeatureSeriesBinaryWriter(@NotNull File file) throws IOException {
+    os = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+    buffer.putInt(MAGIC).putInt(VERSION);
+    flushBuffer();
+  }
+
+  /**
+   * @param series the series to write
+   * @param file   the raw data file of the series. The scans are saved as indices in all scans of
+   *               this file
+   * @return the index of the series in this file
+   */
+  public int writeSeries(@NotNull IonTimeSeries<? extends Scan> series, @NotNull RawDataFile file)
+      throws IOException {
+    final Object2IntMap<Scan> scanIndices = scanIndexMaps.computeIfAbsent(file,
+        FeatureSeriesBinaryWriter::createScanIndexMap);
+    final List<? extends Scan> scans = series.getSpectra();
+    final int n = series.getNumberOfValues();
+
+    ensureCapacity(Integer.BYTES + n * (Integer.BYTES + Double.BYTES * 2));
+    buffer.putInt(n);
+    for (int i = 0; i < n; i++) {
+      final int index = scanIndices.getInt(scans.get(i));
+      if (index < 0) {
+        throw new IllegalStateException(
+            "Scan " + scans.get(i) + " of feature series is not part of raw data file " + file
+                .getName());
+      }
+      buffer.putInt(index);
+    }
+    for (int i = 0; i < n; i++) {
+      buffer.putDouble(series.getMZ(i));
+    }
+    for (int i = 0; i < n; i++) {
+      buffer.putDouble(series.getIntensity(i));
+    }
+
+    offsets.add(position);
+    flushBuffer();
+    return offsets.size() - 1;
+  }
+
+  /**
+   * @return the number of written series
+   */
+  public int getNumberOfSeries() {
+    return offsets.size();
+  }
+
+  /**
+   * Writes the offset table and footer and closes the file.
+   */
+  @Override
+  public void close() throws IOException {
+    try (os) {
+      final long tableOffset = position;
+      ensureCapacity(offsets.size() * Long.BYTES + FOOTER_BYTES);
+      for (int i = 0; i < offsets.size(); i++) {
+        buffer.putLong(offsets.getLong(i));
+      }
+      buffer.putLong(tableOffset).putInt(offsets.size()).putInt(MAGIC);
+      flushBuffer();
+    }
+  }
+
+  private static Object2IntMap<Scan> createScanIndexMap(RawDataFile file) {
+    final List<? extends Scan> scans = file.getScans();
+    final Object2IntMap<Scan> map = new Object2IntOpenHashMap<>(scans.size());
+    map.defaultReturnValue(-1);
+    // keep the first index for equal scans, same as ParsingUtils.getIndicesOfSubListElements
+    for (int i = scans.size() - 1; i >= 0; i--) {
+      map.put(scans.get(i), i);
+    }
+    return map;
+  }
+
+  private void ensureCapacity(int bytes) {
+    if (buffer.capacity() < bytes) {
+      buffer = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+    buffer.clear();
+  }
+
+  private void flushBuffer() throws IOException {
+    os.write(buffer.array(), 0, buffer.position());
+    position += buffer.position();
+    buffer.clear();
+  }
+}
@@ -349,11 +349,13 @@ public class ProjectSavingTask extends AbstractTask {
     });
     MZmineCore.getTaskController().addTask(rawDataFileSaveHandler);
 
-    while (!finished.get() && !isCanceled()) {
-      try {
-        Thread.sleep(100);
-      } catch (InterruptedException e) {
-        e.printStackTrace();
+    try (var blockingWait = MZmineCore.getTaskController().startBlockingWait()) {
+      while (!finished.get() && !isCanceled()) {
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          e.printStackTrace();
+        }
       }
     }
   }
@@ -384,11 +386,13 @@ public class ProjectSavingTask extends AbstractTask {
       });
       MZmineCore.getTaskController().addTask(saveTask);
 
-      while (!finished.get()) {
-        try {
-          Thread.sleep(50);
-        } catch (InterruptedException e) {
-          e.printStackTrace();
+      try (var blockingWait = MZmineCore.getTaskController().startBlockingWait()) {
+        while (!finished.get()) {
+          try {
+            Thread.sleep(50);
+          } catch (InterruptedException e) {
+            e.printStackTrace();
+          }
         }
       }
 
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.modules.tools.isotopeprediction;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.IsotopePattern;
+import io.github.mzmine.datamodel.IsotopePattern.IsotopePatternStatus;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.impl.SimpleIsotopePattern;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Process wide least recently used cache of predicted isotope patterns. The same formulas are
+ * predicted over and over by formula prediction, database searches and annotation modules. Patterns
+ * are stored as primitive arrays and a new {@link SimpleIsotopePattern} is created on every hit.
+ * The cache can be saved to and loaded from a file to reuse it between batch runs.
+ *
+ * @author https://github.com/mzmine
+ */
+public class IsotopePatternCache {
+
+  public static final int DEFAULT_MAX_ENTRIES = 50_000;
+
+  private static final Logger logger = Logger.getLogger(IsotopePatternCache.class.getName());
+  private static final int FILE_VERSION = 1;
+  private static final IsotopePatternCache INSTANCE = new IsotopePatternCache(DEFAULT_MAX_ENTRIES);
+
+  private final int maxEntries;
+  private final LinkedHashMap<Key, CachedPattern> patterns;
+  private final AtomicLong hits = new AtomicLong(0);
+  private final AtomicLong misses = new AtomicLong(0);
+
+  public IsotopePatternCache(int maxEntries) {
+    this.maxEntries = maxEntries;
+    // access order to remove the least recently used pattern first
+    patterns = new LinkedHashMap<>(1024, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Entry<Key, CachedPattern> eldest) {
+        return size() > IsotopePatternCache.this.maxEntries;
+      }
+    };
+  }
+
+  public static IsotopePatternCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * @param key        the prediction parameters
+   * @param calculator predicts the pattern if it is not cached. Called outside the lock, so
+   *                   concurrent misses of the same key may predict the pattern twice.
+   * @return the cached or predicted pattern
+   */
+  public IsotopePattern getOrCompute(@NotNull Key key,
+      @NotNull Supplier<SimpleIsotopePattern> calculator) {
+    CachedPattern cached;
+    synchronized (patterns) {
+      cached = patterns.get(key);
+    }
+    if (cached != null) {
+      hits.incrementAndGet();
+      return cached.toPattern(key.charge());
+    }
+
+    misses.incrementAndGet();
+    final SimpleIsotopePattern pattern = calculator.get();
+    cached = CachedPattern.of(pattern);
+    synchronized (patterns) {
+      patterns.put(key, cached);
+    }
+    return pattern;
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * @return the ratio of hits to all requests or 0 if nothing was requested yet
+   */
+  public double getHitRate() {
+    final long h = hits.get();
+    final long total = h + misses.get();
+    return total == 0 ? 0d : (double) h / total;
+  }
+
+  public int size() {
+    synchronized (patterns) {
+      return patterns.size();
+    }
+  }
+
+  public void clear() {
+    synchronized (patterns) {
+      patterns.clear();
+    }
+    hits.set(0);
+    misses.set(0);
+  }
+
+  /**
+   * Writes all cached patterns to a binary file, from the least to the most recently used.
+   */
+  public void saveToFile(@NotNull File file) throws IOException {
+    final List<Entry<Key, CachedPattern>> entries;
+    synchronized (patterns) {
+      entries = new ArrayList<>(patterns.entrySet());
+    }
+
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeInt(FILE_VERSION);
+      out.writeInt(entries.size());
+      for (Entry<Key, CachedPattern> entry : entries) {
+        final Key key = entry.getKey();
+        out.writeUTF(key.formula());
+        out.writeDouble(key.minAbundance());
+        out.writeDouble(key.mergeWidth());
+        out.writeInt(key.charge());
+        out.writeUTF(key.polarity().name());
+        out.writeBoolean(key.storeFormula());
+
+        final CachedPattern pattern = entry.getValue();
+        out.writeUTF(pattern.description());
+        out.writeInt(pattern.mzs().length);
+        for (int i = 0; i < pattern.mzs().length; i++) {
+          out.writeDouble(pattern.mzs()[i]);
+          out.writeDouble(pattern.intensities()[i]);
+        }
+        out.writeBoolean(pattern.compositions() != null);
+        if (pattern.compositions() != null) {
+          for (String composition : pattern.compositions()) {
+            out.writeUTF(composition);
+          }
+        }
+      }
+    }
+    logger.finest(() -> "Saved %d isotope patterns to %s".formatted(entries.size(), file));
+  }
+
+  /**
+   * Adds all patterns of a file written by {@link #saveToFile(File)} to this cache.
+   *
+   * @return the number of loaded patterns
+   */
+  public int loadFromFile(@NotNull File file) throws IOException {
+    final Map<Key, CachedPattern> loaded = new LinkedHashMap<>();
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(file)))) {
+      final int version = in.readInt();
+      if (version != FILE_VERSION) {
+        throw new IOException(
+            "Unsupported isotope pattern cache version " + version + " in file " + file);
+      }
+      final int numEntries = in.readInt();
+      for (int e = 0; e < numEntries; e++) {
+        final Key key = new Key(in.readUTF(), in.readDouble(), in.readDouble(), in.readInt(),
+            PolarityType.valueOf(in.readUTF()), in.readBoolean());
+
+        final String description = in.readUTF();
+        final int numIsotopes = in.readInt();
+        final double[] mzs = new double[numIsotopes];
+        final double[] intensities = new double[numIsotopes];
+        for (int i = 0; i < numIsotopes; i++) {
+          mzs[i] = in.readDouble();
+          intensities[i] = in.readDouble();
+        }
+        String[] compositions = null;
+        if (in.readBoolean()) {
+          compositions = new String[numIsotopes];
+          for (int i = 0; i < numIsotopes; i++) {
+            compositions[i] = in.readUTF();
+          }
+        }
+        loaded.put(key, new CachedPattern(mzs, intensities, description, compositions));
+      }
+    }
+
+    synchronized (patterns) {
+      patterns.putAll(loaded);
+    }
+    logger.finest(() -> "Loaded %d isotope patterns from %s".formatted(loaded.size(), file));
+    return loaded.size();
+  }
+
+  /**
+   * All parameters that change the predicted pattern.
+   * <p>
+   * The minimum abundance is used as is. It is not rounded because the isotopes are pruned during
+   * the prediction, so a pattern predicted with a lower minimum abundance differs even after
+   * removing the additional isotopes. Callers that derive it per feature, like the formula
+   * prediction (isotope noise level / height of the detected pattern), will rarely hit the cache.
+   * Their entries are evicted first as they are not used again.
+   *
+   * @param formula the canonical formula string including mass numbers of specific isotopes
+   */
+  public record Key(@NotNull String formula, double minAbundance, double mergeWidth, int charge,
+                    @NotNull PolarityType polarity, boolean storeFormula) {
+
+  }
+
+  private record CachedPattern(double[] mzs, double[] intensities, String description,
+                               @Nullable String[] compositions) {
+
+    private static CachedPattern of(SimpleIsotopePattern pattern) {
+      final int n = pattern.getNumberOfDataPoints();
+      return new CachedPattern(pattern.getMzValues(new double[n]),
+          pattern.getIntensityValues(new double[n]), pattern.getDescription(),
+          pattern.getIsotopeCompositions());
+    }
+
+    private IsotopePattern toPattern(int charge) {
+      if (mzs.length == 0) {
+        return new SimpleIsotopePattern(new DataPoint[0], charge, IsotopePatternStatus.PREDICTED,
+            description, compositions);
+      }
+      // the pattern does not modify the arrays, so they can be shared
+      return new SimpleIsotopePattern(mzs, intensities, charge, IsotopePatternStatus.PREDICTED,
+          description, compositions);
+    }
+  }
+}
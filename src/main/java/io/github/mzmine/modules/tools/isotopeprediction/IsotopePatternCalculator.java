@@ -94,6 +94,18 @@ public class IsotopePatternCalculator implements MZmineModule {
   public static IsotopePattern calculateIsotopePattern(IMolecularFormula cdkFormula,
       double minAbundance, double mergeWidth, int charge, PolarityType polarity,
       boolean storeFormula) {
+    // mass numbers are part of the key to distinguish labelled formulas
+    final IsotopePatternCache.Key key = new IsotopePatternCache.Key(
+        MolecularFormulaManipulator.getString(cdkFormula, false, true), minAbundance, mergeWidth,
+        charge, polarity, storeFormula);
+    return IsotopePatternCache.getInstance().getOrCompute(key,
+        () -> predictIsotopePattern(cdkFormula, minAbundance, mergeWidth, charge, polarity,
+            storeFormula));
+  }
+
+  private static SimpleIsotopePattern predictIsotopePattern(IMolecularFormula cdkFormula,
+      double minAbundance, double mergeWidth, int charge, PolarityType polarity,
+      boolean storeFormula) {
     // TODO: check if the formula is not too big (>100 of a single atom?).
     // if so, just cancel the prediction
 
@@ -96,6 +96,21 @@ public class MinimumFeatureFilter {
     return excludeEstimatedFeatures;
   }
 
+  /**
+   * {@link #filterMinFeaturesOverlap(CachedFeatureDataAccess, List, FeatureListRow,
+   * FeatureListRow, RTTolerance)} only accepts two rows if at least one pair of features (same raw
+   * data file) is within the RT tolerance, if the minimum number of samples is at least one or if
+   * the group filter is active. Otherwise, all row pairs pass this filter.
+   *
+   * @param numRaws number of raw data files that are tested
+   * @return true if rows without features within the RT tolerance can never pass the overlap
+   * filter
+   */
+  public boolean requiresFeatureOverlap(int numRaws) {
+    return (minFInSamples.isGreaterZero() && minFInSamples.getMaximumValue(numRaws) >= 1) || (
+        filterGroups && sgroupSize != null && minFInGroups.isGreaterZero());
+  }
+
   /**
    * only keep rows which contain features in at least X % samples in a set called before starting
    * row processing
@@ -195,53 +195,66 @@ public class ScanSelection {
    * @return
    */
   public boolean matches(Scan scan, int scanNumberOffset) {
-    if ((msLevel != null) && (!msLevel.equals(scan.getMSLevel()))) {
+    if (scan instanceof Frame) {
+      if (scanMobilityRange != null && !((Frame) scan).getMobilityRange()
+          .isConnected(scanMobilityRange)) {
+        return false;
+      }
+    } /*else {
+      if ((scanMobilityRange != null) && (!scanMobilityRange.contains(scan.getMobility()))) {
+        return false;
+      }
+    }*/
+
+    return matches(scan.getMSLevel(), scan.getPolarity(), scan.getSpectrumType(),
+        scan.getScanNumber(), scan.getRetentionTime(), scan.getScanDefinition(), scanNumberOffset);
+  }
+
+  /**
+   * Matches the metadata of a scan that was not loaded yet, e.g., during import. The mobility range
+   * is not checked.
+   *
+   * @param spectrumType     the spectrum type or null if no spectrum type is selected
+   * @param retentionTime    the retention time in minutes
+   * @param scanNumberOffset is used for baseFilteringInteger (filter every n-th scan)
+   * @return true if the scan matches this selection
+   */
+  public boolean matches(int msLevel, PolarityType polarity, MassSpectrumType spectrumType,
+      int scanNumber, float retentionTime, String scanDefinition, int scanNumberOffset) {
+    if ((this.msLevel != null) && (this.msLevel != msLevel)) {
       return false;
     }
 
-    if ((polarity != null) && (!polarity.equals(scan.getPolarity()))) {
+    if ((this.polarity != null) && (!this.polarity.equals(polarity))) {
       return false;
     }
 
-    if ((spectrumType != null) && (!spectrumType.equals(scan.getSpectrumType()))) {
+    if ((this.spectrumType != null) && (!this.spectrumType.equals(spectrumType))) {
       return false;
     }
 
-    if ((scanNumberRange != null) && (!scanNumberRange.contains(scan.getScanNumber()))) {
+    if ((scanNumberRange != null) && (!scanNumberRange.contains(scanNumber))) {
       return false;
     }
 
     if ((baseFilteringInteger != null) && (
-        (scan.getScanNumber() - scanNumberOffset) % baseFilteringInteger != 0)) {
+        (scanNumber - scanNumberOffset) % baseFilteringInteger != 0)) {
       return false;
     }
 
-    if ((scanRTRange != null) && (!scanRTRange.contains(scan.getRetentionTime()))) {
+    if ((scanRTRange != null) && (!scanRTRange.contains(retentionTime))) {
       return false;
     }
 
-    if (scan instanceof Frame) {
-      if (scanMobilityRange != null && !((Frame) scan).getMobilityRange()
-          .isConnected(scanMobilityRange)) {
-        return false;
-      }
-    } /*else {
-      if ((scanMobilityRange != null) && (!scanMobilityRange.contains(scan.getMobility()))) {
-        return false;
-      }
-    }*/
-
-    if (!Strings.isNullOrEmpty(scanDefinition)) {
+    if (!Strings.isNullOrEmpty(this.scanDefinition)) {
 
-      final String actualScanDefinition = scan.getScanDefinition();
-
-      if (Strings.isNullOrEmpty(actualScanDefinition)) {
+      if (Strings.isNullOrEmpty(scanDefinition)) {
         return false;
       }
 
-      final String regex = TextUtils.createRegexFromWildcards(scanDefinition);
+      final String regex = TextUtils.createRegexFromWildcards(this.scanDefinition);
 
-      return actualScanDefinition.matches(regex);
+      return scanDefinition.matches(regex);
     }
     return true;
   }
@@ -35,6 +35,8 @@ import io.github.mzmine.modules.io.projectload.CachedIMSRawDataFile;
 import io.github.mzmine.modules.visualization.projectmetadata.table.MetadataTable;
 import io.github.mzmine.parameters.UserParameter;
 import io.github.mzmine.project.impl.ProjectChangeEvent.Type;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.StorageUsage;
 import io.github.mzmine.util.files.FileAndPathUtil;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
 import java.io.File;
@@ -42,8 +44,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Logger;
@@ -236,6 +240,7 @@ public class MZmineProjectImpl implements MZmineProject {
     } finally {
       rawLock.writeLock().unlock();
     }
+    logStorageUsage();
   }
 
   @Override
@@ -281,6 +286,7 @@ public class MZmineProjectImpl implements MZmineProject {
     } finally {
       featureLock.writeLock().unlock();
     }
+    logStorageUsage();
   }
 
   @Override
@@ -332,6 +338,37 @@ public class MZmineProjectImpl implements MZmineProject {
     } finally {
       featureLock.writeLock().unlock();
     }
+    logStorageUsage();
+  }
+
+  @Override
+  public @NotNull StorageUsage getStorageUsage() {
+    // feature lists of the same task may share a storage
+    final Set<MemoryMapStorage> storages = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (RawDataFile raw : getCurrentRawDataFiles()) {
+      if (raw.getMemoryMapStorage() != null) {
+        storages.add(raw.getMemoryMapStorage());
+      }
+    }
+    for (FeatureList flist : getCurrentFeatureLists()) {
+      if (flist instanceof ModularFeatureList mflist && mflist.getMemoryMapStorage() != null) {
+        storages.add(mflist.getMemoryMapStorage());
+      }
+    }
+
+    StorageUsage usage = StorageUsage.EMPTY;
+    for (MemoryMapStorage storage : storages) {
+      usage = usage.add(storage.getUsage());
+    }
+    return usage;
+  }
+
+  /**
+   * Temporary files of removed data are reclaimed once the data is garbage collected
+   */
+  private void logStorageUsage() {
+    logger.fine(() -> "Temporary storage of the project: " + getStorageUsage() + ". All storages: "
+        + MemoryMapStorage.getTotalUsage());
   }
 
   @Override
@@ -49,4 +49,51 @@ public interface TaskController {
 
   public boolean isTaskInstanceRunningOrQueued(Class<? extends AbstractTask> clazz);
 
+  /**
+   * Starts a blocking wait of the task that runs on the current thread, e.g., for the sub tasks it
+   * submitted. The CPU permit of the task is handed back while waiting, so that the awaited tasks
+   * can run, and is re-acquired when the returned wait is closed. Use in a try-with-resources
+   * block around the wait loop. Calls from other threads than task threads have no effect.
+   *
+   * @return the wait, closing blocks until the task holds a permit again
+   */
+  public BlockingWait startBlockingWait();
+
+  /**
+   * Takes CPU permits in addition to the permit of the task that runs on the current thread, e.g.,
+   * for worker threads of the task. Only permits that are free and not needed by waiting tasks are
+   * taken, so the call never blocks and may return no permits. Calls from other threads than task
+   * threads get no permits.
+   *
+   * @param maximum the maximum number of additional permits
+   * @return the permits, close to hand them back
+   */
+  public AdditionalPermits acquireAdditionalPermits(int maximum);
+
+  /**
+   * A blocking wait of a task, see {@link #startBlockingWait()}
+   */
+  interface BlockingWait extends AutoCloseable {
+
+    @Override
+    void close();
+  }
+
+  /**
+   * Additional permits of a task, see {@link #acquireAdditionalPermits(int)}
+   */
+  interface AdditionalPermits extends AutoCloseable {
+
+    /**
+     * @return the number of additional permits, may be 0
+     */
+    int count();
+
+    /**
+     * Hands back the permits. Further calls have no effect.
+     */
+    @Override
+    void close();
+  }
+
 }
@@ -27,8 +27,9 @@ package io.github.mzmine.taskcontrol;
 
 /**
  * 
- * This enum defines task priority. High priority tasks are always executed immediately. Normal
- * priority tasks may wait until a thread is available.
+ * This enum defines task priority. High priority tasks are started before all waiting normal
+ * priority tasks and may use a few permits more than the number of threads. Normal priority tasks
+ * may wait until a thread is available.
  * 
  */
 public enum TaskPriority {
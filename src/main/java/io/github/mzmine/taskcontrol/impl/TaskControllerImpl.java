@@ -39,45 +39,113 @@ import io.github.mzmine.taskcontrol.TaskPriority;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
-import java.util.Vector;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Task controller implementation
+ * Task controller implementation. Tasks wait in a priority queue (HIGH before NORMAL, then in
+ * submission order) and are started on a pool of reused worker threads whenever a CPU permit is
+ * free. The number of permits is the number of threads set in the preferences. Dispatching is
+ * triggered by new tasks, finished tasks and priority changes, so there is no polling delay.
+ * <p>
+ * A task that waits for its sub tasks (e.g., a batch or a master task) hands its permit back for
+ * the duration of the wait, see {@link #startBlockingWait()}, so waiting coordinators never block
+ * the tasks they wait for. The permit is re-acquired before the task continues, before any new
+ * task is started. Tasks may also take free permits for their own worker threads, see
+ * {@link #acquireAdditionalPermits(int)}.
  */
-public class TaskControllerImpl implements TaskController, Runnable {
+public class TaskControllerImpl implements TaskController {
 
   private static final Logger logger = Logger.getLogger(TaskControllerImpl.class.getName());
   /**
    * Update the task progress window every 300 ms
    */
-  private final int TASKCONTROLLER_THREAD_SLEEP = 300;
+  private static final int TASKCONTROLLER_UPDATE_INTERVAL = 300;
 
-  private static final TaskControllerImpl INSTANCE = new TaskControllerImpl();
+  /**
+   * HIGH priority tasks may use this many permits in addition to the number of threads, so that
+   * interactive tasks start while the pool is busy without oversubscribing the machine
+   */
+  private static final int HIGH_PRIORITY_EXTRA_PERMITS = 2;
+
+  /**
+   * The task that runs on the current worker thread. Not inherited, as only the worker thread
+   * itself may hand back the permit of its task
+   */
+  private static final ThreadLocal<WrappedTask> CURRENT_TASK = new ThreadLocal<>();
+
+  private static final TaskControllerImpl INSTANCE = new TaskControllerImpl(
+      TaskControllerImpl::getNumOfThreadsSetting);
   private final ArrayList<TaskControlListener> listeners = new ArrayList<>();
-  private final Thread taskControllerThread;
 
   private final TaskQueue taskQueue;
 
   /**
-   * This vector contains references to all running threads of NORMAL priority. Maximum number of
-   * concurrent threads is specified in the preferences dialog.
+   * Tasks that wait for a permit, guarded by this
+   */
+  private final PriorityQueue<WrappedTask> waitingTasks = new PriorityQueue<>(
+      Comparator.comparing(WrappedTask::getPriority)
+          .thenComparingLong(task -> task.submissionIndex));
+  /**
+   * All tasks that were started and are not finished yet
    */
-  private final Vector<WorkerThread> runningThreads;
+  private final Set<WrappedTask> runningTasks = ConcurrentHashMap.newKeySet();
+  private final ThreadPoolExecutor workerPool;
+  private final ScheduledExecutorService progressUpdater;
+  /**
+   * The number of permits for NORMAL priority tasks
+   */
+  private final IntSupplier maxRunningTasks;
 
+  // guarded by this
+  private long submissionCounter = 0;
+  private int usedPermits = 0;
+  // tasks that finished a blocking wait and wait for their permit, guarded by this
+  private int resumingTasks = 0;
 
-  private TaskControllerImpl() {
-    logger.finest("Starting task controller thread");
-    taskQueue = new TaskQueue();
+  private int previousQueueSize = -1;
+  private int previousPercentDone = -1;
 
-    runningThreads = new Vector<>();
+  /**
+   * @param maxRunningTasks the number of permits, read on every dispatch so that changed settings
+   *                        apply to the next started task
+   */
+  TaskControllerImpl(IntSupplier maxRunningTasks) {
+    logger.finest("Starting task controller");
+    this.maxRunningTasks = maxRunningTasks;
+    taskQueue = new TaskQueue();
 
-    // Create a low-priority thread that will manage the queue and start
-    // worker threads for tasks
-    taskControllerThread = new Thread(this, "Task controller thread");
-    taskControllerThread.setPriority(Thread.MIN_PRIORITY);
-    taskControllerThread.start();
+    // worker threads are reused and only die after being idle for a while
+    final AtomicInteger workerCounter = new AtomicInteger(0);
+    workerPool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+        new SynchronousQueue<>(), r -> {
+      Thread thread = new Thread(r, "Task worker thread " + workerCounter.incrementAndGet());
+      thread.setDaemon(false);
+      thread.setPriority(Thread.NORM_PRIORITY);
+      return thread;
+    });
+
+    // Create a low-priority thread that updates the progress of the task queue
+    progressUpdater = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "Task controller thread");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    });
+    progressUpdater.scheduleWithFixedDelay(this::updateProgress, TASKCONTROLLER_UPDATE_INTERVAL,
+        TASKCONTROLLER_UPDATE_INTERVAL, TimeUnit.MILLISECONDS);
   }
 
   public static TaskControllerImpl getInstance() {
@@ -128,101 +196,218 @@ public class TaskControllerImpl implements TaskController, Runnable {
       WrappedTask newQueueEntry = new WrappedTask(task, priority);
       taskQueue.addWrappedTask(newQueueEntry);
       wrappedTasks[i] = newQueueEntry;
-      // logger.finest("Added wrapped task for " +
-      // task.getTaskDescription());
     }
 
-    // Wake up the task controller thread
     synchronized (this) {
-      this.notifyAll();
+      for (WrappedTask wrappedTask : wrappedTasks) {
+        wrappedTask.submissionIndex = submissionCounter++;
+        waitingTasks.add(wrappedTask);
+      }
     }
+
+    dispatch();
     return wrappedTasks;
   }
 
   /**
-   * Task controller thread main method.
+   * Starts waiting tasks in priority order while permits are available. Canceled tasks are
+   * removed without being started.
    */
-  @Override
-  public void run() {
+  private void dispatch() {
+    final List<WrappedTask> startTasks = new ArrayList<>();
+    synchronized (this) {
+      final int maxRunningTasks = getMaxRunningTasks();
+      WrappedTask next;
+      // running tasks that resume after a blocking wait get the next free permits
+      while (resumingTasks == 0 && (next = waitingTasks.peek()) != null) {
+        if (next.getActualTask().getStatus() == TaskStatus.CANCELED) {
+          waitingTasks.poll();
+          continue;
+        }
 
-    int previousQueueSize = -1;
-    int previousPercentDone = -1;
+        if (usedPermits >= getPermits(next, maxRunningTasks)) {
+          // all other tasks have the same or a lower priority
+          break;
+        }
 
-    while (true) {
+        waitingTasks.poll();
+        usedPermits++;
+        next.holdsPermit = true;
+        runningTasks.add(next);
+        startTasks.add(next);
+      }
+    }
 
-      final int waitingTasks = taskQueue.getNumOfWaitingTasks();
-      final int percentDone = taskQueue.getTotalPercentComplete();
-      if ((waitingTasks != previousQueueSize) || (percentDone != previousPercentDone)) {
-        previousQueueSize = waitingTasks;
-        previousPercentDone = percentDone;
-        for (TaskControlListener listener : listeners) {
-          listener.numberOfWaitingTasksChanged(waitingTasks, percentDone);
-        }
+    for (WrappedTask task : startTasks) {
+      // track task use
+      GoogleAnalyticsTracker.trackTaskRun(task.getActualTask());
+      workerPool.execute(new TaskWorker(this, task));
+    }
+  }
+
+  private static int getPermits(WrappedTask task, int maxRunningTasks) {
+    return task.getPriority() == TaskPriority.HIGH ? maxRunningTasks + HIGH_PRIORITY_EXTRA_PERMITS
+        : maxRunningTasks;
+  }
+
+  private int getMaxRunningTasks() {
+    return maxRunningTasks.getAsInt();
+  }
+
+  private static int getNumOfThreadsSetting() {
+    // Obtain the settings of max concurrent threads
+    NumOfThreadsParameter parameter = MZmineCore.getConfiguration().getPreferences()
+        .getParameter(MZminePreferences.numOfThreads);
+    if (parameter.isAutomatic() || (parameter.getValue() == null)) {
+      return Runtime.getRuntime().availableProcessors();
+    } else {
+      return Math.max(1, parameter.getValue());
+    }
+  }
+
+  /**
+   * Called by the worker on the pooled thread right before the task is run
+   */
+  void taskStarted(WrappedTask task) {
+    CURRENT_TASK.set(task);
+  }
+
+  /**
+   * Called by the worker on the pooled thread after the task was run
+   */
+  void taskFinished(WrappedTask task) {
+    CURRENT_TASK.remove();
+    runningTasks.remove(task);
+    synchronized (this) {
+      releasePermit(task);
+    }
+    dispatch();
+  }
+
+  @Override
+  public BlockingWait startBlockingWait() {
+    final WrappedTask task = CURRENT_TASK.get();
+    synchronized (this) {
+      if (!releasePermit(task)) {
+        // not called by a task or the permit was already handed back by an outer wait
+        return () -> {
+        };
       }
+    }
+    dispatch();
+    return () -> reacquirePermit(task);
+  }
 
-      // If the queue is empty, we can sleep. When new task is added into
-      // the queue, we will be awaken by notify()
-      synchronized (this) {
-        while (taskQueue.isEmpty()) {
+  @Override
+  public AdditionalPermits acquireAdditionalPermits(int maximum) {
+    final WrappedTask task = CURRENT_TASK.get();
+    final int count;
+    synchronized (this) {
+      // waiting and resuming tasks get the free permits first
+      if (task == null || !task.holdsPermit || !waitingTasks.isEmpty() || resumingTasks > 0) {
+        count = 0;
+      } else {
+        count = Math.max(0, Math.min(maximum, getMaxRunningTasks() - usedPermits));
+      }
+      usedPermits += count;
+    }
+    return new TaskAdditionalPermits(count);
+  }
+
+  /**
+   * Blocks until a permit is free for a task that resumes after a blocking wait
+   */
+  private void reacquirePermit(WrappedTask task) {
+    synchronized (this) {
+      resumingTasks++;
+      try {
+        while (usedPermits >= getPermits(task, getMaxRunningTasks())) {
           try {
-            this.wait(100);
+            wait();
           } catch (InterruptedException e) {
-            // Ignore
+            // continue with the permit, the task handles the interrupt
+            Thread.currentThread().interrupt();
+            break;
           }
         }
+        usedPermits++;
+        task.holdsPermit = true;
+      } finally {
+        resumingTasks--;
       }
+    }
+    // more permits may be free than the resuming tasks needed
+    dispatch();
+  }
 
-      // Check if all tasks in the queue are finished
-      if (taskQueue.allTasksFinished()) {
-        taskQueue.clear();
-        continue;
-      }
+  /**
+   * Needs to be called while holding the lock of this controller
+   *
+   * @return true if the task held a permit
+   */
+  private boolean releasePermit(WrappedTask task) {
+    if (task != null && task.holdsPermit) {
+      task.holdsPermit = false;
+      usedPermits--;
+      // wake up tasks that resume after a blocking wait
+      notifyAll();
+      return true;
+    }
+    return false;
+  }
 
-      // Remove already finished threads from runningThreads
-      Iterator<WorkerThread> threadIterator = runningThreads.iterator();
-      while (threadIterator.hasNext()) {
-        WorkerThread thread = threadIterator.next();
-        if (thread.isFinished()) {
-          threadIterator.remove();
-        }
-      }
+  private final class TaskAdditionalPermits implements AdditionalPermits {
 
-      // Get a snapshot of the queue
-      WrappedTask[] queueSnapshot = taskQueue.getQueueSnapshot();
+    private final int count;
+    // guarded by the controller
+    private boolean released = false;
 
-      // Obtain the settings of max concurrent threads
-      NumOfThreadsParameter parameter = MZmineCore.getConfiguration().getPreferences()
-          .getParameter(MZminePreferences.numOfThreads);
-      int maxRunningThreads;
-      if (parameter.isAutomatic() || (parameter.getValue() == null)) {
-        maxRunningThreads = Runtime.getRuntime().availableProcessors();
-      } else {
-        maxRunningThreads = parameter.getValue();
-      }
+    private TaskAdditionalPermits(int count) {
+      this.count = count;
+    }
 
-      // Check all tasks in the queue
-      for (WrappedTask task : queueSnapshot) {
+    @Override
+    public int count() {
+      return count;
+    }
 
-        // Skip assigned and canceled tasks
-        if (task.isAssigned() || (task.getActualTask().getStatus() == TaskStatus.CANCELED)) {
-          continue;
+    @Override
+    public void close() {
+      synchronized (TaskControllerImpl.this) {
+        if (released || count == 0) {
+          return;
         }
+        released = true;
+        usedPermits -= count;
+        TaskControllerImpl.this.notifyAll();
+      }
+      dispatch();
+    }
+  }
 
-        // Create a new thread if the task is high-priority or if we
-        // have less then maximum # of threads running
-        if ((task.getPriority() == TaskPriority.HIGH) || (runningThreads.size()
-            < maxRunningThreads)) {
-          WorkerThread newThread = new WorkerThread(task);
-
-          // track task use
-          GoogleAnalyticsTracker.trackTaskRun(task.getActualTask());
+  /**
+   * Notifies the listeners and refreshes the tasks window
+   */
+  private void updateProgress() {
+    try {
+      final int waitingTasks = taskQueue.getNumOfWaitingTasks();
+      final int percentDone = taskQueue.getTotalPercentComplete();
+      if ((waitingTasks != previousQueueSize) || (percentDone != previousPercentDone)) {
+        previousQueueSize = waitingTasks;
+        previousPercentDone = percentDone;
+        for (TaskControlListener listener : listeners) {
+          listener.numberOfWaitingTasksChanged(waitingTasks, percentDone);
+        }
+      }
 
-          if (task.getPriority() == TaskPriority.NORMAL) {
-            runningThreads.add(newThread);
-          }
+      if (taskQueue.isEmpty()) {
+        return;
+      }
 
-          newThread.start();
-        }
+      // Check if all tasks in the queue are finished
+      if (taskQueue.allTasksFinished()) {
+        taskQueue.clear();
+        return;
       }
 
       // Refresh the tasks window
@@ -230,16 +415,10 @@ public class TaskControllerImpl implements TaskController, Runnable {
       if ((desktop != null) && (!(desktop instanceof HeadLessDesktop))) {
         desktop.getTasksView().refresh();
       }
-
-      // Sleep for a while until next update
-      try {
-        Thread.sleep(TASKCONTROLLER_THREAD_SLEEP);
-      } catch (InterruptedException e) {
-        // Ignore
-      }
-
+    } catch (Throwable e) {
+      // keep the scheduled updates alive
+      logger.log(Level.WARNING, "Error while updating the task progress: " + e.getMessage(), e);
     }
-
   }
 
   @Override
@@ -254,10 +433,19 @@ public class TaskControllerImpl implements TaskController, Runnable {
       if (wrappedTask.getActualTask() == task) {
         logger.finest(
             "Setting priority of task \"" + task.getTaskDescription() + "\" to " + priority);
-        wrappedTask.setPriority(priority);
+        // re-insert waiting tasks to keep the priority queue ordered
+        synchronized (this) {
+          final boolean waiting = waitingTasks.remove(wrappedTask);
+          wrappedTask.setPriority(priority);
+          if (waiting) {
+            waitingTasks.add(wrappedTask);
+          }
+        }
       }
     }
 
+    dispatch();
+
     // Refresh the tasks window
     Desktop desktop = MZmineCore.getDesktop();
     if ((desktop != null) && (!(desktop instanceof HeadLessDesktop))) {
@@ -265,6 +453,15 @@ public class TaskControllerImpl implements TaskController, Runnable {
     }
   }
 
+  /**
+   * Stops the worker threads after the running tasks and the progress updates. Only used for
+   * controllers that are not the singleton instance, e.g., in tests.
+   */
+  void shutdown() {
+    workerPool.shutdown();
+    progressUpdater.shutdownNow();
+  }
+
   @Override
   public void addTaskControlListener(TaskControlListener listener) {
     listeners.add(listener);
@@ -278,9 +475,9 @@ public class TaskControllerImpl implements TaskController, Runnable {
       }
     }
 
-    var running = runningThreads.toArray(WorkerThread[]::new);
-    for (WorkerThread runningThread : running) {
-      if (clazz.isInstance(runningThread.getWrappedTask().getActualTask())) {
+    var running = runningTasks.toArray(WrappedTask[]::new);
+    for (WrappedTask runningTask : running) {
+      if (clazz.isInstance(runningTask.getActualTask())) {
         return true;
       }
     }
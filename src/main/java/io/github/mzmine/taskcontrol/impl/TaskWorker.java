@@ -33,19 +33,19 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Task controller worker thread, this thread will process one task and then finish
+ * Task controller worker, processes one task on a pooled thread of the task controller and then
+ * hands its CPU permit back to the controller
  */
-class WorkerThread extends Thread {
+class TaskWorker implements Runnable {
 
   private Logger logger = Logger.getLogger(this.getClass().getName());
 
-  private WrappedTask wrappedTask;
-  private boolean finished = false;
+  private final TaskControllerImpl controller;
+  private final WrappedTask wrappedTask;
 
-  WorkerThread(WrappedTask wrappedTask) {
-    super("Thread executing task " + wrappedTask);
+  TaskWorker(TaskControllerImpl controller, WrappedTask wrappedTask) {
+    this.controller = controller;
     this.wrappedTask = wrappedTask;
-    wrappedTask.assignTo(this);
   }
 
   /**
@@ -53,6 +53,12 @@ class WorkerThread extends Thread {
    */
   public void run() {
 
+    final Thread thread = Thread.currentThread();
+    final String poolThreadName = thread.getName();
+    thread.setName("Thread executing task " + wrappedTask);
+    wrappedTask.assignTo(thread);
+    controller.taskStarted(wrappedTask);
+
     Task actualTask = wrappedTask.getActualTask();
 
     try {
@@ -105,14 +111,13 @@ class WorkerThread extends Thread {
     }
 
     /*
-     * Mark this thread as finished
+     * Reset the pooled thread and release the permit of this task
      */
-    finished = true;
-
-  }
+    wrappedTask.assignTo(null);
+    thread.setPriority(Thread.NORM_PRIORITY);
+    thread.setName(poolThreadName);
+    controller.taskFinished(wrappedTask);
 
-  boolean isFinished() {
-    return finished;
   }
 
   public WrappedTask getWrappedTask() {
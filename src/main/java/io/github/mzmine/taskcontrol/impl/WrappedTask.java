@@ -54,29 +54,45 @@ public class WrappedTask {
 
   private Task task;
   private Property<TaskPriority> priority;
-  private WorkerThread assignedTo;
+  /**
+   * Scheduling priority, set directly while the property is updated on the FX thread
+   */
+  private volatile TaskPriority schedulingPriority;
+  private volatile Thread assignedTo;
+
+  /**
+   * Submission order and permit state, guarded by the {@link TaskControllerImpl}
+   */
+  long submissionIndex;
+  boolean holdsPermit;
 
   public WrappedTask(Task task, TaskPriority priority) {
     this.task = task;
     this.priority = new SimpleObjectProperty<>(priority);
+    this.schedulingPriority = priority;
   }
 
   /**
    * @return Returns the priority.
    */
   TaskPriority getPriority() {
-    return priority.getValue();
+    return schedulingPriority;
   }
 
   /**
    * @param priority The priority to set.
    */
   void setPriority(TaskPriority priority) {
+    schedulingPriority = priority;
     MZmineCore.runLater(() -> this.priority.setValue(priority));
-    if (assignedTo != null) {
+    applyThreadPriority(assignedTo, priority);
+  }
+
+  private static void applyThreadPriority(Thread thread, TaskPriority priority) {
+    if (thread != null) {
       switch (priority) {
-        case HIGH -> assignedTo.setPriority(Thread.MAX_PRIORITY);
-        case NORMAL -> assignedTo.setPriority(Thread.NORM_PRIORITY);
+        case HIGH -> thread.setPriority(Thread.MAX_PRIORITY);
+        case NORMAL -> thread.setPriority(Thread.NORM_PRIORITY);
       }
     }
   }
@@ -86,14 +102,11 @@ public class WrappedTask {
   }
 
   /**
-   * @return Returns the assigned.
+   * @param thread the pooled thread that runs this task or null once the task is done
    */
-  boolean isAssigned() {
-    return assignedTo != null;
-  }
-
-  void assignTo(WorkerThread thread) {
+  void assignTo(Thread thread) {
     assignedTo = thread;
+    applyThreadPriority(thread, schedulingPriority);
   }
 
   /**
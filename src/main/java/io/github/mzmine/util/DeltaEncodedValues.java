@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Values stored as int offsets (fixed point, {@link #RESOLUTION}) to a double anchor per block of
+ * {@link #BLOCK_SIZE} values, see {@link StorageEncoding#FLOAT_INTENSITY_DELTA_MZ}. Each value is
+ * rounded down to the resolution, so the decoded values keep the order of the original values. A
+ * block that spans more than 2^31 * RESOLUTION (128 Da) or contains non-finite values is stored as
+ * doubles instead.
+ */
+class DeltaEncodedValues implements StoredDoubleValues {
+
+  static final int BLOCK_SHIFT = 6;
+  static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+  static final double RESOLUTION = 0x1.0p-24;
+
+  private final int size;
+  private final DoubleBuffer anchors;
+  /**
+   * Offset of a block in {@link #exceptions} or -1 if the block is delta encoded
+   */
+  private final IntBuffer exceptionOffsets;
+  private final IntBuffer offsets;
+  private final DoubleBuffer exceptions;
+
+  private DeltaEncodedValues(int size, DoubleBuffer anchors, IntBuffer exceptionOffsets,
+      IntBuffer offsets, DoubleBuffer exceptions) {
+    this.size = size;
+    this.anchors = anchors;
+    this.exceptionOffsets = exceptionOffsets;
+    this.offsets = offsets;
+    this.exceptions = exceptions;
+  }
+
+  @NotNull
+  static DeltaEncodedValues encode(@NotNull MemoryMapStorage storage, @NotNull double[] values)
+      throws IOException {
+    final int size = values.length;
+    final int numBlocks = (size + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+    final double[] anchors = new double[numBlocks];
+    final int[] exceptionOffsets = new int[numBlocks];
+    final int[] offsets = new int[size];
+    double[] exceptions = new double[0];
+    int numExceptions = 0;
+
+    for (int block = 0; block < numBlocks; block++) {
+      final int start = block << BLOCK_SHIFT;
+      final int end = Math.min(size, start + BLOCK_SIZE);
+      final double anchor = values[start];
+      anchors[block] = anchor;
+      exceptionOffsets[block] = -1;
+
+      for (int i = start; i < end; i++) {
+        final long offset = toOffset(anchor, values[i]);
+        if (offset == Long.MIN_VALUE) {
+          // store the whole block as doubles
+          if (numExceptions + BLOCK_SIZE > exceptions.length) {
+            exceptions = Arrays.copyOf(exceptions, Math.max(BLOCK_SIZE, exceptions.length * 2));
+          }
+          System.arraycopy(values, start, exceptions, numExceptions, end - start);
+          Arrays.fill(offsets, start, end, 0);
+          exceptionOffsets[block] = numExceptions;
+          numExceptions += end - start;
+          break;
+        }
+        offsets[i] = (int) offset;
+      }
+    }
+
+    return new DeltaEncodedValues(size, storage.storeData(anchors),
+        storage.storeData(exceptionOffsets), storage.storeData(offsets),
+        storage.storeData(exceptions, 0, numExceptions));
+  }
+
+  /**
+   * @return the largest offset k with anchor + k * RESOLUTION <= value or Long.MIN_VALUE if the
+   * value cannot be encoded relative to the anchor
+   */
+  private static long toOffset(double anchor, double value) {
+    if (!Double.isFinite(anchor) || !Double.isFinite(value)) {
+      return Long.MIN_VALUE;
+    }
+    final double steps = Math.floor((value - anchor) / RESOLUTION);
+    if (steps <= Integer.MIN_VALUE + 1 || steps >= Integer.MAX_VALUE - 1) {
+      return Long.MIN_VALUE;
+    }
+    // correct rounding errors of the subtraction
+    long k = (long) steps;
+    while (anchor + k * RESOLUTION > value) {
+      k--;
+    }
+    while (anchor + (k + 1) * RESOLUTION <= value) {
+      k++;
+    }
+    return k;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public double get(int index) {
+    final int block = index >> BLOCK_SHIFT;
+    final int exceptionOffset = exceptionOffsets.get(block);
+    if (exceptionOffset >= 0) {
+      return exceptions.get(exceptionOffset + (index & (BLOCK_SIZE - 1)));
+    }
+    return anchors.get(block) + offsets.get(index) * RESOLUTION;
+  }
+
+  @Override
+  public void get(int index, @NotNull double[] dst, int dstOffset, int length) {
+    final int end = index + length;
+    int i = index;
+    while (i < end) {
+      final int block = i >> BLOCK_SHIFT;
+      final int blockEnd = Math.min(end, (block + 1) << BLOCK_SHIFT);
+      final int exceptionOffset = exceptionOffsets.get(block);
+      if (exceptionOffset >= 0) {
+        exceptions.get(exceptionOffset + (i & (BLOCK_SIZE - 1)), dst, dstOffset + i - index,
+            blockEnd - i);
+      } else {
+        final double anchor = anchors.get(block);
+        for (int j = i; j < blockEnd; j++) {
+          dst[dstOffset + j - index] = anchor + offsets.get(j) * RESOLUTION;
+        }
+      }
+      i = blockEnd;
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util;
+
+import java.nio.DoubleBuffer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Values stored as doubles, see {@link StorageEncoding#DOUBLE}
+ */
+class DoubleBufferValues implements StoredDoubleValues {
+
+  private final DoubleBuffer values;
+
+  DoubleBufferValues(@NotNull DoubleBuffer values) {
+    this.values = values;
+  }
+
+  @Override
+  public int size() {
+    return values.capacity();
+  }
+
+  @Override
+  public double get(int index) {
+    return values.get(index);
+  }
+
+  @Override
+  public void get(int index, @NotNull double[] dst, int dstOffset, int length) {
+    values.get(index, dst, dstOffset, length);
+  }
+}
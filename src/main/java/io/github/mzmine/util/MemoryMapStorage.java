@@ -29,6 +29,10 @@ import io.github.mzmine.main.MZmineCore;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.ref.Cleaner;
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
@@ -36,9 +40,15 @@ import java.nio.IntBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -56,17 +66,27 @@ import sun.misc.Unsafe;
  * the disk, depending on the amount of stored data (this can be examined using the 'du -hs' Linux
  * command.
  * <p>
- * There is no support for removing data from the file - we assume such operation is rare and
- * therefore the data can be left on the disk until the whole temporary file is discarded.
+ * There is no support for removing single arrays from a file, because the returned buffers are
+ * views on the mapped file and may be shared, e.g., by copied features of other feature lists.
+ * Instead, each temporary file is reclaimed (and deleted) as soon as the MappedByteBuffer and all
+ * buffers that were returned for this file are garbage-collected, e.g., after all feature lists or
+ * mass lists using the data were removed. The storage only keeps a strong reference to the file it
+ * is currently writing into. Files that cannot be deleted right away (e.g., while Windows still
+ * maps the file) are deleted in the background later. {@link #discard(Unsafe)} unmaps and deletes
+ * all files of a storage immediately.
  * <p>
  * There is a limit on the number of open file descriptors (e.g. 1024 by default on Linux). With 1
  * GB per temporary file, this would give us about 1 TB of storage space, so perhaps it is okay.
- * There is no way to remove the memory-mapped file, it is removed automatically when the
- * MappedByteBuffer is garbage-collected.
+ * The current usage is available via {@link #getUsage()} for a storage and
+ * {@link #getTotalUsage()} for all storages.
  * <p>
  * The total amount of storage space is also limited by the amount of addressable virtual memory
  * (e.g., 128TB on Linux). For this reason, this approach requires a 64-bit system - the limit would
  * be only 2GB on a 32-bit system.
+ * <p>
+ * Spectral data is stored with the {@link StorageEncoding} of the storage by
+ * {@link #storeMzValues(double[])} and {@link #storeIntensityValues(double[])}. The default
+ * encoding is set in the preferences.
  */
 public class MemoryMapStorage {
 
@@ -75,13 +95,42 @@ public class MemoryMapStorage {
    * single MappedByteBuffer. 1 GB per file seems like a good start.
    */
   private static final long STORAGE_FILE_CAPACITY = 1_000_000_000L;
-  private final Logger logger = Logger.getLogger(this.getClass().getName());
-  private final Set<File> temporaryFiles = new HashSet<>();
-  private final List<MappedByteBuffer> mappedByteBufferList = new ArrayList<>();
+  private static final Logger logger = Logger.getLogger(MemoryMapStorage.class.getName());
+
+  /**
+   * Reclaims temporary files once their mapped buffers are unreachable
+   */
+  private static final Cleaner cleaner = Cleaner.create();
+  /**
+   * Files that could not be deleted when they were reclaimed
+   */
+  private static final Set<File> pendingDeletion = ConcurrentHashMap.newKeySet();
+  private static final ScheduledExecutorService pendingDeletionService =
+      Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Temporary file deletion");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+      });
+  private static final AtomicInteger totalLiveFiles = new AtomicInteger(0);
+  private static final AtomicLong totalLiveBytes = new AtomicLong(0);
+  private static final AtomicInteger totalReclaimedFiles = new AtomicInteger(0);
+  private static final AtomicLong totalReclaimedBytes = new AtomicLong(0);
+
+  static {
+    pendingDeletionService.scheduleWithFixedDelay(MemoryMapStorage::deletePendingFiles, 30, 30,
+        TimeUnit.SECONDS);
+  }
+
+  private final List<TemporaryFile> temporaryFiles = new ArrayList<>();
 
   private static boolean storeFeaturesInRam = false;
   private static boolean storeRawFilesInRam = false;
   private static boolean storeMassListsInRam = false;
+  private static StorageEncoding defaultEncoding = StorageEncoding.DOUBLE;
+
+  private final StorageEncoding encoding;
+  private long storedBytes = 0;
 
   /**
    * @return The {@link MemoryMapStorage} or null, if the data shall be stored in ram.
@@ -112,7 +161,20 @@ public class MemoryMapStorage {
     return new MemoryMapStorage();
   }
 
+  /**
+   * @param encoding the encoding of spectral data in this storage
+   */
+  @NotNull
+  public static MemoryMapStorage create(@NotNull StorageEncoding encoding) {
+    return new MemoryMapStorage(encoding);
+  }
+
   private MemoryMapStorage() {
+    this(defaultEncoding);
+  }
+
+  private MemoryMapStorage(@NotNull StorageEncoding encoding) {
+    this.encoding = encoding;
     // register this storage to MZmineCore, so we can delete all temp files later.
     MZmineCore.registerStorage(this);
   }
@@ -121,6 +183,7 @@ public class MemoryMapStorage {
    * The file that we are currently writing into.
    */
   private MappedByteBuffer currentMappedFile = null;
+  private TemporaryFile currentTemporaryFile = null;
 
   /**
    * Creates a new temporary file, maps it into memory, and returns the corresponding
@@ -133,7 +196,6 @@ public class MemoryMapStorage {
 
     // Create the temporary storage file
     File storageFileName = File.createTempFile("mzmine", ".tmp");
-    temporaryFiles.add(storageFileName);
     logger.finest("Created a temporary file " + storageFileName);
 
     // Open the file for writing
@@ -142,7 +204,13 @@ public class MemoryMapStorage {
     // Map the file into memory
     MappedByteBuffer mappedFileBuffer =
         storageFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, STORAGE_FILE_CAPACITY);
-    mappedByteBufferList.add(mappedFileBuffer);
+
+    // reclaim the file once the buffer and all views on the buffer are unreachable
+    final TemporaryFile temporaryFile = new TemporaryFile(storageFileName, mappedFileBuffer);
+    temporaryFile.cleanable = cleaner.register(mappedFileBuffer, temporaryFile);
+    temporaryFiles.add(temporaryFile);
+    currentTemporaryFile = temporaryFile;
+    totalLiveFiles.incrementAndGet();
 
     // Close the temporary file, the memory mapping will remain
     storageFile.close();
@@ -205,6 +273,7 @@ public class MemoryMapStorage {
 
     // Update the position and the main buffer so we are ready to store the next array
     currentMappedFile.position(savedPosition + length * Double.BYTES);
+    addStoredBytes((long) length * Double.BYTES);
 
     // Create a read-only version of the new buffer slice
     final DoubleBuffer readOnlySlice = sliceDoubleView.asReadOnlyBuffer();
@@ -262,6 +331,7 @@ public class MemoryMapStorage {
 
     // Update the position and the main buffer so we are ready to store the next array
     currentMappedFile.position(savedPosition + length * Float.BYTES);
+    addStoredBytes((long) length * Float.BYTES);
 
     // Create a read-only version of the new buffer slice
     final FloatBuffer readOnlySlice = sliceFloatView.asReadOnlyBuffer();
@@ -318,6 +388,7 @@ public class MemoryMapStorage {
 
     // Update the position and the main buffer so we are ready to store the next array
     currentMappedFile.position(savedPosition + length * Integer.BYTES);
+    addStoredBytes((long) length * Integer.BYTES);
 
     // Create a read-only version of the new buffer slice
     final IntBuffer readOnlySlice = sliceIntView.asReadOnlyBuffer();
@@ -326,25 +397,191 @@ public class MemoryMapStorage {
 
   }
 
+  /**
+   * Store m/z values with the {@link StorageEncoding} of this storage.
+   *
+   * @param values the m/z values
+   * @return the stored values that decode to the (encoded) m/z values on access
+   * @throws IOException
+   */
+  @NotNull
+  public synchronized StoredDoubleValues storeMzValues(@NotNull final double[] values)
+      throws IOException {
+    return switch (encoding) {
+      case DOUBLE, FLOAT_INTENSITY -> new DoubleBufferValues(storeData(values));
+      case FLOAT_INTENSITY_DELTA_MZ -> DeltaEncodedValues.encode(this, values);
+    };
+  }
+
+  /**
+   * Store intensity values with the {@link StorageEncoding} of this storage.
+   *
+   * @param values the intensity values
+   * @return the stored values that decode to the (encoded) intensity values on access
+   * @throws IOException
+   */
+  @NotNull
+  public synchronized StoredDoubleValues storeIntensityValues(@NotNull final double[] values)
+      throws IOException {
+    return switch (encoding) {
+      case DOUBLE -> new DoubleBufferValues(storeData(values));
+      case FLOAT_INTENSITY, FLOAT_INTENSITY_DELTA_MZ -> {
+        final float[] floats = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+          floats[i] = (float) values[i];
+        }
+        yield new FloatBufferValues(storeData(floats));
+      }
+    };
+  }
+
+  /**
+   * @return the encoding of spectral data in this storage
+   */
+  @NotNull
+  public StorageEncoding getEncoding() {
+    return encoding;
+  }
+
+  private void addStoredBytes(long bytes) {
+    storedBytes += bytes;
+    currentTemporaryFile.storedBytes += bytes;
+    totalLiveBytes.addAndGet(bytes);
+  }
+
+  /**
+   * @return the number of bytes stored in this storage, including reclaimed files
+   */
+  public synchronized long getStoredBytes() {
+    return storedBytes;
+  }
+
+  /**
+   * @return the current usage of temporary files by this storage
+   */
+  @NotNull
+  public synchronized StorageUsage getUsage() {
+    int liveFiles = 0;
+    long liveBytes = 0;
+    int reclaimedFiles = 0;
+    long reclaimedBytes = 0;
+    for (TemporaryFile file : temporaryFiles) {
+      if (file.isReclaimed()) {
+        reclaimedFiles++;
+        reclaimedBytes += file.storedBytes;
+      } else {
+        liveFiles++;
+        liveBytes += file.storedBytes;
+      }
+    }
+    return new StorageUsage(liveFiles, liveBytes, reclaimedFiles, reclaimedBytes);
+  }
+
+  /**
+   * @return the current usage of temporary files by all storages
+   */
+  @NotNull
+  public static StorageUsage getTotalUsage() {
+    return new StorageUsage(totalLiveFiles.get(), totalLiveBytes.get(), totalReclaimedFiles.get(),
+        totalReclaimedBytes.get());
+  }
+
   /**
    * Discard this memory-mapped storage and remove all the associated temporary files.
    */
   public synchronized void discard(Unsafe theUnsafe) throws IOException {
 
-    if (theUnsafe != null) {
-      for (MappedByteBuffer mappedByteBuffer : mappedByteBufferList) {
+    for (TemporaryFile tmpFile : temporaryFiles) {
+      final MappedByteBuffer mappedByteBuffer = tmpFile.buffer.get();
+      if (theUnsafe != null && mappedByteBuffer != null) {
         theUnsafe.invokeCleaner(mappedByteBuffer);
       }
+      // deletes the file and deregisters it from the cleaner
+      tmpFile.cleanable.clean();
     }
 
-    for (File tmpFile : temporaryFiles) {
-      if (!tmpFile.delete()) {
-        logger.warning("Could not delete temporary file " + tmpFile.getAbsolutePath());
+    currentMappedFile = null;
+    currentTemporaryFile = null;
+  }
+
+  /**
+   * Taken from https://stackoverflow.com/a/48821002
+   *
+   * @return Instance {@link Unsafe} to unmap buffers, e.g., in {@link #discard(Unsafe)}, or null.
+   * @author https://github.com/SteffenHeu
+   */
+  @Nullable
+  public static Unsafe getUnsafe() {
+    try {
+      Class unsafeClass = Class.forName("sun.misc.Unsafe");
+//      unsafeClass = Class.forName("jdk.internal.misc.Unsafe");
+      Method clean = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      clean.setAccessible(true);
+      Field theUnsafeField = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafeField.setAccessible(true);
+      Object theUnsafe = theUnsafeField.get(null);
+
+      return (Unsafe) theUnsafe;
+
+    } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException |
+        NoSuchFieldException | ClassCastException e) {
+      // jdk.internal.misc.Unsafe doesn't yet have an invokeCleaner() method,
+      // but that method should be added if sun.misc.Unsafe is removed.
+      e.printStackTrace();
+    }
+    return null;
+  }
+
+  private static void deletePendingFiles() {
+    for (File file : pendingDeletion) {
+      if (file.delete() || !file.exists()) {
+        pendingDeletion.remove(file);
+        logger.finest(() -> "Deleted reclaimed temporary file " + file);
       }
     }
+  }
 
-    temporaryFiles.clear();
-    currentMappedFile = null;
+  /**
+   * A mapped temporary file. Only holds a weak reference to the mapped buffer, so that the file
+   * can be reclaimed once the buffer and all views of the buffer are unreachable.
+   */
+  private static class TemporaryFile implements Runnable {
+
+    private final File file;
+    private final WeakReference<MappedByteBuffer> buffer;
+    private final AtomicBoolean reclaimed = new AtomicBoolean(false);
+    private Cleaner.Cleanable cleanable;
+    private volatile long storedBytes = 0;
+
+    private TemporaryFile(File file, MappedByteBuffer buffer) {
+      this.file = file;
+      this.buffer = new WeakReference<>(buffer);
+    }
+
+    private boolean isReclaimed() {
+      return reclaimed.get();
+    }
+
+    /**
+     * Called once, either by the cleaner or by {@link #discard(Unsafe)}
+     */
+    @Override
+    public void run() {
+      if (!reclaimed.compareAndSet(false, true)) {
+        return;
+      }
+      totalLiveFiles.decrementAndGet();
+      totalLiveBytes.addAndGet(-storedBytes);
+      totalReclaimedFiles.incrementAndGet();
+      totalReclaimedBytes.addAndGet(storedBytes);
+
+      if (file.delete()) {
+        logger.finest(() -> "Reclaimed temporary file " + file);
+      } else if (file.exists()) {
+        // the file may still be mapped until the buffer's own cleaner ran
+        pendingDeletion.add(file);
+      }
+    }
   }
 
 
@@ -371,6 +608,18 @@ public class MemoryMapStorage {
   public static void setStoreMassListsInRam(boolean storeMassListsInRam) {
     MemoryMapStorage.storeMassListsInRam = storeMassListsInRam;
   }
+  public static StorageEncoding getDefaultEncoding() {
+    return defaultEncoding;
+  }
+
+  /**
+   * @param defaultEncoding the encoding of all storages that are created from now on
+   */
+  public static void setDefaultEncoding(StorageEncoding defaultEncoding) {
+    MemoryMapStorage.defaultEncoding =
+        defaultEncoding == null ? StorageEncoding.DOUBLE : defaultEncoding;
+  }
+
   /**
    * Store everything in RAM instead of using MemoryMapStorage
    *
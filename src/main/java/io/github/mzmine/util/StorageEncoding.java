@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util;
+
+/**
+ * Encoding of spectral data in a {@link MemoryMapStorage}. The encoding is set per storage and is
+ * applied to m/z and intensity values of scans, mass lists and mobility scans. All encodings are
+ * decoded transparently on access.
+ */
+public enum StorageEncoding {
+
+  /**
+   * m/z and intensity values as doubles (lossless)
+   */
+  DOUBLE("Double precision (lossless)"),
+
+  /**
+   * m/z values as doubles, intensities as floats
+   */
+  FLOAT_INTENSITY("Float intensities"),
+
+  /**
+   * intensities as floats, m/z values as fixed point offsets to a double anchor per block of
+   * values. The m/z error is below 6E-8 Da.
+   */
+  FLOAT_INTENSITY_DELTA_MZ("Float intensities and delta encoded m/z");
+
+  private final String label;
+
+  StorageEncoding(String label) {
+    this.label = label;
+  }
+
+  @Override
+  public String toString() {
+    return label;
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util;
+
+/**
+ * Usage of temporary files by one or more {@link MemoryMapStorage}s. Live files are still mapped
+ * and occupy disk space, reclaimed files were deleted after their data became unreachable.
+ *
+ * @param liveFiles      number of live temporary files
+ * @param liveBytes      bytes stored in live temporary files
+ * @param reclaimedFiles number of reclaimed temporary files
+ * @param reclaimedBytes bytes that were stored in reclaimed temporary files
+ */
+public record StorageUsage(int liveFiles, long liveBytes, int reclaimedFiles,
+                           long reclaimedBytes) {
+
+  public static final StorageUsage EMPTY = new StorageUsage(0, 0, 0, 0);
+
+  public StorageUsage add(StorageUsage other) {
+    return new StorageUsage(liveFiles + other.liveFiles, liveBytes + other.liveBytes,
+        reclaimedFiles + other.reclaimedFiles, reclaimedBytes + other.reclaimedBytes);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%.1f MB in %d temporary files (%.1f MB in %d files reclaimed)",
+        liveBytes / 1E6, liveFiles, reclaimedBytes / 1E6, reclaimedFiles);
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util;
+
+import java.nio.DoubleBuffer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Read-only access to double values that may be stored in an encoded form, e.g., as floats or delta
+ * encoded in a {@link MemoryMapStorage}. See {@link StorageEncoding}.
+ */
+public interface StoredDoubleValues {
+
+  StoredDoubleValues EMPTY = wrap(new double[0]);
+
+  /**
+   * Wraps the array without copying. Changes in the array are reflected in the returned values.
+   */
+  @NotNull
+  static StoredDoubleValues wrap(@NotNull double[] values) {
+    return new DoubleBufferValues(DoubleBuffer.wrap(values));
+  }
+
+  /**
+   * @return the number of values
+   */
+  int size();
+
+  /**
+   * @param index the value index
+   * @return the decoded value
+   */
+  double get(int index);
+
+  /**
+   * Decodes a range of values into the destination array
+   *
+   * @param index     the index of the first value
+   * @param dst       the destination array
+   * @param dstOffset the first index in the destination array
+   * @param length    the number of values
+   */
+  void get(int index, @NotNull double[] dst, int dstOffset, int length);
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.collections;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Static index of closed intervals [lower, upper] to find all intervals that overlap a query
+ * interval. Intervals are sorted by their lower bound and an implicit binary tree holds the maximum
+ * upper bound of each subtree, so that queries only descend into subtrees with overlapping
+ * intervals. The cost of a query is O((k + 1) * log(n)) for k overlapping intervals, independent of
+ * the width of individual intervals.
+ * <p>
+ * The index is immutable after creation and can be queried by multiple threads concurrently.
+ * Intervals with lower > upper are empty and never reported. NaN values are not supported.
+ */
+public class DoubleIntervalIndex {
+
+  private final int size;
+  // sorted by lower bound
+  private final double[] lowers;
+  private final double[] uppers;
+  // the original index of each interval
+  private final int[] ids;
+  // implicit binary tree of the max upper bound. Root at 1, leaves start at leafOffset
+  private final double[] maxUpperTree;
+  private final int leafOffset;
+
+  /**
+   * @param lowers lower bounds (inclusive). The array index is used as the interval id
+   * @param uppers upper bounds (inclusive)
+   */
+  public DoubleIntervalIndex(double[] lowers, double[] uppers) {
+    if (lowers.length != uppers.length) {
+      throw new IllegalArgumentException("Lower and upper bounds need the same length");
+    }
+    size = lowers.length;
+    ids = new int[size];
+    for (int i = 0; i < size; i++) {
+      ids[i] = i;
+    }
+    // stable sort so that equal lower bounds are reported by ascending id
+    IntArrays.mergeSort(ids, 0, size, (a, b) -> Double.compare(lowers[a], lowers[b]));
+
+    this.lowers = new double[size];
+    this.uppers = new double[size];
+    for (int i = 0; i < size; i++) {
+      this.lowers[i] = lowers[ids[i]];
+      this.uppers[i] = uppers[ids[i]];
+    }
+
+    int leaves = 1;
+    while (leaves < size) {
+      leaves <<= 1;
+    }
+    leafOffset = leaves;
+    maxUpperTree = new double[2 * leaves];
+    Arrays.fill(maxUpperTree, Double.NEGATIVE_INFINITY);
+    for (int i = 0; i < size; i++) {
+      // empty intervals are never reported
+      if (this.lowers[i] <= this.uppers[i]) {
+        maxUpperTree[leafOffset + i] = this.uppers[i];
+      }
+    }
+    for (int node = leafOffset - 1; node >= 1; node--) {
+      maxUpperTree[node] = Math.max(maxUpperTree[2 * node], maxUpperTree[2 * node + 1]);
+    }
+  }
+
+  /**
+   * @return number of intervals
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Reports the ids of all intervals that overlap the closed query interval, sorted by their lower
+   * bounds.
+   *
+   * @param lower    inclusive lower bound of the query
+   * @param upper    inclusive upper bound of the query
+   * @param consumer receives the id (index in the original arrays) of each overlapping interval
+   */
+  public void forEachOverlapping(double lower, double upper, IntConsumer consumer) {
+    if (size == 0 || lower > upper) {
+      return;
+    }
+    // only intervals that start at or before the query upper bound can overlap
+    final int limit = firstIndexGreaterThan(upper);
+    if (limit == 0) {
+      return;
+    }
+    visit(1, 0, leafOffset, limit, lower, consumer);
+  }
+
+  /**
+   * @param lower inclusive lower bound of the query
+   * @param upper inclusive upper bound of the query
+   * @return the number of intervals that overlap the closed query interval
+   */
+  public int countOverlapping(double lower, double upper) {
+    return countOverlapping(lower, upper, -1);
+  }
+
+  /**
+   * Counts without allocating, e.g., to count all pairs of overlapping intervals before visiting
+   * them.
+   *
+   * @param lower   inclusive lower bound of the query
+   * @param upper   inclusive upper bound of the query
+   * @param afterId only intervals with an id greater than this id are counted
+   * @return the number of intervals with an id greater than afterId that overlap the closed query
+   * interval
+   */
+  public int countOverlapping(double lower, double upper, int afterId) {
+    if (size == 0 || lower > upper) {
+      return 0;
+    }
+    final int limit = firstIndexGreaterThan(upper);
+    if (limit == 0) {
+      return 0;
+    }
+    return count(1, 0, leafOffset, limit, lower, afterId);
+  }
+
+  private void visit(int node, int from, int to, int limit, double lower, IntConsumer consumer) {
+    if (from >= limit || maxUpperTree[node] < lower) {
+      return;
+    }
+    if (node >= leafOffset) {
+      consumer.accept(ids[from]);
+      return;
+    }
+    final int mid = (from + to) >>> 1;
+    visit(2 * node, from, mid, limit, lower, consumer);
+    visit(2 * node + 1, mid, to, limit, lower, consumer);
+  }
+
+  private int count(int node, int from, int to, int limit, double lower, int afterId) {
+    if (from >= limit || maxUpperTree[node] < lower) {
+      return 0;
+    }
+    if (node >= leafOffset) {
+      return ids[from] > afterId ? 1 : 0;
+    }
+    final int mid = (from + to) >>> 1;
+    return count(2 * node, from, mid, limit, lower, afterId) + count(2 * node + 1, mid, to, limit,
+        lower, afterId);
+  }
+
+  private int firstIndexGreaterThan(double value) {
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      if (lowers[mid] <= value) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+}
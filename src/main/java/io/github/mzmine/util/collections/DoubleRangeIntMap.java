@@ -0,0 +1,411 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.collections;
+
+import java.util.Arrays;
+
+/**
+ * Primitive replacement for a Guava {@code RangeMap<Double, Integer>} that only holds closed-open
+ * ranges [lower, upper). Ranges never overlap - putting a new range removes or truncates all
+ * existing entries that overlap, exactly like {@code TreeRangeMap#put}. Entries are kept sorted by
+ * their lower endpoint in blocks of primitive arrays so that lookups and insertions do not create
+ * any objects. Use this map for millions of lookups, e.g., to map data points to chromatograms.
+ * <p>
+ * Not thread safe.
+ */
+public class DoubleRangeIntMap {
+
+  /**
+   * Returned if there is no range that contains a key
+   */
+  public static final int NO_VALUE = -1;
+
+  private static final int DEFAULT_BLOCK_SIZE = 512;
+
+  private final int blockSize;
+  // blocks are sorted by lower endpoint and never empty (except for the only block of an empty map)
+  private double[][] lowers;
+  private double[][] uppers;
+  private int[][] values;
+  private int[] blockSizes;
+  private int numBlocks;
+  private int size;
+
+  // position of the last search - avoids object creation
+  private int posBlock;
+  private int posIndex;
+
+  public DoubleRangeIntMap() {
+    this(DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * @param blockSize maximum number of entries per block. Blocks are split when full.
+   */
+  public DoubleRangeIntMap(int blockSize) {
+    if (blockSize < 2) {
+      throw new IllegalArgumentException("Block size needs to be >= 2");
+    }
+    this.blockSize = blockSize;
+    int initialBlocks = 8;
+    lowers = new double[initialBlocks][];
+    uppers = new double[initialBlocks][];
+    values = new int[initialBlocks][];
+    blockSizes = new int[initialBlocks];
+    createBlock(0);
+    numBlocks = 1;
+  }
+
+  /**
+   * @return number of ranges in this map
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @param key the search key
+   * @return the value of the range that contains the key or {@link #NO_VALUE}
+   */
+  public int get(double key) {
+    return findContaining(key) ? values[posBlock][posIndex] : NO_VALUE;
+  }
+
+  /**
+   * @param key the search key
+   * @return the lower endpoint of the range that contains the key or NaN
+   */
+  public double getLowerEndpoint(double key) {
+    return findContaining(key) ? lowers[posBlock][posIndex] : Double.NaN;
+  }
+
+  /**
+   * @param key the search key
+   * @return the upper endpoint (exclusive) of the range that contains the key or NaN
+   */
+  public double getUpperEndpoint(double key) {
+    return findContaining(key) ? uppers[posBlock][posIndex] : Double.NaN;
+  }
+
+  /**
+   * Maps the closed-open range [lower, upper) to the value. Overlapping parts of existing ranges
+   * are removed, ranges that are completely enclosed are removed from the map. Empty ranges are
+   * ignored.
+   *
+   * @param lower inclusive lower endpoint
+   * @param upper exclusive upper endpoint
+   * @param value the value, should be >= 0 to be distinguishable from {@link #NO_VALUE}
+   */
+  public void put(double lower, double upper, int value) {
+    if (!(lower < upper)) {
+      return;
+    }
+    remove(lower, upper);
+
+    // insert after the floor entry
+    int b = floorBlock(lower);
+    int i;
+    if (b < 0) {
+      b = 0;
+      i = 0;
+    } else {
+      i = floorIndex(b, lower) + 1;
+    }
+    insertAt(b, i, lower, upper, value);
+  }
+
+  /**
+   * Removes all parts of ranges in [lower, upper). Ranges are truncated or split.
+   *
+   * @param lower inclusive lower endpoint
+   * @param upper exclusive upper endpoint
+   */
+  public void remove(double lower, double upper) {
+    if (!(lower < upper) || size == 0) {
+      return;
+    }
+
+    // handle the range that starts before lower
+    int b = floorBlock(lower);
+    if (b >= 0) {
+      int i = floorIndex(b, lower);
+      double entryLower = lowers[b][i];
+      double entryUpper = uppers[b][i];
+      if (entryLower < lower && entryUpper > lower) {
+        uppers[b][i] = lower;
+        if (entryUpper > upper) {
+          // range encloses the removed range - split into two
+          insertAt(b, i + 1, upper, entryUpper, values[b][i]);
+          return;
+        }
+      }
+    }
+
+    // remove all ranges that start within [lower, upper)
+    ceiling(lower);
+    while (posBlock < numBlocks) {
+      double entryLower = lowers[posBlock][posIndex];
+      if (entryLower >= upper) {
+        return;
+      }
+      double entryUpper = uppers[posBlock][posIndex];
+      if (entryUpper > upper) {
+        // keep the remaining part - the order is not changed by moving the lower endpoint
+        lowers[posBlock][posIndex] = upper;
+        return;
+      }
+      removeAt(posBlock, posIndex);
+      // position now points to the next entry or needs to move to the next block
+      if (posBlock < numBlocks && posIndex >= blockSizes[posBlock]) {
+        posBlock++;
+        posIndex = 0;
+      }
+    }
+  }
+
+  /**
+   * @return all values sorted by the ranges in ascending order
+   */
+  public int[] values() {
+    int[] result = new int[size];
+    int offset = 0;
+    for (int b = 0; b < numBlocks; b++) {
+      System.arraycopy(values[b], 0, result, offset, blockSizes[b]);
+      offset += blockSizes[b];
+    }
+    return result;
+  }
+
+  /**
+   * @return all lower endpoints in ascending order
+   */
+  public double[] lowerEndpoints() {
+    double[] result = new double[size];
+    int offset = 0;
+    for (int b = 0; b < numBlocks; b++) {
+      System.arraycopy(lowers[b], 0, result, offset, blockSizes[b]);
+      offset += blockSizes[b];
+    }
+    return result;
+  }
+
+  /**
+   * @return all upper endpoints (exclusive) sorted by the lower endpoints
+   */
+  public double[] upperEndpoints() {
+    double[] result = new double[size];
+    int offset = 0;
+    for (int b = 0; b < numBlocks; b++) {
+      System.arraycopy(uppers[b], 0, result, offset, blockSizes[b]);
+      offset += blockSizes[b];
+    }
+    return result;
+  }
+
+  public void clear() {
+    for (int b = 1; b < numBlocks; b++) {
+      lowers[b] = null;
+      uppers[b] = null;
+      values[b] = null;
+    }
+    blockSizes[0] = 0;
+    numBlocks = 1;
+    size = 0;
+  }
+
+  /**
+   * Sets the position to the range that contains the key
+   *
+   * @return true if a range contains the key
+   */
+  private boolean findContaining(double key) {
+    int b = floorBlock(key);
+    if (b < 0) {
+      return false;
+    }
+    int i = floorIndex(b, key);
+    if (key < uppers[b][i]) {
+      posBlock = b;
+      posIndex = i;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Sets the position to the first entry with lower endpoint >= key. posBlock == numBlocks if
+   * there is no such entry.
+   */
+  private void ceiling(double key) {
+    int b = floorBlock(key);
+    if (b < 0) {
+      posBlock = 0;
+      posIndex = 0;
+    } else {
+      int i = floorIndex(b, key);
+      if (lowers[b][i] < key) {
+        i++;
+      }
+      if (i >= blockSizes[b]) {
+        b++;
+        i = 0;
+      }
+      posBlock = b;
+      posIndex = i;
+    }
+    if (size == 0) {
+      posBlock = numBlocks;
+    }
+  }
+
+  /**
+   * @return the last block with a first lower endpoint <= key or -1
+   */
+  private int floorBlock(double key) {
+    int low = 0;
+    int high = numBlocks - 1;
+    int result = -1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (blockSizes[mid] > 0 && lowers[mid][0] <= key) {
+        result = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the last index in the block with a lower endpoint <= key or -1
+   */
+  private int floorIndex(int block, double key) {
+    final double[] keys = lowers[block];
+    int low = 0;
+    int high = blockSizes[block] - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (keys[mid] <= key) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low - 1;
+  }
+
+  private void insertAt(int b, int i, double lower, double upper, int value) {
+    if (blockSizes[b] == blockSize) {
+      splitBlock(b);
+      int half = blockSizes[b];
+      if (i > half) {
+        b++;
+        i -= half;
+      }
+    }
+    int n = blockSizes[b];
+    if (i < n) {
+      System.arraycopy(lowers[b], i, lowers[b], i + 1, n - i);
+      System.arraycopy(uppers[b], i, uppers[b], i + 1, n - i);
+      System.arraycopy(values[b], i, values[b], i + 1, n - i);
+    }
+    lowers[b][i] = lower;
+    uppers[b][i] = upper;
+    values[b][i] = value;
+    blockSizes[b]++;
+    size++;
+  }
+
+  private void removeAt(int b, int i) {
+    int n = blockSizes[b];
+    int moved = n - i - 1;
+    if (moved > 0) {
+      System.arraycopy(lowers[b], i + 1, lowers[b], i, moved);
+      System.arraycopy(uppers[b], i + 1, uppers[b], i, moved);
+      System.arraycopy(values[b], i + 1, values[b], i, moved);
+    }
+    blockSizes[b]--;
+    size--;
+
+    if (blockSizes[b] == 0 && numBlocks > 1) {
+      int movedBlocks = numBlocks - b - 1;
+      if (movedBlocks > 0) {
+        System.arraycopy(lowers, b + 1, lowers, b, movedBlocks);
+        System.arraycopy(uppers, b + 1, uppers, b, movedBlocks);
+        System.arraycopy(values, b + 1, values, b, movedBlocks);
+        System.arraycopy(blockSizes, b + 1, blockSizes, b, movedBlocks);
+      }
+      numBlocks--;
+      lowers[numBlocks] = null;
+      uppers[numBlocks] = null;
+      values[numBlocks] = null;
+      blockSizes[numBlocks] = 0;
+    }
+  }
+
+  /**
+   * Moves the second half of block b into a new block b+1
+   */
+  private void splitBlock(int b) {
+    if (numBlocks == lowers.length) {
+      int newLength = lowers.length * 2;
+      lowers = Arrays.copyOf(lowers, newLength);
+      uppers = Arrays.copyOf(uppers, newLength);
+      values = Arrays.copyOf(values, newLength);
+      blockSizes = Arrays.copyOf(blockSizes, newLength);
+    }
+    int movedBlocks = numBlocks - b - 1;
+    if (movedBlocks > 0) {
+      System.arraycopy(lowers, b + 1, lowers, b + 2, movedBlocks);
+      System.arraycopy(uppers, b + 1, uppers, b + 2, movedBlocks);
+      System.arraycopy(values, b + 1, values, b + 2, movedBlocks);
+      System.arraycopy(blockSizes, b + 1, blockSizes, b + 2, movedBlocks);
+    }
+    createBlock(b + 1);
+    numBlocks++;
+
+    int n = blockSizes[b];
+    int half = n / 2;
+    int moved = n - half;
+    System.arraycopy(lowers[b], half, lowers[b + 1], 0, moved);
+    System.arraycopy(uppers[b], half, uppers[b + 1], 0, moved);
+    System.arraycopy(values[b], half, values[b + 1], 0, moved);
+    blockSizes[b] = half;
+    blockSizes[b + 1] = moved;
+  }
+
+  private void createBlock(int b) {
+    lowers[b] = new double[blockSize];
+    uppers[b] = new double[blockSize];
+    values[b] = new int[blockSize];
+    blockSizes[b] = 0;
+  }
+}
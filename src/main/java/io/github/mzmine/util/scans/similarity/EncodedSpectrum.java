@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans.similarity;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.util.DataPointSorter;
+import io.github.mzmine.util.SortingDirection;
+import io.github.mzmine.util.SortingProperty;
+import io.github.mzmine.util.scans.ScanAlignment;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A mass list encoded once for repeated spectral similarity calculations by the
+ * {@link SpectralSimilarityKernel}: m/z sorted primitive arrays of m/z, intensity and weighted
+ * intensity, the intensity order of the signals (as {@link ScanAlignment#sorter}) and the squared
+ * norm of the weighted intensities. Immutable and thread safe.
+ *
+ * @author https://github.com/mzmine
+ */
+public class EncodedSpectrum {
+
+  private static final DataPointSorter mzSorter = new DataPointSorter(SortingProperty.MZ,
+      SortingDirection.Ascending);
+
+  private final DataPoint[] dataPoints;
+  private final double[] mzs;
+  private final double[] intensities;
+  private final double[] weightedIntensities;
+  // indices of the signals by descending intensity and the rank of each signal in this order
+  private final int[] intensityOrder;
+  private final int[] intensityRanks;
+  private final double weightedSquareSum;
+  private final double totalIntensity;
+  private final Weights weights;
+
+  /**
+   * @param dataPoints the mass list, is not changed
+   * @param weights    m/z and intensity weights for the cosine
+   */
+  public EncodedSpectrum(@NotNull DataPoint[] dataPoints, @NotNull Weights weights) {
+    this.weights = weights;
+    this.dataPoints = dataPoints.clone();
+    Arrays.sort(this.dataPoints, mzSorter);
+
+    final int n = this.dataPoints.length;
+    mzs = new double[n];
+    intensities = new double[n];
+    weightedIntensities = new double[n];
+    double squareSum = 0;
+    double total = 0;
+    for (int i = 0; i < n; i++) {
+      mzs[i] = this.dataPoints[i].getMZ();
+      intensities[i] = this.dataPoints[i].getIntensity();
+      // same as ScanAlignment.toIntensityMatrixWeighted
+      weightedIntensities[i] =
+          Math.pow(intensities[i], weights.getIntensity()) * Math.pow(mzs[i], weights.getMz());
+      squareSum += weightedIntensities[i] * weightedIntensities[i];
+      total += intensities[i];
+    }
+    weightedSquareSum = squareSum;
+    totalIntensity = total;
+
+    intensityOrder = new int[n];
+    for (int i = 0; i < n; i++) {
+      intensityOrder[i] = i;
+    }
+    // descending intensity, then descending m/z like ScanAlignment.sorter
+    IntArrays.quickSort(intensityOrder, (i, j) -> {
+      final int result = Double.compare(intensities[j], intensities[i]);
+      return result != 0 ? result : Double.compare(mzs[j], mzs[i]);
+    });
+    intensityRanks = new int[n];
+    for (int rank = 0; rank < n; rank++) {
+      intensityRanks[intensityOrder[rank]] = rank;
+    }
+  }
+
+  public int size() {
+    return mzs.length;
+  }
+
+  /**
+   * @return the data points sorted by m/z. Do not modify.
+   */
+  public DataPoint[] getDataPoints() {
+    return dataPoints;
+  }
+
+  public double getMZ(int index) {
+    return mzs[index];
+  }
+
+  public double getIntensity(int index) {
+    return intensities[index];
+  }
+
+  public double getWeightedIntensity(int index) {
+    return weightedIntensities[index];
+  }
+
+  /**
+   * @param rank 0 for the most intense signal
+   * @return the index of the signal with this intensity rank
+   */
+  public int getIndexByIntensityRank(int rank) {
+    return intensityOrder[rank];
+  }
+
+  /**
+   * @return 0 for the most intense signal
+   */
+  public int getIntensityRank(int index) {
+    return intensityRanks[index];
+  }
+
+  /**
+   * @return sum of the squared weighted intensities
+   */
+  public double getWeightedSquareSum() {
+    return weightedSquareSum;
+  }
+
+  public double getTotalIntensity() {
+    return totalIntensity;
+  }
+
+  public Weights getWeights() {
+    return weights;
+  }
+
+  /**
+   * @return index of the first signal with m/z >= mz or {@link #size()}
+   */
+  public int indexOfFirstAtLeast(double mz) {
+    int low = 0;
+    int high = mzs.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (mzs[mid] < mz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
@@ -61,8 +61,35 @@ public abstract class SpectralSimilarityFunction implements MZmineModule {
    * @return A spectra similarity if all requirements were met - otherwise null
    */
   @Nullable
+  public SpectralSimilarity getSimilarity(ParameterSet parameters, MZTolerance mzTol,
+      int minMatch, DataPoint[] library, DataPoint[] query) {
+    return getSimilarity(parameters, mzTol, minMatch, encode(parameters, library),
+        encode(parameters, query));
+  }
+
+  /**
+   * Similarity of two encoded spectra. Encode spectra with {@link #encode(ParameterSet,
+   * DataPoint[])} once if they are compared multiple times.
+   *
+   * @param minMatch minimum overlap in signals
+   * @return A spectra similarity if all requirements were met - otherwise null
+   */
+  @Nullable
   public abstract SpectralSimilarity getSimilarity(ParameterSet parameters, MZTolerance mzTol,
-      int minMatch, DataPoint[] library, DataPoint[] query);
+      int minMatch, EncodedSpectrum library, EncodedSpectrum query);
+
+  /**
+   * @return the m/z and intensity weights of this function
+   */
+  protected abstract Weights getWeights(ParameterSet parameters);
+
+  /**
+   * Encodes a mass list for {@link #getSimilarity(ParameterSet, MZTolerance, int, EncodedSpectrum,
+   * EncodedSpectrum)} with the weights of this function
+   */
+  public EncodedSpectrum encode(ParameterSet parameters, DataPoint[] dataPoints) {
+    return new EncodedSpectrum(dataPoints, getWeights(parameters));
+  }
 
   /**
    * Align two mass lists. Override if alignement is changed in a specific spectral similarity
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans.similarity;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.scans.ScanAlignment;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Matches two {@link EncodedSpectrum}s and calculates the cosine, the modified cosine and the
+ * number of matched signals without creating aligned data point pairs. The signals are matched like
+ * {@link ScanAlignment#alignOfSorted(MZTolerance, DataPoint[], DataPoint[])}: each signal of
+ * spectrum a (by descending intensity) is matched to the most intense unmatched signal of spectrum
+ * b within the m/z tolerance. Candidates are found by binary search in the m/z sorted arrays.
+ * <p>
+ * The kernel keeps the matches of the last call to {@link #match(MZTolerance, EncodedSpectrum,
+ * EncodedSpectrum, double)} in reused buffers. Not thread safe, use
+ * {@link #forCurrentThread()}.
+ *
+ * @author https://github.com/mzmine
+ */
+public class SpectralSimilarityKernel {
+
+  private static final ThreadLocal<SpectralSimilarityKernel> kernels = ThreadLocal.withInitial(
+      SpectralSimilarityKernel::new);
+
+  // index of the matched signal in the other spectrum or -1
+  private int[] matchesA = new int[0];
+  private int[] matchesB = new int[0];
+  private int[] sortBuffer = new int[0];
+  private EncodedSpectrum a;
+  private EncodedSpectrum b;
+  private int numMatches;
+
+  /**
+   * @return the kernel of the current thread
+   */
+  public static SpectralSimilarityKernel forCurrentThread() {
+    return kernels.get();
+  }
+
+  /**
+   * Matches the signals of a and b within the m/z tolerance.
+   *
+   * @return the number of matched signals
+   */
+  public int match(@NotNull MZTolerance mzTol, @NotNull EncodedSpectrum a,
+      @NotNull EncodedSpectrum b) {
+    return match(mzTol, a, b, Double.NaN);
+  }
+
+  /**
+   * Matches the signals of a and b within the m/z tolerance. Signals of a are also matched to
+   * signals in b shifted by mzShift (modified cosine, like
+   * {@link ScanAlignment#alignOfSortedModAware(MZTolerance, DataPoint[], DataPoint[], double,
+   * double)}).
+   *
+   * @param mzShift precursor m/z of b - precursor m/z of a or {@link Double#NaN} to only match
+   *                signals directly
+   * @return the number of matched signals
+   */
+  public int match(@NotNull MZTolerance mzTol, @NotNull EncodedSpectrum a,
+      @NotNull EncodedSpectrum b, double mzShift) {
+    this.a = a;
+    this.b = b;
+    if (matchesA.length < a.size()) {
+      matchesA = new int[a.size()];
+      sortBuffer = new int[a.size()];
+    }
+    if (matchesB.length < b.size()) {
+      matchesB = new int[b.size()];
+    }
+    Arrays.fill(matchesA, 0, a.size(), -1);
+    Arrays.fill(matchesB, 0, b.size(), -1);
+    numMatches = 0;
+
+    final boolean shifted = !Double.isNaN(mzShift);
+    for (int rank = 0; rank < a.size(); rank++) {
+      final int i = a.getIndexByIntensityRank(rank);
+      final double mz = a.getMZ(i);
+      int match = findMostIntenseUnmatched(mzTol, mz, -1);
+      if (shifted) {
+        match = findMostIntenseUnmatched(mzTol, mz + mzShift, match);
+      }
+      if (match != -1) {
+        matchesA[i] = match;
+        matchesB[match] = i;
+        numMatches++;
+      }
+    }
+    return numMatches;
+  }
+
+  /**
+   * @param current the current candidate or -1
+   * @return the most intense unmatched signal in b within the tolerance of mz or current
+   */
+  private int findMostIntenseUnmatched(MZTolerance mzTol, double mz, int current) {
+    // same bounds as MZTolerance.checkWithinTolerance
+    final double tolerance = mzTol.getMzToleranceForMass(mz);
+    final double upper = mz + tolerance;
+    int best = current;
+    for (int j = b.indexOfFirstAtLeast(mz - tolerance); j < b.size() && b.getMZ(j) <= upper;
+        j++) {
+      if (matchesB[j] == -1 && (best == -1 || b.getIntensityRank(j) < b.getIntensityRank(best))) {
+        best = j;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * @return the number of matched signals of the last match
+   */
+  public int getNumMatches() {
+    return numMatches;
+  }
+
+  /**
+   * Weighted cosine of the last match. Same as the cosine of the aligned and weighted intensities
+   * after {@link HandleUnmatchedSignalOptions#handleUnmatched(List)} with a as the library and b as
+   * the query.
+   */
+  public double cosine(@NotNull HandleUnmatchedSignalOptions handleUnmatched) {
+    double dot = 0;
+    double matchedSquaresA = 0;
+    double matchedSquaresB = 0;
+    for (int i = 0; i < a.size(); i++) {
+      final int j = matchesA[i];
+      if (j != -1) {
+        final double wa = a.getWeightedIntensity(i);
+        final double wb = b.getWeightedIntensity(j);
+        dot += wa * wb;
+        matchedSquaresA += wa * wa;
+        matchedSquaresB += wb * wb;
+      }
+    }
+    final double squaresA = switch (handleUnmatched) {
+      case KEEP_ALL_AND_MATCH_TO_ZERO, KEEP_LIBRARY_SIGNALS -> a.getWeightedSquareSum();
+      case KEEP_EXPERIMENTAL_SIGNALS, REMOVE_ALL -> matchedSquaresA;
+    };
+    final double squaresB = switch (handleUnmatched) {
+      case KEEP_ALL_AND_MATCH_TO_ZERO, KEEP_EXPERIMENTAL_SIGNALS -> b.getWeightedSquareSum();
+      case KEEP_LIBRARY_SIGNALS, REMOVE_ALL -> matchedSquaresB;
+    };
+    return dot / (Math.sqrt(squaresA) * Math.sqrt(squaresB));
+  }
+
+  /**
+   * Sum of the ratios of adjacent matched signals (by m/z) in a and b, divided by the number of
+   * matches (0-1). Used by the composite cosine.
+   */
+  public double relativeNeighbourFactor() {
+    // matched signals of a sorted by the lower m/z of both signals, ties by intensity rank in a
+    int k = 0;
+    for (int i = 0; i < a.size(); i++) {
+      if (matchesA[i] != -1) {
+        final int index = i;
+        int insert = k++;
+        // the signals are sorted by m/z in a, so this insertion sort is almost linear
+        while (insert > 0 && compareMatches(sortBuffer[insert - 1], index) > 0) {
+          sortBuffer[insert] = sortBuffer[insert - 1];
+          insert--;
+        }
+        sortBuffer[insert] = index;
+      }
+    }
+
+    double factor = 0;
+    for (int s = 1; s < k; s++) {
+      final int i1 = sortBuffer[s - 1];
+      final int i2 = sortBuffer[s];
+      final double ratioA = a.getIntensity(i2) / a.getIntensity(i1);
+      final double ratioB = b.getIntensity(matchesA[i2]) / b.getIntensity(matchesA[i1]);
+      factor += Math.min(ratioA, ratioB) / Math.max(ratioA, ratioB);
+    }
+    return factor / numMatches;
+  }
+
+  private int compareMatches(int i1, int i2) {
+    final double mz1 = Math.min(a.getMZ(i1), b.getMZ(matchesA[i1]));
+    final double mz2 = Math.min(a.getMZ(i2), b.getMZ(matchesA[i2]));
+    final int result = Double.compare(mz1, mz2);
+    return result != 0 ? result
+        : Integer.compare(a.getIntensityRank(i1), a.getIntensityRank(i2));
+  }
+
+  /**
+   * @return sum of the intensities of the matched signals in a
+   */
+  public double getMatchedIntensityA() {
+    double sum = 0;
+    for (int i = 0; i < a.size(); i++) {
+      if (matchesA[i] != -1) {
+        sum += a.getIntensity(i);
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * @return sum of the intensities of the matched signals in b
+   */
+  public double getMatchedIntensityB() {
+    double sum = 0;
+    for (int j = 0; j < b.size(); j++) {
+      if (matchesB[j] != -1) {
+        sum += b.getIntensity(j);
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Creates the aligned data points of the last match, only needed for results.
+   *
+   * @return the matched data points {a, b} by descending intensity in a
+   */
+  public List<DataPoint[]> getAlignedDataPoints() {
+    final DataPoint[] dataPointsA = a.getDataPoints();
+    final DataPoint[] dataPointsB = b.getDataPoints();
+    final List<DataPoint[]> aligned = new ArrayList<>(numMatches);
+    for (int rank = 0; rank < a.size(); rank++) {
+      final int i = a.getIndexByIntensityRank(rank);
+      if (matchesA[i] != -1) {
+        aligned.add(new DataPoint[]{dataPointsA[i], dataPointsB[matchesA[i]]});
+      }
+    }
+    return aligned;
+  }
+}
@@ -25,21 +25,16 @@
 
 package io.github.mzmine.util.scans.similarity.impl.composite;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.Objects;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
-import io.github.mzmine.util.maths.similarity.Similarity;
-import io.github.mzmine.util.scans.ScanAlignment;
+import io.github.mzmine.util.scans.similarity.EncodedSpectrum;
 import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
+import io.github.mzmine.util.scans.similarity.SpectralSimilarityKernel;
 import io.github.mzmine.util.scans.similarity.Weights;
-import java.util.Comparator;
 
 /**
  * Similar to NIST search algorithm for GC-MS data with lots of signals (more an identity check than
@@ -54,9 +49,7 @@ public class CompositeCosineSpectralSimilarity extends SpectralSimilarityFunctio
    */
   @Override
   public SpectralSimilarity getSimilarity(ParameterSet parameters, MZTolerance mzTol, int minMatch,
-      DataPoint[] library, DataPoint[] query) {
-    Weights weights =
-        parameters.getParameter(CompositeCosineSpectralSimilarityParameters.weight).getValue();
+      EncodedSpectrum library, EncodedSpectrum query) {
     double minCos =
         parameters.getParameter(CompositeCosineSpectralSimilarityParameters.minCosine).getValue();
     HandleUnmatchedSignalOptions handleUnmatched = parameters
@@ -64,28 +57,27 @@ public class CompositeCosineSpectralSimilarity extends SpectralSimilarityFunctio
         .getValue();
 
     // align
-    List<DataPoint[]> aligned = alignDataPoints(mzTol, library, query);
-    // removes all signals which were not found in both masslists
-    aligned = handleUnmatched.handleUnmatched(aligned);
+    final SpectralSimilarityKernel kernel = SpectralSimilarityKernel.forCurrentThread();
+    int overlap = kernel.match(mzTol, library, query);
 
-    int queryN = query.length;
-    int overlap = calcOverlap(aligned);
+    int queryN = query.size();
 
     if (overlap >= minMatch) {
       // relative factor ranges from 0-1
-      double relativeFactor = calcRelativeNeighbourFactor(aligned);
+      // sum of relative ratios of neighbours in both mass lists
+      double relativeFactor = kernel.relativeNeighbourFactor();
 
       // weighted cosine
-      double[][] diffArray =
-          ScanAlignment.toIntensityMatrixWeighted(aligned, weights.getIntensity(), weights.getMz());
-      double diffCosine = Similarity.COSINE.calc(diffArray);
+      double diffCosine = kernel.cosine(handleUnmatched);
 
       // composite dot product identity score
       // NIST search similar
       double composite = (queryN * diffCosine + overlap * relativeFactor) / (queryN + overlap);
 
       if (composite >= minCos) {
-        return new SpectralSimilarity(getName(), composite, overlap, library, query, aligned);
+        return new SpectralSimilarity(getName(), composite, overlap,
+            library.getDataPoints().clone(), query.getDataPoints().clone(),
+            kernel.getAlignedDataPoints());
       } else {
         return null;
       }
@@ -93,53 +85,9 @@ public class CompositeCosineSpectralSimilarity extends SpectralSimilarityFunctio
     return null;
   }
 
-  /**
-   * sum of relative ratios of neighbours in both mass lists
-   *
-   * @param aligned list of aligned signals DataPoint[library, query]
-   */
-  private double calcRelativeNeighbourFactor(List<DataPoint[]> aligned) {
-    // remove all unaligned signals
-    List<DataPoint[]> filtered = removeUnaligned(aligned);
-    // sort by mz
-    sortByMZ(filtered);
-
-    // overlapping within mass tolerance
-    int overlap = calcOverlap(aligned);
-
-    // sum of relative ratios of neighbours in both mass lists
-    double factor = 0;
-    for (int i = 1; i < filtered.size(); i++) {
-      DataPoint[] match1 = filtered.get(i - 1);
-      DataPoint[] match2 = filtered.get(i);
-
-      // 0 is library
-      // 1 is query
-      double ratioLibrary = match2[0].getIntensity() / match1[0].getIntensity();
-      double ratioQuery = match2[1].getIntensity() / match1[1].getIntensity();
-      factor += Math.min(ratioLibrary, ratioQuery) / Math.max(ratioLibrary, ratioQuery);
-    }
-    // factor ranges from 0-1 * overlap
-    return factor / (overlap);
-  }
-
-  /**
-   * Sort aligned datapoints by their minimum mz values (ascending)
-   *
-   * @param filtered list of aligned signals DataPoint[library, query]
-   */
-  private void sortByMZ(List<DataPoint[]> filtered) {
-    filtered.sort(Comparator.comparingDouble(this::getMinMZ));
-  }
-
-  /**
-   * Minimum mz of all aligned data points
-   *
-   * @param dp array of aligned data points
-   * @return minimum mz of aligned data points
-   */
-  private double getMinMZ(DataPoint[] dp) {
-    return Arrays.stream(dp).filter(Objects::nonNull).mapToDouble(DataPoint::getMZ).min().orElse(0);
+  @Override
+  protected Weights getWeights(ParameterSet parameters) {
+    return parameters.getParameter(CompositeCosineSpectralSimilarityParameters.weight).getValue();
   }
 
   @Override
@@ -25,16 +25,14 @@
 
 package io.github.mzmine.util.scans.similarity.impl.cosine;
 
+import io.github.mzmine.util.scans.similarity.EncodedSpectrum;
 import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
-import java.util.List;
+import io.github.mzmine.util.scans.similarity.SpectralSimilarityKernel;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
-import io.github.mzmine.util.maths.similarity.Similarity;
-import io.github.mzmine.util.scans.ScanAlignment;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
 import io.github.mzmine.util.scans.similarity.Weights;
@@ -52,35 +50,35 @@ public class WeightedCosineSpectralSimilarity extends SpectralSimilarityFunction
    */
   @Override
   public SpectralSimilarity getSimilarity(ParameterSet parameters, MZTolerance mzTol, int minMatch,
-      DataPoint[] library, DataPoint[] query) {
-    Weights weights =
-        parameters.getParameter(WeightedCosineSpectralSimilarityParameters.weight).getValue();
+      EncodedSpectrum library, EncodedSpectrum query) {
     double minCos =
         parameters.getParameter(WeightedCosineSpectralSimilarityParameters.minCosine).getValue();
     HandleUnmatchedSignalOptions handleUnmatched = parameters
         .getParameter(WeightedCosineSpectralSimilarityParameters.handleUnmatched).getValue();
 
-    // align
-    List<DataPoint[]> aligned = alignDataPoints(mzTol, library, query);
-    // removes all signals which were not found in both masslists
-    aligned = handleUnmatched.handleUnmatched(aligned);
-
-    // overlapping within mass tolerance
-    int overlap = calcOverlap(aligned);
+    // align: overlapping within mass tolerance
+    final SpectralSimilarityKernel kernel = SpectralSimilarityKernel.forCurrentThread();
+    int overlap = kernel.match(mzTol, library, query);
 
     if (overlap >= minMatch) {
       // weighted cosine
-      double[][] diffArray =
-          ScanAlignment.toIntensityMatrixWeighted(aligned, weights.getIntensity(), weights.getMz());
-      double diffCosine = Similarity.COSINE.calc(diffArray);
-      if (diffCosine >= minCos)
-        return new SpectralSimilarity(getName(), diffCosine, overlap, library, query, aligned);
-      else
+      double diffCosine = kernel.cosine(handleUnmatched);
+      if (diffCosine >= minCos) {
+        return new SpectralSimilarity(getName(), diffCosine, overlap,
+            library.getDataPoints().clone(), query.getDataPoints().clone(),
+            kernel.getAlignedDataPoints());
+      } else {
         return null;
+      }
     }
     return null;
   }
 
+  @Override
+  protected Weights getWeights(ParameterSet parameters) {
+    return parameters.getParameter(WeightedCosineSpectralSimilarityParameters.weight).getValue();
+  }
+
   @Override
   @NotNull
   public String getName() {
@@ -53,6 +53,9 @@ public class SpectralLibrary {
   private final MemoryMapStorage storage;
   private final ObservableMap<Class<? extends DataType>, DataType> types = FXCollections.observableMap(
       new LinkedHashMap<>());
+  // lazily created on first precursor search
+  @Nullable
+  private volatile SpectralLibraryPrecursorIndex precursorIndex;
 
   public SpectralLibrary(@Nullable MemoryMapStorage storage, @NotNull File path) {
     this(storage, path.getName(), path);
@@ -84,6 +87,27 @@ public class SpectralLibrary {
     return entries.size();
   }
 
+  /**
+   * The precursor m/z index is created on first access and kept for subsequent searches. It is
+   * recreated if entries were added or removed in the meantime.
+   *
+   * @return index of all entries sorted by precursor m/z
+   */
+  @NotNull
+  public SpectralLibraryPrecursorIndex getPrecursorIndex() {
+    SpectralLibraryPrecursorIndex index = precursorIndex;
+    if (index == null || index.getNumberOfEntries() != entries.size()) {
+      synchronized (this) {
+        index = precursorIndex;
+        if (index == null || index.getNumberOfEntries() != entries.size()) {
+          index = new SpectralLibraryPrecursorIndex(entries);
+          precursorIndex = index;
+        }
+      }
+    }
+    return index;
+  }
+
   @Override
   public String toString() {
     return getName();
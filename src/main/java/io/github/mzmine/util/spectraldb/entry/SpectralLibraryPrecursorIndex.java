@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.entry;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.PolarityType;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Index of library entries sorted by precursor m/z. Candidates within a precursor m/z range are
+ * found by binary search, the optional polarity and CCS filters run on primitive columns in the
+ * same sorted order, so that the entries themselves are only visited after all filters passed.
+ * Entries without precursor m/z are not part of the index, as they never match a precursor
+ * tolerance.
+ * <p>
+ * The index is immutable after creation and can be queried by multiple threads concurrently.
+ */
+public class SpectralLibraryPrecursorIndex {
+
+  private static final byte POLARITY_UNKNOWN = 0;
+  private static final byte POLARITY_POSITIVE = 1;
+  private static final byte POLARITY_NEGATIVE = -1;
+
+  // number of entries in the library at the time of creation
+  private final int numEntries;
+  // sorted by precursor m/z
+  private final double[] precursorMZs;
+  // index of the entry in the library list
+  private final int[] entryIndices;
+  // sub indexes in the same order, NaN if no ccs
+  private final float[] ccs;
+  private final byte[] polarities;
+
+  /**
+   * @param entries all library entries. The list index is reported by the queries
+   */
+  public SpectralLibraryPrecursorIndex(@NotNull List<SpectralLibraryEntry> entries) {
+    numEntries = entries.size();
+    final double[] mzs = new double[numEntries];
+    final int[] indices = new int[numEntries];
+    int size = 0;
+    for (int i = 0; i < numEntries; i++) {
+      final Double precursorMZ = entries.get(i).getPrecursorMZ();
+      if (precursorMZ != null && !precursorMZ.isNaN()) {
+        mzs[i] = precursorMZ;
+        indices[size++] = i;
+      }
+    }
+    // stable sort so that equal m/z are kept in library order
+    IntArrays.mergeSort(indices, 0, size, (a, b) -> Double.compare(mzs[a], mzs[b]));
+
+    entryIndices = Arrays.copyOf(indices, size);
+    precursorMZs = new double[size];
+    ccs = new float[size];
+    polarities = new byte[size];
+    for (int i = 0; i < size; i++) {
+      final SpectralLibraryEntry entry = entries.get(entryIndices[i]);
+      precursorMZs[i] = mzs[entryIndices[i]];
+      final Object ccsValue = entry.getOrElse(DBEntryField.CCS, null);
+      ccs[i] = ccsValue instanceof Number n ? n.floatValue() : Float.NaN;
+      // field may be a PolarityType or the string from the library file
+      final Object polarity = entry.getOrElse(DBEntryField.POLARITY, null);
+      polarities[i] = toPolarityByte(polarity);
+    }
+  }
+
+  private static byte toPolarityByte(@Nullable Object polarity) {
+    if (polarity instanceof PolarityType type) {
+      return toPolarityByte(type);
+    }
+    if (polarity == null) {
+      return POLARITY_UNKNOWN;
+    }
+    // libraries use P/N, Positive/Negative or +/-
+    final String value = polarity.toString().trim().toLowerCase();
+    if (value.isEmpty()) {
+      return POLARITY_UNKNOWN;
+    }
+    return switch (value.charAt(0)) {
+      case 'p', '+' -> POLARITY_POSITIVE;
+      case 'n', '-' -> POLARITY_NEGATIVE;
+      default -> POLARITY_UNKNOWN;
+    };
+  }
+
+  private static byte toPolarityByte(@NotNull PolarityType polarity) {
+    return switch (polarity) {
+      case POSITIVE -> POLARITY_POSITIVE;
+      case NEGATIVE -> POLARITY_NEGATIVE;
+      default -> POLARITY_UNKNOWN;
+    };
+  }
+
+  /**
+   * @return the number of library entries at the time of creation (including entries without
+   * precursor m/z)
+   */
+  public int getNumberOfEntries() {
+    return numEntries;
+  }
+
+  /**
+   * @return the number of indexed entries with a precursor m/z
+   */
+  public int size() {
+    return precursorMZs.length;
+  }
+
+  /**
+   * @param mzLower lower precursor m/z (inclusive)
+   * @param mzUpper upper precursor m/z (inclusive)
+   * @return the library indices of all entries in the precursor m/z range, sorted ascending
+   */
+  public int[] getCandidates(double mzLower, double mzUpper) {
+    return getCandidates(mzLower, mzUpper, null, null);
+  }
+
+  /**
+   * @param mzLower  lower precursor m/z (inclusive)
+   * @param mzUpper  upper precursor m/z (inclusive)
+   * @param polarity only entries of this polarity or without polarity are reported. null to report
+   *                 all polarities
+   * @param ccsRange only entries with a CCS in this range are reported. null to skip the CCS
+   *                 filter
+   * @return the library indices of all matching entries, sorted ascending (library order)
+   */
+  public int[] getCandidates(double mzLower, double mzUpper, @Nullable PolarityType polarity,
+      @Nullable Range<Double> ccsRange) {
+    final int from = lowerBound(mzLower);
+    if (from >= precursorMZs.length || precursorMZs[from] > mzUpper) {
+      return IntArrays.EMPTY_ARRAY;
+    }
+
+    final byte polarityFilter = polarity == null ? POLARITY_UNKNOWN : toPolarityByte(polarity);
+    final double ccsLower = ccsRange == null ? Double.NaN : ccsRange.lowerEndpoint();
+    final double ccsUpper = ccsRange == null ? Double.NaN : ccsRange.upperEndpoint();
+
+    final IntArrayList candidates = new IntArrayList();
+    for (int i = from; i < precursorMZs.length && precursorMZs[i] <= mzUpper; i++) {
+      if (polarityFilter != POLARITY_UNKNOWN && polarities[i] != POLARITY_UNKNOWN
+          && polarities[i] != polarityFilter) {
+        continue;
+      }
+      // NaN ccs fails the range check
+      if (ccsRange != null && !(ccs[i] >= ccsLower && ccs[i] <= ccsUpper)) {
+        continue;
+      }
+      candidates.add(entryIndices[i]);
+    }
+    final int[] result = candidates.toIntArray();
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * @return the first position with a precursor m/z >= mz
+   */
+  private int lowerBound(double mz) {
+    int low = 0;
+    int high = precursorMZs.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (precursorMZs[mid] < mz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package benchmark;
+
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ADAPChromatogram;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.PrimitiveChromatogramBuilder;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.logging.Logger;
+import javafx.scene.paint.Color;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares wall time and allocations of the primitive ADAP chromatogram builder with the previous
+ * implementation on synthetic LC-MS data. Run the main method, it first reports the peak heap
+ * usage of both implementations and then starts the JMH benchmark with the GC profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms8g", "-Xmx8g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ADAPChromatogramBuilderBenchmark {
+
+  private static final Logger logger = Logger.getLogger(
+      ADAPChromatogramBuilderBenchmark.class.getName());
+
+  private static final MZTolerance MZ_TOLERANCE = new MZTolerance(0.002, 10);
+  private static final double MIN_HIGHEST_POINT = 1E4;
+
+  @Param({"2000"})
+  public int numScans;
+  @Param({"1000"})
+  public int dataPointsPerScan;
+
+  private SyntheticScans data;
+
+  public static void main(String[] args) throws RunnerException {
+    final SyntheticScans data = SyntheticScans.create(2000, 1000, 42);
+    reportPeakHeap("legacy", () -> legacy(data));
+    reportPeakHeap("primitive", () -> primitive(data));
+
+    new Runner(new OptionsBuilder().include(ADAPChromatogramBuilderBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+
+  private static void reportPeakHeap(String name, IntSupplier run) {
+    final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+        .filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+    System.gc();
+    heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+    final long start = System.nanoTime();
+    final int chromatograms = run.getAsInt();
+    final long time = System.nanoTime() - start;
+    final long peak = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+    logger.info(
+        "%s: %d chromatograms in %d ms, peak heap %d MB".formatted(name, chromatograms,
+            time / 1_000_000, peak / 1_000_000));
+  }
+
+  private static int legacy(SyntheticScans data) {
+    final List<ADAPChromatogram> chromatograms = LegacyADAPChromatogramBuilder.buildChromatograms(
+        data.scans(), data.mzs(), data.intensities(), MZ_TOLERANCE, MIN_HIGHEST_POINT);
+    int passed = 0;
+    for (ADAPChromatogram chrom : chromatograms) {
+      if (chrom.matchesMinContinuousDataPoints(data.scans(), 0, 5, MIN_HIGHEST_POINT)) {
+        passed++;
+      }
+    }
+    return passed;
+  }
+
+  private static int primitive(SyntheticScans data) {
+    final PrimitiveChromatogramBuilder builder = new PrimitiveChromatogramBuilder(MZ_TOLERANCE,
+        MIN_HIGHEST_POINT, data.scans().length * 64);
+    for (int s = 0; s < data.scans().length; s++) {
+      for (int i = 0; i < data.mzs()[s].length; i++) {
+        builder.addDataPoint(data.mzs()[s][i], data.intensities()[s][i], s);
+      }
+    }
+    builder.buildChromatograms(() -> false);
+    int passed = 0;
+    for (int c = 0; c < builder.getNumberOfChromatograms(); c++) {
+      if (builder.matchesMinContinuousDataPoints(c, 0, 5, MIN_HIGHEST_POINT)) {
+        passed++;
+      }
+    }
+    return passed;
+  }
+
+  @Setup
+  public void setup() {
+    data = SyntheticScans.create(numScans, dataPointsPerScan, 42);
+  }
+
+  @Benchmark
+  public int legacyRangeMapBuilder() {
+    return legacy(data);
+  }
+
+  @Benchmark
+  public int primitiveBuilder() {
+    return primitive(data);
+  }
+
+  /**
+   * Centroid data of an LC-MS run with chromatographic peaks and random noise
+   *
+   * @param scans       empty scans, only used as keys
+   * @param mzs         m/z values per scan
+   * @param intensities intensity values per scan
+   */
+  public record SyntheticScans(Scan[] scans, double[][] mzs, double[][] intensities) {
+
+    /**
+     * @param numScans          number of scans
+     * @param dataPointsPerScan half are noise, half are from chromatographic peaks
+     * @param seed              random seed
+     */
+    public static SyntheticScans create(int numScans, int dataPointsPerScan, long seed) {
+      final Random rand = new Random(seed);
+      final RawDataFile file = new RawDataFileImpl("benchmark", null, null, Color.BLACK);
+
+      // compounds with m/z, apex scan, width and height
+      final int numCompounds = Math.max(1, numScans * dataPointsPerScan / 2 / 20);
+      final double[] compoundMz = new double[numCompounds];
+      final int[] apex = new int[numCompounds];
+      final double[] width = new double[numCompounds];
+      final double[] height = new double[numCompounds];
+      for (int c = 0; c < numCompounds; c++) {
+        compoundMz[c] = 100 + rand.nextDouble() * 900;
+        apex[c] = rand.nextInt(numScans);
+        width[c] = 2 + rand.nextDouble() * 6;
+        height[c] = 1E4 + rand.nextDouble() * 1E7;
+      }
+
+      final Scan[] scans = new Scan[numScans];
+      final double[][] mzs = new double[numScans][];
+      final double[][] intensities = new double[numScans][];
+      for (int s = 0; s < numScans; s++) {
+        scans[s] = new SimpleScan(file, s, 1, s * 0.01f, null, new double[0], new double[0],
+            MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", null);
+        final double[] mz = new double[dataPointsPerScan];
+        final double[] intensity = new double[dataPointsPerScan];
+        int dp = 0;
+        // noise
+        for (; dp < dataPointsPerScan / 2; dp++) {
+          mz[dp] = 100 + rand.nextDouble() * 900;
+          intensity[dp] = rand.nextDouble() * 2E4;
+        }
+        // peaks
+        for (; dp < dataPointsPerScan; dp++) {
+          final int c = rand.nextInt(numCompounds);
+          final double distance = (s - apex[c]) / width[c];
+          mz[dp] = compoundMz[c] * (1 + rand.nextGaussian() * 2E-6);
+          intensity[dp] = height[c] * Math.exp(-0.5 * distance * distance) + rand.nextDouble();
+        }
+        mzs[s] = mz;
+        intensities[s] = intensity;
+      }
+      return new SyntheticScans(scans, mzs, intensities);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package benchmark;
+
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeMap;
+import com.google.common.collect.TreeRangeMap;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ADAPChromatogram;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ExpandedDataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.DataPointSorter;
+import io.github.mzmine.util.SortingDirection;
+import io.github.mzmine.util.SortingProperty;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * The previous ADAP chromatogram building based on one {@link ExpandedDataPoint} per data point
+ * and a {@link TreeRangeMap}. Used as a reference for benchmarks and to test that the
+ * {@link io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.PrimitiveChromatogramBuilder}
+ * creates the same chromatograms.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class LegacyADAPChromatogramBuilder {
+
+  /**
+   * @return all chromatograms sorted by m/z
+   */
+  public static List<ADAPChromatogram> buildChromatograms(Scan[] scans, double[][] mzs,
+      double[][] intensities, MZTolerance mzTolerance, double minHighestPoint) {
+    RangeMap<Double, ADAPChromatogram> rangeToChromMap = TreeRangeMap.create();
+
+    List<ExpandedDataPoint> allMzValues = new ArrayList<>();
+    for (int s = 0; s < scans.length; s++) {
+      for (int i = 0; i < mzs[s].length; i++) {
+        allMzValues.add(new ExpandedDataPoint(mzs[s][i], intensities[s][i], scans[s]));
+      }
+    }
+
+    allMzValues.sort(new DataPointSorter(SortingProperty.Intensity, SortingDirection.Descending));
+
+    for (ExpandedDataPoint mzFeature : allMzValues) {
+      if (mzFeature == null || Double.isNaN(mzFeature.getMZ()) || Double.isNaN(
+          mzFeature.getIntensity())) {
+        continue;
+      }
+
+      final Entry<Range<Double>, ADAPChromatogram> existing = rangeToChromMap.getEntry(
+          mzFeature.getMZ());
+      if (existing != null) {
+        existing.getValue().addMzFeature(mzFeature.getScan(), mzFeature);
+      } else {
+        if (mzFeature.getIntensity() < minHighestPoint) {
+          continue;
+        }
+        startNewChromatogramLimitMzRanges(rangeToChromMap, mzFeature, mzTolerance);
+      }
+    }
+    return new ArrayList<>(rangeToChromMap.asMapOfRanges().values());
+  }
+
+  private static void startNewChromatogramLimitMzRanges(
+      RangeMap<Double, ADAPChromatogram> rangeToChromMap, ExpandedDataPoint mzFeature,
+      MZTolerance mzTolerance) {
+    Range<Double> toleranceRange = mzTolerance.getToleranceRange(mzFeature.getMZ());
+
+    final Entry<Range<Double>, ADAPChromatogram> minusRange = rangeToChromMap.getEntry(
+        toleranceRange.lowerEndpoint());
+    final Entry<Range<Double>, ADAPChromatogram> plusRange = rangeToChromMap.getEntry(
+        toleranceRange.upperEndpoint());
+
+    Double toBeLowerBound = minusRange == null ? toleranceRange.lowerEndpoint()
+        : minusRange.getKey().upperEndpoint();
+    Double toBeUpperBound = plusRange == null ? toleranceRange.upperEndpoint()
+        : plusRange.getKey().lowerEndpoint();
+
+    if (toBeLowerBound < toBeUpperBound) {
+      Range<Double> newRange = Range.closedOpen(toBeLowerBound, toBeUpperBound);
+      ADAPChromatogram newChrom = new ADAPChromatogram();
+      newChrom.addMzFeature(mzFeature.getScan(), mzFeature);
+      rangeToChromMap.put(newRange, newChrom);
+    } else if (toBeLowerBound.equals(toBeUpperBound) && plusRange != null) {
+      plusRange.getValue().addMzFeature(mzFeature.getScan(), mzFeature);
+    } else {
+      throw new IllegalStateException(
+          String.format("Incorrect range [%f, %f] for m/z %f", toBeLowerBound, toBeUpperBound,
+              mzFeature.getMZ()));
+    }
+  }
+}
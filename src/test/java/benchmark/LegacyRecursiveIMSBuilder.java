@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package benchmark;
+
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeMap;
+import com.google.common.collect.TreeRangeMap;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.ArrayUtils;
+import io.github.mzmine.util.MathUtils;
+import io.github.mzmine.util.maths.CenterMeasure;
+import io.github.mzmine.util.maths.Weighting;
+import io.github.mzmine.util.scans.SpectraMerging;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The previous mobilogram and ion mobility trace building of the recursive IMS builder, based on a
+ * {@link TreeSet} of data points and a {@link TreeRangeMap}. Works on plain values instead of
+ * mobility scans. Used as a reference for benchmarks and to test that the
+ * {@link io.github.mzmine.modules.dataprocessing.featdet_recursiveimsbuilder.FrameMobilogramBuilder}
+ * and
+ * {@link io.github.mzmine.modules.dataprocessing.featdet_recursiveimsbuilder.PrimitiveIMTraceBuilder}
+ * create the same mobilograms and traces.
+ * <p>
+ * The previous implementation collected leftover mobilograms of the trace building in a
+ * {@link HashSet}, so the order of the recursive step was undefined. Here, they are sorted by
+ * summed intensity, like all other steps.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class LegacyRecursiveIMSBuilder {
+
+  // never returns 0, so equal intensities are kept in order of insertion
+  private static final Comparator<DataPoint> dpComparator = (o1, o2) ->
+      o1.intensity() > o2.intensity() ? -1 : 1;
+  private static final Comparator<Mobilogram> mobilogramComparator = (o1, o2) ->
+      o1.summedIntensity() > o2.summedIntensity() ? -1 : 1;
+
+  /**
+   * @param mzs         the m/z values of each mobility scan of the frame
+   * @param intensities the intensity values of each mobility scan of the frame
+   * @return the mobilograms of this frame in no particular order
+   */
+  public static List<Mobilogram> buildFrameMobilograms(int frame, double[][] mzs,
+      double[][] intensities, MZTolerance tolerance, int recursiveThreshold) {
+    final TreeSet<DataPoint> dps = new TreeSet<>(dpComparator);
+    for (int scan = 0; scan < mzs.length; scan++) {
+      for (int i = 0; i < mzs[scan].length; i++) {
+        dps.add(new DataPoint(mzs[scan][i], intensities[scan][i], scan));
+      }
+    }
+
+    final List<Mobilogram> mobilograms = new ArrayList<>();
+    for (TempMobilogram mobilogram : calcMobilograms(dps, tolerance, recursiveThreshold)) {
+      mobilograms.add(mobilogram.toMobilogram(frame));
+    }
+    return mobilograms;
+  }
+
+  private static Set<TempMobilogram> calcMobilograms(Collection<DataPoint> dps,
+      MZTolerance tolerance, int recursiveThreshold) {
+    final RangeMap<Double, TempMobilogram> map = TreeRangeMap.create();
+    final Set<DataPoint> leftoverDataPoints = new TreeSet<>(dpComparator);
+
+    for (final DataPoint dp : dps) {
+      TempMobilogram mobilogram = map.get(dp.mz());
+      if (mobilogram == null) {
+        final Range<Double> proposed = tolerance.getToleranceRange(dp.mz());
+        final Range<Double> actual = SpectraMerging.createNewNonOverlappingRange(map, proposed);
+        if (proposed.equals(actual)) {
+          mobilogram = new TempMobilogram();
+          map.put(actual, mobilogram);
+        } else {
+          leftoverDataPoints.add(dp);
+          continue;
+        }
+      }
+      final DataPoint previousDp = mobilogram.keepBetterFittingDataPoint(dp);
+      if (previousDp != null) {
+        leftoverDataPoints.add(previousDp);
+      }
+    }
+
+    final Set<TempMobilogram> mobilograms = new HashSet<>(map.asMapOfRanges().values());
+    if (leftoverDataPoints.size() > recursiveThreshold) {
+      mobilograms.addAll(calcMobilograms(leftoverDataPoints, tolerance, recursiveThreshold));
+    }
+    return mobilograms;
+  }
+
+  /**
+   * @param mobilograms the mobilograms of all frames
+   * @return the traces, each with its mobilograms sorted by frame
+   */
+  public static List<List<Mobilogram>> buildTraces(Collection<Mobilogram> mobilograms,
+      MZTolerance tolerance, int recursiveThreshold) {
+    final TreeSet<Mobilogram> sorted = new TreeSet<>(mobilogramComparator);
+    sorted.addAll(mobilograms);
+
+    final List<List<Mobilogram>> traces = new ArrayList<>();
+    for (TempIMTrace trace : createTempIMTraces(sorted, tolerance, recursiveThreshold)) {
+      traces.add(new ArrayList<>(trace.mobilograms.values()));
+    }
+    return traces;
+  }
+
+  private static List<TempIMTrace> createTempIMTraces(Collection<Mobilogram> mobilograms,
+      MZTolerance tolerance, int recursiveThreshold) {
+    final RangeMap<Double, TempIMTrace> map = TreeRangeMap.create();
+    final Set<Mobilogram> leftoverMobilograms = new TreeSet<>(mobilogramComparator);
+    for (final Mobilogram mobilogram : mobilograms) {
+      TempIMTrace trace = map.get(mobilogram.avgMz());
+      if (trace == null) {
+        final Range<Double> mzRange = SpectraMerging.createNewNonOverlappingRange(map,
+            tolerance.getToleranceRange(mobilogram.avgMz()));
+        trace = new TempIMTrace();
+        map.put(mzRange, trace);
+      }
+      final Mobilogram previous = trace.keepBetterFittingMobilogram(mobilogram);
+      if (previous != null) {
+        leftoverMobilograms.add(previous);
+      }
+    }
+
+    final List<TempIMTrace> traces = new ArrayList<>(map.asMapOfRanges().values());
+    if (leftoverMobilograms.size() > recursiveThreshold) {
+      traces.addAll(createTempIMTraces(leftoverMobilograms, tolerance, recursiveThreshold));
+    }
+    return traces;
+  }
+
+  public record DataPoint(double mz, double intensity, int mobilityScanNumber) {
+
+  }
+
+  /**
+   * A finished mobilogram. The center m/z and summed intensity are calculated like in the
+   * {@code BuildingIonMobilitySeries}.
+   */
+  public record Mobilogram(int frame, double[] mzs, double[] intensities,
+                           int[] mobilityScanNumbers, double avgMz, double summedIntensity) {
+
+  }
+
+  private static class TempMobilogram {
+
+    private final TreeMap<Integer, DataPoint> datapoints = new TreeMap<>();
+    private double centerMz;
+
+    private DataPoint tryToAddDataPoint(DataPoint dp) {
+      final DataPoint currentValue = datapoints.putIfAbsent(dp.mobilityScanNumber(), dp);
+      if (currentValue == null) {
+        updateValues();
+      }
+      return currentValue;
+    }
+
+    private DataPoint replaceDataPoint(DataPoint dp) {
+      final DataPoint replaced = datapoints.put(dp.mobilityScanNumber(), dp);
+      updateValues();
+      return replaced;
+    }
+
+    private void updateValues() {
+      centerMz = 0d;
+      double summedIntensities = 0d;
+      for (DataPoint value : datapoints.values()) {
+        centerMz += value.mz() * value.intensity();
+        summedIntensities += value.intensity();
+      }
+      centerMz /= summedIntensities;
+    }
+
+    private DataPoint keepBetterFittingDataPoint(DataPoint dp) {
+      final DataPoint current = tryToAddDataPoint(dp);
+      if (current == null) {
+        return null;
+      }
+
+      final double currentDelta = Math.abs(centerMz - current.mz());
+      final double proposedDelta = Math.abs(centerMz - dp.mz());
+      if (currentDelta < proposedDelta) {
+        return dp;
+      }
+      final var ceilingEntry = datapoints.ceilingEntry(dp.mobilityScanNumber() + 1);
+      final var floorEntry = datapoints.floorEntry(dp.mobilityScanNumber() - 1);
+      if (ceilingEntry != null && floorEntry != null) {
+        final double ceilingIntensity = ceilingEntry.getValue().intensity();
+        final double floorIntensity = floorEntry.getValue().intensity();
+        final double avg = (ceilingIntensity + floorIntensity) / 2;
+        if (Math.abs(avg - dp.intensity()) < Math.abs(avg - current.intensity())) {
+          return replaceDataPoint(dp);
+        }
+      }
+      return dp;
+    }
+
+    private Mobilogram toMobilogram(int frame) {
+      final int numValues = datapoints.size();
+      final double[] mzs = new double[numValues];
+      final double[] intensities = new double[numValues];
+      final int[] scans = new int[numValues];
+      int i = 0;
+      for (DataPoint value : datapoints.values()) {
+        mzs[i] = value.mz();
+        intensities[i] = value.intensity();
+        scans[i] = value.mobilityScanNumber();
+        i++;
+      }
+      return new Mobilogram(frame, mzs, intensities, scans,
+          MathUtils.calcCenter(CenterMeasure.AVG, mzs, intensities, Weighting.LINEAR),
+          ArrayUtils.sum(intensities));
+    }
+  }
+
+  private static class TempIMTrace {
+
+    private final TreeMap<Integer, Mobilogram> mobilograms = new TreeMap<>();
+    private double centerMz;
+
+    private Mobilogram tryToAddMobilogram(Mobilogram mobilogram) {
+      final Mobilogram currentValue = mobilograms.putIfAbsent(mobilogram.frame(), mobilogram);
+      if (currentValue == null) {
+        updateValues();
+      }
+      return currentValue;
+    }
+
+    private Mobilogram replaceMobilogram(Mobilogram mobilogram) {
+      final Mobilogram replaced = mobilograms.put(mobilogram.frame(), mobilogram);
+      updateValues();
+      return replaced;
+    }
+
+    private void updateValues() {
+      centerMz = 0d;
+      double summedIntensities = 0d;
+      for (Mobilogram value : mobilograms.values()) {
+        centerMz += value.avgMz() * value.summedIntensity();
+        summedIntensities += value.summedIntensity();
+      }
+      centerMz /= summedIntensities;
+    }
+
+    private Mobilogram keepBetterFittingMobilogram(Mobilogram mob) {
+      final Mobilogram current = tryToAddMobilogram(mob);
+      if (current == null) {
+        return null;
+      }
+
+      final double currentDelta = Math.abs(centerMz - current.avgMz());
+      final double proposedDelta = Math.abs(centerMz - mob.avgMz());
+      if (currentDelta > proposedDelta) {
+        final var ceilingEntry = mobilograms.ceilingEntry(mob.frame() + 1);
+        final var floorEntry = mobilograms.floorEntry(mob.frame() - 1);
+        if (ceilingEntry != null && floorEntry != null) {
+          final double ceilingIntensity = ceilingEntry.getValue().summedIntensity();
+          final double floorIntensity = floorEntry.getValue().summedIntensity();
+          final double avgIntensity = (ceilingIntensity + floorIntensity) / 2;
+
+          // only replace if the proposed intensity fits better
+          if (Math.abs(avgIntensity - mob.summedIntensity()) < Math.abs(
+              avgIntensity - current.summedIntensity())) {
+            return replaceMobilogram(mob);
+          }
+        }
+      }
+      return mob;
+    }
+  }
+
+  /**
+   * Synthetic ion mobility data.
+   *
+   * @param mzs         [frame][mobility scan][data point]
+   * @param intensities [frame][mobility scan][data point]
+   */
+  public record SyntheticFrames(double[][][] mzs, double[][][] intensities) {
+
+    /**
+     * @param numFrames         number of frames
+     * @param numMobilityScans  number of mobility scans per frame
+     * @param dataPointsPerScan half are noise, half are from ions that elute over several frames
+     *                          and mobility scans
+     * @param seed              random seed
+     */
+    public static SyntheticFrames create(int numFrames, int numMobilityScans,
+        int dataPointsPerScan, long seed) {
+      final Random rand = new Random(seed);
+
+      // ions with m/z, apex frame, apex mobility scan and height
+      final int numIons = Math.max(1, numFrames * numMobilityScans * dataPointsPerScan / 2 / 40);
+      final double[] ionMz = new double[numIons];
+      final int[] apexFrame = new int[numIons];
+      final int[] apexScan = new int[numIons];
+      final double[] height = new double[numIons];
+      for (int ion = 0; ion < numIons; ion++) {
+        ionMz[ion] = 100 + rand.nextDouble() * 900;
+        apexFrame[ion] = rand.nextInt(numFrames);
+        apexScan[ion] = rand.nextInt(numMobilityScans);
+        height[ion] = 1E3 + rand.nextDouble() * 1E6;
+      }
+
+      final double[][][] mzs = new double[numFrames][numMobilityScans][];
+      final double[][][] intensities = new double[numFrames][numMobilityScans][];
+      for (int f = 0; f < numFrames; f++) {
+        for (int s = 0; s < numMobilityScans; s++) {
+          final double[] mz = new double[dataPointsPerScan];
+          final double[] intensity = new double[dataPointsPerScan];
+          int dp = 0;
+          // noise
+          for (; dp < dataPointsPerScan / 2; dp++) {
+            mz[dp] = 100 + rand.nextDouble() * 900;
+            intensity[dp] = rand.nextDouble() * 1E3;
+          }
+          // ions, gaussian in frame and mobility dimension with 3 ppm m/z deviation
+          for (; dp < dataPointsPerScan; dp++) {
+            final int ion = rand.nextInt(numIons);
+            final double frameDist = (f - apexFrame[ion]) / 3d;
+            final double scanDist = (s - apexScan[ion]) / 5d;
+            mz[dp] = ionMz[ion] * (1 + rand.nextGaussian() * 3E-6);
+            intensity[dp] = height[ion] * Math.exp(-0.5 * (frameDist * frameDist
+                + scanDist * scanDist)) + rand.nextDouble();
+          }
+          mzs[f][s] = mz;
+          intensities[f][s] = intensity;
+        }
+      }
+      return new SyntheticFrames(mzs, intensities);
+    }
+  }
+}
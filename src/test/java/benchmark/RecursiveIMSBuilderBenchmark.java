@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package benchmark;
+
+import benchmark.LegacyRecursiveIMSBuilder.Mobilogram;
+import benchmark.LegacyRecursiveIMSBuilder.SyntheticFrames;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.modules.dataprocessing.featdet_recursiveimsbuilder.FrameMobilogramBuilder;
+import io.github.mzmine.modules.dataprocessing.featdet_recursiveimsbuilder.PrimitiveIMTraceBuilder;
+import io.github.mzmine.modules.dataprocessing.featdet_recursiveimsbuilder.StoredFrameMobilograms;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.logging.Logger;
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares wall time, allocations and peak heap of the primitive mobilogram and trace building of
+ * the recursive IMS builder with the previous implementation on synthetic IMS data. Both variants
+ * keep the values of all mobilograms in a {@link MemoryMapStorage} until the traces are built, like
+ * the task. Run the main method, it first reports the peak heap usage of both implementations and
+ * then starts the JMH benchmark with the GC profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms8g", "-Xmx8g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class RecursiveIMSBuilderBenchmark {
+
+  private static final Logger logger = Logger.getLogger(
+      RecursiveIMSBuilderBenchmark.class.getName());
+
+  private static final MZTolerance MZ_TOLERANCE = new MZTolerance(0.003, 10);
+  private static final int RECURSIVE_THRESHOLD = 50;
+
+  @Param({"200"})
+  public int numFrames;
+  @Param({"400"})
+  public int numMobilityScans;
+  @Param({"100"})
+  public int dataPointsPerScan;
+
+  private SyntheticFrames data;
+
+  public static void main(String[] args) throws RunnerException {
+    final SyntheticFrames data = SyntheticFrames.create(200, 400, 100, 3);
+    reportPeakHeap("legacy", () -> legacy(data));
+    reportPeakHeap("primitive", () -> primitive(data));
+
+    new Runner(new OptionsBuilder().include(RecursiveIMSBuilderBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+
+  /**
+   * Logs the largest heap usage after a garbage collection while running, above the usage before.
+   * Unlike the peak usage of the heap pools, this excludes garbage that was not collected yet. Run
+   * with a heap that is small enough to trigger collections, e.g. -Xmx2g.
+   */
+  private static void reportPeakHeap(String name, IntSupplier run) {
+    System.gc();
+    final long baseline = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    final AtomicLong peak = new AtomicLong(baseline);
+    final NotificationListener listener = (notification, handback) -> {
+      if (notification.getType()
+          .equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+        final GcInfo info = GarbageCollectionNotificationInfo.from(
+            (CompositeData) notification.getUserData()).getGcInfo();
+        final long used = info.getMemoryUsageAfterGc().values().stream()
+            .mapToLong(MemoryUsage::getUsed).sum();
+        peak.accumulateAndGet(used, Math::max);
+      }
+    };
+    final List<NotificationEmitter> collectors = ManagementFactory.getGarbageCollectorMXBeans()
+        .stream().map(NotificationEmitter.class::cast).toList();
+    collectors.forEach(gc -> gc.addNotificationListener(listener, null, null));
+
+    final long start = System.nanoTime();
+    final int traces = run.getAsInt();
+    final long time = System.nanoTime() - start;
+    for (NotificationEmitter gc : collectors) {
+      try {
+        gc.removeNotificationListener(listener);
+      } catch (ListenerNotFoundException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    logger.info("%s: %d traces in %d ms, peak live heap above the input data %d MB".formatted(
+        name, traces, time / 1_000_000, (peak.get() - baseline) / 1_000_000));
+  }
+
+  /**
+   * The previous implementation kept an object per mobilogram with its values in the storage.
+   * Only the stored buffers and the values needed to build the traces are kept here, so the heap
+   * usage of the previous implementation is underestimated.
+   */
+  private static int legacy(SyntheticFrames data) {
+    final MemoryMapStorage storage = MemoryMapStorage.create();
+    final double[] empty = new double[0];
+    final int[] emptyScans = new int[0];
+    final Map<Mobilogram, DoubleBuffer[]> storedValues = new IdentityHashMap<>();
+    final List<Mobilogram> mobilograms = new ArrayList<>();
+    for (int f = 0; f < data.mzs().length; f++) {
+      for (Mobilogram mobilogram : LegacyRecursiveIMSBuilder.buildFrameMobilograms(f,
+          data.mzs()[f], data.intensities()[f], MZ_TOLERANCE, RECURSIVE_THRESHOLD)) {
+        final Mobilogram stored = new Mobilogram(f, empty, empty, emptyScans, mobilogram.avgMz(),
+            mobilogram.summedIntensity());
+        storedValues.put(stored, new DoubleBuffer[]{
+            StorageUtils.storeValuesToDoubleBuffer(storage, mobilogram.mzs()),
+            StorageUtils.storeValuesToDoubleBuffer(storage, mobilogram.intensities())});
+        mobilograms.add(stored);
+      }
+    }
+    return LegacyRecursiveIMSBuilder.buildTraces(mobilograms, MZ_TOLERANCE, RECURSIVE_THRESHOLD)
+        .size();
+  }
+
+  private static int primitive(SyntheticFrames data) {
+    final MemoryMapStorage storage = MemoryMapStorage.create();
+    final int numFrames = data.mzs().length;
+    final int maxDataPoints = Arrays.stream(data.mzs())
+        .mapToInt(frame -> Arrays.stream(frame).mapToInt(scan -> scan.length).sum()).max()
+        .orElse(0);
+    final FrameMobilogramBuilder builder = new FrameMobilogramBuilder(MZ_TOLERANCE,
+        RECURSIVE_THRESHOLD, maxDataPoints);
+    final StoredFrameMobilograms[] frameMobilograms = new StoredFrameMobilograms[numFrames];
+    for (int f = 0; f < numFrames; f++) {
+      for (int s = 0; s < data.mzs()[f].length; s++) {
+        for (int i = 0; i < data.mzs()[f][s].length; i++) {
+          builder.addDataPoint(data.mzs()[f][s][i], data.intensities()[f][s][i], s);
+        }
+      }
+      frameMobilograms[f] = builder.buildMobilograms(storage);
+    }
+
+    // like the task, the values of all mobilograms are copied to the storage
+    final int[] firstMobilogram = new int[numFrames + 1];
+    for (int f = 0; f < numFrames; f++) {
+      firstMobilogram[f + 1] = firstMobilogram[f] + frameMobilograms[f].getNumberOfMobilograms();
+    }
+    final DoubleBuffer avgMzs = storeMobilogramValues(storage, frameMobilograms, firstMobilogram,
+        StoredFrameMobilograms::avgMzs);
+    final DoubleBuffer summedIntensities = storeMobilogramValues(storage, frameMobilograms,
+        firstMobilogram, StoredFrameMobilograms::summedIntensities);
+    final IntBuffer frameIndices = storeFrameIndices(storage, firstMobilogram);
+
+    final PrimitiveIMTraceBuilder traceBuilder = new PrimitiveIMTraceBuilder(MZ_TOLERANCE,
+        RECURSIVE_THRESHOLD, avgMzs, summedIntensities, frameIndices);
+    traceBuilder.buildTraces(() -> false);
+    return traceBuilder.getNumberOfTraces();
+  }
+
+  private static DoubleBuffer storeMobilogramValues(MemoryMapStorage storage,
+      StoredFrameMobilograms[] frameMobilograms, int[] firstMobilogram,
+      Function<StoredFrameMobilograms, DoubleBuffer> values) {
+    final double[] allValues = new double[firstMobilogram[frameMobilograms.length]];
+    for (int f = 0; f < frameMobilograms.length; f++) {
+      values.apply(frameMobilograms[f]).get(0, allValues, firstMobilogram[f],
+          frameMobilograms[f].getNumberOfMobilograms());
+    }
+    return StorageUtils.storeValuesToDoubleBuffer(storage, allValues);
+  }
+
+  private static IntBuffer storeFrameIndices(MemoryMapStorage storage, int[] firstMobilogram) {
+    final int numFrames = firstMobilogram.length - 1;
+    final int[] frameIndices = new int[firstMobilogram[numFrames]];
+    for (int f = 0; f < numFrames; f++) {
+      Arrays.fill(frameIndices, firstMobilogram[f], firstMobilogram[f + 1], f);
+    }
+    return StorageUtils.storeValuesToIntBuffer(storage, frameIndices);
+  }
+
+  @Setup
+  public void setup() {
+    data = SyntheticFrames.create(numFrames, numMobilityScans, dataPointsPerScan, 3);
+  }
+
+  @Benchmark
+  public int legacyTreeSetBuilder() {
+    return legacy(data);
+  }
+
+  @Benchmark
+  public int primitiveBuilder() {
+    return primitive(data);
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package benchmark;
+
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the candidate selection of the spectral library search: the full scan over all entries
+ * (used without precursor matching) with the sorted precursor m/z index of the
+ * {@link SpectralLibrary}. Each benchmark call selects the candidates for all query m/z values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms8g", "-Xmx8g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class SpectralLibraryPrecursorIndexBenchmark {
+
+  private static final MZTolerance PRECURSOR_TOLERANCE = new MZTolerance(0.005, 10);
+
+  @Param({"100000", "1000000"})
+  public int numEntries;
+  @Param({"1000"})
+  public int numQueries;
+
+  private SpectralLibrary library;
+  private double[] queries;
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(
+        SpectralLibraryPrecursorIndexBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  @Setup
+  public void setup() {
+    final Random rand = new Random(42);
+    library = new SpectralLibrary(null, "benchmark", new File("benchmark"));
+    final List<SpectralLibraryEntry> entries = library.getEntries();
+    for (int i = 0; i < numEntries; i++) {
+      final Map<DBEntryField, Object> fields = new HashMap<>();
+      fields.put(DBEntryField.PRECURSOR_MZ, 100 + rand.nextDouble() * 1400);
+      fields.put(DBEntryField.POLARITY,
+          rand.nextBoolean() ? PolarityType.POSITIVE : PolarityType.NEGATIVE);
+      final double[] mzs = new double[10];
+      final double[] intensities = new double[10];
+      for (int dp = 0; dp < mzs.length; dp++) {
+        mzs[dp] = 50 + dp * 50 + rand.nextDouble();
+        intensities[dp] = rand.nextDouble() * 1E5;
+      }
+      entries.add(new SpectralDBEntry(null, mzs, intensities, fields));
+    }
+    queries = new double[numQueries];
+    for (int i = 0; i < numQueries; i++) {
+      queries[i] = 100 + rand.nextDouble() * 1400;
+    }
+    // create outside of the measurement
+    library.getPrecursorIndex();
+  }
+
+  @Benchmark
+  public int fullScan() {
+    int candidates = 0;
+    for (double query : queries) {
+      for (SpectralLibraryEntry entry : library.getEntries()) {
+        final Double precursorMZ = entry.getPrecursorMZ();
+        if (precursorMZ != null && PRECURSOR_TOLERANCE.checkWithinTolerance(precursorMZ, query)) {
+          candidates++;
+        }
+      }
+    }
+    return candidates;
+  }
+
+  @Benchmark
+  public int precursorIndex() {
+    int candidates = 0;
+    for (double query : queries) {
+      final double tol = PRECURSOR_TOLERANCE.getMzToleranceForMass(query);
+      final int[] indices = library.getPrecursorIndex()
+          .getCandidates(query - tol, query + tol);
+      for (int index : indices) {
+        final Double precursorMZ = library.getEntries().get(index).getPrecursorMZ();
+        if (PRECURSOR_TOLERANCE.checkWithinTolerance(precursorMZ, query)) {
+          candidates++;
+        }
+      }
+    }
+    return candidates;
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package benchmark;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.maths.similarity.Similarity;
+import io.github.mzmine.util.scans.ScanAlignment;
+import io.github.mzmine.util.scans.similarity.EncodedSpectrum;
+import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
+import io.github.mzmine.util.scans.similarity.SpectralSimilarityKernel;
+import io.github.mzmine.util.scans.similarity.Weights;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * All pairwise cosine similarities of a set of spectra (like MS2 similarity networking): alignment
+ * of data point pairs with {@link ScanAlignment} against the {@link SpectralSimilarityKernel} on
+ * spectra encoded once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class SpectralSimilarityBenchmark {
+
+  private static final MZTolerance MZ_TOLERANCE = new MZTolerance(0.005, 10);
+
+  @Param({"300"})
+  public int numSpectra;
+  @Param({"20", "200"})
+  public int numSignals;
+
+  private DataPoint[][] spectra;
+  private EncodedSpectrum[] encoded;
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(SpectralSimilarityBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+
+  @Setup
+  public void setup() {
+    final Random rand = new Random(42);
+    spectra = new DataPoint[numSpectra][];
+    encoded = new EncodedSpectrum[numSpectra];
+    for (int i = 0; i < numSpectra; i++) {
+      spectra[i] = new DataPoint[numSignals];
+      for (int dp = 0; dp < numSignals; dp++) {
+        // integer m/z values to get matches between random spectra
+        spectra[i][dp] = new SimpleDataPoint(50 + rand.nextInt(500) + rand.nextDouble() * 0.002,
+            rand.nextDouble() * 1E5);
+      }
+      encoded[i] = new EncodedSpectrum(spectra[i], Weights.SQRT);
+    }
+  }
+
+  @Benchmark
+  public double alignDataPoints() {
+    double sum = 0;
+    for (int i = 0; i < numSpectra; i++) {
+      for (int j = i + 1; j < numSpectra; j++) {
+        final List<DataPoint[]> aligned = ScanAlignment.align(MZ_TOLERANCE, spectra[i],
+            spectra[j]);
+        sum += Similarity.COSINE.calc(ScanAlignment.toIntensityMatrixWeighted(aligned,
+            Weights.SQRT.getIntensity(), Weights.SQRT.getMz()));
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double encodedKernel() {
+    final SpectralSimilarityKernel kernel = SpectralSimilarityKernel.forCurrentThread();
+    double sum = 0;
+    for (int i = 0; i < numSpectra; i++) {
+      for (int j = i + 1; j < numSpectra; j++) {
+        kernel.match(MZ_TOLERANCE, encoded[i], encoded[j]);
+        sum += kernel.cosine(HandleUnmatchedSignalOptions.KEEP_ALL_AND_MATCH_TO_ZERO);
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public Object encode() {
+    final EncodedSpectrum[] result = new EncodedSpectrum[numSpectra];
+    for (int i = 0; i < numSpectra; i++) {
+      result[i] = new EncodedSpectrum(spectra[i], Weights.SQRT);
+    }
+    return result;
+  }
+}
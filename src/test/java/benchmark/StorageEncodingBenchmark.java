@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package benchmark;
+
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.StorageEncoding;
+import io.github.mzmine.util.StoredDoubleValues;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Space/time trade-off of the {@link StorageEncoding}s of a {@link MemoryMapStorage}: storing and
+ * reading the m/z and intensity values of centroid scans. The stored bytes per data point are
+ * printed in the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class StorageEncodingBenchmark {
+
+  @Param({"DOUBLE", "FLOAT_INTENSITY", "FLOAT_INTENSITY_DELTA_MZ"})
+  public StorageEncoding encoding;
+  @Param({"1000"})
+  public int numScans;
+  @Param({"2000"})
+  public int numDataPoints;
+
+  private double[][] mzs;
+  private double[][] intensities;
+  private MemoryMapStorage readStorage;
+  private StoredDoubleValues[] storedMzs;
+  private StoredDoubleValues[] storedIntensities;
+  private MemoryMapStorage writeStorage;
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+        new OptionsBuilder().include(StorageEncodingBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    final Random rand = new Random(42);
+    mzs = new double[numScans][numDataPoints];
+    intensities = new double[numScans][numDataPoints];
+    for (int scan = 0; scan < numScans; scan++) {
+      double mz = 50 + rand.nextDouble();
+      for (int dp = 0; dp < numDataPoints; dp++) {
+        mz += rand.nextDouble() * 0.5;
+        mzs[scan][dp] = mz;
+        intensities[scan][dp] = rand.nextDouble() * 1E6;
+      }
+    }
+
+    readStorage = MemoryMapStorage.create(encoding);
+    storedMzs = new StoredDoubleValues[numScans];
+    storedIntensities = new StoredDoubleValues[numScans];
+    for (int scan = 0; scan < numScans; scan++) {
+      storedMzs[scan] = readStorage.storeMzValues(mzs[scan]);
+      storedIntensities[scan] = readStorage.storeIntensityValues(intensities[scan]);
+    }
+    System.out.printf("%n%s: %.2f bytes per data point%n", encoding,
+        readStorage.getStoredBytes() / (double) (numScans * numDataPoints));
+  }
+
+  @Setup(Level.Iteration)
+  public void createWriteStorage() {
+    writeStorage = MemoryMapStorage.create(encoding);
+  }
+
+  @TearDown(Level.Iteration)
+  public void discardWriteStorage() throws IOException {
+    writeStorage.discard(null);
+  }
+
+  @TearDown
+  public void discardReadStorage() throws IOException {
+    readStorage.discard(null);
+  }
+
+  @Benchmark
+  public int store() throws IOException {
+    int size = 0;
+    for (int scan = 0; scan < numScans; scan++) {
+      size += writeStorage.storeMzValues(mzs[scan]).size();
+      size += writeStorage.storeIntensityValues(intensities[scan]).size();
+    }
+    return size;
+  }
+
+  @Benchmark
+  public double readAll() {
+    final double[] mzBuffer = new double[numDataPoints];
+    final double[] intensityBuffer = new double[numDataPoints];
+    double sum = 0;
+    for (int scan = 0; scan < numScans; scan++) {
+      storedMzs[scan].get(0, mzBuffer, 0, numDataPoints);
+      storedIntensities[scan].get(0, intensityBuffer, 0, numDataPoints);
+      sum += mzBuffer[numDataPoints - 1] + intensityBuffer[numDataPoints / 2];
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double readSingleValues() {
+    double sum = 0;
+    for (int scan = 0; scan < numScans; scan++) {
+      for (int dp = 0; dp < numDataPoints; dp += 7) {
+        sum += storedMzs[scan].get(dp) * storedIntensities[scan].get(dp);
+      }
+    }
+    return sum;
+  }
+}
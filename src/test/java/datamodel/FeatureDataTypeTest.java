@@ -47,9 +47,12 @@ import io.github.mzmine.datamodel.features.types.FeatureDataType;
 import io.github.mzmine.datamodel.impl.BuildingMobilityScan;
 import io.github.mzmine.datamodel.impl.SimpleFrame;
 import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.modules.io.projectload.version_3_0.FeatureSeriesBinaryReader;
+import io.github.mzmine.modules.io.projectsave.FeatureSeriesBinaryWriter;
 import io.github.mzmine.project.impl.IMSRawDataFileImpl;
 import io.github.mzmine.project.impl.MZmineProjectImpl;
 import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -116,6 +119,36 @@ public class FeatureDataTypeTest {
     DataTypeTestUtils.testSaveLoad(new FeatureDataType(), null, project, flist, row, feature, file);
   }
 
+  @Test
+  void testSimpleIonTimeSeriesBinary() throws IOException {
+    final RawDataFile file = new RawDataFileImpl("testfile", null, null, Color.BLACK);
+    List<Scan> scans = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      scans.add(new SimpleScan(file, i, 1, 0.1f * i, null, new double[0], new double[0],
+          MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(0d, 1d)));
+      file.addScan(scans.get(i));
+    }
+
+    IonTimeSeries<Scan> series = new SimpleIonTimeSeries(null,
+        new double[]{150d, 150.001d, 149.999d, 150d, 150d}, new double[]{1d, 5d, 20d, 5d, 1d},
+        scans.subList(5, 10));
+    IonTimeSeries<Scan> series_2 = new SimpleIonTimeSeries(null, new double[]{300d, 300.002d},
+        new double[]{1E5d, 2E5d}, scans.subList(15, 17));
+
+    final File seriesFile = File.createTempFile("mzmine_test_series", ".bin");
+    seriesFile.deleteOnExit();
+    try (FeatureSeriesBinaryWriter writer = new FeatureSeriesBinaryWriter(seriesFile)) {
+      Assertions.assertEquals(0, writer.writeSeries(series, file));
+      Assertions.assertEquals(1, writer.writeSeries(series_2, file));
+    }
+
+    try (FeatureSeriesBinaryReader reader = new FeatureSeriesBinaryReader(seriesFile)) {
+      Assertions.assertEquals(2, reader.getNumberOfSeries());
+      Assertions.assertEquals(series_2, reader.readIonTimeSeries(1, null, file));
+      Assertions.assertEquals(series, reader.readIonTimeSeries(0, null, file));
+    }
+  }
+
   @Test
   void testIonMobilogramTimeSeries() {
     IMSRawDataFile file = null;
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.align_hierarchical;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import org.gnf.clustering.LinkageMode;
+import org.gnf.clustering.Node;
+import org.gnf.clustering.sequentialcache.SequentialCacheClustering;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the {@link SparseLinkageClustering} with the dense
+ * {@link SequentialCacheClustering#clusterDM} and with a naive exact clustering on small random
+ * matrices. All have to produce the same merges below
+ * {@link RowVsRowDistanceProvider#NOT_CANDIDATE_DISTANCE} (same rows, same order, same heights). Rows of the same raw data file are never candidates, so the linkages have to count
+ * the same-file pairs of merged clusters correctly.
+ */
+class SparseLinkageClusteringTest {
+
+  private static final LinkageMode[] MODES = {LinkageMode.MIN, LinkageMode.MAX, LinkageMode.AVG};
+  private static final int ROWS = 18;
+  private static final int FILES = 4;
+
+  @Test
+  void testSameMergesAsDenseClustering() {
+    // the dense AVG linkage does not move the cluster sizes together with the matrix rows, so only
+    // MIN and MAX are compared, AVG is compared to the exact linkage below
+    for (int seed = 0; seed < 20; seed++) {
+      final SparseDistanceMatrix sparse = createRandomMatrix(new Random(seed));
+      for (LinkageMode mode : new LinkageMode[]{LinkageMode.MIN, LinkageMode.MAX}) {
+        // the dense clustering changes the matrix
+        final Node[] dense = SequentialCacheClustering.clusterDM(
+            new DistanceMatrixTriangular1D2D(sparse), mode, null, ROWS);
+        assertSameCandidateMerges(dense, SparseLinkageClustering.clusterDM(sparse, mode),
+            "seed " + seed + ", " + mode);
+      }
+    }
+  }
+
+  @Test
+  void testSameMergesAsExactLinkage() {
+    for (int seed = 0; seed < 20; seed++) {
+      final SparseDistanceMatrix sparse = createRandomMatrix(new Random(seed));
+      for (LinkageMode mode : MODES) {
+        assertSameCandidateMerges(clusterExact(sparse, mode),
+            SparseLinkageClustering.clusterDM(sparse, mode), "seed " + seed + ", " + mode);
+      }
+    }
+  }
+
+  /**
+   * The merges below {@link RowVsRowDistanceProvider#NOT_CANDIDATE_DISTANCE} need to have the same
+   * rows, order and heights
+   */
+  private static void assertSameCandidateMerges(Node[] expected, Node[] result, String msg) {
+    assertNotNull(result, msg);
+    assertEquals(ROWS - 1, result.length, msg);
+    assertValidTree(result, msg);
+
+    final List<BitSet> expectedClusters = toClusters(expected);
+    final List<BitSet> clusters = toClusters(result);
+    int candidateMerges = 0;
+    while (candidateMerges < expected.length && expected[candidateMerges].m_fDistance
+                                                < RowVsRowDistanceProvider.NOT_CANDIDATE_DISTANCE) {
+      final int i = candidateMerges++;
+      assertEquals(expectedClusters.get(i), clusters.get(i), msg + ", merge " + i);
+      assertEquals(expected[i].m_fDistance, result[i].m_fDistance, 1E-3, msg + ", merge " + i);
+    }
+    // random data always has a few candidate merges
+    assertTrue(candidateMerges > 0, msg);
+    // and there are no additional merges below the not candidate distance
+    assertTrue(candidateMerges == result.length || result[candidateMerges].m_fDistance
+                                                   >= RowVsRowDistanceProvider.NOT_CANDIDATE_DISTANCE,
+        msg + ", merge " + candidateMerges);
+  }
+
+  @Test
+  void testSameFileLinkage() {
+    // rows 0 and 1 from file 0 and row 2 from file 1, all close to each other
+    final SparseDistanceMatrix mtx = new SparseDistanceMatrix(new int[]{0, 0, 1});
+    mtx.setValue(0, 2, 1f);
+    mtx.setValue(1, 2, 2f);
+
+    final double sameFile = RowVsRowDistanceProvider.SAME_FILE_DISTANCE;
+    assertEquals(2f, SparseLinkageClustering.clusterDM(mtx, LinkageMode.MIN)[1].m_fDistance, 1E-4);
+    assertEquals(sameFile,
+        SparseLinkageClustering.clusterDM(mtx, LinkageMode.MAX)[1].m_fDistance, 1E-4);
+    assertEquals((2d + sameFile) / 2d,
+        SparseLinkageClustering.clusterDM(mtx, LinkageMode.AVG)[1].m_fDistance, 1E-4);
+  }
+
+  /**
+   * Naive clustering that computes the linkage of each cluster pair from all row pairs. Merges
+   * continue in the order of the linkage distance until only {@link
+   * RowVsRowDistanceProvider#NOT_CANDIDATE_DISTANCE} or larger distances are left.
+   *
+   * @return the merges in the layout of {@link SparseLinkageClustering#clusterDM}
+   */
+  private static Node[] clusterExact(SparseDistanceMatrix mtx, LinkageMode mode) {
+    final List<BitSet> clusters = new ArrayList<>();
+    final List<Integer> children = new ArrayList<>();
+    for (int row = 0; row < ROWS; row++) {
+      final BitSet cluster = new BitSet();
+      cluster.set(row);
+      clusters.add(cluster);
+      children.add(row);
+    }
+
+    final List<Node> nodes = new ArrayList<>();
+    while (clusters.size() > 1) {
+      int bestA = -1;
+      int bestB = -1;
+      double best = Double.MAX_VALUE;
+      for (int a = 0; a < clusters.size(); a++) {
+        for (int b = a + 1; b < clusters.size(); b++) {
+          final double linkage = linkage(mtx, mode, clusters.get(a), clusters.get(b));
+          if (linkage < best) {
+            best = linkage;
+            bestA = a;
+            bestB = b;
+          }
+        }
+      }
+      if (best >= RowVsRowDistanceProvider.NOT_CANDIDATE_DISTANCE) {
+        break;
+      }
+
+      final BitSet merged = (BitSet) clusters.get(bestA).clone();
+      merged.or(clusters.get(bestB));
+      nodes.add(new Node(children.get(bestA), children.get(bestB), (float) best));
+      clusters.remove(bestB);
+      children.remove(bestB);
+      clusters.set(bestA, merged);
+      children.set(bestA, -nodes.size());
+    }
+    return nodes.toArray(Node[]::new);
+  }
+
+  private static double linkage(SparseDistanceMatrix mtx, LinkageMode mode, BitSet a, BitSet b) {
+    double min = Double.MAX_VALUE;
+    double max = 0;
+    double sum = 0;
+    for (int i = a.nextSetBit(0); i >= 0; i = a.nextSetBit(i + 1)) {
+      for (int j = b.nextSetBit(0); j >= 0; j = b.nextSetBit(j + 1)) {
+        final double value = mtx.getValue(i, j);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += value;
+      }
+    }
+    if (mode == LinkageMode.MIN) {
+      return min;
+    }
+    return mode == LinkageMode.MAX ? max : sum / (a.cardinality() * b.cardinality());
+  }
+
+  /**
+   * Random file indices, each pair of different files is a candidate with a random distance below
+   * {@link RowVsRowDistanceProvider#NOT_CANDIDATE_DISTANCE} in about half of the cases.
+   */
+  private static SparseDistanceMatrix createRandomMatrix(Random random) {
+    final int[] fileIndex = new int[ROWS];
+    for (int i = 0; i < ROWS; i++) {
+      fileIndex[i] = random.nextInt(FILES);
+    }
+    final SparseDistanceMatrix mtx = new SparseDistanceMatrix(fileIndex);
+    for (int i = 0; i < ROWS; i++) {
+      for (int j = i + 1; j < ROWS; j++) {
+        if (fileIndex[i] != fileIndex[j] && random.nextBoolean()) {
+          mtx.setValue(i, j, 1f + random.nextFloat() * 50f);
+        }
+      }
+    }
+    return mtx;
+  }
+
+  /**
+   * Each row is used exactly once as a leaf and each node but the root exactly once as a child.
+   */
+  private static void assertValidTree(Node[] nodes, String msg) {
+    final BitSet rows = new BitSet();
+    final BitSet children = new BitSet();
+    for (int i = 0; i < nodes.length; i++) {
+      for (int child : new int[]{nodes[i].m_nLeft, nodes[i].m_nRight}) {
+        if (child >= 0) {
+          assertTrue(!rows.get(child), msg);
+          rows.set(child);
+        } else {
+          final int node = -(child + 1);
+          assertTrue(node < i && !children.get(node), msg);
+          children.set(node);
+        }
+      }
+    }
+    assertEquals(ROWS, rows.cardinality(), msg);
+    assertEquals(nodes.length - 1, children.cardinality(), msg);
+  }
+
+  /**
+   * @return the rows of each node
+   */
+  private static List<BitSet> toClusters(Node[] nodes) {
+    final List<BitSet> clusters = new ArrayList<>(nodes.length);
+    for (Node node : nodes) {
+      final BitSet cluster = new BitSet();
+      for (int child : new int[]{node.m_nLeft, node.m_nRight}) {
+        if (child >= 0) {
+          cluster.set(child);
+        } else {
+          cluster.or(clusters.get(-(child + 1)));
+        }
+      }
+      clusters.add(cluster);
+    }
+    return clusters;
+  }
+}
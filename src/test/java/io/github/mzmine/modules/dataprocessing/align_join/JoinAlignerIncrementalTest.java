@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.align_join;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.RowGroup;
+import io.github.mzmine.datamodel.features.correlation.CorrelationRowGroup;
+import io.github.mzmine.datamodel.features.correlation.R2RFullCorrelationData;
+import io.github.mzmine.datamodel.features.correlation.RowsRelationship;
+import io.github.mzmine.datamodel.features.correlation.RowsRelationship.Type;
+import io.github.mzmine.datamodel.features.types.DetectionType;
+import io.github.mzmine.datamodel.features.types.RawFileType;
+import io.github.mzmine.datamodel.features.types.numbers.HeightType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.OriginalFeatureListHandlingParameter.OriginalFeatureListOption;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelection;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance.Unit;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Compares the incremental join alignment (A+B, then append C) with the full alignment of A+B+C
+ * and checks that appending keeps the rows and results of the existing aligned list
+ */
+class JoinAlignerIncrementalTest {
+
+  private RawDataFile rawA;
+  private RawDataFile rawB;
+  private RawDataFile rawC;
+  private Map<RawDataFile, String> names;
+
+  @BeforeEach
+  void setUp() {
+    rawA = mock(RawDataFile.class);
+    rawB = mock(RawDataFile.class);
+    rawC = mock(RawDataFile.class);
+    names = Map.of(rawA, "A", rawB, "B", rawC, "C");
+  }
+
+  /**
+   * Compounds are well separated in m/z and RT. Each sample detects a subset of the compounds with
+   * a small m/z and RT shift.
+   *
+   * @param compounds the detected compound indices
+   */
+  private ModularFeatureList createList(RawDataFile raw, int shift, int... compounds) {
+    final ModularFeatureList flist = new ModularFeatureList(names.get(raw), null, raw);
+    int id = 1;
+    for (int compound : compounds) {
+      final ModularFeature f = new ModularFeature(flist);
+      f.set(RawFileType.class, raw);
+      f.set(MZType.class, 100d + compound + shift * 0.0002);
+      f.set(RTType.class, 1f + compound * 0.5f + shift * 0.002f);
+      f.set(HeightType.class, 1E4f * (compound + 1));
+      f.set(DetectionType.class, FeatureStatus.DETECTED);
+      flist.addRow(new ModularFeatureListRow(flist, id++, f));
+    }
+    return flist;
+  }
+
+  private ParameterSet createParameters(List<ModularFeatureList> flists,
+      ModularFeatureList appendTo) {
+    final ParameterSet param = new JoinAlignerParameters().cloneParameterSet();
+    param.getParameter(JoinAlignerParameters.peakLists)
+        .setValue(new FeatureListsSelection(flists.toArray(ModularFeatureList[]::new)));
+    param.setParameter(JoinAlignerParameters.peakListName, "Aligned");
+    param.setParameter(JoinAlignerParameters.appendToAlignedList, appendTo != null);
+    if (appendTo != null) {
+      param.getParameter(JoinAlignerParameters.appendToAlignedList).getEmbeddedParameter()
+          .setValue(new FeatureListsSelection(appendTo));
+    }
+    param.setParameter(JoinAlignerParameters.MZTolerance, new MZTolerance(0.005, 10));
+    param.setParameter(JoinAlignerParameters.MZWeight, 3d);
+    param.setParameter(JoinAlignerParameters.RTTolerance, new RTTolerance(0.1f, Unit.MINUTES));
+    param.setParameter(JoinAlignerParameters.RTWeight, 1d);
+    param.setParameter(JoinAlignerParameters.mobilityTolerance, false);
+    param.setParameter(JoinAlignerParameters.mobilityWeight, 0d);
+    param.setParameter(JoinAlignerParameters.SameChargeRequired, false);
+    param.setParameter(JoinAlignerParameters.SameIDRequired, false);
+    param.setParameter(JoinAlignerParameters.compareIsotopePattern, false);
+    param.setParameter(JoinAlignerParameters.compareSpectraSimilarity, false);
+    param.setParameter(JoinAlignerParameters.handleOriginal, OriginalFeatureListOption.KEEP);
+    return param;
+  }
+
+  /**
+   * Runs the aligner and returns the feature list that was added to the project
+   */
+  private ModularFeatureList align(MZmineProject project, List<ModularFeatureList> flists) {
+    final JoinAlignerTask task = new JoinAlignerTask(project, createParameters(flists, null), null,
+        Instant.now());
+    task.run();
+    assertEquals(TaskStatus.FINISHED, task.getStatus(), task::getErrorMessage);
+
+    final ArgumentCaptor<FeatureList> captor = ArgumentCaptor.forClass(FeatureList.class);
+    verify(project).addFeatureList(captor.capture());
+    return (ModularFeatureList) captor.getValue();
+  }
+
+  /**
+   * Appends the feature lists to the existing aligned list, which stays in the project
+   */
+  private void append(List<ModularFeatureList> flists, ModularFeatureList appendTo) {
+    final MZmineProject project = mock(MZmineProject.class);
+    final JoinAlignerTask task = new JoinAlignerTask(project, createParameters(flists, appendTo),
+        null, Instant.now());
+    task.run();
+    assertEquals(TaskStatus.FINISHED, task.getStatus(), task::getErrorMessage);
+
+    verify(project, never()).addFeatureList(any());
+    verify(project, never()).removeFeatureList(any());
+  }
+
+  /**
+   * @return each row as the set of sample:compound of its features
+   */
+  private Set<String> rowsAsCompounds(FeatureList flist) {
+    return flist.getRows().stream().map(this::rowAsCompounds)
+        .collect(Collectors.toCollection(TreeSet::new));
+  }
+
+  private String rowAsCompounds(FeatureListRow row) {
+    return row.getFeatures().stream().map(
+            f -> names.get(f.getRawDataFile()) + ":" + Math.round(f.getMZ() - 100d))
+        .sorted().collect(Collectors.joining(","));
+  }
+
+  @Test
+  void incrementalAlignmentMatchesFullAlignment() {
+    final int[] compoundsA = IntStream.range(0, 10).toArray();
+    final int[] compoundsB = IntStream.concat(IntStream.range(0, 5), IntStream.range(10, 15))
+        .toArray();
+    final int[] compoundsC = IntStream.concat(IntStream.range(3, 8), IntStream.range(15, 20))
+        .toArray();
+
+    // full alignment of A+B+C
+    final ModularFeatureList full = align(mock(MZmineProject.class),
+        List.of(createList(rawA, 0, compoundsA), createList(rawB, 1, compoundsB),
+            createList(rawC, -1, compoundsC)));
+
+    // align A+B, then append C
+    final ModularFeatureList alignedAB = align(mock(MZmineProject.class),
+        List.of(createList(rawA, 0, compoundsA), createList(rawB, 1, compoundsB)));
+    final int rowsAB = alignedAB.getNumberOfRows();
+    final int maxIdAB = alignedAB.stream().mapToInt(FeatureListRow::getID).max().orElseThrow();
+    final Map<Integer, String> compoundsById = alignedAB.stream()
+        .collect(Collectors.toMap(FeatureListRow::getID, this::rowAsCompounds));
+    final Map<Integer, FeatureListRow> rowsById = alignedAB.stream()
+        .collect(Collectors.toMap(FeatureListRow::getID, Function.identity()));
+
+    append(List.of(createList(rawC, -1, compoundsC)), alignedAB);
+    final ModularFeatureList incremental = alignedAB;
+
+    // same rows as the full alignment
+    assertEquals(20, full.getNumberOfRows());
+    assertEquals(3, incremental.getNumberOfRawDataFiles());
+    assertEquals(rowsAsCompounds(full), rowsAsCompounds(incremental));
+
+    // existing rows are kept with their IDs, new rows get higher IDs
+    assertEquals(rowsAB + 5, incremental.getNumberOfRows());
+    final Map<Integer, FeatureListRow> incrementalById = incremental.stream()
+        .collect(Collectors.toMap(FeatureListRow::getID, Function.identity()));
+    compoundsById.forEach((id, compounds) -> {
+      final FeatureListRow row = incrementalById.get(id);
+      assertNotNull(row, "Missing existing row " + id);
+      assertSame(rowsById.get(id), row);
+      final String withoutC = row.getFeatures().stream().filter(f -> f.getRawDataFile() != rawC)
+          .map(f -> names.get(f.getRawDataFile()) + ":" + Math.round(f.getMZ() - 100d)).sorted()
+          .collect(Collectors.joining(","));
+      assertEquals(compounds, withoutC);
+    });
+    final List<FeatureListRow> newRows = incremental.stream()
+        .filter(row -> !compoundsById.containsKey(row.getID())).toList();
+    assertEquals(5, newRows.size());
+    assertTrue(newRows.stream().allMatch(row -> row.getID() > maxIdAB));
+    assertTrue(
+        newRows.stream().allMatch(row -> row.hasFeature(rawC) && row.getNumberOfFeatures() == 1));
+  }
+
+  @Test
+  void appendingKeepsCorrelationGroupsAndRelationships() {
+    final ModularFeatureList alignedAB = align(mock(MZmineProject.class),
+        List.of(createList(rawA, 0, 0, 1, 2, 3), createList(rawB, 1, 0, 1, 2, 3)));
+    final List<FeatureListRow> rows = new ArrayList<>(alignedAB.getRows());
+    assertEquals(4, rows.size());
+
+    // results of metaCorrelate: two groups and a correlation between the rows of the first group
+    final RowGroup group1 = new CorrelationRowGroup(alignedAB.getRawDataFiles(), 0);
+    group1.addAll(rows.get(0), rows.get(1));
+    final RowGroup group2 = new CorrelationRowGroup(alignedAB.getRawDataFiles(), 1);
+    group2.addAll(rows.get(2), rows.get(3));
+    alignedAB.setGroups(new ArrayList<>(List.of(group1, group2)));
+    final RowsRelationship corr = new R2RFullCorrelationData(rows.get(0), rows.get(1), null,
+        Map.of());
+    alignedAB.addRowsRelationship(rows.get(0), rows.get(1), corr);
+
+    // C matches compounds 1 and 2 and detects the new compound 5
+    append(List.of(createList(rawC, -1, 1, 2, 5)), alignedAB);
+
+    assertEquals(3, alignedAB.getNumberOfRawDataFiles());
+    assertEquals(5, alignedAB.getNumberOfRows());
+    assertTrue(alignedAB.getRows().containsAll(rows));
+    assertTrue(rows.get(1).hasFeature(rawC));
+    assertTrue(rows.get(2).hasFeature(rawC));
+
+    // groups and relationships still reference the rows of the list
+    assertEquals(List.of(group1, group2), alignedAB.getGroups());
+    assertSame(group1, rows.get(0).getGroup());
+    assertSame(group1, rows.get(1).getGroup());
+    assertSame(group2, rows.get(2).getGroup());
+    assertEquals(List.of(rows.get(0), rows.get(1)), group1.getRows());
+    assertSame(corr,
+        alignedAB.getRowMaps().get(Type.MS1_FEATURE_CORR).get(rows.get(0), rows.get(1)));
+
+    // only the new row is not part of a group
+    final List<FeatureListRow> newRows = alignedAB.stream().filter(row -> !rows.contains(row))
+        .toList();
+    assertEquals(1, newRows.size());
+    assertTrue(newRows.get(0).hasFeature(rawC));
+    assertNull(newRows.get(0).getGroup());
+  }
+
+  @Test
+  void appendingAlignedFileIsRejected() {
+    final ModularFeatureList alignedAB = align(mock(MZmineProject.class),
+        List.of(createList(rawA, 0, 1, 2, 3), createList(rawB, 1, 2, 3, 4)));
+
+    final MZmineProject project = mock(MZmineProject.class);
+    final JoinAlignerTask task = new JoinAlignerTask(project,
+        createParameters(List.of(createList(rawB, 1, 2, 3, 4)), alignedAB), null, Instant.now());
+    task.run();
+
+    assertEquals(TaskStatus.ERROR, task.getStatus());
+    assertEquals(2, alignedAB.getNumberOfRawDataFiles());
+    verify(project, never()).removeFeatureList(alignedAB);
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.minimumsearch.MinimumSearchFeatureResolverParameters;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.OriginalFeatureListHandlingParameter.OriginalFeatureListOption;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelection;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.FeatureListRowSorter;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Resolves the same chromatograms in one block and in many parallel blocks. Each block uses its own
+ * resolver and a data access on a subset of rows, so the results must not depend on the blocks.
+ */
+class FeatureResolverTaskBlocksTest {
+
+  private static final int NUM_SCANS = 300;
+
+  /**
+   * Chromatograms over all scans with 1-3 gaussian peaks and a small baseline
+   */
+  private static ModularFeatureList createChromatograms(long seed) throws IOException {
+    final Random rand = new Random(seed);
+    final RawDataFile raw = new RawDataFileImpl("blocks", null, null, Color.BLACK);
+    final List<Scan> scans = new ArrayList<>();
+    for (int i = 0; i < NUM_SCANS; i++) {
+      final Scan scan = new SimpleScan(raw, i, 1, 0.02f * i, null, new double[0], new double[0],
+          MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(0d, 1000d));
+      raw.addScan(scan);
+      scans.add(scan);
+    }
+
+    final ModularFeatureList flist = new ModularFeatureList("chromatograms", null, raw);
+    flist.setSelectedScans(raw, scans);
+    for (int id = 1; id <= 250; id++) {
+      final double mz = 100 + rand.nextDouble() * 800;
+      final int numPeaks = 1 + rand.nextInt(3);
+      final double[] apex = new double[numPeaks];
+      final double[] height = new double[numPeaks];
+      final double[] width = new double[numPeaks];
+      for (int p = 0; p < numPeaks; p++) {
+        apex[p] = 20 + rand.nextInt(NUM_SCANS - 40);
+        height[p] = 1E5 + rand.nextDouble() * 1E6;
+        width[p] = 2 + rand.nextDouble() * 4;
+      }
+
+      final double[] mzs = new double[NUM_SCANS];
+      final double[] intensities = new double[NUM_SCANS];
+      for (int i = 0; i < NUM_SCANS; i++) {
+        double intensity = 1E3 * rand.nextDouble();
+        for (int p = 0; p < numPeaks; p++) {
+          final double d = (i - apex[p]) / width[p];
+          intensity += height[p] * Math.exp(-0.5 * d * d);
+        }
+        mzs[i] = mz + (rand.nextDouble() - 0.5) * 0.002;
+        intensities[i] = intensity;
+      }
+
+      final IonTimeSeries<Scan> series = new SimpleIonTimeSeries(null, mzs, intensities, scans);
+      final ModularFeature f = new ModularFeature(flist, raw, series, FeatureStatus.DETECTED);
+      flist.addRow(new ModularFeatureListRow(flist, id, f));
+    }
+    flist.getRows().sort(FeatureListRowSorter.MZ_ASCENDING);
+    return flist;
+  }
+
+  private static ParameterSet createParameters(ModularFeatureList flist) {
+    final ParameterSet param = new MinimumSearchFeatureResolverParameters().cloneParameterSet();
+    param.getParameter(GeneralResolverParameters.PEAK_LISTS)
+        .setValue(new FeatureListsSelection(flist));
+    param.setParameter(GeneralResolverParameters.handleOriginal, OriginalFeatureListOption.KEEP);
+    param.setParameter(GeneralResolverParameters.SUFFIX, "r");
+    param.setParameter(GeneralResolverParameters.groupMS2Parameters, false);
+    param.setParameter(GeneralResolverParameters.dimension, ResolvingDimension.RETENTION_TIME);
+    param.setParameter(GeneralResolverParameters.MIN_NUMBER_OF_DATAPOINTS, 4);
+    param.setParameter(MinimumSearchFeatureResolverParameters.CHROMATOGRAPHIC_THRESHOLD_LEVEL,
+        0.5);
+    param.setParameter(MinimumSearchFeatureResolverParameters.SEARCH_RT_RANGE, 0.05);
+    param.setParameter(MinimumSearchFeatureResolverParameters.MIN_RELATIVE_HEIGHT, 0d);
+    param.setParameter(MinimumSearchFeatureResolverParameters.MIN_ABSOLUTE_HEIGHT, 5E4);
+    param.setParameter(MinimumSearchFeatureResolverParameters.MIN_RATIO, 1.8);
+    param.setParameter(MinimumSearchFeatureResolverParameters.PEAK_DURATION,
+        Range.closed(0d, 2d));
+    return param;
+  }
+
+  private static FeatureList resolve(ModularFeatureList flist, int maxBlocks) {
+    final MZmineProject project = mock(MZmineProject.class);
+    final FeatureResolverTask task = new FeatureResolverTask(project, null, flist,
+        createParameters(flist), FeatureDataUtils.DEFAULT_CENTER_FUNCTION, Instant.now());
+    task.setMaxBlocks(maxBlocks);
+    task.run();
+    assertEquals(TaskStatus.FINISHED, task.getStatus(), task::getErrorMessage);
+
+    final ArgumentCaptor<FeatureList> captor = ArgumentCaptor.forClass(FeatureList.class);
+    verify(project).addFeatureList(captor.capture());
+    return captor.getValue();
+  }
+
+  @Test
+  void sameFeaturesInOneAndManyBlocks() throws IOException {
+    final ModularFeatureList flist = createChromatograms(7);
+
+    final FeatureList single = resolve(flist, 1);
+    // uneven blocks, more blocks than threads
+    final FeatureList blocks = resolve(flist, 37);
+
+    // chromatograms with multiple peaks were split
+    assertTrue(single.getNumberOfRows() > flist.getNumberOfRows());
+    assertEquals(single.getNumberOfRows(), blocks.getNumberOfRows());
+
+    for (int i = 0; i < single.getNumberOfRows(); i++) {
+      final FeatureListRow a = single.getRow(i);
+      final FeatureListRow b = blocks.getRow(i);
+      assertEquals(a.getID(), b.getID());
+      assertEquals(a.getAverageMZ(), b.getAverageMZ());
+      assertEquals(a.getAverageRT(), b.getAverageRT());
+      assertEquals(a.getAverageHeight(), b.getAverageHeight());
+      assertEquals(a.getAverageArea(), b.getAverageArea());
+
+      final IonTimeSeries<? extends Scan> seriesA = a.getFeatures().get(0).getFeatureData();
+      final IonTimeSeries<? extends Scan> seriesB = b.getFeatures().get(0).getFeatureData();
+      assertEquals(seriesA.getSpectra(), seriesB.getSpectra());
+      assertArrayEquals(seriesA.getMzValues(new double[0]), seriesB.getMzValues(new double[0]));
+      assertArrayEquals(seriesA.getIntensityValues(new double[0]),
+          seriesB.getIntensityValues(new double[0]));
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_formulapredictionfeaturelist;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import io.github.mzmine.datamodel.IonizationType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.RawFileType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.modules.dataprocessing.id_formulaprediction.ResultFormula;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The row-parallel prediction returns the same formulas per row as a single-threaded run.
+ */
+class FormulaPredictionFeatureListTaskTest {
+
+  private static final int MAX_BEST_FORMULAS = 5;
+
+  private static ModularFeatureList createRows() {
+    final Random rand = new Random(7);
+    final RawDataFile raw = mock(RawDataFile.class);
+    final ModularFeatureList flist = new ModularFeatureList("formulas", null, List.of(raw));
+    for (int id = 1; id <= 40; id++) {
+      final ModularFeature f = new ModularFeature(flist);
+      f.set(RawFileType.class, raw);
+      f.set(MZType.class, 120 + rand.nextDouble() * 300);
+      flist.addRow(new ModularFeatureListRow(flist, id, f));
+    }
+    flist.applyRowBindings();
+    return flist;
+  }
+
+  private static ParameterSet createParameters() {
+    final ParameterSet param = new FormulaPredictionFeatureListParameters().cloneParameterSet();
+    param.setParameter(FormulaPredictionFeatureListParameters.charge, 1);
+    param.setParameter(FormulaPredictionFeatureListParameters.ionization,
+        IonizationType.POSITIVE_HYDROGEN);
+    param.setParameter(FormulaPredictionFeatureListParameters.mzTolerance,
+        new MZTolerance(0.005, 10));
+    param.setParameter(FormulaPredictionFeatureListParameters.maxBestFormulasPerFeature,
+        MAX_BEST_FORMULAS);
+    param.setParameter(FormulaPredictionFeatureListParameters.sorting, false);
+    param.setParameter(FormulaPredictionFeatureListParameters.elementalRatios, false);
+    param.setParameter(FormulaPredictionFeatureListParameters.rdbeRestrictions, false);
+    param.setParameter(FormulaPredictionFeatureListParameters.isotopeFilter, false);
+    param.setParameter(FormulaPredictionFeatureListParameters.msmsFilter, false);
+    return param;
+  }
+
+  private static List<String> toStrings(List<ResultFormula> formulas) {
+    return formulas == null ? null
+        : formulas.stream().map(ResultFormula::getFormulaAsString).toList();
+  }
+
+  @Test
+  void parallelPredictionEqualsSingleThreaded() {
+    final ModularFeatureList flist = createRows();
+    final List<FeatureListRow> rows = List.copyOf(flist.getRows());
+    final FormulaPredictionFeatureListTask task = new FormulaPredictionFeatureListTask(flist,
+        createParameters(), Instant.now());
+
+    final List<List<String>> singleThreaded = task.predictFormulas(rows, 1).stream()
+        .map(FormulaPredictionFeatureListTaskTest::toStrings).toList();
+    assertEquals(rows.size(), singleThreaded.size());
+    assertTrue(singleThreaded.stream().allMatch(formulas -> formulas != null));
+    assertTrue(singleThreaded.stream().anyMatch(formulas -> formulas.size() > MAX_BEST_FORMULAS));
+
+    for (int numThreads : new int[]{2, 4, 64}) {
+      final List<List<String>> parallel = task.predictFormulas(rows, numThreads).stream()
+          .map(FormulaPredictionFeatureListTaskTest::toStrings).toList();
+      assertEquals(singleThreaded, parallel, "threads " + numThreads);
+    }
+
+    // the task sets the top results of each row
+    task.run();
+    assertEquals(TaskStatus.FINISHED, task.getStatus(), task::getErrorMessage);
+    for (int i = 0; i < rows.size(); i++) {
+      final List<String> expected = singleThreaded.get(i);
+      if (expected.isEmpty()) {
+        continue;
+      }
+      assertEquals(expected.subList(0, Math.min(expected.size() - 1, MAX_BEST_FORMULAS)),
+          toStrings(rows.get(i).getFormulas()), "row " + i);
+    }
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_localcsvsearch;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.compoundannotations.CompoundDBAnnotation;
+import io.github.mzmine.datamodel.features.compoundannotations.SimpleCompoundDBAnnotation;
+import io.github.mzmine.datamodel.features.types.annotations.CompoundNameType;
+import io.github.mzmine.datamodel.features.types.numbers.CCSType;
+import io.github.mzmine.datamodel.features.types.numbers.NeutralMassType;
+import io.github.mzmine.datamodel.features.types.numbers.PrecursorMZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.datamodel.identities.iontype.IonModification;
+import io.github.mzmine.datamodel.identities.iontype.IonType;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance.Unit;
+import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.MobilityTolerance;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CompoundDBIndexTest {
+
+  private static final MZTolerance MZ_TOL = new MZTolerance(0.005, 5);
+
+  @Test
+  void testRandomCompounds() {
+    final Random rand = new Random(42);
+    final List<CompoundDBAnnotation> compounds = new ArrayList<>();
+    for (int i = 0; i < 400; i++) {
+      // few distinct m/z values result in equal m/z of different compounds
+      final Double mz = i % 10 == 0 ? null : 100 + rand.nextInt(500) * 0.002;
+      final Float rt = rand.nextBoolean() ? 1 + rand.nextFloat() * 9 : null;
+      final Float ccs = rand.nextBoolean() ? 200 + rand.nextFloat() * 20 : null;
+      compounds.add(compound("c" + i, mz, rt, ccs, null));
+    }
+
+    final List<FeatureListRow> rows = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      rows.add(row(100 + rand.nextDouble(), i % 20 == 0 ? null : 1 + rand.nextFloat() * 9,
+          i % 3 == 0 ? null : 200 + rand.nextFloat() * 20));
+    }
+
+    final CompoundDBIndex index = new CompoundDBIndex(compounds, null);
+    Assertions.assertEquals(compounds.size(), index.size());
+    assertSameMatches(compounds, index, rows, MZ_TOL, null, null, null);
+    assertSameMatches(compounds, index, rows, MZ_TOL, new RTTolerance(0.5f, Unit.MINUTES), null,
+        0.02d);
+    assertSameMatches(compounds, index, rows, MZ_TOL, new RTTolerance(10f, Unit.PERCENT),
+        new MobilityTolerance(0.01f), 0.01d);
+    // without m/z tolerance, all compounds are candidates
+    assertSameMatches(compounds, index, rows, null, new RTTolerance(0.2f, Unit.MINUTES), null,
+        null);
+  }
+
+  @Test
+  void testToleranceEdges() {
+    final double rowMz = 300d;
+    final double lower = MZ_TOL.getToleranceRange(rowMz).lowerEndpoint();
+    final double upper = MZ_TOL.getToleranceRange(rowMz).upperEndpoint();
+    final List<CompoundDBAnnotation> compounds = List.of(
+        compound("above", Math.nextUp(upper), null, null, null),
+        compound("upper", upper, null, null, null),
+        compound("no m/z", null, 5f, null, null),
+        compound("lower", lower, null, null, null),
+        compound("below", Math.nextDown(lower), null, null, null),
+        compound("same", rowMz, 5f, null, null), compound("same rt", rowMz, 5.2f, null, null),
+        compound("other rt", rowMz, 8f, null, null));
+    final List<FeatureListRow> rows = List.of(row(rowMz, 5f, null), row(lower, null, null),
+        row(upper, 5.1f, null));
+
+    final CompoundDBIndex index = new CompoundDBIndex(compounds, null);
+    assertSameMatches(compounds, index, rows, MZ_TOL, null, null, null);
+    assertSameMatches(compounds, index, rows, MZ_TOL, new RTTolerance(0.25f, Unit.MINUTES), null,
+        null);
+
+    // compounds on the tolerance edges have a score of 0 and are no match
+    final List<String> names = index.findMatches(rows.get(0), MZ_TOL,
+            new RTTolerance(0.25f, Unit.MINUTES), null, null).stream()
+        .map(CompoundDBAnnotation::getCompoundName).toList();
+    Assertions.assertEquals(List.of("no m/z", "same", "same rt"), names);
+  }
+
+  @Test
+  void testIonLibrary() {
+    final Random rand = new Random(7);
+    final List<IonType> adducts = List.of(new IonType(IonModification.H),
+        new IonType(IonModification.NA), new IonType(IonModification.NH4),
+        new IonType(2, IonModification.H));
+    final List<CompoundDBAnnotation> compounds = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      compounds.add(compound("c" + i, null, rand.nextBoolean() ? 1 + rand.nextFloat() * 9 : null,
+          null, 150 + rand.nextInt(300) * 0.01));
+    }
+    final List<FeatureListRow> rows = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      final CompoundDBAnnotation c = compounds.get(rand.nextInt(compounds.size()));
+      final IonType adduct = adducts.get(rand.nextInt(adducts.size()));
+      rows.add(row(adduct.getMZ(c.get(NeutralMassType.class)) + rand.nextGaussian() * 0.003,
+          1 + rand.nextFloat() * 9, null));
+    }
+
+    // old behaviour: ionize every compound by every adduct
+    final List<CompoundDBAnnotation> ionized = new ArrayList<>();
+    for (CompoundDBAnnotation compound : compounds) {
+      for (IonType adduct : adducts) {
+        ionized.add(compound.ionize(adduct));
+      }
+    }
+
+    final CompoundDBIndex index = new CompoundDBIndex(compounds, adducts);
+    Assertions.assertEquals(ionized.size(), index.size());
+    assertSameMatches(ionized, index, rows, MZ_TOL, null, null, null);
+    assertSameMatches(ionized, index, rows, MZ_TOL, new RTTolerance(1f, Unit.MINUTES), null, null);
+  }
+
+  /**
+   * Compares the index to checking all compounds in database order, the search before the index
+   */
+  private static void assertSameMatches(List<CompoundDBAnnotation> compounds,
+      CompoundDBIndex index, List<FeatureListRow> rows, MZTolerance mzTol, RTTolerance rtTol,
+      MobilityTolerance mobTol, Double ccsTol) {
+    int totalMatches = 0;
+    for (FeatureListRow row : rows) {
+      final List<CompoundDBAnnotation> expected = new ArrayList<>();
+      for (CompoundDBAnnotation compound : compounds) {
+        final CompoundDBAnnotation match = compound.checkMatchAndCalculateDeviation(row, mzTol,
+            rtTol, mobTol, ccsTol);
+        if (match != null) {
+          expected.add(match);
+        }
+      }
+      Assertions.assertEquals(expected, index.findMatches(row, mzTol, rtTol, mobTol, ccsTol));
+      totalMatches += expected.size();
+    }
+    Assertions.assertTrue(totalMatches > 0);
+  }
+
+  private static CompoundDBAnnotation compound(String name, Double mz, Float rt, Float ccs,
+      Double neutralMass) {
+    final CompoundDBAnnotation a = new SimpleCompoundDBAnnotation();
+    a.put(CompoundNameType.class, name);
+    if (mz != null) {
+      a.put(PrecursorMZType.class, mz);
+    }
+    if (rt != null) {
+      a.put(RTType.class, rt);
+    }
+    if (ccs != null) {
+      a.put(CCSType.class, ccs);
+    }
+    if (neutralMass != null) {
+      a.put(NeutralMassType.class, neutralMass);
+    }
+    return a;
+  }
+
+  private static FeatureListRow row(Double mz, Float rt, Float ccs) {
+    final FeatureListRow row = mock(FeatureListRow.class);
+    when(row.getAverageMZ()).thenReturn(mz);
+    when(row.getAverageRT()).thenReturn(rt);
+    when(row.getAverageCCS()).thenReturn(ccs);
+    return row;
+  }
+}
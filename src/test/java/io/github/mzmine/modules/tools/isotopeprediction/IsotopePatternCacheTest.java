@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.tools.isotopeprediction;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import io.github.mzmine.datamodel.IsotopePattern;
+import io.github.mzmine.datamodel.IsotopePattern.IsotopePatternStatus;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.impl.SimpleIsotopePattern;
+import io.github.mzmine.modules.tools.isotopeprediction.IsotopePatternCache.Key;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IsotopePatternCacheTest {
+
+  private static final Supplier<SimpleIsotopePattern> NOT_CACHED = () -> fail(
+      "pattern was not cached");
+
+  @TempDir
+  File tempDir;
+
+  @Test
+  void testHitAndMissCount() {
+    final IsotopePatternCache cache = new IsotopePatternCache(10);
+    final AtomicInteger calculated = new AtomicInteger();
+    final Supplier<SimpleIsotopePattern> calculator = () -> {
+      calculated.incrementAndGet();
+      return createPattern("C6H12O6", false);
+    };
+
+    assertEquals(0d, cache.getHitRate());
+    cache.getOrCompute(key("C6H12O6", false), calculator);
+    cache.getOrCompute(key("C6H12O6", false), calculator);
+    cache.getOrCompute(key("C6H12O6", false), calculator);
+    // different parameters are a different pattern
+    cache.getOrCompute(key("C6H12O6", true), calculator);
+
+    assertEquals(2, calculated.get());
+    assertEquals(2, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(0.5d, cache.getHitRate());
+    assertEquals(2, cache.size());
+
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getHitCount());
+    assertEquals(0, cache.getMissCount());
+  }
+
+  @Test
+  void testLeastRecentlyUsedEviction() {
+    final IsotopePatternCache cache = new IsotopePatternCache(3);
+    for (String formula : new String[]{"CH4", "C2H6", "C3H8"}) {
+      cache.getOrCompute(key(formula, false), () -> createPattern(formula, false));
+    }
+    // CH4 is now used more recently than C2H6
+    cache.getOrCompute(key("CH4", false), NOT_CACHED);
+    cache.getOrCompute(key("C4H10", false), () -> createPattern("C4H10", false));
+
+    assertEquals(3, cache.size());
+    cache.getOrCompute(key("CH4", false), NOT_CACHED);
+    cache.getOrCompute(key("C3H8", false), NOT_CACHED);
+    cache.getOrCompute(key("C4H10", false), NOT_CACHED);
+
+    final AtomicInteger calculated = new AtomicInteger();
+    cache.getOrCompute(key("C2H6", false), () -> {
+      calculated.incrementAndGet();
+      return createPattern("C2H6", false);
+    });
+    assertEquals(1, calculated.get());
+  }
+
+  @Test
+  void testSaveAndLoad() throws IOException {
+    final IsotopePatternCache cache = new IsotopePatternCache(10);
+    final SimpleIsotopePattern withCompositions = createPattern("C6H12O6", true);
+    final SimpleIsotopePattern withoutCompositions = createPattern("C6H12O6", false);
+    cache.getOrCompute(key("C6H12O6", true), () -> withCompositions);
+    cache.getOrCompute(key("C6H12O6", false), () -> withoutCompositions);
+
+    final File file = new File(tempDir, "isotope_patterns.bin");
+    cache.saveToFile(file);
+
+    final IsotopePatternCache loaded = new IsotopePatternCache(10);
+    assertEquals(2, loaded.loadFromFile(file));
+    assertEquals(2, loaded.size());
+    assertSamePattern(withCompositions, loaded.getOrCompute(key("C6H12O6", true), NOT_CACHED));
+    assertSamePattern(withoutCompositions,
+        loaded.getOrCompute(key("C6H12O6", false), NOT_CACHED));
+    assertEquals(2, loaded.getHitCount());
+    assertEquals(0, loaded.getMissCount());
+  }
+
+  @Test
+  void testLoadKeepsLeastRecentlyUsedOrder() throws IOException {
+    final IsotopePatternCache cache = new IsotopePatternCache(3);
+    for (String formula : new String[]{"CH4", "C2H6", "C3H8"}) {
+      cache.getOrCompute(key(formula, false), () -> createPattern(formula, false));
+    }
+    cache.getOrCompute(key("CH4", false), NOT_CACHED);
+    final File file = new File(tempDir, "isotope_patterns.bin");
+    cache.saveToFile(file);
+
+    final IsotopePatternCache loaded = new IsotopePatternCache(3);
+    loaded.loadFromFile(file);
+    // C2H6 was the least recently used pattern
+    loaded.getOrCompute(key("C4H10", false), () -> createPattern("C4H10", false));
+    loaded.getOrCompute(key("CH4", false), NOT_CACHED);
+    loaded.getOrCompute(key("C3H8", false), NOT_CACHED);
+    assertEquals(3, loaded.size());
+  }
+
+  @Test
+  void testCalculatorReturnsSamePatternOnHit() {
+    final IsotopePatternCache cache = IsotopePatternCache.getInstance();
+    for (boolean storeFormula : new boolean[]{false, true}) {
+      cache.clear();
+      final IsotopePattern miss = IsotopePatternCalculator.calculateIsotopePattern("C12H22O11Na",
+          0.001, 0.00005, 1, PolarityType.POSITIVE, storeFormula);
+      final IsotopePattern hit = IsotopePatternCalculator.calculateIsotopePattern("C12H22O11Na",
+          0.001, 0.00005, 1, PolarityType.POSITIVE, storeFormula);
+      assertEquals(1, cache.getMissCount());
+      assertEquals(1, cache.getHitCount());
+
+      assertSamePattern((SimpleIsotopePattern) miss, hit);
+      if (!storeFormula) {
+        assertNull(((SimpleIsotopePattern) hit).getIsotopeCompositions());
+      } else {
+        assertEquals(hit.getNumberOfDataPoints(),
+            ((SimpleIsotopePattern) hit).getIsotopeCompositions().length);
+      }
+    }
+    cache.clear();
+  }
+
+  private static void assertSamePattern(SimpleIsotopePattern expected, IsotopePattern actual) {
+    final int n = expected.getNumberOfDataPoints();
+    assertEquals(n, actual.getNumberOfDataPoints());
+    assertArrayEquals(expected.getMzValues(new double[n]), actual.getMzValues(new double[n]));
+    assertArrayEquals(expected.getIntensityValues(new double[n]),
+        actual.getIntensityValues(new double[n]));
+    assertEquals(expected.getCharge(), actual.getCharge());
+    assertSame(expected.getStatus(), actual.getStatus());
+    assertEquals(expected.getDescription(), actual.getDescription());
+    assertArrayEquals(expected.getIsotopeCompositions(),
+        ((SimpleIsotopePattern) actual).getIsotopeCompositions());
+  }
+
+  private static Key key(String formula, boolean storeFormula) {
+    return new Key(formula, 0.001, 0.00005, 1, PolarityType.POSITIVE, storeFormula);
+  }
+
+  /**
+   * A made up pattern, the cache does not check the isotopes
+   */
+  private static SimpleIsotopePattern createPattern(String formula, boolean storeFormula) {
+    final double mz = 100d + formula.length();
+    return new SimpleIsotopePattern(new double[]{mz, mz + 1.00335, mz + 2.0067},
+        new double[]{1d, 0.2d, 0.02d}, 1, IsotopePatternStatus.PREDICTED, formula,
+        storeFormula ? new String[]{"[12]C", "[13]C", "[13]C2"} : null);
+  }
+}
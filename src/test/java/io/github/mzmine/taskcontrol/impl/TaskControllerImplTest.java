@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.taskcontrol.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.Task;
+import io.github.mzmine.taskcontrol.TaskController.AdditionalPermits;
+import io.github.mzmine.taskcontrol.TaskController.BlockingWait;
+import io.github.mzmine.taskcontrol.TaskPriority;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Scheduling of the task controller: permits, priority order and blocking waits. Each test uses
+ * its own controller with a fixed number of permits.
+ */
+class TaskControllerImplTest {
+
+  private static final long TIMEOUT_SECONDS = 10;
+
+  private TaskControllerImpl controller;
+
+  @AfterEach
+  void tearDown() {
+    if (controller != null) {
+      controller.shutdown();
+    }
+  }
+
+  @Test
+  void runningTasksAreLimitedByPermits() throws InterruptedException {
+    controller = new TaskControllerImpl(() -> 2);
+    final CountDownLatch release = new CountDownLatch(1);
+    final ConcurrencyCounter counter = new ConcurrencyCounter();
+    final List<TestTask> tasks = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      tasks.add(new TestTask("normal " + i, () -> counter.run(() -> await(release))));
+    }
+    controller.addTasks(tasks.toArray(Task[]::new));
+    assertTrue(await(tasks.get(0).started));
+    assertTrue(await(tasks.get(1).started));
+    // no third task may start while two tasks hold both permits
+    Thread.sleep(200);
+    assertEquals(2, counter.getRunning());
+
+    // HIGH priority tasks may use two extra permits
+    final List<TestTask> highTasks = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      final TestTask task = new TestTask("high " + i, () -> counter.run(() -> await(release)));
+      highTasks.add(task);
+      controller.addTask(task, TaskPriority.HIGH);
+    }
+    assertTrue(await(highTasks.get(0).started));
+    assertTrue(await(highTasks.get(1).started));
+    Thread.sleep(200);
+    assertEquals(4, counter.getRunning());
+
+    release.countDown();
+    tasks.addAll(highTasks);
+    for (TestTask task : tasks) {
+      assertTrue(await(task.finished), () -> task.getTaskDescription() + " did not finish");
+      assertEquals(TaskStatus.FINISHED, task.getStatus());
+    }
+    assertEquals(4, counter.getMaxRunning());
+  }
+
+  @Test
+  void highPriorityTasksStartFirst() {
+    controller = new TaskControllerImpl(() -> 1);
+    // occupy the permit and both extra permits of HIGH priority tasks
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<TestTask> tasks = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      final TestTask blocker = new TestTask("blocker " + i, () -> await(release));
+      tasks.add(blocker);
+      controller.addTask(blocker, TaskPriority.HIGH);
+      assertTrue(await(blocker.started));
+    }
+
+    final List<String> startOrder = Collections.synchronizedList(new ArrayList<>());
+    final TestTask normal1 = new TestTask("normal 1", () -> {});
+    final TestTask normal2 = new TestTask("normal 2", () -> {});
+    final TestTask raised = new TestTask("raised", () -> {});
+    final TestTask high1 = new TestTask("high 1", () -> {});
+    final TestTask high2 = new TestTask("high 2", () -> {});
+    for (TestTask task : List.of(normal1, normal2, raised, high1, high2)) {
+      task.startOrder = startOrder;
+      tasks.add(task);
+    }
+    controller.addTask(normal1, TaskPriority.NORMAL);
+    controller.addTask(normal2, TaskPriority.NORMAL);
+    controller.addTask(raised, TaskPriority.NORMAL);
+    controller.addTask(high1, TaskPriority.HIGH);
+    controller.addTask(high2, TaskPriority.HIGH);
+    controller.setTaskPriority(raised, TaskPriority.HIGH);
+    assertTrue(startOrder.isEmpty());
+
+    release.countDown();
+    for (TestTask task : tasks) {
+      assertTrue(await(task.finished), () -> task.getTaskDescription() + " did not finish");
+    }
+    // HIGH tasks may run concurrently on the extra permits, NORMAL tasks in submission order
+    assertEquals(Set.of("raised", "high 1", "high 2"), Set.copyOf(startOrder.subList(0, 3)));
+    assertEquals(List.of("normal 1", "normal 2"), startOrder.subList(3, 5));
+  }
+
+  @Test
+  void blockingWaitHandsBackAndReacquiresPermit() throws InterruptedException {
+    controller = new TaskControllerImpl(() -> 1);
+    final ConcurrencyCounter counter = new ConcurrencyCounter();
+    final CountDownLatch releaseOther = new CountDownLatch(1);
+    final TestTask child = new TestTask("child", () -> counter.run(() -> sleep(50)));
+    final TestTask other = new TestTask("other", () -> counter.run(() -> await(releaseOther)));
+    final AtomicBoolean subTasksRanInWait = new AtomicBoolean(false);
+    final AtomicBoolean resumed = new AtomicBoolean(false);
+    final TestTask parent = new TestTask("parent", () -> {
+      counter.run(() -> controller.addTasks(new Task[]{child, other}));
+      // the sub tasks can only run on the single permit if the parent hands it back
+      try (BlockingWait blockingWait = controller.startBlockingWait()) {
+        subTasksRanInWait.set(await(child.finished) && await(other.started));
+      }
+      // closing the wait blocks while the other task holds the permit
+      counter.run(() -> resumed.set(true));
+    });
+
+    controller.addTask(parent, TaskPriority.NORMAL);
+    assertTrue(await(other.started));
+    Thread.sleep(200);
+    assertFalse(resumed.get());
+    releaseOther.countDown();
+
+    for (TestTask task : List.of(parent, child, other)) {
+      assertTrue(await(task.finished), () -> task.getTaskDescription() + " did not finish");
+      assertEquals(TaskStatus.FINISHED, task.getStatus());
+    }
+    assertTrue(subTasksRanInWait.get());
+    assertTrue(resumed.get());
+    assertEquals(1, counter.getMaxRunning());
+  }
+
+  @Test
+  void blockingWaitOutsideOfTasksHasNoEffect() {
+    controller = new TaskControllerImpl(() -> 1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final TestTask blocker = new TestTask("blocker", () -> await(release));
+    final TestTask waiting = new TestTask("waiting", () -> {});
+    controller.addTask(blocker, TaskPriority.NORMAL);
+    assertTrue(await(blocker.started));
+
+    try (BlockingWait blockingWait = controller.startBlockingWait()) {
+      controller.addTask(waiting, TaskPriority.NORMAL);
+      sleep(200);
+      assertEquals(1, waiting.started.getCount());
+    }
+
+    release.countDown();
+    assertTrue(await(blocker.finished));
+    assertTrue(await(waiting.finished));
+  }
+
+  @Test
+  void additionalPermitsAreTakenFromFreePermits() throws InterruptedException {
+    controller = new TaskControllerImpl(() -> 4);
+    final CountDownLatch releaseBlocker = new CountDownLatch(1);
+    final TestTask blocker = new TestTask("blocker", () -> await(releaseBlocker));
+    controller.addTask(blocker, TaskPriority.NORMAL);
+    assertTrue(await(blocker.started));
+
+    final CountDownLatch acquired = new CountDownLatch(1);
+    final CountDownLatch releaseWorkers = new CountDownLatch(1);
+    final AtomicInteger numAdditional = new AtomicInteger(-1);
+    final TestTask withWorkers = new TestTask("with workers", () -> {
+      try (AdditionalPermits permits = controller.acquireAdditionalPermits(10)) {
+        numAdditional.set(permits.count());
+        acquired.countDown();
+        await(releaseWorkers);
+      }
+    });
+    controller.addTask(withWorkers, TaskPriority.NORMAL);
+    assertTrue(await(acquired));
+    // the blocker and the task itself hold the other permits
+    assertEquals(2, numAdditional.get());
+
+    // no permit is free until the additional permits are handed back
+    final TestTask waiting = new TestTask("waiting", () -> {});
+    controller.addTask(waiting, TaskPriority.NORMAL);
+    Thread.sleep(200);
+    assertEquals(1, waiting.started.getCount());
+    releaseWorkers.countDown();
+    assertTrue(await(waiting.finished));
+
+    // only tasks get additional permits
+    try (AdditionalPermits permits = controller.acquireAdditionalPermits(10)) {
+      assertEquals(0, permits.count());
+    }
+    releaseBlocker.countDown();
+    assertTrue(await(blocker.finished));
+    assertTrue(await(withWorkers.finished));
+  }
+
+  private static boolean await(CountDownLatch latch) {
+    try {
+      return latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Tracks the number of concurrently running sections
+   */
+  private static class ConcurrencyCounter {
+
+    private final AtomicInteger running = new AtomicInteger(0);
+    private final AtomicInteger maxRunning = new AtomicInteger(0);
+
+    private void run(Runnable section) {
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      try {
+        section.run();
+      } finally {
+        running.decrementAndGet();
+      }
+    }
+
+    private int getRunning() {
+      return running.get();
+    }
+
+    private int getMaxRunning() {
+      return maxRunning.get();
+    }
+  }
+
+  private static class TestTask extends AbstractTask {
+
+    private final String description;
+    private final Runnable work;
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private List<String> startOrder;
+
+    private TestTask(String description, Runnable work) {
+      super(null, Instant.now());
+      this.description = description;
+      this.work = work;
+    }
+
+    @Override
+    public String getTaskDescription() {
+      return description;
+    }
+
+    @Override
+    public double getFinishedPercentage() {
+      return isFinished() ? 1d : 0d;
+    }
+
+    @Override
+    public void run() {
+      setStatus(TaskStatus.PROCESSING);
+      if (startOrder != null) {
+        startOrder.add(description);
+      }
+      started.countDown();
+      try {
+        work.run();
+        setStatus(TaskStatus.FINISHED);
+      } finally {
+        finished.countDown();
+      }
+    }
+  }
+}
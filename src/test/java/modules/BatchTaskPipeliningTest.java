@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package modules;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.MZmineProcessingModule;
+import io.github.mzmine.modules.batchmode.BatchModeParameters;
+import io.github.mzmine.modules.batchmode.BatchQueue;
+import io.github.mzmine.modules.batchmode.BatchTask;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ADAPChromatogramBuilderParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ModularADAPChromatogramBuilderModule;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetectorParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_smoothing.SmoothingModule;
+import io.github.mzmine.modules.dataprocessing.featdet_smoothing.SmoothingParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_smoothing.savitzkygolay.SavitzkyGolayParameters;
+import io.github.mzmine.modules.impl.MZmineProcessingStepImpl;
+import io.github.mzmine.modules.io.import_rawdata_all.AdvancedSpectraImportParameters;
+import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportModule;
+import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportParameters;
+import io.github.mzmine.modules.io.import_spectral_library.SpectralLibraryImportParameters;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.OriginalFeatureListHandlingParameter.OriginalFeatureListOption;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelection;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelectionType;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelection;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelectionType;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs a batch of per-file steps with per-file pipelining on two files. The second file name starts
+ * with the full path of the first file, so a prefix match would assign both files to the first
+ * pipeline.
+ */
+class BatchTaskPipeliningTest {
+
+  private static final String SAMPLE_1 = "sample.mzML";
+  private static final String SAMPLE_2 = "sample.mzML.mzML";
+
+  @TempDir
+  File dir;
+  private File[] files;
+  private MZmineProject project;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    final File source = new File(BatchTaskPipeliningTest.class.getClassLoader()
+        .getResource("rawdatafiles/DOM_a.mzML").getFile());
+    files = new File[]{new File(dir, SAMPLE_1), new File(dir, SAMPLE_2)};
+    for (File file : files) {
+      Files.copy(source.toPath(), file.toPath());
+    }
+    project = new MZmineProjectImpl();
+    MZmineCore.getProjectManager().setCurrentProject(project);
+  }
+
+  @AfterEach
+  void tearDown() {
+    MZmineCore.getProjectManager().setCurrentProject(new MZmineProjectImpl());
+  }
+
+  private ParameterSet createImportParameters() {
+    final ParameterSet param = new AllSpectralDataImportParameters().cloneParameterSet();
+    param.setParameter(AllSpectralDataImportParameters.fileNames, files);
+    param.setParameter(SpectralLibraryImportParameters.dataBaseFiles, new File[0]);
+    param.setParameter(AllSpectralDataImportParameters.advancedImport, true);
+    final AdvancedSpectraImportParameters advanced = param.getParameter(
+        AllSpectralDataImportParameters.advancedImport).getEmbeddedParameters();
+    advanced.setParameter(AdvancedSpectraImportParameters.msMassDetection, true);
+    advanced.setParameter(AdvancedSpectraImportParameters.ms2MassDetection, false);
+    final ParameterSet detectorParam = new CentroidMassDetectorParameters().cloneParameterSet();
+    detectorParam.setParameter(CentroidMassDetectorParameters.noiseLevel, 1E5);
+    detectorParam.setParameter(CentroidMassDetectorParameters.detectIsotopes, false);
+    advanced.getParameter(AdvancedSpectraImportParameters.msMassDetection).getEmbeddedParameter()
+        .setValue(new MZmineProcessingStepImpl<>(
+            MZmineCore.getModuleInstance(CentroidMassDetector.class), detectorParam));
+    return param;
+  }
+
+  private ParameterSet createChromatogramParameters(RawDataFilesSelection selection) {
+    final ParameterSet param = new ADAPChromatogramBuilderParameters().cloneParameterSet();
+    param.getParameter(ADAPChromatogramBuilderParameters.dataFiles).setValue(selection);
+    param.setParameter(ADAPChromatogramBuilderParameters.scanSelection, new ScanSelection(1));
+    param.setParameter(ADAPChromatogramBuilderParameters.minimumScanSpan, 4);
+    param.setParameter(ADAPChromatogramBuilderParameters.mzTolerance, new MZTolerance(0.002, 10));
+    param.setParameter(ADAPChromatogramBuilderParameters.minHighestPoint, 3E5);
+    param.setParameter(ADAPChromatogramBuilderParameters.minGroupIntensity, 1E5);
+    param.setParameter(ADAPChromatogramBuilderParameters.suffix, "chrom");
+    return param;
+  }
+
+  private ParameterSet createSmoothingParameters() {
+    final ParameterSet sgParam = new SavitzkyGolayParameters().cloneParameterSet();
+    sgParam.setParameter(SavitzkyGolayParameters.mobilitySmoothing, false);
+    sgParam.getParameter(SavitzkyGolayParameters.rtSmoothing).setValue(true);
+    sgParam.getParameter(SavitzkyGolayParameters.rtSmoothing).getEmbeddedParameter().setValue(5);
+
+    final ParameterSet param = new SmoothingParameters().cloneParameterSet();
+    param.getParameter(SmoothingParameters.featureLists)
+        .setValue(new FeatureListsSelection(FeatureListsSelectionType.BATCH_LAST_FEATURELISTS));
+    param.setParameter(SmoothingParameters.handleOriginal, OriginalFeatureListOption.KEEP);
+    param.setParameter(SmoothingParameters.smoothingAlgorithm,
+        new MZmineProcessingStepImpl<>(SmoothingParameters.sgSmoothing, sgParam));
+    param.setParameter(SmoothingParameters.suffix, "smooth");
+    return param;
+  }
+
+  private void runBatch(ParameterSet... steps) {
+    final BatchQueue queue = new BatchQueue();
+    for (ParameterSet step : steps) {
+      final Class<? extends MZmineProcessingModule> module = switch (step) {
+        case AllSpectralDataImportParameters ignored -> AllSpectralDataImportModule.class;
+        case ADAPChromatogramBuilderParameters ignored ->
+            ModularADAPChromatogramBuilderModule.class;
+        case SmoothingParameters ignored -> SmoothingModule.class;
+        default -> throw new IllegalArgumentException("No module for " + step);
+      };
+      queue.add(new MZmineProcessingStepImpl<>(MZmineCore.getModuleInstance(module), step));
+    }
+
+    final ParameterSet batchParam = new BatchModeParameters().cloneParameterSet();
+    batchParam.setParameter(BatchModeParameters.batchQueue, queue);
+    batchParam.setParameter(BatchModeParameters.perFilePipelining, true);
+    batchParam.setParameter(BatchModeParameters.advanced, false);
+
+    final BatchTask task = new BatchTask(project, batchParam, Instant.now(), null);
+    task.run();
+    assertEquals(TaskStatus.FINISHED, task.getStatus(), task::getErrorMessage);
+  }
+
+  private RawDataFile getRaw(String name) {
+    final List<RawDataFile> raws = project.getCurrentRawDataFiles().stream()
+        .filter(raw -> raw.getName().equals(name)).toList();
+    assertEquals(1, raws.size(), () -> "Expected exactly one raw data file " + name);
+    return raws.get(0);
+  }
+
+  private FeatureList getFeatureList(String name) {
+    final FeatureList flist = project.getFeatureList(name);
+    assertNotNull(flist, () -> "Missing feature list " + name);
+    return flist;
+  }
+
+  @Test
+  void eachPipelineProcessesItsOwnFile() {
+    runBatch(createImportParameters(),
+        createChromatogramParameters(new RawDataFilesSelection(
+            RawDataFilesSelectionType.BATCH_LAST_FILES)), createSmoothingParameters());
+
+    assertEquals(2, project.getCurrentRawDataFiles().size());
+    // one chromatogram list and one smoothed list per file
+    assertEquals(4, project.getCurrentFeatureLists().size());
+
+    for (String sample : List.of(SAMPLE_1, SAMPLE_2)) {
+      final RawDataFile raw = getRaw(sample);
+      final FeatureList chrom = getFeatureList(sample + " chrom");
+      final FeatureList smooth = getFeatureList(sample + " chrom smooth");
+      assertEquals(List.of(raw), chrom.getRawDataFiles());
+      assertEquals(List.of(raw), smooth.getRawDataFiles());
+      assertEquals(chrom.getNumberOfRows(), smooth.getNumberOfRows());
+    }
+  }
+
+  @Test
+  void explicitSelectionIsNotReplacedByPipeline() {
+    final RawDataFilesSelection onlySecond = new RawDataFilesSelection(
+        RawDataFilesSelectionType.NAME_PATTERN);
+    onlySecond.setNamePattern(SAMPLE_2);
+    runBatch(createImportParameters(), createChromatogramParameters(onlySecond));
+
+    assertEquals(2, project.getCurrentRawDataFiles().size());
+    assertEquals(1, project.getCurrentFeatureLists().size());
+    final FeatureList chrom = getFeatureList(SAMPLE_2 + " chrom");
+    assertEquals(List.of(getRaw(SAMPLE_2)), chrom.getRawDataFiles());
+  }
+}
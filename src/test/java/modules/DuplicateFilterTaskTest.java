@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package modules;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import benchmark.LegacyDuplicateFilter;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.DetectionType;
+import io.github.mzmine.datamodel.features.types.RawFileType;
+import io.github.mzmine.datamodel.features.types.numbers.AreaType;
+import io.github.mzmine.datamodel.features.types.numbers.HeightType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.modules.dataprocessing.filter_duplicatefilter.DuplicateFilterParameters;
+import io.github.mzmine.modules.dataprocessing.filter_duplicatefilter.DuplicateFilterParameters.FilterMode;
+import io.github.mzmine.modules.dataprocessing.filter_duplicatefilter.DuplicateFilterTask;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.OriginalFeatureListHandlingParameter.OriginalFeatureListOption;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance.Unit;
+import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.MobilityTolerance;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Compares the parallel duplicate filter with the previous sequential filter
+ * ({@link LegacyDuplicateFilter}) on rows with chained duplicates: row 1 matches row 2, row 2
+ * matches row 3, but row 1 does not match row 3.
+ */
+public class DuplicateFilterTaskTest {
+
+  private static final MZTolerance MZ_TOL = new MZTolerance(0.003, 0);
+  private static final RTTolerance RT_TOL = new RTTolerance(0.1f, Unit.MINUTES);
+
+  private static ModularFeatureList createChainedDuplicates(long seed) {
+    final Random rand = new Random(seed);
+    final List<RawDataFile> raws = IntStream.range(0, 3).mapToObj(i -> mock(RawDataFile.class))
+        .toList();
+    final ModularFeatureList flist = new ModularFeatureList("duplicates", null, raws);
+
+    int id = 1;
+    for (int cluster = 0; cluster < 150; cluster++) {
+      final double clusterMz = 200 + cluster * 0.05;
+      final float clusterRt = 1 + cluster * 0.07f;
+      // chain of 1-5 rows, neighbours are within the tolerances
+      final int chainLength = 1 + rand.nextInt(5);
+      for (int i = 0; i < chainLength; i++) {
+        final double mz = clusterMz + i * 0.7 * 0.003;
+        final float rt = clusterRt + i * (rand.nextBoolean() ? 0.06f : 0.01f);
+        ModularFeatureListRow row = null;
+        for (RawDataFile raw : raws) {
+          // at least one feature per row
+          if (row != null && rand.nextInt(3) == 0) {
+            continue;
+          }
+          final ModularFeature f = new ModularFeature(flist);
+          f.set(RawFileType.class, raw);
+          f.set(MZType.class, mz + (rand.nextDouble() - 0.5) * 0.0004);
+          f.set(RTType.class, rt + (rand.nextFloat() - 0.5f) * 0.004f);
+          final float height = 1E4f + rand.nextInt(100) * 1E3f;
+          f.set(HeightType.class, height);
+          f.set(AreaType.class, height * 3);
+          f.set(DetectionType.class,
+              rand.nextInt(3) == 0 ? FeatureStatus.ESTIMATED : FeatureStatus.DETECTED);
+          if (row == null) {
+            row = new ModularFeatureListRow(flist, id++, f);
+          } else {
+            row.addFeature(raw, f);
+          }
+        }
+        flist.addRow(row);
+      }
+    }
+    flist.applyRowBindings();
+    return flist;
+  }
+
+  private static ParameterSet createParameters(FilterMode mode, boolean requireSameId) {
+    final ParameterSet param = new DuplicateFilterParameters().cloneParameterSet();
+    param.setParameter(DuplicateFilterParameters.suffix, "dup");
+    param.setParameter(DuplicateFilterParameters.filterMode, mode);
+    param.setParameter(DuplicateFilterParameters.mzDifferenceMax, MZ_TOL);
+    param.setParameter(DuplicateFilterParameters.rtDifferenceMax, RT_TOL);
+    param.setParameter(DuplicateFilterParameters.mobilityDifferenceMax, false);
+    param.setParameter(DuplicateFilterParameters.requireSameIdentification, requireSameId);
+    param.setParameter(DuplicateFilterParameters.handleOriginal, OriginalFeatureListOption.KEEP);
+    return param;
+  }
+
+  private static String describeRow(FeatureListRow row, List<RawDataFile> raws) {
+    return row.getID() + ": " + row.getFeatures().stream()
+        .sorted((a, b) -> Integer.compare(raws.indexOf(a.getRawDataFile()),
+            raws.indexOf(b.getRawDataFile())))
+        .map(f -> describeFeature(f, raws)).collect(Collectors.joining("; "));
+  }
+
+  private static String describeFeature(Feature f, List<RawDataFile> raws) {
+    return "%d %s mz=%s rt=%s height=%s".formatted(raws.indexOf(f.getRawDataFile()),
+        f.getFeatureStatus(), f.getMZ(), f.getRT(), f.getHeight());
+  }
+
+  @Test
+  void sameResultAsSequentialFilter() {
+    for (FilterMode mode : FilterMode.values()) {
+      for (boolean requireSameId : new boolean[]{false, true}) {
+        compareWithSequentialFilter(mode, requireSameId);
+      }
+    }
+  }
+
+  private void compareWithSequentialFilter(FilterMode mode, boolean requireSameId) {
+    final ModularFeatureList flist = createChainedDuplicates(42);
+    final List<RawDataFile> raws = flist.getRawDataFiles();
+
+    final ModularFeatureList legacy = flist.createCopy("legacy", null, false);
+    final int legacyRemoved = LegacyDuplicateFilter.filter(legacy, mode, MZ_TOL, RT_TOL,
+        new MobilityTolerance(Float.MAX_VALUE), requireSameId);
+
+    final MZmineProject project = mock(MZmineProject.class);
+    final DuplicateFilterTask task = new DuplicateFilterTask(project, flist,
+        createParameters(mode, requireSameId), null, Instant.now());
+    task.run();
+    assertEquals(TaskStatus.FINISHED, task.getStatus(), task::getErrorMessage);
+    final ArgumentCaptor<FeatureList> captor = ArgumentCaptor.forClass(FeatureList.class);
+    verify(project).addFeatureList(captor.capture());
+    final FeatureList filtered = captor.getValue();
+
+    // chained duplicates were removed
+    assertTrue(legacyRemoved > 0);
+    assertEquals(legacy.getNumberOfRows(), filtered.getNumberOfRows(), mode::toString);
+
+    // same surviving rows in the same order with the same merged features
+    assertEquals(legacy.getRows().stream().map(FeatureListRow::getID).toList(),
+        filtered.getRows().stream().map(FeatureListRow::getID).toList(), mode::toString);
+    for (int i = 0; i < legacy.getNumberOfRows(); i++) {
+      assertEquals(describeRow(legacy.getRow(i), raws), describeRow(filtered.getRow(i), raws),
+          mode::toString);
+    }
+  }
+}
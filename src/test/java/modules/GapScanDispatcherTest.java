@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package modules;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.Gap;
+import io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.GapScanDispatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Each gap needs to process the same scans in the same order as with the previous loop that
+ * offered every scan to every gap.
+ */
+class GapScanDispatcherTest {
+
+  @Test
+  void sameScansAsOfferingAllScansToAllGaps() {
+    for (int seed = 0; seed < 10; seed++) {
+      final Random random = new Random(seed);
+      final List<Scan> scans = createScans(random, true);
+      final List<Range<Float>> ranges = createRanges(random, scans);
+      final Set<Scan> continuing = selectContinuingScans(random, scans);
+
+      assertSameProcessedScans(scans, ranges, continuing, "seed " + seed);
+    }
+  }
+
+  @Test
+  void unsortedScansAreOfferedToAllGaps() {
+    final Random random = new Random(42);
+    final List<Scan> scans = createScans(random, false);
+    final List<Range<Float>> ranges = createRanges(random, scans);
+
+    assertSameProcessedScans(scans, ranges, selectContinuingScans(random, scans), "unsorted");
+  }
+
+  private static void assertSameProcessedScans(List<Scan> scans, List<Range<Float>> ranges,
+      Set<Scan> continuing, String msg) {
+    // previous loop
+    final List<RecordingGap> expectedGaps = ranges.stream()
+        .map(range -> new RecordingGap(range, continuing)).toList();
+    for (Scan scan : scans) {
+      for (RecordingGap gap : expectedGaps) {
+        gap.offerNextScan(scan);
+      }
+    }
+
+    final List<RecordingGap> gaps = ranges.stream()
+        .map(range -> new RecordingGap(range, continuing)).toList();
+    final GapScanDispatcher<RecordingGap> dispatcher = new GapScanDispatcher<>(gaps, scans);
+    for (Scan scan : scans) {
+      dispatcher.forEachGapInRange(scan.getRetentionTime(), gap -> gap.offerNextScan(scan));
+    }
+
+    int processed = 0;
+    for (int i = 0; i < gaps.size(); i++) {
+      assertEquals(expectedGaps.get(i).processed, gaps.get(i).processed,
+          msg + ", gap " + i + " " + ranges.get(i));
+      processed += gaps.get(i).processed.size();
+    }
+    // make sure the test data actually resolves scans
+    assertTrue(processed > 0, msg);
+  }
+
+  /**
+   * Scans with increasing retention times, some share the same retention time.
+   */
+  private static List<Scan> createScans(Random random, boolean sorted) {
+    final List<Scan> scans = new ArrayList<>();
+    float rt = 0f;
+    for (int i = 0; i < 300; i++) {
+      if (random.nextInt(5) > 0) {
+        rt += 0.1f + random.nextFloat() * 0.2f;
+      }
+      final Scan scan = mock(Scan.class);
+      when(scan.getRetentionTime()).thenReturn(rt);
+      scans.add(scan);
+    }
+    if (!sorted) {
+      Collections.shuffle(scans, random);
+    }
+    return scans;
+  }
+
+  /**
+   * Overlapping closed and open ranges, some starting or ending exactly on a scan.
+   */
+  private static List<Range<Float>> createRanges(Random random, List<Scan> scans) {
+    final List<Range<Float>> ranges = new ArrayList<>();
+    for (int i = 0; i < 80; i++) {
+      final float lower = random.nextFloat() * 65f - 2f;
+      final float upper = lower + random.nextFloat() * 3f;
+      ranges.add(switch (random.nextInt(8)) {
+        case 0 -> Range.atLeast(lower);
+        case 1 -> Range.atMost(upper);
+        case 2 -> Range.closedOpen(lower, upper);
+        case 3 -> Range.singleton(lower);
+        default -> Range.closed(lower, upper);
+      });
+    }
+    ranges.add(Range.all());
+    for (int i = 0; i < 20; i++) {
+      final float lower = scans.get(random.nextInt(scans.size())).getRetentionTime();
+      final float upper = scans.get(random.nextInt(scans.size())).getRetentionTime();
+      ranges.add(Range.closed(Math.min(lower, upper), Math.max(lower, upper)));
+    }
+    ranges.add(Range.singleton(scans.get(0).getRetentionTime()));
+    ranges.add(Range.singleton(scans.get(scans.size() - 1).getRetentionTime()));
+    return ranges;
+  }
+
+  /**
+   * The scans that continue a started peak after the RT range of a gap
+   */
+  private static Set<Scan> selectContinuingScans(Random random, List<Scan> scans) {
+    final Set<Scan> continuing = new HashSet<>();
+    for (Scan scan : scans) {
+      if (random.nextInt(3) > 0) {
+        continuing.add(scan);
+      }
+    }
+    return continuing;
+  }
+
+  /**
+   * Records the scans that are processed. Like ImsGap, a peak started within the RT range is
+   * continued after the range, here as long as the scans are in the continuing set.
+   */
+  private static class RecordingGap extends Gap {
+
+    private final List<Scan> processed = new ArrayList<>();
+    private final Set<Scan> continuing;
+    private boolean peakStarted = false;
+
+    private RecordingGap(Range<Float> rtRange, Set<Scan> continuing) {
+      super(null, null, Range.all(), rtRange, 0.1, false);
+      this.continuing = continuing;
+    }
+
+    @Override
+    public void offerNextScan(Scan scan) {
+      final float rt = scan.getRetentionTime();
+      final boolean afterRange = rtRange.hasUpperBound() && rt > rtRange.upperEndpoint();
+      if (rtRange.contains(rt) || (afterRange && peakStarted)) {
+        processed.add(scan);
+        peakStarted = continuing.contains(scan);
+      }
+    }
+
+    @Override
+    public boolean isFinished(float rt) {
+      return super.isFinished(rt) && !peakStarted;
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package modules;
+
+import benchmark.ADAPChromatogramBuilderBenchmark.SyntheticScans;
+import benchmark.LegacyADAPChromatogramBuilder;
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ADAPChromatogram;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.PrimitiveChromatogramBuilder;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class PrimitiveChromatogramBuilderTest {
+
+  @Test
+  void sameChromatogramsAsRangeMapBuilder() {
+    final MZTolerance tol = new MZTolerance(0.002, 10);
+    final double minHighest = 1E4;
+    final SyntheticScans data = SyntheticScans.create(200, 300, 7);
+    final Scan[] scans = data.scans();
+
+    final List<ADAPChromatogram> expected = LegacyADAPChromatogramBuilder.buildChromatograms(scans,
+        data.mzs(), data.intensities(), tol, minHighest);
+
+    final PrimitiveChromatogramBuilder builder = new PrimitiveChromatogramBuilder(tol, minHighest,
+        0);
+    for (int s = 0; s < scans.length; s++) {
+      for (int i = 0; i < data.mzs()[s].length; i++) {
+        builder.addDataPoint(data.mzs()[s][i], data.intensities()[s][i], s);
+      }
+    }
+    Assertions.assertTrue(builder.buildChromatograms(() -> false));
+    Assertions.assertEquals(expected.size(), builder.getNumberOfChromatograms());
+
+    for (int c = 0; c < expected.size(); c++) {
+      final ADAPChromatogram legacy = expected.get(c);
+      final ADAPChromatogram chrom = builder.toADAPChromatogram(c, scans);
+      Assertions.assertEquals(new ArrayList<>(legacy.getScanNumbers()),
+          new ArrayList<>(chrom.getScanNumbers()));
+
+      final List<DataPoint> expectedDps = new ArrayList<>(legacy.getDataPoints());
+      final List<DataPoint> dps = new ArrayList<>(chrom.getDataPoints());
+      for (int i = 0; i < dps.size(); i++) {
+        Assertions.assertEquals(expectedDps.get(i).getMZ(), dps.get(i).getMZ());
+        Assertions.assertEquals(expectedDps.get(i).getIntensity(), dps.get(i).getIntensity());
+      }
+
+      for (int minSpan : new int[]{1, 3, 5}) {
+        Assertions.assertEquals(
+            legacy.matchesMinContinuousDataPoints(scans, 1E3, minSpan, minHighest),
+            builder.matchesMinContinuousDataPoints(c, 1E3, minSpan, minHighest));
+      }
+    }
+  }
+
+  @Test
+  void skipsNaNAndLowIntensities() {
+    final PrimitiveChromatogramBuilder builder = new PrimitiveChromatogramBuilder(
+        new MZTolerance(0.01, 0), 100, 0);
+    builder.addDataPoint(Double.NaN, 1000, 0);
+    builder.addDataPoint(200, 50, 0);
+    builder.addDataPoint(300, 1000, 0);
+    builder.addDataPoint(300.005, 500, 1);
+    builder.addDataPoint(300.001, 400, 1);
+    Assertions.assertEquals(4, builder.getNumberOfDataPoints());
+    Assertions.assertTrue(builder.buildChromatograms(() -> false));
+    Assertions.assertEquals(1, builder.getNumberOfChromatograms());
+    // only the highest data point per scan
+    Assertions.assertTrue(builder.matchesMinContinuousDataPoints(0, 0, 2, 1000));
+    Assertions.assertFalse(builder.matchesMinContinuousDataPoints(0, 450, 2, 1000));
+  }
+}
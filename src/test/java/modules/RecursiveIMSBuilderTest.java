@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package modules;
+
+import benchmark.LegacyRecursiveIMSBuilder;
+import benchmark.LegacyRecursiveIMSBuilder.Mobilogram;
+import benchmark.LegacyRecursiveIMSBuilder.SyntheticFrames;
+import io.github.mzmine.modules.dataprocessing.featdet_recursiveimsbuilder.FrameMobilogramBuilder;
+import io.github.mzmine.modules.dataprocessing.featdet_recursiveimsbuilder.PrimitiveIMTraceBuilder;
+import io.github.mzmine.modules.dataprocessing.featdet_recursiveimsbuilder.StoredFrameMobilograms;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RecursiveIMSBuilderTest {
+
+  private static final MZTolerance tol = new MZTolerance(0.003, 10);
+
+  @Test
+  void sameMobilogramsAndTracesAsRangeMapBuilder() {
+    final SyntheticFrames data = SyntheticFrames.create(12, 40, 400, 11);
+    for (int threshold : new int[]{50, Integer.MAX_VALUE}) {
+      final List<Mobilogram> expectedMobilograms = new ArrayList<>();
+
+      final FrameMobilogramBuilder builder = new FrameMobilogramBuilder(tol, threshold);
+      for (int f = 0; f < data.mzs().length; f++) {
+        final List<Mobilogram> expected = LegacyRecursiveIMSBuilder.buildFrameMobilograms(f,
+            data.mzs()[f], data.intensities()[f], tol, threshold);
+
+        for (int s = 0; s < data.mzs()[f].length; s++) {
+          for (int i = 0; i < data.mzs()[f][s].length; i++) {
+            builder.addDataPoint(data.mzs()[f][s][i], data.intensities()[f][s][i], s);
+          }
+        }
+        final List<Mobilogram> actual = toMobilograms(f, builder.buildMobilograms(null));
+
+        // the legacy builder returned the mobilograms of a frame in no particular order
+        expected.sort(Comparator.comparingDouble(Mobilogram::avgMz));
+        actual.sort(Comparator.comparingDouble(Mobilogram::avgMz));
+        assertSameMobilograms(expected, actual);
+        expectedMobilograms.addAll(expected);
+      }
+
+      final List<List<Mobilogram>> expectedTraces = LegacyRecursiveIMSBuilder.buildTraces(
+          expectedMobilograms, tol, threshold);
+      final List<List<Mobilogram>> traces = buildTraces(data, threshold);
+      Assertions.assertEquals(expectedTraces.size(), traces.size());
+
+      final Comparator<List<Mobilogram>> byFirstMz = Comparator.comparingDouble(
+          trace -> trace.get(0).avgMz());
+      expectedTraces.sort(byFirstMz);
+      traces.sort(byFirstMz);
+      for (int t = 0; t < traces.size(); t++) {
+        assertSameMobilograms(expectedTraces.get(t), traces.get(t));
+      }
+    }
+  }
+
+  @Test
+  void oneDataPointPerMobilityScan() {
+    final FrameMobilogramBuilder builder = new FrameMobilogramBuilder(new MZTolerance(0.01, 0),
+        0);
+    builder.addDataPoint(500, 1000, 0);
+    builder.addDataPoint(500.001, 900, 1);
+    builder.addDataPoint(500.002, 800, 1);
+    builder.addDataPoint(500.05, 700, 1);
+
+    final List<Mobilogram> mobilograms = toMobilograms(0, builder.buildMobilograms(null));
+    mobilograms.sort(Comparator.comparingDouble(Mobilogram::avgMz));
+    Assertions.assertEquals(3, mobilograms.size());
+    Assertions.assertArrayEquals(new int[]{0, 1}, mobilograms.get(0).mobilityScanNumbers());
+    // the leftover of scan 1 forms its own mobilogram in the recursive step
+    Assertions.assertArrayEquals(new double[]{500.002}, mobilograms.get(1).mzs());
+    Assertions.assertArrayEquals(new double[]{500.05}, mobilograms.get(2).mzs());
+
+    // builder is reset
+    Assertions.assertNull(builder.buildMobilograms(null));
+  }
+
+  @Test
+  void reusedBuffersStoreSameMobilograms() {
+    final SyntheticFrames data = SyntheticFrames.create(6, 40, 400, 5);
+    final MemoryMapStorage storage = MemoryMapStorage.create();
+    // the second builder reuses its output buffers as the values are copied to the storage
+    final FrameMobilogramBuilder inMemory = new FrameMobilogramBuilder(tol, 50);
+    final FrameMobilogramBuilder stored = new FrameMobilogramBuilder(tol, 50, 40 * 400);
+    final List<Mobilogram> expected = new ArrayList<>();
+    final List<StoredFrameMobilograms> frames = new ArrayList<>();
+    for (int f = 0; f < data.mzs().length; f++) {
+      for (int s = 0; s < data.mzs()[f].length; s++) {
+        for (int i = 0; i < data.mzs()[f][s].length; i++) {
+          inMemory.addDataPoint(data.mzs()[f][s][i], data.intensities()[f][s][i], s);
+          stored.addDataPoint(data.mzs()[f][s][i], data.intensities()[f][s][i], s);
+        }
+      }
+      expected.addAll(toMobilograms(f, inMemory.buildMobilograms(null)));
+      frames.add(stored.buildMobilograms(storage));
+    }
+
+    // check after all frames, so later frames must not overwrite stored values
+    final List<Mobilogram> actual = new ArrayList<>();
+    for (int f = 0; f < frames.size(); f++) {
+      actual.addAll(toMobilograms(f, frames.get(f)));
+    }
+    assertSameMobilograms(expected, actual);
+  }
+
+  /**
+   * Builds the mobilograms of all frames and the traces like the RecursiveIMSBuilderTask.
+   */
+  private static List<List<Mobilogram>> buildTraces(SyntheticFrames data, int threshold) {
+    final FrameMobilogramBuilder builder = new FrameMobilogramBuilder(tol, threshold);
+    final List<Mobilogram> mobilograms = new ArrayList<>();
+    for (int f = 0; f < data.mzs().length; f++) {
+      for (int s = 0; s < data.mzs()[f].length; s++) {
+        for (int i = 0; i < data.mzs()[f][s].length; i++) {
+          builder.addDataPoint(data.mzs()[f][s][i], data.intensities()[f][s][i], s);
+        }
+      }
+      mobilograms.addAll(toMobilograms(f, builder.buildMobilograms(null)));
+    }
+
+    final double[] avgMzs = mobilograms.stream().mapToDouble(Mobilogram::avgMz).toArray();
+    final double[] summedIntensities = mobilograms.stream()
+        .mapToDouble(Mobilogram::summedIntensity).toArray();
+    final int[] frames = mobilograms.stream().mapToInt(Mobilogram::frame).toArray();
+    final PrimitiveIMTraceBuilder traceBuilder = new PrimitiveIMTraceBuilder(tol, threshold,
+        DoubleBuffer.wrap(avgMzs), DoubleBuffer.wrap(summedIntensities), IntBuffer.wrap(frames));
+    Assertions.assertTrue(traceBuilder.buildTraces(() -> false));
+    Assertions.assertEquals(1d, traceBuilder.getFinishedPercentage());
+
+    final List<List<Mobilogram>> traces = new ArrayList<>();
+    for (int t = 0; t < traceBuilder.getNumberOfTraces(); t++) {
+      final List<Mobilogram> trace = new ArrayList<>();
+      for (int mobilogram : traceBuilder.getMobilograms(t)) {
+        trace.add(mobilograms.get(mobilogram));
+      }
+      traces.add(trace);
+    }
+    return traces;
+  }
+
+  private static List<Mobilogram> toMobilograms(int frame, StoredFrameMobilograms stored) {
+    final List<Mobilogram> mobilograms = new ArrayList<>();
+    if (stored == null) {
+      return mobilograms;
+    }
+    for (int i = 0; i < stored.getNumberOfMobilograms(); i++) {
+      final int start = stored.offsets()[i];
+      final int numValues = stored.getNumberOfValues(i);
+      final double[] mzs = new double[numValues];
+      final double[] intensities = new double[numValues];
+      final int[] scans = new int[numValues];
+      stored.mzs().get(start, mzs, 0, numValues);
+      stored.intensities().get(start, intensities, 0, numValues);
+      stored.mobilityScanNumbers().get(start, scans, 0, numValues);
+      mobilograms.add(new Mobilogram(frame, mzs, intensities, scans, stored.avgMzs().get(i),
+          stored.summedIntensities().get(i)));
+    }
+    return mobilograms;
+  }
+
+  private static void assertSameMobilograms(List<Mobilogram> expected, List<Mobilogram> actual) {
+    Assertions.assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      final Mobilogram e = expected.get(i);
+      final Mobilogram a = actual.get(i);
+      Assertions.assertEquals(e.frame(), a.frame());
+      Assertions.assertArrayEquals(e.mobilityScanNumbers(), a.mobilityScanNumbers());
+      Assertions.assertArrayEquals(e.mzs(), a.mzs());
+      Assertions.assertArrayEquals(e.intensities(), a.intensities());
+      Assertions.assertEquals(e.avgMz(), a.avgMz());
+      Assertions.assertEquals(e.summedIntensity(), a.summedIntensity());
+    }
+  }
+}
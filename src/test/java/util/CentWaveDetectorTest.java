@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package util;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.centwave.CentWaveResolverParameters.PeakIntegrationMethod;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Three gaussian peaks on noise, the last two close to each other. Zero intensities split the
+ * chromatogram into regions of interest.
+ */
+public class CentWaveDetectorTest {
+
+  private static final int N = 600;
+  private static final double[] rts = new double[N];
+  private static final double[] intensities = new double[N];
+  private static final double[] apexRts = {1.5, 3.0, 3.4};
+
+  @BeforeAll
+  static void init() {
+    final Random random = new Random(1);
+    for (int i = 0; i < N; i++) {
+      rts[i] = i * 0.01;
+      if (i < 100 || (i >= 250 && i < 280)) {
+        continue;
+      }
+      intensities[i] = Math.max(0, 100 + random.nextGaussian() * 10
+          + 1e5 * Math.exp(-Math.pow((rts[i] - 1.5) / 0.05, 2) / 2)
+          + 5e4 * Math.exp(-Math.pow((rts[i] - 3.0) / 0.08, 2) / 2)
+          + 2e4 * Math.exp(-Math.pow((rts[i] - 3.4) / 0.05, 2) / 2));
+    }
+  }
+
+  private static void assertPeaks(List<Range<Double>> peaks) {
+    Assertions.assertEquals(apexRts.length, peaks.size(), peaks.toString());
+    for (int i = 0; i < apexRts.length; i++) {
+      Assertions.assertTrue(peaks.get(i).contains(apexRts[i]), peaks.toString());
+      // no overlaps
+      Assertions.assertTrue(
+          i == 0 || peaks.get(i - 1).upperEndpoint() < peaks.get(i).lowerEndpoint());
+    }
+  }
+
+  @Test
+  void testSmoothedData() {
+    final CentWaveDetector detector = new CentWaveDetector(10, Range.closed(0.05, 0.5),
+        PeakIntegrationMethod.UseSmoothedData);
+    assertPeaks(detector.detect(rts, intensities, N));
+    // buffers are reused
+    assertPeaks(detector.detect(rts, intensities, N));
+  }
+
+  @Test
+  void testReusedForOtherSpacing() {
+    final CentWaveDetector detector = new CentWaveDetector(10, Range.closed(0.05, 0.5),
+        PeakIntegrationMethod.UseSmoothedData);
+    assertPeaks(detector.detect(rts, intensities, N));
+
+    // other scales in data points
+    final double[] wideRts = new double[N];
+    for (int i = 0; i < N; i++) {
+      wideRts[i] = rts[i] / 2;
+    }
+    final List<Range<Double>> expected = new CentWaveDetector(10, Range.closed(0.05, 0.5),
+        PeakIntegrationMethod.UseSmoothedData).detect(wideRts, intensities, N);
+    Assertions.assertFalse(expected.isEmpty());
+    Assertions.assertEquals(expected, detector.detect(wideRts, intensities, N));
+    assertPeaks(detector.detect(rts, intensities, N));
+  }
+
+  @Test
+  void testRawData() {
+    final CentWaveDetector detector = new CentWaveDetector(10, Range.closed(0.05, 0.5),
+        PeakIntegrationMethod.UseRawData);
+    assertPeaks(detector.detect(rts, intensities, N));
+  }
+
+  @Test
+  void testNoPeaks() {
+    final CentWaveDetector detector = new CentWaveDetector(10, Range.closed(0.05, 0.5),
+        PeakIntegrationMethod.UseSmoothedData);
+    Assertions.assertTrue(detector.detect(rts, new double[N], N).isEmpty());
+    // only the first peak within the used values
+    Assertions.assertEquals(1, detector.detect(rts, intensities, 250).size());
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package util;
+
+import io.github.mzmine.util.collections.DoubleIntervalIndex;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class DoubleIntervalIndexTest {
+
+  @Test
+  public void testOverlapping() {
+    final DoubleIntervalIndex index = new DoubleIntervalIndex(new double[]{5, 1, 3, 10, 4},
+        new double[]{6, 2, 20, 11, 3});
+
+    Assertions.assertEquals(0, index.countOverlapping(-5, 0.5));
+    // closed intervals
+    Assertions.assertArrayEquals(new int[]{1}, overlapping(index, 0, 1));
+    Assertions.assertArrayEquals(new int[]{1, 2}, overlapping(index, 2, 3));
+    // id 4 is empty and never reported. Sorted by lower bound
+    Assertions.assertArrayEquals(new int[]{2, 0, 3}, overlapping(index, 4, 10));
+    Assertions.assertArrayEquals(new int[]{2}, overlapping(index, 15, 25));
+    // only ids greater than 1
+    Assertions.assertEquals(2, index.countOverlapping(2, 10, 1));
+    Assertions.assertEquals(0, index.countOverlapping(2, 10, 4));
+  }
+
+  @Test
+  public void testRandomAgainstBruteForce() {
+    final Random rand = new Random(42);
+    final int n = 500;
+    final double[] lower = new double[n];
+    final double[] upper = new double[n];
+    for (int i = 0; i < n; i++) {
+      lower[i] = rand.nextDouble() * 100;
+      // few wide intervals
+      upper[i] = lower[i] + rand.nextDouble() * (rand.nextInt(20) == 0 ? 50 : 2);
+    }
+    final DoubleIntervalIndex index = new DoubleIntervalIndex(lower, upper);
+
+    for (int q = 0; q < 200; q++) {
+      final double ql = rand.nextDouble() * 110 - 5;
+      final double qu = ql + rand.nextDouble() * 5;
+      final int afterId = rand.nextInt(n);
+      int expected = 0;
+      int expectedAfterId = 0;
+      for (int i = 0; i < n; i++) {
+        if (lower[i] <= qu && upper[i] >= ql) {
+          expected++;
+          if (i > afterId) {
+            expectedAfterId++;
+          }
+        }
+      }
+      Assertions.assertEquals(expected, index.countOverlapping(ql, qu));
+      Assertions.assertEquals(expectedAfterId, index.countOverlapping(ql, qu, afterId));
+    }
+  }
+
+  private static int[] overlapping(DoubleIntervalIndex index, double lower, double upper) {
+    final IntArrayList ids = new IntArrayList();
+    index.forEachOverlapping(lower, upper, ids::add);
+    return ids.toIntArray();
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package util;
+
+import com.google.common.collect.Range;
+import io.github.msdk.MSDKException;
+import io.github.msdk.datamodel.MsScan;
+import io.github.mzmine.modules.io.import_rawdata_mzml.IndexedMzMLReader;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.MzMLFileImportMethod;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLMsScan;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class IndexedMzMLReaderTest {
+
+  private static File getFile() {
+    return new File(IndexedMzMLReaderTest.class.getClassLoader()
+        .getResource("rawdatafiles/indexed_test.mzML").getFile());
+  }
+
+  @Test
+  void sameSpectraAsFullImport() throws MSDKException, IOException {
+    final File file = getFile();
+    final List<MsScan> expected = new MzMLFileImportMethod(file).execute().getScans();
+    Assertions.assertEquals(12, expected.size());
+
+    try (final IndexedMzMLReader reader = IndexedMzMLReader.open(file)) {
+      Assertions.assertNotNull(reader);
+      Assertions.assertEquals(expected.size(), reader.getNumberOfSpectra());
+
+      // access in reverse order to make sure the spectra are independent of the parsing order
+      for (int i = expected.size() - 1; i >= 0; i--) {
+        final MzMLMsScan scan = (MzMLMsScan) expected.get(i);
+        Assertions.assertEquals(scan.getScanNumber(), reader.getScanNumber(i));
+        Assertions.assertEquals(i, reader.indexOfScanNumber(scan.getScanNumber()));
+        Assertions.assertEquals(scan.getRetentionTime() / 60f, reader.getRetentionTime(i));
+
+        final MzMLMsScan spectrum = reader.getSpectrum(i);
+        Assertions.assertNotNull(spectrum);
+        Assertions.assertSame(spectrum, reader.getSpectrumByScanNumber(scan.getScanNumber()));
+        Assertions.assertEquals(scan.getId(), spectrum.getId());
+        Assertions.assertEquals(scan.getScanNumber(), spectrum.getScanNumber());
+        Assertions.assertEquals(scan.getRetentionTime(), spectrum.getRetentionTime());
+        Assertions.assertEquals(scan.getMsLevel(), spectrum.getMsLevel());
+        // defined in a referenceable param group in the header
+        Assertions.assertEquals(scan.getPolarity(), spectrum.getPolarity());
+        Assertions.assertEquals(scan.getSpectrumType(), spectrum.getSpectrumType());
+        Assertions.assertEquals(scan.getScanDefinition(), spectrum.getScanDefinition());
+        Assertions.assertEquals(scan.getIsolations().size(), spectrum.getIsolations().size());
+        Assertions.assertEquals(scan.getNumberOfDataPoints(), spectrum.getNumberOfDataPoints());
+        Assertions.assertArrayEquals(scan.getMzValues(null), spectrum.getMzValues(null));
+        Assertions.assertArrayEquals(scan.getIntensityValues(null),
+            spectrum.getIntensityValues(null));
+      }
+      Assertions.assertEquals(-1, reader.indexOfScanNumber(100));
+      Assertions.assertNull(reader.getSpectrumByScanNumber(100));
+    }
+  }
+
+  @Test
+  void retentionTimeAndScanSelection() throws MSDKException, IOException {
+    final File file = getFile();
+    final List<MsScan> expected = new MzMLFileImportMethod(file).execute().getScans();
+
+    try (final IndexedMzMLReader reader = IndexedMzMLReader.open(file)) {
+      Assertions.assertNotNull(reader);
+      // scans are 1.5 s apart, starting at 30 s
+      Assertions.assertEquals(0, reader.indexOfRetentionTime(0f));
+      Assertions.assertEquals(4, reader.indexOfRetentionTime(0.59f));
+      Assertions.assertEquals(4, reader.indexOfRetentionTime(36f / 60f));
+      Assertions.assertEquals(expected.size(), reader.indexOfRetentionTime(10f));
+
+      final Range<Float> rtRange = Range.closed(0.59f, 0.71f);
+      final List<MzMLMsScan> ms1 = reader.getSpectra(new ScanSelection(rtRange, 1));
+      Assertions.assertEquals(List.of(5, 7, 8),
+          ms1.stream().map(MzMLMsScan::getScanNumber).toList());
+      Assertions.assertEquals(expected.stream()
+              .filter(s -> s.getMsLevel() == 1 && rtRange.contains(s.getRetentionTime() / 60f))
+              .map(MsScan::getScanNumber).toList(),
+          ms1.stream().map(MzMLMsScan::getScanNumber).toList());
+
+      final List<MzMLMsScan> ms2 = reader.getSpectra(new ScanSelection(2));
+      Assertions.assertEquals(List.of(3, 6, 9, 12),
+          ms2.stream().map(MzMLMsScan::getScanNumber).toList());
+      for (MzMLMsScan spectrum : ms2) {
+        Assertions.assertTrue(IndexedMzMLReader.matches(new ScanSelection(2), spectrum, 1));
+        Assertions.assertFalse(IndexedMzMLReader.matches(new ScanSelection(1), spectrum, 1));
+      }
+
+      final ScanSelection scanNumbers = new ScanSelection(Range.closed(2, 4), null, null, null,
+          null, null, null, null);
+      Assertions.assertEquals(List.of(2, 3, 4),
+          reader.getSpectra(scanNumbers).stream().map(MzMLMsScan::getScanNumber).toList());
+    }
+  }
+
+  @Test
+  void closedReaderThrows() throws MSDKException, IOException {
+    final IndexedMzMLReader reader = IndexedMzMLReader.open(getFile());
+    Assertions.assertNotNull(reader);
+    Assertions.assertNotNull(reader.getSpectrum(0));
+    reader.close();
+    // closing twice is fine
+    reader.close();
+    Assertions.assertThrows(IllegalStateException.class, () -> reader.getSpectrum(0));
+  }
+
+  @Test
+  void notIndexedFileReturnsNull() throws MSDKException, IOException {
+    // remove the index after the mzML element
+    final String content = Files.readString(getFile().toPath(), StandardCharsets.UTF_8);
+    final String mzML = content.substring(0, content.indexOf("<indexList"));
+    final File file = File.createTempFile("not_indexed", ".mzML");
+    file.deleteOnExit();
+    Files.writeString(file.toPath(), mzML, StandardCharsets.UTF_8);
+
+    Assertions.assertNull(IndexedMzMLReader.open(file));
+  }
+}
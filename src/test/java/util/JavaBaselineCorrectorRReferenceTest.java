@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package util;
+
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.JavaAsymmetryCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.JavaLocMinLoessCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.JavaPeakDetectionCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.JavaRollingBallCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.JavaRubberBandCorrector;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the Java baseline correctors with the baselines of the R correctors for the MS1 TIC of
+ * DOM_b. The reference is written by baselinecorrection/r_reference.R with the same parameters,
+ * the comparison is skipped until it was generated. Deviations are relative to the intensity range
+ * of the chromatogram.
+ */
+public class JavaBaselineCorrectorRReferenceTest {
+
+  private static double[] chromatogram;
+  private static double range;
+  private static Map<String, double[]> reference;
+
+  @BeforeAll
+  static void init() throws IOException, URISyntaxException {
+    chromatogram = readCsv("baselinecorrection/DOM_b_tic.csv").get("intensity");
+    range = Arrays.stream(chromatogram).max().getAsDouble() - Arrays.stream(chromatogram).min()
+        .getAsDouble();
+    reference = readCsv("baselinecorrection/r_reference.csv");
+  }
+
+  /**
+   * @return the columns by header or null if the resource does not exist
+   */
+  private static Map<String, double[]> readCsv(String resource)
+      throws IOException, URISyntaxException {
+    final URL url = JavaBaselineCorrectorRReferenceTest.class.getClassLoader()
+        .getResource(resource);
+    if (url == null) {
+      return null;
+    }
+    final List<String> lines = Files.readAllLines(Path.of(url.toURI())).stream()
+        .filter(line -> !line.isBlank()).toList();
+    final String[] header = lines.get(0).replace("\"", "").split(",");
+    final Map<String, double[]> columns = new HashMap<>();
+    for (int c = 0; c < header.length; c++) {
+      final double[] values = new double[lines.size() - 1];
+      for (int i = 1; i < lines.size(); i++) {
+        values[i - 1] = Double.parseDouble(lines.get(i).split(",")[c]);
+      }
+      columns.put(header[c], values);
+    }
+    return columns;
+  }
+
+  private static void assertReference(String column, double[] result, double maxDeviation) {
+    Assumptions.assumeTrue(reference != null,
+        "Run baselinecorrection/r_reference.R to create the R reference baselines");
+    final double[] expected = reference.get(column);
+    Assertions.assertNotNull(expected, "Missing reference " + column);
+    Assertions.assertEquals(expected.length, result.length);
+    for (int i = 0; i < expected.length; i++) {
+      Assertions.assertEquals(expected[i], result[i], maxDeviation * range,
+          column + " at index " + i);
+    }
+  }
+
+  @Test
+  void testAsymmetricLeastSquares() {
+    assertReference("asymmetry",
+        JavaAsymmetryCorrector.asymmetricLeastSquares(chromatogram, 1e4, 0.001), 1e-6);
+  }
+
+  @Test
+  void testRollingBall() {
+    assertReference("rollingBall", JavaRollingBallCorrector.rollingBall(chromatogram, 10, 5),
+        1e-6);
+  }
+
+  @Test
+  void testRubberBand() {
+    assertReference("rubberBand", JavaRubberBandCorrector.rubberBand(chromatogram, 0, 10, false, 0),
+        1e-6);
+    // the same natural cubic smoothing spline, R may stop the search for df a bit earlier
+    assertReference("rubberBandSpline",
+        JavaRubberBandCorrector.rubberBand(chromatogram, 0, 10, true, 0), 1e-3);
+  }
+
+  @Test
+  void testLocalMinima() {
+    assertReference("locMinLoess",
+        JavaLocMinLoessCorrector.localMinima(chromatogram, 8, 0, true, 0.3), 0.01);
+  }
+
+  @Test
+  void testPeakDetection() {
+    // noise is estimated globally instead of per window
+    assertReference("peakDetection",
+        JavaPeakDetectionCorrector.peakDetection(chromatogram, 5, 20, 10, 10, 3, 0, 2), 0.05);
+  }
+}
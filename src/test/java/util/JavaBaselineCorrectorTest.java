@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package util;
+
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.JavaAsymmetryCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.JavaLocMinLoessCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.JavaPeakDetectionCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.JavaRollingBallCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.JavaRubberBandCorrector;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Two peaks on a linear baseline with noise. All correctors should find the linear baseline below
+ * the peaks.
+ */
+public class JavaBaselineCorrectorTest {
+
+  private static final int N = 500;
+  private static final double[] baseline = new double[N];
+  private static final double[] chromatogram = new double[N];
+
+  @BeforeAll
+  static void init() {
+    final Random random = new Random(42);
+    for (int i = 0; i < N; i++) {
+      baseline[i] = 100 + 0.2 * i;
+      chromatogram[i] = baseline[i] + 1000 * Math.exp(-Math.pow(i - 150, 2) / 50)
+          + 600 * Math.exp(-Math.pow(i - 350, 2) / 80) + random.nextGaussian();
+    }
+  }
+
+  private static void assertBaseline(double[] result, double maxDeviation) {
+    Assertions.assertEquals(N, result.length);
+    for (int i = 0; i < N; i++) {
+      Assertions.assertEquals(baseline[i], result[i], maxDeviation, "at index " + i);
+    }
+  }
+
+  @Test
+  void testAsymmetricLeastSquares() {
+    assertBaseline(JavaAsymmetryCorrector.asymmetricLeastSquares(chromatogram, 1e5, 0.001), 10);
+  }
+
+  @Test
+  void testRollingBall() {
+    assertBaseline(JavaRollingBallCorrector.rollingBall(chromatogram, 30, 10), 10);
+  }
+
+  @Test
+  void testRubberBand() {
+    assertBaseline(JavaRubberBandCorrector.rubberBand(chromatogram, 0, 0, false, 0), 10);
+    assertBaseline(JavaRubberBandCorrector.rubberBand(chromatogram, 3, 10, true, 0), 10);
+  }
+
+  @Test
+  void testSmoothingSpline() {
+    final Random random = new Random(1);
+    final int n = 12;
+    final double[] x = new double[n];
+    for (int i = 1; i < n; i++) {
+      x[i] = x[i - 1] + 0.2 + 3 * random.nextDouble();
+    }
+
+    // the trace of the smoother matrix is the number of degrees of freedom
+    for (double df : new double[]{2.5, 3, 5.5, 9, 11.9}) {
+      double trace = 0;
+      for (int j = 0; j < n; j++) {
+        final double[] unit = new double[n];
+        unit[j] = 1;
+        trace += JavaRubberBandCorrector.smoothingSpline(x, unit, df, x)[j];
+      }
+      Assertions.assertEquals(df, trace, 1e-6, "df " + df);
+    }
+
+    // interpolates with n degrees of freedom
+    final double[] y = random.doubles(n).toArray();
+    Assertions.assertArrayEquals(y, JavaRubberBandCorrector.smoothingSpline(x, y, n, x), 1e-9);
+
+    // lines are not penalized and extrapolated linearly
+    final double[] line = Arrays.stream(x).map(v -> 3 + 2 * v).toArray();
+    final double[] xout = {x[0] - 5, x[0], (x[3] + x[4]) / 2, x[n - 1], x[n - 1] + 10};
+    final double[] expected = Arrays.stream(xout).map(v -> 3 + 2 * v).toArray();
+    Assertions.assertArrayEquals(expected,
+        JavaRubberBandCorrector.smoothingSpline(x, line, 4, xout), 1e-9);
+  }
+
+  @Test
+  void testLocalMinima() {
+    assertBaseline(JavaLocMinLoessCorrector.localMinima(chromatogram, 20, 0, false, 0.3), 10);
+    assertBaseline(JavaLocMinLoessCorrector.localMinima(chromatogram, 20, 0, true, 0.3), 10);
+  }
+
+  @Test
+  void testPeakDetection() {
+    assertBaseline(
+        JavaPeakDetectionCorrector.peakDetection(chromatogram, 20, 20, 10, 10, 3, 0, 2), 10);
+  }
+
+  @Test
+  void testFlat() {
+    final double[] flat = new double[50];
+    Arrays.fill(flat, 5d);
+    final double[] asls = JavaAsymmetryCorrector.asymmetricLeastSquares(flat, 1e6, 0.01);
+    for (double v : asls) {
+      Assertions.assertEquals(5d, v, 1e-6);
+    }
+  }
+}
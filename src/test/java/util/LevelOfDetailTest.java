@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package util;
+
+import io.github.mzmine.gui.chartbasics.simplechart.datasets.LevelOfDetail;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LevelOfDetailTest {
+
+  @Test
+  public void testNoReduction() {
+    final double[] x = linear(400);
+    final double[] y = new Random(1).doubles(400).toArray();
+    // 4 values per column are not reduced
+    Assertions.assertNull(reduce(x, y, 0, 400, 100));
+    Assertions.assertNull(reduce(x, y, 0, 400, 0));
+    Assertions.assertNull(reduce(x, y, 100, 100, 10));
+    Assertions.assertNull(reduce(x, y, 200, 100, 10));
+    Assertions.assertNotNull(reduce(x, y, 0, 400, 99));
+  }
+
+  @Test
+  public void testEndpointsAndExtrema() {
+    final int n = 10_000;
+    final double[] x = linear(n);
+    final double[] y = new Random(42).doubles(n).toArray();
+    y[7] = 5d;
+    y[9_500] = -5d;
+
+    // only a part of the data is visible
+    final int[] indices = reduce(x, y, 2_000, 3_000, 50);
+    Assertions.assertNotNull(indices);
+    assertSortedUnique(indices);
+    Assertions.assertTrue(contains(indices, 0));
+    Assertions.assertTrue(contains(indices, n - 1));
+    Assertions.assertTrue(contains(indices, 7));
+    Assertions.assertTrue(contains(indices, 9_500));
+    // neighbours outside the visible range draw the lines leaving the chart
+    Assertions.assertTrue(contains(indices, 1_999));
+    Assertions.assertTrue(contains(indices, 3_001));
+    Assertions.assertTrue(contains(indices, 2_000));
+    Assertions.assertTrue(contains(indices, 3_000));
+    // nothing else outside of the visible range
+    for (int i : indices) {
+      Assertions.assertTrue(i == 0 || i == n - 1 || i == 7 || i == 9_500
+          || (i >= 1_999 && i <= 3_001), "unexpected index " + i);
+    }
+    Assertions.assertTrue(indices.length <= LevelOfDetail.VALUES_PER_COLUMN * 50 + 6);
+  }
+
+  @Test
+  public void testColumnExtremaPreserved() {
+    final int n = 100_000;
+    final double[] x = new double[n];
+    final double[] y = new double[n];
+    final Random rand = new Random(7);
+    double current = 0;
+    for (int i = 0; i < n; i++) {
+      // unevenly spaced domain values
+      current += rand.nextDouble() * 0.02;
+      x[i] = current;
+      y[i] = rand.nextGaussian();
+    }
+    final double lower = x[0];
+    final double upper = x[n - 1];
+    final int columns = 300;
+    final int[] indices = reduce(x, y, lower, upper, columns);
+    Assertions.assertNotNull(indices);
+    assertSortedUnique(indices);
+
+    final double columnWidth = (upper - lower) / columns;
+    final double[] allMin = new double[columns];
+    final double[] allMax = new double[columns];
+    final double[] drawnMin = new double[columns];
+    final double[] drawnMax = new double[columns];
+    Arrays.fill(allMin, Double.POSITIVE_INFINITY);
+    Arrays.fill(drawnMin, Double.POSITIVE_INFINITY);
+    Arrays.fill(allMax, Double.NEGATIVE_INFINITY);
+    Arrays.fill(drawnMax, Double.NEGATIVE_INFINITY);
+    for (int i = 0; i < n; i++) {
+      final int c = column(x[i], lower, columnWidth, columns);
+      allMin[c] = Math.min(allMin[c], y[i]);
+      allMax[c] = Math.max(allMax[c], y[i]);
+    }
+    for (int i : indices) {
+      final int c = column(x[i], lower, columnWidth, columns);
+      drawnMin[c] = Math.min(drawnMin[c], y[i]);
+      drawnMax[c] = Math.max(drawnMax[c], y[i]);
+    }
+    Assertions.assertArrayEquals(allMin, drawnMin);
+    Assertions.assertArrayEquals(allMax, drawnMax);
+    Assertions.assertTrue(indices.length <= LevelOfDetail.VALUES_PER_COLUMN * columns + 6);
+  }
+
+  private static int column(double x, double lower, double columnWidth, int columns) {
+    return Math.min(columns - 1, (int) ((x - lower) / columnWidth));
+  }
+
+  private static double[] linear(int n) {
+    final double[] x = new double[n];
+    for (int i = 0; i < n; i++) {
+      x[i] = i;
+    }
+    return x;
+  }
+
+  private static int[] reduce(double[] x, double[] y, double lower, double upper, int columns) {
+    return LevelOfDetail.reduceM4(x.length, i -> x[i], i -> y[i], lower, upper, columns);
+  }
+
+  private static boolean contains(int[] sorted, int value) {
+    return Arrays.binarySearch(sorted, value) >= 0;
+  }
+
+  private static void assertSortedUnique(int[] indices) {
+    for (int i = 1; i < indices.length; i++) {
+      Assertions.assertTrue(indices[i] > indices[i - 1]);
+    }
+  }
+}
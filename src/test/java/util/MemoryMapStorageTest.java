@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package util;
+
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.StorageUsage;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MemoryMapStorageTest {
+
+  @Test
+  public void testDiscardReclaimsFiles() throws IOException {
+    final MemoryMapStorage storage = MemoryMapStorage.create();
+    storage.storeData(new double[1000]);
+    storage.storeData(new int[10]);
+
+    final StorageUsage usage = storage.getUsage();
+    Assertions.assertEquals(1, usage.liveFiles());
+    Assertions.assertEquals(1000 * Double.BYTES + 10 * Integer.BYTES, usage.liveBytes());
+    Assertions.assertEquals(0, usage.reclaimedFiles());
+
+    storage.discard(null);
+    final StorageUsage discarded = storage.getUsage();
+    Assertions.assertEquals(0, discarded.liveFiles());
+    Assertions.assertEquals(0, discarded.liveBytes());
+    Assertions.assertEquals(1, discarded.reclaimedFiles());
+    Assertions.assertEquals(usage.liveBytes(), discarded.reclaimedBytes());
+
+    // discard twice does not reclaim again
+    storage.discard(null);
+    Assertions.assertEquals(discarded, storage.getUsage());
+  }
+}
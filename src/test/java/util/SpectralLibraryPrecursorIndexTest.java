@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryPrecursorIndex;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The precursor index needs to find the same entries as a linear scan over all library entries.
+ */
+class SpectralLibraryPrecursorIndexTest {
+
+  private static final MZTolerance TOLERANCE = new MZTolerance(0.005, 10);
+  private static final Object[] POLARITIES = {null, PolarityType.POSITIVE, PolarityType.NEGATIVE,
+      PolarityType.UNKNOWN, "P", "Negative", "+", "-", ""};
+
+  @Test
+  void sameEntriesAsLinearScan() {
+    final Random random = new Random(42);
+    final List<SpectralLibraryEntry> entries = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      final Double mz = switch (random.nextInt(20)) {
+        case 0 -> null;
+        case 1 -> Double.NaN;
+        // duplicates of an earlier m/z
+        case 2 -> entries.isEmpty() ? Double.valueOf(150) : entries.get(random.nextInt(entries.size()))
+            .getPrecursorMZ();
+        default -> 100 + random.nextDouble() * 100;
+      };
+      final Float ccs = random.nextBoolean() ? null : 150f + random.nextFloat() * 100f;
+      entries.add(createEntry(mz, POLARITIES[random.nextInt(POLARITIES.length)], ccs));
+    }
+    final SpectralLibraryPrecursorIndex index = new SpectralLibraryPrecursorIndex(entries);
+    assertEquals(entries.size(), index.getNumberOfEntries());
+
+    for (int q = 0; q < 500; q++) {
+      final double query = 99 + random.nextDouble() * 102;
+      final Range<Double> mzRange = TOLERANCE.getToleranceRange(query);
+      final PolarityType polarity = switch (random.nextInt(3)) {
+        case 0 -> null;
+        case 1 -> PolarityType.POSITIVE;
+        default -> PolarityType.NEGATIVE;
+      };
+      final Range<Double> ccsRange =
+          random.nextBoolean() ? null : Range.closed(180d, 180d + random.nextDouble() * 50);
+
+      assertArrayEquals(linearScan(entries, mzRange, null, null),
+          index.getCandidates(mzRange.lowerEndpoint(), mzRange.upperEndpoint()));
+      assertArrayEquals(linearScan(entries, mzRange, polarity, ccsRange),
+          index.getCandidates(mzRange.lowerEndpoint(), mzRange.upperEndpoint(), polarity,
+              ccsRange));
+    }
+  }
+
+  @Test
+  void entriesOnToleranceEdges() {
+    final double query = 400.123;
+    final Range<Double> mzRange = TOLERANCE.getToleranceRange(query);
+    final double lower = mzRange.lowerEndpoint();
+    final double upper = mzRange.upperEndpoint();
+    final List<SpectralLibraryEntry> entries = new ArrayList<>();
+    for (double mz : new double[]{Math.nextDown(lower), lower, Math.nextUp(lower), query,
+        Math.nextDown(upper), upper, Math.nextUp(upper)}) {
+      entries.add(createEntry(mz, null, null));
+    }
+    final SpectralLibraryPrecursorIndex index = new SpectralLibraryPrecursorIndex(entries);
+
+    final int[] candidates = index.getCandidates(lower, upper);
+    assertArrayEquals(new int[]{1, 2, 3, 4, 5}, candidates);
+    assertArrayEquals(linearScan(entries, mzRange, null, null), candidates);
+    // single point range
+    assertArrayEquals(new int[]{1}, index.getCandidates(lower, lower));
+    assertArrayEquals(new int[0], index.getCandidates(upper, lower));
+  }
+
+  @Test
+  void entriesWithoutPrecursorAreNotIndexed() {
+    final List<SpectralLibraryEntry> entries = List.of(createEntry(null, null, null),
+        createEntry(200d, null, null), createEntry(Double.NaN, null, null));
+    final SpectralLibraryPrecursorIndex index = new SpectralLibraryPrecursorIndex(entries);
+    assertEquals(3, index.getNumberOfEntries());
+    assertEquals(1, index.size());
+    assertArrayEquals(new int[]{1},
+        index.getCandidates(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY));
+  }
+
+  /**
+   * Reference: checks all entries with the same filters
+   *
+   * @return the library indices of all matching entries in library order
+   */
+  private static int[] linearScan(List<SpectralLibraryEntry> entries, Range<Double> mzRange,
+      PolarityType polarity, Range<Double> ccsRange) {
+    final IntArrayList result = new IntArrayList();
+    for (int i = 0; i < entries.size(); i++) {
+      final SpectralLibraryEntry entry = entries.get(i);
+      final Double mz = entry.getPrecursorMZ();
+      if (mz == null || !mzRange.contains(mz)) {
+        continue;
+      }
+      final PolarityType entryPolarity = parsePolarity(
+          entry.getOrElse(DBEntryField.POLARITY, null));
+      if (polarity != null && entryPolarity != PolarityType.UNKNOWN && entryPolarity != polarity) {
+        continue;
+      }
+      final Object ccs = entry.getOrElse(DBEntryField.CCS, null);
+      if (ccsRange != null && !(ccs instanceof Number n && ccsRange.contains(n.doubleValue()))) {
+        continue;
+      }
+      result.add(i);
+    }
+    return result.toIntArray();
+  }
+
+  private static PolarityType parsePolarity(Object polarity) {
+    if (polarity instanceof PolarityType type) {
+      return type == PolarityType.POSITIVE || type == PolarityType.NEGATIVE ? type
+          : PolarityType.UNKNOWN;
+    }
+    if (polarity == null || polarity.toString().isBlank()) {
+      return PolarityType.UNKNOWN;
+    }
+    return switch (polarity.toString().trim().toLowerCase().charAt(0)) {
+      case 'p', '+' -> PolarityType.POSITIVE;
+      case 'n', '-' -> PolarityType.NEGATIVE;
+      default -> PolarityType.UNKNOWN;
+    };
+  }
+
+  private static SpectralLibraryEntry createEntry(Double precursorMZ, Object polarity, Float ccs) {
+    final Map<DBEntryField, Object> fields = new HashMap<>();
+    if (precursorMZ != null) {
+      fields.put(DBEntryField.PRECURSOR_MZ, precursorMZ);
+    }
+    if (polarity != null) {
+      fields.put(DBEntryField.POLARITY, polarity);
+    }
+    if (ccs != null) {
+      fields.put(DBEntryField.CCS, ccs);
+    }
+    return new SpectralDBEntry(null, new double[]{50d, 100d}, new double[]{1d, 0.5d}, fields);
+  }
+}
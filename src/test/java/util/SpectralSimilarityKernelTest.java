@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package util;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.maths.similarity.Similarity;
+import io.github.mzmine.util.scans.ScanAlignment;
+import io.github.mzmine.util.scans.similarity.EncodedSpectrum;
+import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
+import io.github.mzmine.util.scans.similarity.SpectralSimilarityKernel;
+import io.github.mzmine.util.scans.similarity.Weights;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The kernel needs to match the same signals and calculate the same cosine as the alignment of data
+ * points in {@link ScanAlignment}.
+ */
+public class SpectralSimilarityKernelTest {
+
+  private static final MZTolerance mzTol = new MZTolerance(0.005, 10);
+
+  private static DataPoint[] randomSpectrum(Random random) {
+    final DataPoint[] dps = new DataPoint[1 + random.nextInt(50)];
+    for (int i = 0; i < dps.length; i++) {
+      // close m/z values and equal intensities to test the matching order
+      dps[i] = new SimpleDataPoint(
+          50 + random.nextInt(100) + random.nextInt(3) * 0.003 + random.nextDouble() * 0.002,
+          1 + random.nextInt(20) * 100);
+    }
+    return dps;
+  }
+
+  private static int overlap(List<DataPoint[]> aligned) {
+    return (int) aligned.stream().filter(dps -> dps[0] != null && dps[1] != null).count();
+  }
+
+  private static double cosine(List<DataPoint[]> aligned, Weights weights) {
+    return Similarity.COSINE.calc(
+        ScanAlignment.toIntensityMatrixWeighted(aligned, weights.getIntensity(), weights.getMz()));
+  }
+
+  @Test
+  void testCosine() {
+    final Random random = new Random(3);
+    final SpectralSimilarityKernel kernel = SpectralSimilarityKernel.forCurrentThread();
+    for (int t = 0; t < 1000; t++) {
+      final DataPoint[] a = randomSpectrum(random);
+      final DataPoint[] b = randomSpectrum(random);
+      final Weights weights = Weights.VALUES[t % Weights.VALUES.length];
+      final HandleUnmatchedSignalOptions handleUnmatched = HandleUnmatchedSignalOptions.values()[t
+          % HandleUnmatchedSignalOptions.values().length];
+
+      final List<DataPoint[]> aligned = handleUnmatched.handleUnmatched(
+          ScanAlignment.align(mzTol, a.clone(), b.clone()));
+      final int overlap = kernel.match(mzTol, new EncodedSpectrum(a, weights),
+          new EncodedSpectrum(b, weights));
+
+      Assertions.assertEquals(overlap(aligned), overlap);
+      Assertions.assertEquals(overlap, kernel.getAlignedDataPoints().size());
+      if (overlap > 0) {
+        Assertions.assertEquals(cosine(aligned, weights), kernel.cosine(handleUnmatched), 1E-12);
+      }
+    }
+  }
+
+  @Test
+  void testModifiedCosine() {
+    final Random random = new Random(5);
+    final SpectralSimilarityKernel kernel = SpectralSimilarityKernel.forCurrentThread();
+    for (int t = 0; t < 1000; t++) {
+      final DataPoint[] a = randomSpectrum(random);
+      final DataPoint[] b = randomSpectrum(random);
+      final double precursorA = 200;
+      final double precursorB = 200 + (t % 5 - 2) * 14.0157;
+
+      final List<DataPoint[]> aligned = ScanAlignment.alignModAware(mzTol, a.clone(), b.clone(),
+          precursorA, precursorB);
+      final int overlap = kernel.match(mzTol, new EncodedSpectrum(a, Weights.SQRT),
+          new EncodedSpectrum(b, Weights.SQRT), precursorB - precursorA);
+
+      Assertions.assertEquals(overlap(aligned), overlap);
+      Assertions.assertEquals(cosine(aligned, Weights.SQRT),
+          kernel.cosine(HandleUnmatchedSignalOptions.KEEP_ALL_AND_MATCH_TO_ZERO), 1E-12);
+    }
+  }
+}
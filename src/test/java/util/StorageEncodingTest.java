@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package util;
+
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.StorageEncoding;
+import io.github.mzmine.util.StoredDoubleValues;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class StorageEncodingTest {
+
+  /**
+   * Concatenated sorted scans with jumps between the scans, a non finite value and a last block
+   * with less values than the block size
+   */
+  private static double[] createMzs() {
+    final Random rand = new Random(42);
+    final double[] mzs = new double[5003];
+    int i = 0;
+    while (i < mzs.length) {
+      double mz = 50 + rand.nextDouble() * 20;
+      final int scanEnd = Math.min(mzs.length, i + 100 + rand.nextInt(900));
+      for (; i < scanEnd; i++) {
+        mzs[i] = mz;
+        mz += rand.nextDouble() * (rand.nextInt(2000) == 0 ? 300 : 0.5);
+      }
+    }
+    mzs[1234] = Double.NaN;
+    return mzs;
+  }
+
+  @Test
+  public void testDeltaEncodedMz() throws IOException {
+    final double[] mzs = createMzs();
+    final MemoryMapStorage storage = MemoryMapStorage.create(
+        StorageEncoding.FLOAT_INTENSITY_DELTA_MZ);
+    final StoredDoubleValues stored = storage.storeMzValues(mzs);
+
+    Assertions.assertEquals(mzs.length, stored.size());
+    final double[] decoded = new double[mzs.length + 3];
+    stored.get(0, decoded, 3, mzs.length);
+    for (int i = 0; i < mzs.length; i++) {
+      final double value = stored.get(i);
+      Assertions.assertEquals(value, decoded[i + 3], 0d);
+      if (Double.isNaN(mzs[i])) {
+        Assertions.assertTrue(Double.isNaN(value));
+        continue;
+      }
+      // rounded down, so the order of values is kept
+      Assertions.assertTrue(value <= mzs[i]);
+      Assertions.assertEquals(mzs[i], value, 6E-8);
+      if (i > 0 && mzs[i - 1] <= mzs[i]) {
+        Assertions.assertTrue(stored.get(i - 1) <= value);
+      }
+    }
+
+    // partial ranges across block borders
+    final double[] part = new double[100];
+    stored.get(60, part, 0, 100);
+    Assertions.assertArrayEquals(Arrays.copyOfRange(decoded, 63, 163), part, 0d);
+    // about half of the double storage, the blocks at scan borders are stored as doubles
+    Assertions.assertTrue(storage.getStoredBytes() < mzs.length * Double.BYTES * 0.7);
+  }
+
+  @Test
+  public void testFloatIntensities() throws IOException {
+    final double[] intensities = new Random(1).doubles(1000, 0, 1E8).toArray();
+    final MemoryMapStorage storage = MemoryMapStorage.create(StorageEncoding.FLOAT_INTENSITY);
+    final StoredDoubleValues stored = storage.storeIntensityValues(intensities);
+    for (int i = 0; i < intensities.length; i++) {
+      Assertions.assertEquals((float) intensities[i], stored.get(i), 0d);
+    }
+    Assertions.assertEquals(intensities.length * Float.BYTES, storage.getStoredBytes());
+    // m/z values stay doubles
+    final double[] mzs = createMzs();
+    Assertions.assertEquals(mzs[10], storage.storeMzValues(mzs).get(10), 0d);
+  }
+}
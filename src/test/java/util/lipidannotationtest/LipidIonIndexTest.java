@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package util.lipidannotationtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.IonizationType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipids.ILipidAnnotation;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipids.ILipidClass;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipids.LipidClasses;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils.LipidFactory;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils.LipidIonIndex;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils.LipidIonIndex.LipidIon;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
+
+class LipidIonIndexTest {
+
+  private static final LipidFactory LIPID_FACTORY = new LipidFactory();
+  private static final ILipidClass[] CLASSES = {LipidClasses.DIACYLGLYCEROLS,
+      LipidClasses.TRIACYLGLYCEROLS, LipidClasses.DIACYLGLYCEROPHOSPHOCHOLINES};
+
+  @Test
+  void indexIsCached() {
+    assertSame(LipidIonIndex.getIndex(CLASSES, 12, 60, 0, 6),
+        LipidIonIndex.getIndex(CLASSES.clone(), 12, 60, 0, 6));
+  }
+
+  @Test
+  void rangeQueryFindsLipidIon() {
+    LipidIonIndex index = LipidIonIndex.getIndex(CLASSES, 12, 60, 0, 6);
+    ILipidAnnotation tg = LIPID_FACTORY.buildSpeciesLevelLipid(LipidClasses.TRIACYLGLYCEROLS, 52,
+        2);
+    double mz = MolecularFormulaManipulator.getMass(tg.getMolecularFormula(),
+        AtomContainerManipulator.MonoIsotopic) + IonizationType.AMMONIUM.getAddedMass();
+
+    List<LipidIon> ions = index.getIons(Range.closed(mz - 0.002, mz + 0.002),
+        PolarityType.POSITIVE);
+    assertTrue(ions.stream().anyMatch(
+        ion -> ion.lipid().equals(tg) && ion.ionization() == IonizationType.AMMONIUM));
+    for (LipidIon ion : ions) {
+      assertEquals(PolarityType.POSITIVE, ion.ionization().getPolarity());
+      assertTrue(Math.abs(ion.mz() - mz) <= 0.002);
+    }
+
+    assertTrue(index.getIons(Range.closed(mz - 0.002, mz + 0.002), PolarityType.NEGATIVE).stream()
+        .noneMatch(ion -> ion.ionization() == IonizationType.AMMONIUM));
+  }
+}